@@ -48,6 +48,7 @@ import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
 import com.money.manager.ex.settings.PreferenceConstants;
 import com.money.manager.ex.view.RobotoView;
+import com.money.manager.ex.widget.WidgetRefresher;
 import com.shamanland.fonticon.FontIconTypefaceHolder;
 
 import org.parceler.Parcel;
@@ -60,6 +61,8 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import info.javaperformance.money.Money;
 import kotlin.Unit;
+import rx.Completable;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -89,7 +92,13 @@ public class MmexApplication
     }
 
     public String getPassword () {return this.mPassword;}
-    public void setPassword(String password) { this.mPassword = password ;}
+    public void setPassword(String password) {
+        this.mPassword = password;
+        // the open connection is keyed with the old password
+        if (openHelperAtomicReference != null && openHelperAtomicReference.get() != null) {
+            openHelperAtomicReference.get().setPassword(password);
+        }
+    }
     public static float getTextSize() {
         return MmexApplication.mTextSize;
     }
@@ -142,6 +151,11 @@ public class MmexApplication
 
         initializeDependencyInjection();
 
+        // refresh the widgets on the data changes.
+        MmxContentProvider.getChangeFeed().addListener(new WidgetRefresher(this));
+        MmxContentProvider.getStatistics().setEnabled(
+                new AppSettings(this).getDatabaseSettings().getQueryStatistics());
+
         // Job Manager initialization.
         initializeJobManager();
 
@@ -214,6 +228,21 @@ public class MmexApplication
         Timber.d("Application terminated");
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // The process may be killed from now on, without the database being closed.
+        if (level != TRIM_MEMORY_UI_HIDDEN || openHelperAtomicReference == null) return;
+
+        final MmxOpenHelper helper = openHelperAtomicReference.get();
+        if (helper == null) return;
+
+        Completable.fromAction(helper::storeDerivedFingerprints)
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> { }, e -> Timber.e(e, "storing the derived table fingerprints"));
+    }
+
     @Override
     public void attachBaseContext(Context base) {
         super.attachBaseContext(base);
@@ -233,9 +262,11 @@ public class MmexApplication
         if (openHelperAtomicReference == null) {
             openHelperAtomicReference = new AtomicReference<>(db);
         } else {
-            // close existing db
-           // openHelperAtomicReference.get().close();
-            openHelperAtomicReference.set(db);
+            // close existing db connection
+            MmxOpenHelper previous = openHelperAtomicReference.getAndSet(db);
+            if (previous != null) {
+                previous.close();
+            }
         }
     }
 
@@ -243,7 +274,9 @@ public class MmexApplication
         if (TextUtils.isEmpty(path)) {
             path = new DatabaseManager(this).getDatabasePath();
         }
-        return new MmxOpenHelper(this, path);
+        MmxOpenHelper helper = new MmxOpenHelper(this, path);
+        helper.setWriteAheadLoggingEnabled(new AppSettings(this).getDatabaseSettings().getWriteAheadLogging());
+        return helper;
     }
 
     public Locale getAppLocale() {
@@ -19,24 +19,40 @@ package com.money.manager.ex;
 import static android.database.sqlite.SQLiteDatabase.CONFLICT_REPLACE;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.net.Uri;
 import android.text.TextUtils;
 
 import com.money.manager.ex.budget.BudgetQuery;
+import com.money.manager.ex.currency.CurrencyFormatters;
+import com.money.manager.ex.currency.CurrencyHistoryRepository;
 import com.money.manager.ex.currency.CurrencyRepository;
+import com.money.manager.ex.currency.CurrencySnapshot;
+import com.money.manager.ex.currency.ExchangeRateHistory;
 import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.DatasetDependencies;
 import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.ITableWriteObserver;
+import com.money.manager.ex.database.InstrumentedCursor;
 import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.database.QueryCategorySubCategory;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
+import com.money.manager.ex.database.QueryStatementCache;
+import com.money.manager.ex.database.QueryStatistics;
 import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.database.TableChangeFeed;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
@@ -50,17 +66,24 @@ import com.money.manager.ex.datalayer.SplitCategoriesRepository;
 import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
 import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.datalayer.StockHistoryRepository;
+import com.money.manager.ex.investment.prices.QuoteCache;
 import com.money.manager.ex.nestedcategory.QueryNestedCategory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 import androidx.annotation.NonNull;
 import androidx.collection.SparseArrayCompat;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
 import dagger.Lazy;
 import timber.log.Timber;
@@ -78,6 +101,18 @@ public class MmxContentProvider
     // object map for the definition of the objects referenced in the URI
     private static final SparseArrayCompat<Object> mapContent = new SparseArrayCompat<>();
     private static String mAuthority;
+    // statements prepared for the dataset queries
+    private static final QueryStatementCache queryCache = new QueryStatementCache();
+    /**
+     * Compiled insert statements of the batch running on the current thread, by table and
+     * column list. Null outside of a batch.
+     */
+    private final ThreadLocal<Map<String, SupportSQLiteStatement>> batchStatements = new ThreadLocal<>();
+    // tables changed by the transaction running on the current thread, published on commit.
+    private final ThreadLocal<Set<String>> changedTables = new ThreadLocal<>();
+    private static final TableChangeFeed changeFeed = new TableChangeFeed();
+    private static final QueryStatistics statistics = new QueryStatistics();
+    private DatasetDependencies dependencies;
 
     public MmxContentProvider() {
         super();
@@ -94,6 +129,38 @@ public class MmxContentProvider
         MmxContentProvider.mAuthority = mAuthority;
     }
 
+    /**
+     * @return The cache of the prepared dataset statements, with its hit/miss counters.
+     */
+    public static QueryStatementCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * @return The feed of the tables changed by the committed writes.
+     */
+    public static TableChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * @return The datasets registered by {@link #onCreate()}, in the order of their uri codes.
+     */
+    public static List<Dataset> getDatasets() {
+        List<Dataset> datasets = new ArrayList<>();
+        for (int i = 0; i < mapContent.size(); i++) {
+            datasets.add((Dataset) mapContent.valueAt(i));
+        }
+        return datasets;
+    }
+
+    /**
+     * @return The latency statistics and the slow query log of the provider.
+     */
+    public static QueryStatistics getStatistics() {
+        return statistics;
+    }
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
@@ -108,6 +175,7 @@ public class MmxContentProvider
                 new BudgetRepository(context),
                 new CategoryRepository(context),
                 new CurrencyRepository(context),
+                new CurrencyHistoryRepository(context),
 //            new InfoRepositorySql(context),
                 new PayeeRepository(context),
                 new AttachmentRepository(context),
@@ -162,16 +230,33 @@ public class MmxContentProvider
             if (Objects.requireNonNull(dataset.getType()) == DatasetType.TABLE) {
                 logTableInsert(dataset, values);
 
-                //database.beginTransaction();
+                long start = System.nanoTime();
                 try {
                     initializeDependencies();
-
-                    id = openHelper.get().getWritableDatabase()
-                            .insert(dataset.getSource(), CONFLICT_REPLACE, values);
-                    //database.setTransactionSuccessful();
+                    SupportSQLiteDatabase database = openHelper.get().getWritableDatabase();
+
+                    boolean committed = false;
+                    database.beginTransaction();
+                    try {
+                        id = insertRow(database, dataset.getSource(), values);
+                        if (id <= 0 && isInBatch()) {
+                            throw new SQLException("insert into " + dataset.getSource() + " failed");
+                        }
+                        if (id > 0) recordChange(dataset.getSource());
+                        completeWrite(database);
+                        database.setTransactionSuccessful();
+                        committed = true;
+                    } finally {
+                        database.endTransaction();
+                        endWrite(committed);
+                    }
                 } catch (Exception e) {
+                    // inside a batch, a failed operation rolls back the whole batch.
+                    if (isInBatch()) throw asBatchFailure(e);
                     Timber.e(e, "inserting: %s", "insert");
                 }
+                recordWrite(dataset, QueryStatistics.Operation.INSERT, start, id > 0 ? 1 : 0,
+                        "INSERT INTO " + dataset.getSource());
                 parse = dataset.getBasePath() + "/" + id;
             } else {
                 throw new IllegalArgumentException("Type of dataset not supported for update");
@@ -183,6 +268,91 @@ public class MmxContentProvider
         return Uri.parse(parse);
     }
 
+    /**
+     * Inserts all the rows in a single transaction, reusing one compiled statement.
+     * @return Number of rows inserted. 0 if the batch failed and was rolled back.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        Timber.d("Bulk insert Uri: %s, %d rows", uri, values.length);
+
+        Object ret = getObjectFromUri(uri);
+        if (!(ret instanceof Dataset) || ((Dataset) ret).getType() != DatasetType.TABLE) {
+            throw new IllegalArgumentException("Type of dataset not supported for bulk insert");
+        }
+        Dataset dataset = (Dataset) ret;
+
+        initializeDependencies();
+        SupportSQLiteDatabase database = openHelper.get().getWritableDatabase();
+
+        long start = System.nanoTime();
+        int inserted = 0;
+        boolean committed = false;
+        boolean outerBatch = beginBatch();
+        database.beginTransaction();
+        try {
+            for (ContentValues row : values) {
+                if (insertRow(database, dataset.getSource(), row) > 0) {
+                    inserted++;
+                }
+            }
+            if (inserted > 0) recordChange(dataset.getSource());
+            completeWrite(database, outerBatch);
+            database.setTransactionSuccessful();
+            committed = true;
+        } catch (Exception e) {
+            if (!outerBatch) throw asBatchFailure(e);
+            Timber.e(e, "bulk inserting into %s", dataset.getSource());
+            inserted = 0;
+        } finally {
+            database.endTransaction();
+            if (outerBatch) endBatch();
+            endWrite(committed);
+        }
+        recordWrite(dataset, QueryStatistics.Operation.BULK_INSERT, start, inserted,
+                "INSERT INTO " + dataset.getSource() + ", " + values.length + " rows");
+        return inserted;
+    }
+
+    /**
+     * Applies all the operations in a single database transaction. Either all the operations
+     * are stored or none: if an operation fails, the batch is rolled back, nothing is
+     * published and OperationApplicationException is thrown.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        Timber.d("Apply batch: %d operations", operations.size());
+
+        initializeDependencies();
+        SupportSQLiteDatabase database = openHelper.get().getWritableDatabase();
+
+        long start = System.nanoTime();
+        boolean committed = false;
+        boolean outerBatch = beginBatch();
+        database.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            completeWrite(database, outerBatch);
+            database.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } catch (RuntimeException e) {
+            Timber.e(e, "applying batch, rolled back");
+            OperationApplicationException failure = new OperationApplicationException(
+                    "batch rolled back: " + e.getMessage());
+            failure.initCause(e);
+            throw failure;
+        } finally {
+            database.endTransaction();
+            if (outerBatch) endBatch();
+            endWrite(committed);
+            recordWrite("batch", QueryStatistics.Operation.BATCH, start, operations.size(),
+                    operations.size() + " operations");
+        }
+    }
+
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String whereClause, String[] whereArgs) {
         Timber.d("Update Uri: %s", uri);
@@ -200,11 +370,38 @@ public class MmxContentProvider
             if (Objects.requireNonNull(dataset.getType()) == DatasetType.TABLE) {
                 logUpdate(dataset, values, whereClause, whereArgs);
 
+                String table = dataset.getSource();
+                long start = System.nanoTime();
+                boolean committed = false;
+                database.beginTransaction();
                 try {
-                    rowsUpdate = database.update(dataset.getSource(), CONFLICT_REPLACE, values, whereClause, whereArgs);
+                    List<ITableWriteObserver> observers = getWriteObservers(table);
+                    long[] rowIds = observers.isEmpty()
+                            ? new long[0]
+                            : selectRowIds(database, table, whereClause, whereArgs);
+                    for (ITableWriteObserver observer : observers) {
+                        observer.beforeWrite(database, table, rowIds);
+                    }
+
+                    rowsUpdate = database.update(table, CONFLICT_REPLACE, values, whereClause, whereArgs);
+
+                    for (ITableWriteObserver observer : observers) {
+                        observer.afterWrite(database, table, rowIds);
+                    }
+                    if (rowsUpdate > 0) recordChange(table);
+                    completeWrite(database);
+                    database.setTransactionSuccessful();
+                    committed = true;
                 } catch (Exception ex) {
+                    if (isInBatch()) throw asBatchFailure(ex);
+                    rowsUpdate = 0;
                     Timber.e(ex, "updating: %s", "update");
+                } finally {
+                    database.endTransaction();
+                    endWrite(committed);
                 }
+                recordWrite(dataset, QueryStatistics.Operation.UPDATE, start, rowsUpdate,
+                        "UPDATE " + table + " WHERE " + whereClause);
             } else {
                 throw new IllegalArgumentException("Type of dataset not supported for update");
             }
@@ -232,20 +429,40 @@ public class MmxContentProvider
             Dataset dataset = ((Dataset) ret);
             if (Objects.requireNonNull(dataset.getType()) == DatasetType.TABLE) {
                 logDelete(dataset, selection, selectionArgs);
+                long start = System.nanoTime();
                 try {
                     initializeDependencies();
-
-                    rowsDelete = openHelper.get().getWritableDatabase()
-                            .delete(dataset.getSource(), selection, selectionArgs);
-
-                    /*
-                     committed
-                    if (BuildConfig.DEBUG) Log.d(LOGCAT, "database set transaction successful");
-                    database.setTransactionSuccessful();
-                    */
+                    SupportSQLiteDatabase database = openHelper.get().getWritableDatabase();
+                    String table = dataset.getSource();
+
+                    boolean committed = false;
+                    database.beginTransaction();
+                    try {
+                        List<ITableWriteObserver> observers = getWriteObservers(table);
+                        if (!observers.isEmpty()) {
+                            long[] rowIds = selectRowIds(database, table, selection, selectionArgs);
+                            for (ITableWriteObserver observer : observers) {
+                                observer.beforeWrite(database, table, rowIds);
+                            }
+                        }
+
+                        rowsDelete = database.delete(table, selection, selectionArgs);
+
+                        if (rowsDelete > 0) recordChange(table);
+                        completeWrite(database);
+                        database.setTransactionSuccessful();
+                        committed = true;
+                    } finally {
+                        database.endTransaction();
+                        endWrite(committed);
+                    }
                 } catch (Exception e) {
-                    Timber.e(e, "insert");
+                    if (isInBatch()) throw asBatchFailure(e);
+                    rowsDelete = 0;
+                    Timber.e(e, "deleting");
                 }
+                recordWrite(dataset, QueryStatistics.Operation.DELETE, start, rowsDelete,
+                        "DELETE FROM " + dataset.getSource() + " WHERE " + selection);
             } else {
                 throw new IllegalArgumentException("Type of dataset not supported for delete");
             }
@@ -339,11 +556,246 @@ public class MmxContentProvider
         }
 
         openHelper = null;
+        dependencies = null;
+        queryCache.clear();
+        // the currency ids refer to the currencies of the previous database.
+        CurrencyFormatters.invalidate();
+        CurrencySnapshot.invalidate();
+        ExchangeRateHistory.invalidate();
+        // the downloaded prices were stored in the previous database.
+        QuoteCache.invalidate();
         initializeDependencies();
     }
 
     // Private
 
+    /**
+     * Starts caching the compiled statements for the current thread.
+     * @return True if this call started the batch, false if already inside one.
+     */
+    private boolean beginBatch() {
+        if (batchStatements.get() != null) return false;
+
+        batchStatements.set(new HashMap<>());
+        return true;
+    }
+
+    private boolean isInBatch() {
+        return batchStatements.get() != null;
+    }
+
+    /**
+     * Wraps the failure of an operation, so that it ends the batch it belongs to.
+     */
+    private static RuntimeException asBatchFailure(Exception e) {
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        return new SQLException(e.getMessage(), e);
+    }
+
+    private void endBatch() {
+        Map<String, SupportSQLiteStatement> statements = batchStatements.get();
+        batchStatements.remove();
+        if (statements == null) return;
+
+        for (SupportSQLiteStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (Exception e) {
+                Timber.e(e, "closing batch statement");
+            }
+        }
+    }
+
+    /**
+     * Inserts (or replaces) a row. Inside a batch, the compiled statement for the table and
+     * column list is reused.
+     * @return id of the inserted row, -1 on error.
+     */
+    private long insertRow(SupportSQLiteDatabase database, String table, ContentValues values) {
+        List<ITableWriteObserver> observers = getWriteObservers(table);
+
+        // an insert with an existing id replaces the row.
+        String keyColumn = DerivedTable.getKeyColumn(table);
+        Long existingId = keyColumn != null && values != null ? values.getAsLong(keyColumn) : null;
+        if (existingId != null) {
+            long[] rowIds = new long[] { existingId };
+            for (ITableWriteObserver observer : observers) {
+                observer.beforeWrite(database, table, rowIds);
+            }
+        }
+
+        long id = executeInsert(database, table, values);
+
+        if (id > 0) {
+            long[] rowIds = new long[] { id };
+            for (ITableWriteObserver observer : observers) {
+                observer.afterWrite(database, table, rowIds);
+            }
+        }
+        return id;
+    }
+
+    private long executeInsert(SupportSQLiteDatabase database, String table, ContentValues values) {
+        Map<String, SupportSQLiteStatement> statements = batchStatements.get();
+        if (statements == null || values == null || values.size() == 0) {
+            return database.insert(table, CONFLICT_REPLACE, values);
+        }
+
+        List<String> columns = new ArrayList<>(values.keySet());
+        String key = table + ":" + TextUtils.join(",", columns);
+        SupportSQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ")
+                    .append(table).append(" (").append(TextUtils.join(",", columns))
+                    .append(") VALUES (");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i > 0 ? ",?" : "?");
+            }
+            sql.append(")");
+            statement = database.compileStatement(sql.toString());
+            statements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++) {
+            bindValue(statement, i + 1, values.get(columns.get(i)));
+        }
+        return statement.executeInsert();
+    }
+
+    private void recordWrite(Dataset dataset, QueryStatistics.Operation operation, long start,
+                             long rows, String statement) {
+        recordWrite(dataset.getBasePath(), operation, start, rows, statement);
+    }
+
+    private void recordWrite(String dataset, QueryStatistics.Operation operation, long start,
+                             long rows, String statement) {
+        if (!statistics.isEnabled()) return;
+
+        long nanos = System.nanoTime() - start;
+        statistics.record(dataset, operation, nanos, rows, 0);
+        if (statistics.isSlow(nanos)) {
+            statistics.recordSlowQuery(new QueryStatistics.SlowQuery(dataset, operation, statement,
+                    null, nanos, rows, null));
+        }
+    }
+
+    /**
+     * Collects a table written in the current transaction. The tables are published together
+     * when the write, or the whole batch, is committed.
+     */
+    private void recordChange(String table) {
+        Set<String> tables = changedTables.get();
+        if (tables == null) {
+            tables = new HashSet<>();
+            changedTables.set(tables);
+        }
+        tables.add(DatasetDependencies.normalize(table));
+    }
+
+    /**
+     * Publishes the changed tables, once the write (or the whole batch) is finished. Nothing is published if the transaction was rolled back.
+     */
+    private void endWrite(boolean committed) {
+        if (batchStatements.get() != null) return;
+
+        for (DerivedTable derivedTable : openHelper.get().getDerivedTables()) {
+            derivedTable.onWriteEnded(committed);
+        }
+
+        Set<String> tables = changedTables.get();
+        changedTables.remove();
+        if (!committed || tables == null || tables.isEmpty()) return;
+
+        notifyDatasets(tables);
+        changeFeed.publish(tables);
+    }
+
+    /**
+     * Notifies the observers (loaders) of the datasets reading the changed tables, once per
+     * dataset.
+     */
+    private void notifyDatasets(Set<String> tables) {
+        ContentResolver resolver = Objects.requireNonNull(getContext()).getContentResolver();
+        for (Dataset dataset : getDependencies().getAffected(tables)) {
+            resolver.notifyChange(dataset.getUri(), null, false);
+        }
+    }
+
+    private synchronized DatasetDependencies getDependencies() {
+        if (dependencies == null) {
+            dependencies = new DatasetDependencies(getDatasets(), openHelper.get().getDerivedTables());
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return The observers (derived tables) that need to see the writes to the table.
+     */
+    private List<ITableWriteObserver> getWriteObservers(String table) {
+        List<ITableWriteObserver> observers = new ArrayList<>();
+        for (DerivedTable derivedTable : openHelper.get().getDerivedTables()) {
+            if (derivedTable.isObserving(table)) {
+                observers.add(derivedTable);
+            }
+        }
+        return observers;
+    }
+
+    /**
+     * Lets the observers apply the collected changes, in the current transaction.
+     * Inside a batch, this is done once at the end of the batch.
+     */
+    private void completeWrite(SupportSQLiteDatabase database) {
+        completeWrite(database, batchStatements.get() == null);
+    }
+
+    private void completeWrite(SupportSQLiteDatabase database, boolean complete) {
+        if (!complete) return;
+
+        for (DerivedTable derivedTable : openHelper.get().getDerivedTables()) {
+            derivedTable.onWriteCompleted(database);
+        }
+    }
+
+    private long[] selectRowIds(SupportSQLiteDatabase database, String table, String where, String[] whereArgs) {
+        String sql = "SELECT rowid FROM " + table;
+        if (!TextUtils.isEmpty(where)) {
+            sql += " WHERE " + where;
+        }
+
+        Cursor cursor = whereArgs == null
+                ? database.query(sql)
+                : database.query(sql, whereArgs);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void bindValue(SupportSQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Float || value instanceof Double) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+
     private void initializeDependencies() {
         if (openHelper != null) return;
 
@@ -379,24 +831,38 @@ public class MmxContentProvider
         // check type of instance data set
         if (sourceObject instanceof Dataset) {
             Dataset dataset = ((Dataset) sourceObject);
-            String query = prepareQuery(dataset.getSource(), projection, selection, sortOrder);
 
+            long start = System.nanoTime();
+            String sql;
+            Object[] args;
             switch (dataset.getType()) {
                 case QUERY:
                 case TABLE:
                 case VIEW:
-                    if (selectionArgs == null) {
-                        cursor = database.query(query);
+                    QueryStatementCache.PreparedQuery query = queryCache.get(dataset, projection,
+                            selection, selectionArgs, sortOrder, this::prepareQuery);
+                    // the derived tables being checked are read from the base tables.
+                    sql = openHelper.get().resolveDerivedTables(query.sql);
+                    args = query.args;
+                    if (query.args == null) {
+                        cursor = database.query(sql);
                     } else {
-                        cursor = database.query(query, selectionArgs);
+                        cursor = database.query(sql, query.args);
                     }
                     break;
                 case SQL:
-                    cursor = database.query(selection, selectionArgs);
+                    sql = openHelper.get().resolveDerivedTables(selection);
+                    args = selectionArgs;
+                    cursor = database.query(sql, selectionArgs);
                     break;
                 default:
                     throw new IllegalArgumentException("Type of dataset not defined");
             }
+
+            if (statistics.isEnabled()) {
+                cursor = new InstrumentedCursor(cursor, statistics, database, dataset.getBasePath(),
+                        sql, args, System.nanoTime() - start);
+            }
         } else {
             throw new IllegalArgumentException("Object sourceObject of mapContent is not instance of dataset");
         }
@@ -404,10 +870,7 @@ public class MmxContentProvider
         // notify listeners waiting for the data is ready
         cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
 
-        if (!cursor.isClosed()) {
-            Timber.v("Rows returned: %d", cursor.getCount());
-        }
-
+        // The rows are not counted here: getCount() would read the whole result.
         return cursor;
     }
 
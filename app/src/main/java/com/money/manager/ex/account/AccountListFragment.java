@@ -265,8 +265,6 @@ public class AccountListFragment
                     if (!repo.delete(accountId)) {
                         Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
                     }
-                    // restart loader
-                    getLoaderManager().restartLoader(LOADER_ACCOUNT, null, AccountListFragment.this);
                 })
                 .setNegativeButton(android.R.string.cancel, (dialog, which) -> dialog.cancel())
                 .create()
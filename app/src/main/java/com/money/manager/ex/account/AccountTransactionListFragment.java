@@ -41,7 +41,6 @@ import android.widget.Toast;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
-import com.money.manager.ex.account.events.RunningBalanceCalculatedEvent;
 import com.money.manager.ex.common.AllDataListFragment;
 import com.money.manager.ex.common.MmxCursorLoader;
 import com.money.manager.ex.core.DefinedDateRange;
@@ -50,7 +49,6 @@ import com.money.manager.ex.core.DefinedDateRanges;
 import com.money.manager.ex.core.TransactionStatuses;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
-import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.WhereStatementGenerator;
@@ -67,8 +65,6 @@ import com.money.manager.ex.transactions.EditTransactionActivityConstants;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.utils.MmxDateTimeUtils;
 
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
 
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
@@ -195,13 +191,6 @@ public class AccountTransactionListFragment
         }
     }
 
-    @Override
-    public void onStart() {
-        super.onStart();
-
-        EventBus.getDefault().register(this);
-    }
-
     @Override
     public void onResume() {
         super.onResume();
@@ -215,13 +204,6 @@ public class AccountTransactionListFragment
         loadTransactions();
     }
 
-    @Override
-    public void onStop() {
-        super.onStop();
-
-        EventBus.getDefault().unregister(this);
-    }
-
     // Menu
 
     @Override
@@ -405,14 +387,6 @@ public class AccountTransactionListFragment
         this.mFragmentName = mFragmentName;
     }
 
-    // Events
-
-    @Subscribe
-    public void onEvent(RunningBalanceCalculatedEvent event) {
-        // Update the UI controls
-        mAllDataListFragment.displayRunningBalances(event.balances);
-    }
-
     // Private
 
     private boolean datePeriodItemSelected(MenuItem item) {
@@ -630,26 +604,12 @@ public class AccountTransactionListFragment
     }
 
     /**
-     * Refreshes the running balance.
+     * Refreshes the running balance. The balances are calculated from the balance
+     * checkpoints, only for the rows being displayed.
      */
     private void populateRunningBalance() {
-        Bundle arguments = prepareQuery();
-
-        CalculateRunningBalanceTask2 task = new CalculateRunningBalanceTask2(
-            getContext(), this.mAccountId, mFilter.dateRange.dateFrom, arguments);
-        // events now handled in onEvent, using an event bus.
-        task.execute();
-
-        // the result is received in #onTaskComplete.
-    }
-
-    /**
-     * Implementation using Rx instead of AsyncTask.
-     */
-    private void populateRunningBalanceRx() {
-        Bundle arguments = prepareQuery();
-
-
+        mAllDataListFragment.displayRunningBalances(
+            new RunningBalanceCalculator(getContext(), this.mAccountId));
     }
 
     /**
@@ -659,18 +619,18 @@ public class AccountTransactionListFragment
     private Bundle prepareQuery() {
         WhereStatementGenerator where = new WhereStatementGenerator();
 
-//        where.addStatement("(" + QueryAllData.TOACCOUNTID + "=" + Integer.toString(mAccountId) +
-//            " OR " + QueryAllData.ACCOUNTID + "=" + Integer.toString(mAccountId) + ")");
+        // filter on the stored values, so that the transaction indexes can be used.
         where.addStatement(
             where.concatenateOr(
-                where.getStatement(ITransactionEntity.TOACCOUNTID, "=", mAccountId),
-                where.getStatement(ITransactionEntity.ACCOUNTID, "=", mAccountId)
+                where.getStatement(QueryAllData.TransferAccountID, "=", mAccountId),
+                where.getStatement(QueryAllData.ACCOUNTID, "=", mAccountId)
             ));
 
-        where.addStatement(QueryAllData.Date, ">=", new MmxDate(mFilter.dateRange.dateFrom)
-                .toIsoDateString());
-        where.addStatement(QueryAllData.Date, "<=", new MmxDate(mFilter.dateRange.dateTo)
+        // the stored date can include the time
+        where.addStatement(QueryAllData.TransDate, ">=", new MmxDate(mFilter.dateRange.dateFrom)
                 .toIsoDateString());
+        where.addStatement(QueryAllData.TransDate, "<", new MmxDate(mFilter.dateRange.dateTo)
+                .plusDays(1).toIsoDateString());
 
         // Status
         where.addStatement(QueryAllData.Status, "IN", mFilter.transactionStatus.getSqlParameters());
@@ -815,15 +775,15 @@ public class AccountTransactionListFragment
 //            mAllDataListFragment.getListView().removeHeaderView(this.viewHolder.listHeader);
             this.viewHolder.listHeader.findViewById(R.id.headerRow).setVisibility(View.GONE);
         } else {
-            if (mAllDataListFragment.getListView().getHeaderViewsCount() == 0) {
-                mAllDataListFragment.getListView().addHeaderView(this.viewHolder.listHeader);
+            if (mAllDataListFragment.getListHeader() == null) {
+                mAllDataListFragment.setListHeader(this.viewHolder.listHeader);
             }
             this.viewHolder.listHeader.findViewById(R.id.headerRow).setVisibility(View.VISIBLE);
         }
     }
 
     private void showFilterDialog() {
-        int numberOfRecords = mAllDataListFragment.getListAdapter().getCount();
+        int numberOfRecords = mAllDataListFragment.getRecordCount();
         FilterDialogFragment dialog = FilterDialogFragment.newInstance(mFilter, mAccount, numberOfRecords);
         dialog.show(getActivity().getSupportFragmentManager(), TAG_FILTER_DIALOG);
     }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.account;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.SparseArray;
+
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.core.TransactionStatuses;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.datalayer.EntityMapper;
+import com.money.manager.ex.datalayer.RowMappers;
+import com.money.manager.ex.servicelayer.AccountService;
+import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
+import info.javaperformance.money.MoneyColumn;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Running balance for the account transactions list (sorted from the newest to the oldest).
+ * The balances are calculated only for the rows being displayed, in blocks: the first row of
+ * a block gets the balance on its date, from the balance checkpoints, and the following rows
+ * are calculated by walking the block.
+ * The balance on the date is read in the background. Until then the rows of the block have no
+ * balance, and the listener is notified once the block is calculated.
+ */
+public class RunningBalanceCalculator {
+
+    private static final int BLOCK_SIZE = 50;
+
+    public interface Listener {
+        /**
+         * Called on the main thread when the balances of more rows are available.
+         */
+        void onBalancesCalculated();
+    }
+
+    public RunningBalanceCalculator(Context context, int accountId) {
+        this.accountService = new AccountService(context);
+        this.accountId = accountId;
+    }
+
+    private final AccountService accountService;
+    private final int accountId;
+    /** The balances of the calculated blocks, by block index */
+    private final SparseArray<MoneyColumn> balances = new SparseArray<>();
+    /** The balance reads in progress, by block index */
+    private final SparseArray<Subscription> pending = new SparseArray<>();
+    private volatile Money initialBalance;
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param cursor The transactions cursor, positioned on the row for which to get the balance.
+     *               The position is preserved.
+     * @return The balance of the account after the current transaction, or null if it is not
+     * calculated yet.
+     */
+    public Money getBalance(Cursor cursor) {
+        int position = cursor.getPosition();
+        int index = position % BLOCK_SIZE;
+
+        MoneyColumn block = balances.get(position / BLOCK_SIZE);
+        if (block == null) {
+            calculateBlock(cursor, position - index);
+            return null;
+        }
+        if (index >= block.size()) return null;
+
+        return block.get(index);
+    }
+
+    /**
+     * Clears the calculated balances and cancels the ones in progress. To be called when the
+     * cursor changes.
+     */
+    public void reset() {
+        for (int i = 0; i < pending.size(); i++) {
+            pending.valueAt(i).unsubscribe();
+        }
+        pending.clear();
+        balances.clear();
+    }
+
+    /**
+     * Reads the changes of the block from the cursor, then the balance on the date of its first
+     * row in the background.
+     */
+    private void calculateBlock(Cursor cursor, int start) {
+        final int blockIndex = start / BLOCK_SIZE;
+        if (pending.get(blockIndex) != null) return;
+
+        int originalPosition = cursor.getPosition();
+        AccountTransactionDisplay tx = new AccountTransactionDisplay();
+        EntityMapper<AccountTransactionDisplay> mapper = RowMappers.getEntityMapper(AccountTransactionDisplay.class);
+        final String date;
+        // The rows above, on the same date, are later transactions already included
+        // in the balance on that date.
+        final MoneyAccumulator later = new MoneyAccumulator(Constants.DEFAULT_PRECISION);
+        // The changes of each row, after the first.
+        final MoneyColumn changes = new MoneyColumn(Constants.DEFAULT_PRECISION, BLOCK_SIZE);
+
+        try {
+            if (!cursor.moveToPosition(start)) return;
+            mapper.load(cursor, tx);
+            date = tx.getDateString();
+
+            for (int i = start - 1; i >= 0 && cursor.moveToPosition(i); i--) {
+                mapper.load(cursor, tx);
+                if (!date.equals(tx.getDateString())) break;
+
+                later.add(getAmount(tx));
+            }
+
+            for (int i = start; i < start + BLOCK_SIZE - 1 && cursor.moveToPosition(i); i++) {
+                mapper.load(cursor, tx);
+
+                changes.add(-getAmount(tx));
+            }
+        } finally {
+            cursor.moveToPosition(originalPosition);
+        }
+
+        Subscription subscription = Single.fromCallable(() -> getBalanceOn(date))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Money>() {
+                @Override
+                public void onSuccess(Money balanceOnDate) {
+                    pending.remove(blockIndex);
+
+                    // The balance of the first row, followed by the changes of each row.
+                    MoneyColumn block = new MoneyColumn(Constants.DEFAULT_PRECISION, BLOCK_SIZE);
+                    block.addUnits(new MoneyAccumulator(Constants.DEFAULT_PRECISION)
+                            .add(balanceOnDate)
+                            .subtractUnits(later.getUnits())
+                            .getUnits());
+                    for (int i = 0; i < changes.size(); i++) {
+                        block.addUnits(changes.getUnits(i));
+                    }
+                    balances.put(blockIndex, block.prefixSums());
+
+                    if (listener != null) listener.onBalancesCalculated();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    pending.remove(blockIndex);
+                    // not retried on every bind.
+                    balances.put(blockIndex, new MoneyColumn(Constants.DEFAULT_PRECISION));
+                    Timber.e(error, "calculating the running balance");
+                }
+            });
+        if (!subscription.isUnsubscribed()) {
+            pending.put(blockIndex, subscription);
+        }
+    }
+
+    /**
+     * @return The amount by which the transaction changes the account balance.
+     */
+    private double getAmount(AccountTransactionDisplay tx) {
+        // Exclude Void transactions from calculation.
+        if (TransactionStatuses.VOID.equals(tx.getStatus())) {
+            return 0;
+        }
+
+        Double amount;
+        if (TransactionTypes.Transfer.name().equals(tx.getTransactionTypeName())
+                && tx.getAccountId() != accountId) {
+            amount = tx.getDouble(QueryAllData.ToAmount);
+        } else {
+            amount = tx.getDouble(QueryAllData.Amount);
+        }
+        return amount == null ? 0 : amount;
+    }
+
+    /**
+     * Runs in the background.
+     * @return The balance of the account at the end of the date.
+     */
+    private Money getBalanceOn(String date) {
+        if (initialBalance == null) {
+            initialBalance = accountService.loadInitialBalance(accountId);
+        }
+        return initialBalance.add(accountService.calculateBalanceOn(accountId, date));
+    }
+}
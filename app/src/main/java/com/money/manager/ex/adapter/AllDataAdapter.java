@@ -21,7 +21,11 @@ import android.database.Cursor;
 import android.graphics.Color;
 import androidx.core.content.ContextCompat;
 import android.text.Html;
+import android.text.Spannable;
+import android.text.SpannableString;
 import android.text.TextUtils;
+import android.text.style.RelativeSizeSpan;
+import android.util.LongSparseArray;
 import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -31,17 +35,21 @@ import android.widget.TextView;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
+import com.money.manager.ex.account.RunningBalanceCalculator;
+import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.QueryBillDeposits;
+import com.money.manager.ex.database.TransactionSearchIndex;
 import com.money.manager.ex.database.TransactionStatus;
+import com.money.manager.ex.search.SearchHit;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.utils.MmxDateTimeUtils;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 
 import androidx.cursoradapter.widget.CursorAdapter;
@@ -63,8 +71,6 @@ public class AllDataAdapter
         mTypeCursor = typeCursor;
         mContext = context;
 
-        this.requestingBalanceUpdate = new ArrayList<>();
-
         setFieldFromTypeCursor();
     }
 
@@ -86,6 +92,7 @@ public class AllDataAdapter
     // hash map for group
     private final HashMap<Integer, Integer> mHeadersAccountIndex;
     private final SparseBooleanArray mCheckedPosition;
+    private final LongSparseArray<SearchHit> mSearchHits = new LongSparseArray<>();
     // account and currency
     private int mAccountId = Constants.NOT_SET;
     private int mCurrencyId = Constants.NOT_SET;
@@ -93,8 +100,7 @@ public class AllDataAdapter
     private boolean mShowAccountName = false;
     private boolean mShowBalanceAmount = false;
     private final Context mContext;
-    private HashMap<Integer, Money> balances;
-    private final ArrayList<TextView> requestingBalanceUpdate;
+    private RunningBalanceCalculator runningBalance;
 
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
@@ -227,7 +233,12 @@ public class AllDataAdapter
 
         // notes
         if (!TextUtils.isEmpty(cursor.getString(cursor.getColumnIndex(NOTES)))) {
-            holder.txtNotes.setText(Html.fromHtml("<small>" + cursor.getString(cursor.getColumnIndex(NOTES)) + "</small>"));
+            SearchHit hit = mSearchHits.get(cursor.getLong(cursor.getColumnIndex(ID)));
+            if (hit != null) {
+                holder.txtNotes.setText(getHighlightedNotes(cursor.getString(cursor.getColumnIndex(NOTES)), hit));
+            } else {
+                holder.txtNotes.setText(Html.fromHtml("<small>" + cursor.getString(cursor.getColumnIndex(NOTES)) + "</small>"));
+            }
             holder.txtNotes.setVisibility(View.VISIBLE);
         } else {
             holder.txtNotes.setVisibility(View.GONE);
@@ -243,6 +254,26 @@ public class AllDataAdapter
         displayBalanceAmountOrDaysLeft(holder, cursor, context);
     }
 
+    /**
+     * @param hits The full-text search matches to highlight in the notes.
+     */
+    public void setSearchHits(List<SearchHit> hits) {
+        mSearchHits.clear();
+        for (SearchHit hit : hits) {
+            mSearchHits.put(hit.getTransactionId(), hit);
+        }
+
+        notifyDataSetChanged();
+    }
+
+    private CharSequence getHighlightedNotes(String notes, SearchHit hit) {
+        CharSequence highlighted = new Core(mContext).highlight(notes, hit.getHighlights(TransactionSearchIndex.NOTES));
+        // small, as the notes without matches
+        Spannable small = new SpannableString(highlighted);
+        small.setSpan(new RelativeSizeSpan(0.8f), 0, small.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return small;
+    }
+
     public void clearPositionChecked() {
         mCheckedPosition.clear();
     }
@@ -337,15 +368,27 @@ public class AllDataAdapter
         NOTES = mTypeCursor == TypeCursor.ALLDATA ? QueryAllData.Notes : QueryBillDeposits.NOTES;
     }
 
-    public void setBalances(HashMap<Integer, Money> balances) {
-        this.balances = balances;
-
-        // update the balances on visible elements.
-        for (TextView textView : this.requestingBalanceUpdate) {
-            showBalanceAmount(textView);
+    /**
+     * @param runningBalance The calculator for the running balance of the account, or null
+     *                       to hide the balances.
+     */
+    public void setRunningBalance(RunningBalanceCalculator runningBalance) {
+        // cancel the balances in progress.
+        if (this.runningBalance != null) {
+            this.runningBalance.reset();
         }
+        this.runningBalance = runningBalance;
+
+        notifyDataSetChanged();
+    }
 
-        this.requestingBalanceUpdate.clear();
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        // the balances are by position in the cursor.
+        if (this.runningBalance != null) {
+            this.runningBalance.reset();
+        }
+        return super.swapCursor(newCursor);
     }
 
     /**
@@ -355,16 +398,8 @@ public class AllDataAdapter
     private void displayBalanceAmountOrDaysLeft(AllDataViewHolder holder, Cursor cursor,
                                                 Context context) {
         if (mTypeCursor == TypeCursor.ALLDATA) {
-            if (isShowBalanceAmount()) {
-                // create thread for calculate balance amount
-//                calculateBalanceAmount(cursor, holder);
-
-                // Save transaction Id.
-                int txId = cursor.getInt(cursor.getColumnIndex(QueryAllData.ID));
-                holder.txtBalance.setTag(txId);
-
-                requestBalanceDisplay(holder.txtBalance);
-
+            if (isShowBalanceAmount() && this.runningBalance != null) {
+                showBalanceAmount(holder.txtBalance, cursor);
             } else {
                 holder.txtBalance.setVisibility(View.GONE);
             }
@@ -454,35 +489,16 @@ public class AllDataAdapter
         return result;
     }
 
-    private void showBalanceAmount(TextView textView) {
-        if (this.balances == null) {
+    private void showBalanceAmount(TextView textView, Cursor cursor) {
+        Money currentBalance = this.runningBalance.getBalance(cursor);
+        if (currentBalance == null) {
+            textView.setVisibility(View.GONE);
             return;
         }
 
-        // get id
-        Object tag = textView.getTag();
-        if (tag == null) return;
-
-        int txId = (int) tag;
-        if (!this.balances.containsKey(txId)) return;
-
         CurrencyService currencyService = new CurrencyService(mContext);
-        Money currentBalance = this.balances.get(txId);
         String balanceFormatted = currencyService.getCurrencyFormatted(getCurrencyId(), currentBalance);
         textView.setText(balanceFormatted);
         textView.setVisibility(View.VISIBLE);
     }
-
-    private void requestBalanceDisplay(TextView textView) {
-        // if we have balances, display it immediately.
-        if (this.balances != null) {
-            showBalanceAmount(textView);
-        } else {
-            // hide balance amount.
-            textView.setVisibility(View.GONE);
-
-            // store for later.
-            this.requestingBalanceUpdate.add(textView);
-        }
-    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.adapter;
+
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.money.manager.ex.database.QueryAllData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycler view adapter for the transactions list, loaded in pages.
+ * The rows are created and bound by the AllDataAdapter, which holds the loaded pages as a
+ * single cursor, so that the positions (selection, running balance) span the pages.
+ * The adapter asks for the next page when a row near the end of the loaded ones is displayed.
+ */
+public class AllDataRecyclerAdapter
+    extends RecyclerView.Adapter<AllDataRecyclerAdapter.ItemViewHolder> {
+
+    public interface Listener {
+        void onItemClick(int position);
+
+        boolean onItemLongClick(int position);
+
+        /**
+         * The rows near the end of the loaded pages are being displayed.
+         */
+        void onLoadMore();
+    }
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_ROW = 1;
+    private static final int TYPE_FOOTER = 2;
+
+    private static final long ID_HEADER = Long.MIN_VALUE;
+    private static final long ID_FOOTER = Long.MIN_VALUE + 1;
+
+    public AllDataRecyclerAdapter(AllDataAdapter rows, int prefetchDistance, Listener listener) {
+        this.rows = rows;
+        this.prefetchDistance = prefetchDistance;
+        this.listener = listener;
+
+        setHasStableIds(true);
+    }
+
+    private final AllDataAdapter rows;
+    private final int prefetchDistance;
+    private final Listener listener;
+    /**
+     * The first page belongs to the loader, the following ones to this adapter.
+     */
+    private final List<Cursor> pages = new ArrayList<>();
+    private Cursor data;
+    private int idColumn = -1;
+    private View header;
+    private View footer;
+
+    public AllDataAdapter getRowsAdapter() {
+        return rows;
+    }
+
+    /**
+     * Replaces the data with the first page, from the loader.
+     */
+    public void setFirstPage(Cursor page) {
+        List<Cursor> previous = new ArrayList<>(pages);
+        pages.clear();
+        if (page != null) pages.add(page);
+
+        swapData();
+        notifyDataSetChanged();
+
+        // the first one is closed by the loader
+        for (int i = 1; i < previous.size(); i++) {
+            previous.get(i).close();
+        }
+    }
+
+    /**
+     * Adds the page at the end of the data.
+     */
+    public void appendPage(Cursor page) {
+        int start = getDataCount();
+
+        pages.add(page);
+        swapData();
+        notifyItemRangeInserted(getHeaderCount() + start, page.getCount());
+    }
+
+    /**
+     * @return The last page loaded, null if none.
+     */
+    public Cursor getLastPage() {
+        return pages.isEmpty() ? null : pages.get(pages.size() - 1);
+    }
+
+    /**
+     * Closes the pages loaded by the adapter.
+     */
+    public void close() {
+        setFirstPage(null);
+    }
+
+    /**
+     * @return The number of rows loaded.
+     */
+    public int getDataCount() {
+        return data == null ? 0 : data.getCount();
+    }
+
+    /**
+     * @return The loaded rows, null if none.
+     */
+    public Cursor getData() {
+        return data;
+    }
+
+    public void setHeaderView(View view) {
+        this.header = view;
+        notifyDataSetChanged();
+    }
+
+    public void setFooterView(View view) {
+        this.footer = view;
+        notifyDataSetChanged();
+    }
+
+    public int getHeaderCount() {
+        return header == null ? 0 : 1;
+    }
+
+    @Override
+    public int getItemCount() {
+        return getHeaderCount() + getDataCount() + (footer == null ? 0 : 1);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (header != null && position == 0) return TYPE_HEADER;
+        if (position - getHeaderCount() < getDataCount()) return TYPE_ROW;
+        return TYPE_FOOTER;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        switch (getItemViewType(position)) {
+            case TYPE_HEADER:
+                return ID_HEADER;
+            case TYPE_FOOTER:
+                return ID_FOOTER;
+            default:
+                data.moveToPosition(position - getHeaderCount());
+                return data.getLong(idColumn);
+        }
+    }
+
+    @NonNull
+    @Override
+    public ItemViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view;
+        switch (viewType) {
+            case TYPE_HEADER:
+                view = detach(header);
+                break;
+            case TYPE_FOOTER:
+                view = detach(footer);
+                break;
+            default:
+                view = rows.newView(parent.getContext(), data, parent);
+                break;
+        }
+        return new ItemViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position) {
+        if (holder.getItemViewType() != TYPE_ROW) return;
+
+        final int dataPosition = position - getHeaderCount();
+        data.moveToPosition(dataPosition);
+        rows.bindView(holder.itemView, holder.itemView.getContext(), data);
+
+        // the position is read on click, the rows above can change after the binding.
+        holder.itemView.setOnClickListener(v -> {
+            int clicked = holder.getBindingAdapterPosition();
+            if (clicked != RecyclerView.NO_POSITION) listener.onItemClick(clicked - getHeaderCount());
+        });
+        holder.itemView.setOnLongClickListener(v -> {
+            int clicked = holder.getBindingAdapterPosition();
+            return clicked != RecyclerView.NO_POSITION && listener.onItemLongClick(clicked - getHeaderCount());
+        });
+
+        if (dataPosition >= getDataCount() - prefetchDistance) {
+            listener.onLoadMore();
+        }
+    }
+
+    private void swapData() {
+        if (pages.isEmpty()) {
+            data = null;
+        } else if (pages.size() == 1) {
+            data = pages.get(0);
+        } else {
+            data = new MergeCursor(pages.toArray(new Cursor[0]));
+        }
+        idColumn = data == null ? -1 : data.getColumnIndex(QueryAllData.ID);
+
+        // the cursor of the pages is not closed on swap.
+        rows.swapCursor(data);
+    }
+
+    /**
+     * The header and footer views are given by the fragment, they can be attached to only
+     * one holder at a time.
+     */
+    private View detach(View view) {
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        if (view.getLayoutParams() == null) {
+            view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+        return view;
+    }
+
+    public static class ItemViewHolder
+        extends RecyclerView.ViewHolder {
+
+        ItemViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+}
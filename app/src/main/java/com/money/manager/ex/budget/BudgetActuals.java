@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.budget;
+
+import android.util.SparseArray;
+
+/**
+ * The actual amounts (in the base currency) of the categories for one budget period.
+ */
+public class BudgetActuals {
+
+    BudgetActuals(SparseArray<Double> actuals, SparseArray<Double> actualsWithSubcategories) {
+        this.actuals = actuals;
+        this.actualsWithSubcategories = actualsWithSubcategories;
+    }
+
+    private final SparseArray<Double> actuals;
+    private final SparseArray<Double> actualsWithSubcategories;
+
+    /**
+     * @return The total of the transactions in the category itself.
+     */
+    public double getActual(int categoryId) {
+        return actuals.get(categoryId, 0.0);
+    }
+
+    /**
+     * @return The total of the transactions in the category and all its subcategories.
+     */
+    public double getActualWithSubcategories(int categoryId) {
+        return actualsWithSubcategories.get(categoryId, 0.0);
+    }
+}
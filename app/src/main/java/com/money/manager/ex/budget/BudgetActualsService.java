@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.budget;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.SparseArray;
+
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.database.CategoryTreeSnapshot;
+import com.money.manager.ex.database.LedgerPostings;
+import com.money.manager.ex.database.MmxOpenHelper;
+import com.money.manager.ex.database.ViewMobileData;
+import com.money.manager.ex.servicelayer.ServiceBase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import dagger.Lazy;
+
+/**
+ * Calculates the actual amounts for all the categories of a budget period in one grouped
+ * query over the ledger postings. The results are cached per budget and recalculated once
+ * the tables of the postings have been changed through the content provider.
+ */
+public class BudgetActualsService
+        extends ServiceBase {
+
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * Actuals by budget (year) id.
+     */
+    private static final Map<Long, CacheEntry> cache = new LinkedHashMap<Long, CacheEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public BudgetActualsService(Context context) {
+        super(context);
+
+        MmexApplication.getApp().iocComponent.inject(this);
+    }
+
+    @Inject
+    Lazy<MmxOpenHelper> openHelper;
+
+    /**
+     * @param budgetYearId Id of the budget.
+     * @param budgetName   Name of the budget, the period: yyyy or yyyy-MM.
+     * @return The actual amounts for the period of the budget.
+     */
+    public BudgetActuals getActuals(long budgetYearId, String budgetName) {
+        MmxOpenHelper helper = openHelper.get();
+        // read before the calculation, so that a concurrent write invalidates the result.
+        long version = MmxContentProvider.getChangeFeed().getVersion(LedgerPostings.SOURCE_TABLES);
+
+        synchronized (cache) {
+            CacheEntry entry = cache.get(budgetYearId);
+            if (entry != null && entry.isValid(helper, version, budgetName)) {
+                return entry.actuals;
+            }
+        }
+
+        BudgetActuals actuals = calculate(helper, helper.getCategoryTreeSnapshot(), budgetName);
+
+        synchronized (cache) {
+            cache.put(budgetYearId, new CacheEntry(helper, version, budgetName, actuals));
+        }
+        return actuals;
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private BudgetActuals calculate(MmxOpenHelper helper, CategoryTreeSnapshot tree, String budgetName) {
+        BudgetNameParser parser = new BudgetNameParser();
+        int year = parser.getYear(budgetName);
+        int month = parser.getMonth(budgetName);
+
+        String sql = "SELECT " + ViewMobileData.CATEGID + ", SUM(" + ViewMobileData.AmountBaseConvRate + ")"
+                + " FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE " + ViewMobileData.Status + " <> 'V'"
+                + " AND " + ViewMobileData.TransactionType + " IN ('Withdrawal', 'Deposit')"
+                + " AND " + ViewMobileData.Year + " = ?";
+        Object[] args;
+        if (month > 0) {
+            sql += " AND " + ViewMobileData.Month + " = ?";
+            args = new Object[] { year, month };
+        } else {
+            args = new Object[] { year };
+        }
+        sql += " GROUP BY " + ViewMobileData.CATEGID;
+
+        SparseArray<Double> actuals = new SparseArray<>();
+        Cursor cursor = helper.getReadableDatabase().query(helper.resolveDerivedTables(sql), args);
+        try {
+            while (cursor.moveToNext()) {
+                actuals.put(cursor.getInt(0), cursor.getDouble(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return new BudgetActuals(actuals, rollUp(tree, actuals));
+    }
+
+    /**
+     * Adds the amount of each category to all its parent categories.
+     */
+    private SparseArray<Double> rollUp(CategoryTreeSnapshot tree, SparseArray<Double> actuals) {
+        SparseArray<Double> result = new SparseArray<>();
+        for (int i = 0; i < actuals.size(); i++) {
+            int categoryId = actuals.keyAt(i);
+            double amount = actuals.valueAt(i);
+
+            result.put(categoryId, result.get(categoryId, 0.0) + amount);
+            int index = tree.indexOf(categoryId);
+            if (index < 0) continue;
+
+            for (int parent = tree.getParentIndex(index); parent >= 0; parent = tree.getParentIndex(parent)) {
+                int parentId = tree.getId(parent);
+                result.put(parentId, result.get(parentId, 0.0) + amount);
+            }
+        }
+        return result;
+    }
+
+    private static class CacheEntry {
+        CacheEntry(MmxOpenHelper helper, long version, String budgetName, BudgetActuals actuals) {
+            this.helper = helper;
+            this.version = version;
+            this.budgetName = budgetName;
+            this.actuals = actuals;
+        }
+
+        final MmxOpenHelper helper;
+        final long version;
+        final String budgetName;
+        final BudgetActuals actuals;
+
+        boolean isValid(MmxOpenHelper currentHelper, long currentVersion, String currentBudgetName) {
+            return helper == currentHelper && version == currentVersion
+                    && budgetName.equals(currentBudgetName);
+        }
+    }
+}
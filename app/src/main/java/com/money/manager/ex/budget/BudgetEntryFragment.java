@@ -34,6 +34,12 @@ import com.money.manager.ex.settings.AppSettings;
 
 import androidx.loader.app.LoaderManager;
 import androidx.loader.content.Loader;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
 
 /**
  * Use the {@link BudgetEntryFragment#newInstance} factory method to
@@ -50,6 +56,7 @@ public class BudgetEntryFragment
     private String mBudgetName;
     private View mHeader;
     private boolean useNestedCategory = false;  // new NestedCateg
+    private Subscription mActualsSubscription;
 
 
     /**
@@ -111,6 +118,7 @@ public class BudgetEntryFragment
     // reference: http://stackoverflow.com/a/28463811
     @Override
     public void onDestroyView() {
+        if (mActualsSubscription != null) mActualsSubscription.unsubscribe();
         super.onDestroyView();
         if (getListView().getHeaderViewsCount() > 0) {
             getListView().removeHeaderView(mHeader);
@@ -180,21 +188,14 @@ public class BudgetEntryFragment
             @Override
             public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
                 if (loader.getId() == LOADER_BUDGET) {
-                    BudgetAdapter adapter = (BudgetAdapter) getListAdapter();
-//                        adapter.swapCursor(data);
-                    adapter.changeCursor(data);
-
-                    if (isResumed()) {
-                        setListShown(true);
-                    } else {
-                        setListShownNoAnimation(true);
-                    }
+                    loadActuals(data);
                 }
             }
 
             @Override
             public void onLoaderReset(Loader<Cursor> loader) {
                 if (loader.getId() == LOADER_BUDGET) {
+                    if (mActualsSubscription != null) mActualsSubscription.unsubscribe();
                     BudgetAdapter adapter = (BudgetAdapter) getListAdapter();
 //                        adapter.swapCursor(null);
                     adapter.changeCursor(null);
@@ -202,4 +203,43 @@ public class BudgetEntryFragment
             }
         };
     }
+
+    /**
+     * Calculates the actual amounts in the background, then shows the categories with them.
+     * The actuals are recalculated on every load, they are cached until the transactions change.
+     */
+    private void loadActuals(final Cursor data) {
+        if (mActualsSubscription != null) mActualsSubscription.unsubscribe();
+
+        final BudgetActualsService service = new BudgetActualsService(getActivity());
+        final long budgetYearId = mBudgetYearId;
+        final String budgetName = mBudgetName;
+        mActualsSubscription = Single.fromCallable(() -> service.getActuals(budgetYearId, budgetName))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<BudgetActuals>() {
+                @Override
+                public void onSuccess(BudgetActuals actuals) {
+                    showBudget(data, actuals);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "calculating the budget actuals");
+                    showBudget(data, null);
+                }
+            });
+    }
+
+    private void showBudget(Cursor data, BudgetActuals actuals) {
+        BudgetAdapter adapter = (BudgetAdapter) getListAdapter();
+        adapter.setActuals(actuals);
+        adapter.changeCursor(data);
+
+        if (isResumed()) {
+            setListShown(true);
+        } else {
+            setListShownNoAnimation(true);
+        }
+    }
 }
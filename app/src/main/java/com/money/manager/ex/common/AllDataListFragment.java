@@ -19,69 +19,85 @@ package com.money.manager.ex.common;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.SparseBooleanArray;
+import android.view.ActionMode;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.AdapterView.OnItemClickListener;
 import android.widget.LinearLayout;
-import android.widget.ListAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.ActionBar;
-import androidx.cursoradapter.widget.CursorAdapter;
+import androidx.fragment.app.Fragment;
 import androidx.loader.app.LoaderManager;
+import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.melnykov.fab.FloatingActionButton;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
+import com.money.manager.ex.account.RunningBalanceCalculator;
 import com.money.manager.ex.adapter.AllDataAdapter;
 import com.money.manager.ex.adapter.AllDataAdapter.TypeCursor;
+import com.money.manager.ex.adapter.AllDataRecyclerAdapter;
 import com.money.manager.ex.core.ExportToCsvFile;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SQLDataSet;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
-import com.money.manager.ex.datalayer.Select;
+import com.money.manager.ex.datalayer.KeysetPager;
 import com.money.manager.ex.datalayer.SplitCategoriesRepository;
 import com.money.manager.ex.domainmodel.AccountTransaction;
 import com.money.manager.ex.domainmodel.SplitCategory;
 import com.money.manager.ex.home.DrawerMenuItem;
 import com.money.manager.ex.home.DrawerMenuItemAdapter;
 import com.money.manager.ex.search.SearchActivity;
+import com.money.manager.ex.search.SearchHit;
+import com.money.manager.ex.search.TransactionSearchService;
 import com.money.manager.ex.servicelayer.qif.QifExport;
 import com.money.manager.ex.transactions.CheckingTransactionEditActivity;
 import com.money.manager.ex.transactions.EditTransactionActivityConstants;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
  * Fragment that displays the transactions.
+ * The transactions are loaded in pages, as the list is scrolled.
  */
 public class AllDataListFragment
-    extends BaseListFragment
-    implements LoaderManager.LoaderCallbacks<Cursor>, IAllDataMultiChoiceModeListenerCallbacks {
+    extends Fragment
+    implements LoaderManager.LoaderCallbacks<Cursor>, IAllDataMultiChoiceModeListenerCallbacks,
+        AllDataRecyclerAdapter.Listener {
 
     private static final String ARG_ACCOUNT_ID = "AccountId";
     private static final String ARG_SHOW_FLOATING_BUTTON = "ShowFloatingButton";
@@ -109,8 +125,22 @@ public class AllDataListFragment
 
     public static final int ID_LOADER_ALL_DATA_DETAIL = 1;
 
+    /**
+     * About a screenful of transactions.
+     */
+    public static final int PAGE_SIZE = 25;
+    /**
+     * The next page is loaded when the rows this close to the end are displayed.
+     */
+    private static final int PREFETCH_DISTANCE = 10;
+
     public static final String KEY_ARGUMENTS_WHERE = "SearchResultFragment:ArgumentsWhere";
+    public static final String KEY_ARGUMENTS_WHERE_PARAMS = "SearchResultFragment:ArgumentsWhereParams";
     public static final String KEY_ARGUMENTS_SORT = "SearchResultFragment:ArgumentsSort";
+    /**
+     * Full-text match expression, to highlight the matches in the notes.
+     */
+    public static final String KEY_ARGUMENTS_HIGHLIGHT = "SearchResultFragment:ArgumentsHighlight";
 
     public int AccountId = Constants.NOT_SET;
     private LinearLayout footer;
@@ -119,16 +149,61 @@ public class AllDataListFragment
     private boolean mShowHeader = false;
     private boolean mShowBalance = false;
     private AllDataMultiChoiceModeListener mMultiChoiceModeListener;
+    private ActionMode mActionMode;
+    /**
+     * All the transactions are selected, including the ones not loaded yet.
+     */
+    private boolean mAllSelected = false;
     private View mListHeader = null;
     private Bundle mArguments;
     private boolean mShowFooter = false;
 
+    private RecyclerView mRecyclerView;
+    private View mProgressContainer;
+    private View mEmptyView;
+    private FloatingActionButton mFloatingActionButton;
+    private AllDataRecyclerAdapter mAdapter;
+
+    private KeysetPager mPager;
+    private String mQueryKey;
+    /**
+     * The number of rows requested from the loader, all the rows loaded when the data changes.
+     */
+    private int mLoaderLimit = PAGE_SIZE;
+    private boolean mLastPageLoaded = false;
+    private Subscription mPageSubscription;
+    private Subscription mTotalsSubscription;
+    /**
+     * The number of records of the query, counted in the background with the totals. -1 until
+     * counted.
+     */
+    private int mRecordCount = -1;
+    private Subscription mSearchHitsSubscription;
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_all_data_list, container, false);
+    }
+
+    @Override
+    public void onViewCreated(View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        mRecyclerView = view.findViewById(R.id.recyclerView);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mProgressContainer = view.findViewById(R.id.progressContainer);
+        mEmptyView = view.findViewById(R.id.emptyViewScroll);
+
+        mFloatingActionButton = view.findViewById(R.id.fab);
+        mFloatingActionButton.setOnClickListener(v -> startEditAccountTransactionActivity(null));
+    }
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        setEmptyText(getString(R.string.no_data));
-        setListShown(false);
+        TextView emptyText = getView().findViewById(android.R.id.empty);
+        emptyText.setText(R.string.no_data);
 
         // Read arguments
         this.AccountId = getArguments().getInt(ARG_ACCOUNT_ID);
@@ -141,47 +216,24 @@ public class AllDataListFragment
         }
 
         // create adapter for data.
-        AllDataAdapter adapter = new AllDataAdapter(getActivity(), null, TypeCursor.ALLDATA);
-        adapter.setAccountId(this.AccountId);
-        adapter.setShowAccountName(isShownHeader());
-        adapter.setShowBalanceAmount(isShownBalance());
+        AllDataAdapter rows = new AllDataAdapter(getActivity(), null, TypeCursor.ALLDATA);
+        rows.setAccountId(this.AccountId);
+        rows.setShowAccountName(isShownHeader());
+        rows.setShowBalanceAmount(isShownBalance());
+        mAdapter = new AllDataRecyclerAdapter(rows, PREFETCH_DISTANCE, this);
 
-        // set multi-choice mode in the list view.
+        // multi-choice mode, started with a long click.
         mMultiChoiceModeListener = new AllDataMultiChoiceModeListener();
         mMultiChoiceModeListener.setListener(this);
-        getListView().setChoiceMode(ListView.CHOICE_MODE_MULTIPLE_MODAL);
-        getListView().setMultiChoiceModeListener(mMultiChoiceModeListener);
-
-        // e item click
-        getListView().setOnItemClickListener(new OnItemClickListener() {
 
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                if (getListAdapter() != null && getListAdapter() instanceof AllDataAdapter) {
-                    Cursor cursor = ((AllDataAdapter) getListAdapter()).getCursor();
-                    if (cursor.moveToPosition(position - (mListHeader != null ? 1 : 0))) {
-                        startEditAccountTransactionActivity(cursor.getInt(cursor.getColumnIndex(QueryAllData.ID)));
-                    }
-                }
-            }
-        });
-
-        // Header and footer must be added before setAdapter().
-
-        // Add a header to the list view if one exists.
-        if (getListAdapter() == null) {
-            if (mListHeader != null)
-                getListView().addHeaderView(mListHeader);
+        if (mListHeader != null) {
+            mAdapter.setHeaderView(mListHeader);
         }
         if (this.mShowFooter) {
             renderFooter();
         }
 
-        // set adapter
-        setListAdapter(adapter);
-
-        // register context menu
-        registerForContextMenu(getListView());
+        mRecyclerView.setAdapter(mAdapter);
 
         // set animation progress
         setListShown(false);
@@ -189,8 +241,8 @@ public class AllDataListFragment
         boolean showAddButton = getArguments().getBoolean(ARG_SHOW_FLOATING_BUTTON);
         if (showAddButton) {
             // Show floating action button.
-            setFloatingActionButtonVisible(true);
-            attachFloatingActionButtonToListView();
+            mFloatingActionButton.setVisibility(View.VISIBLE);
+            mFloatingActionButton.attachToRecyclerView(mRecyclerView);
         }
 
         // start loader if asked to do so by the caller.
@@ -206,11 +258,6 @@ public class AllDataListFragment
         setHasOptionsMenu(true);
     }
 
-    @Override
-    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        return super.onCreateView(inflater, container, savedInstanceState);
-    }
-
     // Loader event handlers
 
     @Override
@@ -225,24 +272,31 @@ public class AllDataListFragment
             if (args != null && args.containsKey(KEY_ARGUMENTS_WHERE)) {
                 selection = args.getString(KEY_ARGUMENTS_WHERE);
             }
-//                String[] whereParams = new String[0];
-//                if (args != null && args.containsKey(KEY_ARGUMENTS_WHERE_PARAMS)) {
-//                    ArrayList<String> whereParamsList = args.getStringArrayList(KEY_ARGUMENTS_WHERE_PARAMS);
-//                    whereParams = whereParamsList.toArray(whereParams);
-//                }
+            String[] whereParams = new String[0];
+            if (args != null && args.getStringArrayList(KEY_ARGUMENTS_WHERE_PARAMS) != null) {
+                ArrayList<String> whereParamsList = args.getStringArrayList(KEY_ARGUMENTS_WHERE_PARAMS);
+                whereParams = whereParamsList.toArray(whereParams);
+            }
 
             // set sort
             String sort = "";
             if (args != null && args.containsKey(KEY_ARGUMENTS_SORT)) {
                 sort = args.getString(KEY_ARGUMENTS_SORT);
             }
+
+            // The same query is reloaded with the rows already loaded, to keep the position.
+            String queryKey = selection + "|" + Arrays.toString(whereParams) + "|" + sort;
+            if (!queryKey.equals(mQueryKey)) {
+                mQueryKey = queryKey;
+                mLoaderLimit = PAGE_SIZE;
+            }
+
             // create loader
             QueryAllData allData = new QueryAllData(getActivity());
-            Select query = new Select(allData.getAllColumns())
-                    .where(selection)
-                    .orderBy(sort);
+            mPager = new KeysetPager(getActivity(), allData.getUri(), allData.getAllColumns(),
+                    selection, whereParams, sort, QueryAllData.ID, PAGE_SIZE);
 
-            return new MmxCursorLoader(getActivity(), allData.getUri(), query);
+            return new MmxCursorLoader(getActivity(), allData.getUri(), mPager.getFirstPageQuery(mLoaderLimit));
         }
         return null;
     }
@@ -252,8 +306,8 @@ public class AllDataListFragment
         LoaderManager.LoaderCallbacks<Cursor> parent = getSearchResultFragmentLoaderCallbacks();
         if (parent != null) parent.onLoaderReset(loader);
 
-        //((CursorAdapter) getListAdapter()).swapCursor(null);
-        ((CursorAdapter) getListAdapter()).changeCursor(null);
+        cancelPageLoad();
+        if (mAdapter != null) mAdapter.close();
     }
 
     @Override
@@ -262,29 +316,79 @@ public class AllDataListFragment
         if (parent != null) parent.onLoadFinished(loader, data);
 
         if (loader.getId() == ID_LOADER_ALL_DATA_DETAIL) {// Transactions list loaded.
-            AllDataAdapter adapter = (AllDataAdapter) getListAdapter();
-//                adapter.swapCursor(data);
-            adapter.changeCursor(data);
-            if (isResumed()) {
-                setListShown(true);
-                if (data != null && data.getCount() <= 0 && getFloatingActionButton() != null)
-                    getFloatingActionButton().show(true);
-            } else {
-                setListShownNoAnimation(true);
-            }
+            // the pages loaded after the previous data are replaced.
+            cancelPageLoad();
+            mAllSelected = false;
 
             // reset the transaction groups (account name collection)
-            adapter.resetAccountHeaderIndexes();
-
-            // Show totals
-            if (this.mShowFooter) {
-                try {
-                    this.updateFooter(data);
-                } catch (Exception e) {
-                    Timber.e(e, "displaying footer");
+            getAllDataAdapter().resetAccountHeaderIndexes();
+
+            mAdapter.setFirstPage(data);
+            mLastPageLoaded = mPager.isLastPage(data, mLoaderLimit);
+
+            setListShown(true);
+            if (data != null && data.getCount() <= 0 && mFloatingActionButton != null)
+                mFloatingActionButton.show(true);
+
+            // highlight the search matches
+            loadSearchHits();
+
+            // Count the records and show the totals
+            loadTotals();
+        }
+    }
+
+    /**
+     * Loads the next page, in the background, when the end of the loaded rows is displayed.
+     */
+    @Override
+    public void onLoadMore() {
+        if (mLastPageLoaded || mPageSubscription != null || mPager == null) return;
+
+        Cursor lastPage = mAdapter.getLastPage();
+        if (lastPage == null || lastPage.getCount() == 0) return;
+
+        final KeysetPager pager = mPager;
+        final Object[] lastKey = pager.readLastKey(lastPage);
+
+        mPageSubscription = Single.fromCallable(() -> pager.loadPageAfter(lastKey))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Cursor>() {
+                @Override
+                public void onSuccess(Cursor page) {
+                    mPageSubscription = null;
+                    onPageLoaded(page);
                 }
-            }
+
+                @Override
+                public void onError(Throwable error) {
+                    mPageSubscription = null;
+                    Timber.e(error, "loading the next page of transactions");
+                }
+            });
+    }
+
+    @Override
+    public void onItemClick(int position) {
+        if (mActionMode != null) {
+            toggleChecked(position);
+            return;
+        }
+
+        Cursor cursor = mAdapter.getData();
+        if (cursor != null && cursor.moveToPosition(position)) {
+            startEditAccountTransactionActivity(cursor.getInt(cursor.getColumnIndex(QueryAllData.ID)));
+        }
+    }
+
+    @Override
+    public boolean onItemLongClick(int position) {
+        if (mActionMode == null) {
+            mActionMode = getActivity().startActionMode(mMultiChoiceModeListener);
         }
+        toggleChecked(position);
+        return true;
     }
 
     // End loader event handlers
@@ -324,10 +428,15 @@ public class AllDataListFragment
     }
 
     @Override
-    public void onDestroy() {
-        if (mMultiChoiceModeListener != null)
-            mMultiChoiceModeListener.onDestroyActionMode(null);
-        super.onDestroy();
+    public void onDestroyView() {
+        if (mActionMode != null) mActionMode.finish();
+        cancelPageLoad();
+        if (mTotalsSubscription != null) mTotalsSubscription.unsubscribe();
+        if (mSearchHitsSubscription != null) mSearchHitsSubscription.unsubscribe();
+        AllDataAdapter adapter = getAllDataAdapter();
+        if (adapter != null) adapter.setRunningBalance(null);
+
+        super.onDestroyView();
     }
 
     @Override
@@ -371,16 +480,6 @@ public class AllDataListFragment
         return super.onOptionsItemSelected(item);
     }
 
-    @Override
-    public String getSubTitle() {
-        return null;
-    }
-
-    @Override
-    public void onFloatingActionButtonClicked() {
-        startEditAccountTransactionActivity(null);
-    }
-
     // Multi-choice-mode listener callback handlers.
 
     /**
@@ -393,10 +492,13 @@ public class AllDataListFragment
 
     @Override
     public void onDestroyActionMode() {
-        if (getListAdapter() != null && getListAdapter() instanceof AllDataAdapter) {
-            AllDataAdapter adapter = (AllDataAdapter) getListAdapter();
+        mActionMode = null;
+        mAllSelected = false;
+
+        AllDataAdapter adapter = getAllDataAdapter();
+        if (adapter != null) {
             adapter.clearPositionChecked();
-            adapter.notifyDataSetChanged();
+            mAdapter.notifyDataSetChanged();
         }
     }
 
@@ -418,7 +520,7 @@ public class AllDataListFragment
         ArrayList<Integer> transIds = getTransactionIds();
 
         if (setStatusCheckingAccount(convertArrayListToArray(transIds), status)) {
-            ((AllDataAdapter) getListAdapter()).clearPositionChecked();
+            getAllDataAdapter().clearPositionChecked();
             loadData();
         }
     }
@@ -436,24 +538,23 @@ public class AllDataListFragment
 
     @Override
     public void onItemCheckedStateChanged(int position, boolean checked) {
-        if (getListHeader() != null) {
-            position--;
-        }
+        AllDataAdapter adapter = getAllDataAdapter();
+        if (adapter == null) return;
 
-        if (getListAdapter() != null && getListAdapter() instanceof AllDataAdapter) {
-            AllDataAdapter adapter = (AllDataAdapter) getListAdapter();
-            adapter.setPositionChecked(position, checked);
-            adapter.notifyDataSetChanged();
-        }
+        adapter.setPositionChecked(position, checked);
+        mAdapter.notifyItemChanged(mAdapter.getHeaderCount() + position);
     }
 
     // Methods
 
-    public void displayRunningBalances(HashMap<Integer, Money> balances) {
+    public void displayRunningBalances(RunningBalanceCalculator runningBalance) {
         AllDataAdapter adapter = getAllDataAdapter();
         if(adapter == null) return;
 
-        adapter.setBalances(balances);
+        // the balances are calculated in the background, for the rows displayed.
+        runningBalance.setListener(() -> mAdapter.notifyDataSetChanged());
+        adapter.setRunningBalance(runningBalance);
+        mAdapter.notifyDataSetChanged();
     }
 
     /**
@@ -469,11 +570,26 @@ public class AllDataListFragment
      * @param prefixName prefix for the file
      */
     public void exportDataToCSVFile(String prefixName) {
-        ExportToCsvFile csv = new ExportToCsvFile(getActivity(), (AllDataAdapter) getListAdapter());
+        AllDataAdapter adapter = loadAllRows();
+        if (adapter == null) return;
+
+        ExportToCsvFile csv = new ExportToCsvFile(getActivity(), adapter);
         csv.setPrefixName(prefixName);
         csv.execute();
     }
 
+    /**
+     * Does not read the database: the count is loaded in the background, with the totals.
+     * @return The number of transactions, including the ones not loaded yet. The number of
+     * the rows loaded until the count is loaded.
+     */
+    public int getRecordCount() {
+        if (mAdapter == null || mPager == null) return 0;
+        if (mLastPageLoaded || mRecordCount < 0) return mAdapter.getDataCount();
+
+        return mRecordCount;
+    }
+
     /**
      * @return the mSearResultFragmentLoaderCallbacks
      */
@@ -521,8 +637,8 @@ public class AllDataListFragment
         AllDataAdapter adapter = getAllDataAdapter();
         if (adapter != null) {
             adapter.setAccountId(this.AccountId);
-            adapter.setBalances(null);
         }
+        cancelPageLoad();
 
         // set the current arguments / account id
         setLatestArguments(arguments);
@@ -543,6 +659,10 @@ public class AllDataListFragment
 
     public void setListHeader(View mHeaderList) {
         this.mListHeader = mHeaderList;
+
+        if (mAdapter != null) {
+            mAdapter.setHeaderView(mHeaderList);
+        }
     }
 
     /**
@@ -564,6 +684,7 @@ public class AllDataListFragment
         }
 
         adapter.setShowBalanceAmount(mShownBalance);
+        mAdapter.notifyDataSetChanged();
     }
 
     public void showTotalsFooter() {
@@ -584,78 +705,196 @@ public class AllDataListFragment
         txtColumn2.setText(R.string.total);
         txtColumn2.setTypeface(null, Typeface.BOLD_ITALIC);
 
-        ListView listView = getListView();
-        listView.addFooterView(footer);
+        mAdapter.setFooterView(footer);
     }
 
-    private void updateFooter(Cursor data) {
-        if (data == null) return;
+    /**
+     * Counts the records and, with the footer, calculates the total, in the background as not
+     * all the rows are loaded.
+     */
+    private void loadTotals() {
+        if (mTotalsSubscription != null) mTotalsSubscription.unsubscribe();
+        mRecordCount = -1;
+
+        final Context context = getActivity().getApplicationContext();
+        final Bundle arguments = getLatestArguments();
+        final KeysetPager pager = mPager;
+        final boolean showTotal = this.footer != null;
+        mTotalsSubscription = Single.fromCallable(() -> showTotal
+                ? getTotals(context, arguments)
+                : new Totals(pager.count(), null))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Totals>() {
+                @Override
+                public void onSuccess(Totals value) {
+                    mRecordCount = value.records;
+                    if (footer == null || value.text == null) return;
+
+                    TextView txtColumn2 = footer.findViewById(R.id.textViewColumn2);
+                    txtColumn2.setText(value.text);
+                }
 
-        String display;
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "loading totals");
+                }
+            });
+    }
 
-        // number of records
-         display = data.getCount() + " " + getString(R.string.records) + ", ";
+    /**
+     * Finds the matches of the search expression, in the background, and highlights them.
+     */
+    private void loadSearchHits() {
+        Bundle arguments = getArguments();
+        final String matchExpression = arguments != null ? arguments.getString(KEY_ARGUMENTS_HIGHLIGHT) : null;
+        if (matchExpression == null) return;
+
+        if (mSearchHitsSubscription != null) mSearchHitsSubscription.unsubscribe();
+
+        final TransactionSearchService searchService = new TransactionSearchService(getActivity());
+        mSearchHitsSubscription = Single.fromCallable(() -> searchService.findAll(matchExpression))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<List<SearchHit>>() {
+                @Override
+                public void onSuccess(List<SearchHit> hits) {
+                    AllDataAdapter adapter = getAllDataAdapter();
+                    if (adapter == null) return;
+
+                    adapter.setSearchHits(hits);
+                    mAdapter.notifyDataSetChanged();
+                }
 
-        // sum
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "highlighting search matches");
+                }
+            });
+    }
 
+    /**
+     * @return The number of records and the total in the base currency, summed by currency
+     * in the database.
+     */
+    private static Totals getTotals(Context context, Bundle arguments) {
+        String selection = arguments.getString(KEY_ARGUMENTS_WHERE);
+        ArrayList<String> params = arguments.getStringArrayList(KEY_ARGUMENTS_WHERE_PARAMS);
+        String transfer = "T." + QueryAllData.TransactionType + " = '" + TransactionTypes.Transfer.name() + "'";
+
+        String sql = "SELECT CASE WHEN " + transfer + " THEN T." + QueryAllData.ToCurrencyId
+                + " ELSE T." + QueryAllData.CURRENCYID + " END AS CurrencyId, "
+                + "TOTAL(CASE WHEN " + transfer + " THEN T." + QueryAllData.ToAmount
+                + " ELSE T." + QueryAllData.Amount + " END) AS Total, COUNT(*) AS Records "
+                + "FROM (" + new QueryAllData(context).getSource() + ") T "
+                + (TextUtils.isEmpty(selection) ? "" : "WHERE " + selection + " ")
+                + "GROUP BY 1";
+
+        CurrencyService currencyService = new CurrencyService(context);
+        int baseCurrencyId = currencyService.getBaseCurrencyId();
         Money total = MoneyFactory.fromString("0");
+        int records = 0;
 
-        if (data.getCount() != 0) {
-            total = getTotalFromCursor(data);
+        Cursor cursor = context.getContentResolver().query(new SQLDataSet().getUri(), null, sql,
+                params == null ? null : params.toArray(new String[0]), null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    Money amount = MoneyFactory.fromDouble(cursor.getDouble(1));
+                    total = total.add(currencyService.doCurrencyExchange(baseCurrencyId, amount, cursor.getInt(0)));
+                    records += cursor.getInt(2);
+                }
+            } finally {
+                cursor.close();
+            }
         }
 
-        TextView txtColumn2 = this.footer.findViewById(R.id.textViewColumn2);
+        return new Totals(records, records + " " + context.getString(R.string.records) + ", "
+                + currencyService.getBaseCurrencyFormatted(total));
+    }
+
+    private void onPageLoaded(Cursor page) {
+        if (page == null) {
+            mLastPageLoaded = true;
+            return;
+        }
+        mLastPageLoaded = mPager.isLastPage(page, mPager.getPageSize());
+        if (page.getCount() == 0) {
+            page.close();
+            return;
+        }
+
+        int start = mAdapter.getDataCount();
+        mAdapter.appendPage(page);
+
+        if (mAllSelected) {
+            AllDataAdapter adapter = getAllDataAdapter();
+            for (int i = start; i < mAdapter.getDataCount(); i++) {
+                adapter.setPositionChecked(i, true);
+            }
+        }
 
-        CurrencyService currencyService = new CurrencyService(getContext());
-        display += currencyService.getBaseCurrencyFormatted(total);
+        // A reload, when the data changes, includes the pages loaded.
+        mLoaderLimit = mAdapter.getDataCount();
+        Loader<Cursor> loader = getLoaderManager().getLoader(ID_LOADER_ALL_DATA_DETAIL);
+        if (loader instanceof CursorLoader) {
+            ((CursorLoader) loader).setSortOrder(mPager.getFirstPageQuery(mLoaderLimit).sort);
+        }
+    }
 
-        txtColumn2.setText(display);
+    private void cancelPageLoad() {
+        if (mPageSubscription != null) {
+            mPageSubscription.unsubscribe();
+            mPageSubscription = null;
+        }
     }
 
-    private Money getTotalFromCursor(Cursor cursor) {
-        Money total = MoneyFactory.fromString("0");
-        int originalPosition = cursor.getPosition();
+    private void toggleChecked(int position) {
         AllDataAdapter adapter = getAllDataAdapter();
-        CurrencyService currencyService = new CurrencyService(getContext());
-        int baseCurrencyId = currencyService.getBaseCurrencyId();
-        ContentValues values = new ContentValues();
-
-        int currencyId;
-        Money amount;
-        Money converted;
-        String transType;
-        TransactionTypes transactionType;
-
-        cursor.moveToPosition(Constants.NOT_SET);
-
-        while(cursor.moveToNext()) {
-            values.clear();
-
-            // Read needed data.
-            DatabaseUtils.cursorStringToContentValues(cursor, adapter.TRANSACTIONTYPE, values);
-            DatabaseUtils.cursorIntToContentValues(cursor, adapter.CURRENCYID, values);
-            DatabaseUtils.cursorIntToContentValues(cursor, adapter.TOCURRENCYID, values);
-            DatabaseUtils.cursorDoubleToCursorValues(cursor, adapter.AMOUNT, values);
-            DatabaseUtils.cursorDoubleToCursorValues(cursor, adapter.TOAMOUNT, values);
-
-            transType = values.getAsString(adapter.TRANSACTIONTYPE);
-            transactionType = TransactionTypes.valueOf(transType);
-
-            if (transactionType.equals(TransactionTypes.Transfer)) {
-                currencyId = values.getAsInteger(adapter.TOCURRENCYID);
-                amount = MoneyFactory.fromString(values.getAsString(adapter.TOAMOUNT));
-            } else {
-                currencyId = values.getAsInteger(adapter.CURRENCYID);
-                amount = MoneyFactory.fromString(values.getAsString(adapter.AMOUNT));
-            }
+        boolean checked = !adapter.getPositionsChecked().get(position, false);
+
+        mMultiChoiceModeListener.onItemCheckedStateChanged(mActionMode, position,
+                mAdapter.getItemId(mAdapter.getHeaderCount() + position), checked);
+
+        // as the list view, leave the selection mode when nothing is selected.
+        if (!checked && getTransactionCheckedCount() == 0 && mActionMode != null) {
+            mActionMode.finish();
+        }
+    }
 
-            converted = currencyService.doCurrencyExchange(baseCurrencyId, amount, currencyId);
-            total = total.add(converted);
+    private int getTransactionCheckedCount() {
+        SparseBooleanArray positionChecked = getAllDataAdapter().getPositionsChecked();
+        int count = 0;
+        for (int i = 0; i < positionChecked.size(); i++) {
+            if (positionChecked.valueAt(i)) count++;
         }
+        return count;
+    }
 
-        cursor.moveToPosition(originalPosition);
+    /**
+     * Shows the list or the progress indicator while loading.
+     */
+    private void setListShown(boolean shown) {
+        if (mProgressContainer == null) return;
 
-        return total;
+        mProgressContainer.setVisibility(shown ? View.GONE : View.VISIBLE);
+        mRecyclerView.setVisibility(shown ? View.VISIBLE : View.GONE);
+        boolean empty = mAdapter == null || mAdapter.getDataCount() == 0;
+        mEmptyView.setVisibility(shown && empty && mListHeader == null ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * @return An adapter with all the transactions, for the exports. The cursor is to be closed.
+     */
+    private AllDataAdapter loadAllRows() {
+        if (mPager == null) return null;
+
+        Cursor cursor = mPager.loadAll();
+        if (cursor == null) return null;
+
+        AllDataAdapter adapter = new AllDataAdapter(getActivity(), cursor, TypeCursor.ALLDATA);
+        adapter.setAccountId(this.AccountId);
+        return adapter;
     }
 
     private boolean setStatusCheckingAccount(int[] transId, String status) {
@@ -773,14 +1012,7 @@ public class AllDataListFragment
     }
 
     private AllDataAdapter getAllDataAdapter() {
-        AllDataAdapter adapter = null;
-
-        ListAdapter listAdapter = getListAdapter();
-        if (listAdapter != null && listAdapter instanceof AllDataAdapter) {
-            adapter = (AllDataAdapter) getListAdapter();
-        }
-
-        return adapter;
+        return mAdapter == null ? null : mAdapter.getRowsAdapter();
     }
 
     private void selectAllRecords() {
@@ -790,12 +1022,14 @@ public class AllDataListFragment
         // Clear selection first.
         adapter.clearPositionChecked();
 
-        int numRecords = adapter.getCount();
+        // the transactions not loaded yet are selected when loaded, or read on action.
+        mAllSelected = true;
+        int numRecords = mAdapter.getDataCount();
         for (int i = 0; i < numRecords; i++) {
             adapter.setPositionChecked(i, true);
         }
 
-        adapter.notifyDataSetChanged();
+        mAdapter.notifyDataSetChanged();
     }
 
     private ArrayList<Integer> getTransactionIds(){
@@ -805,23 +1039,42 @@ public class AllDataListFragment
         if(adapter == null) return transIds;
 
         Cursor cursor = adapter.getCursor();
-        if (cursor != null) {
-            // get checked items & count from the adapter, not from the list view.
-            // List view only contains the one that was tapped, ignoring the Select All.
-//                SparseBooleanArray positionChecked = getListView().getCheckedItemPositions();
-            SparseBooleanArray positionChecked = adapter.getPositionsChecked();
-//                int checkedItemsCount = getListView().getCheckedItemCount();
-            int checkedItemsCount = positionChecked.size();
-
-            for (int i = 0; i < checkedItemsCount; i++) {
-                int position = positionChecked.keyAt(i);
-                // This screws up the selection?
-//                    if (getListHeader() != null)
-//                        position--;
-                if (cursor.moveToPosition(position)) {
-                    transIds.add(cursor.getInt(cursor.getColumnIndex(QueryAllData.ID)));
+        if (cursor == null) return transIds;
+
+        // get checked items & count from the adapter.
+        SparseBooleanArray positionChecked = adapter.getPositionsChecked();
+        int idColumn = cursor.getColumnIndex(QueryAllData.ID);
+
+        if (mAllSelected && !mLastPageLoaded) {
+            // all the transactions, but the ones unchecked.
+            Set<Integer> unchecked = new HashSet<>();
+            for (int i = 0; i < positionChecked.size(); i++) {
+                if (!positionChecked.valueAt(i) && cursor.moveToPosition(positionChecked.keyAt(i))) {
+                    unchecked.add(cursor.getInt(idColumn));
                 }
             }
+
+            Cursor all = mPager.loadAll();
+            if (all == null) return transIds;
+            try {
+                int allIdColumn = all.getColumnIndex(QueryAllData.ID);
+                while (all.moveToNext()) {
+                    int id = all.getInt(allIdColumn);
+                    if (!unchecked.contains(id)) transIds.add(id);
+                }
+            } finally {
+                all.close();
+            }
+            return transIds;
+        }
+
+        for (int i = 0; i < positionChecked.size(); i++) {
+            if (!positionChecked.valueAt(i)) continue;
+
+            int position = positionChecked.keyAt(i);
+            if (cursor.moveToPosition(position)) {
+                transIds.add(cursor.getInt(idColumn));
+            }
         }
 
         return transIds;
@@ -871,7 +1124,7 @@ public class AllDataListFragment
                     case R.id.menu_void:
                         String status = item.getShortcut();
                         if (setStatusCheckingAccount(convertArrayListToArray(transIds), status)) {
-                            ((AllDataAdapter) getListAdapter()).clearPositionChecked();
+                            getAllDataAdapter().clearPositionChecked();
                             loadData();
                         }
                 }
@@ -903,9 +1156,12 @@ public class AllDataListFragment
     // end multi-choice-mode listener callback handlers.
 
     private void exportToQif(){
-        AllDataAdapter adapter = (AllDataAdapter) getListAdapter();
+        AllDataAdapter adapter = loadAllRows();
+        if (adapter == null) return;
+
         QifExport qif = new QifExport(getActivity());
         qif.export(adapter);
+        adapter.getCursor().close();
     }
 
     private int[] convertArrayListToArray(ArrayList<Integer> list) {
@@ -934,4 +1190,16 @@ public class AllDataListFragment
         mArguments = arguments;
     }
 
+    /**
+     * The number of records of the query and the footer text.
+     */
+    private static class Totals {
+        final int records;
+        final String text;
+
+        Totals(int records, String text) {
+            this.records = records;
+            this.text = text;
+        }
+    }
 }
@@ -492,8 +492,6 @@ public class CategoryListFragment
                         if (rowsDelete == 0) {
                             Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -552,8 +550,6 @@ public class CategoryListFragment
                                 }
                                 break;
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -637,8 +633,6 @@ public class CategoryListFragment
                                 }
                                 break;
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -48,6 +48,7 @@ import com.money.manager.ex.settings.AppSettings;
 import java.text.DateFormatSymbols;
 import java.text.Normalizer;
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Locale;
 
 import javax.inject.Inject;
@@ -245,6 +246,28 @@ public class Core {
         }
     }
 
+    /**
+     * Highlights in bold the given ranges of the text, i.e. the matches of a full-text search.
+     * @param originalText text to highlight
+     * @param ranges       (start, end) character positions in the text
+     * @return CharSequence modified
+     */
+    public CharSequence highlight(String originalText, List<int[]> ranges) {
+        if (TextUtils.isEmpty(originalText) || ranges == null || ranges.isEmpty())
+            return originalText;
+
+        Spannable highlighted = new SpannableString(originalText);
+        for (int[] range : ranges) {
+            int spanStart = Math.min(range[0], originalText.length());
+            int spanEnd = Math.min(range[1], originalText.length());
+            if (spanStart >= spanEnd) continue;
+
+            highlighted.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), spanStart,
+                    spanEnd, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return highlighted;
+    }
+
     /**
      * Function that determines if the application is running on tablet
      * @return true if running on the tablet, otherwise false
@@ -135,6 +135,9 @@ public class ExportToCsvFile
 			Timber.e(e, "exporting to CSV");
 
 			return false;
+		} finally {
+			// the cursor is loaded for the export.
+			data.close();
 		}
 		return true;
 	}
@@ -17,16 +17,17 @@
 package com.money.manager.ex.core;
 
 import android.content.Context;
-import android.text.TextUtils;
 import android.widget.TextView;
 
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
+import com.money.manager.ex.currency.CurrencyFormatters;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.domainmodel.Currency;
 import com.money.manager.ex.log.ExceptionHandler;
 
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
@@ -52,6 +53,9 @@ public class FormatUtilities {
         this.context = app;
     }
 
+    private static Locale appLocale;
+    private static DecimalFormatSymbols appLocaleSymbols;
+
     private final Context context;
     @Inject CurrencyService currencyService;
 
@@ -119,10 +123,7 @@ public class FormatUtilities {
     }
 
     public String getDecimalSeparatorForAppLocale() {
-        Locale locale = MmexApplication.getApp().getAppLocale();
-
-        DecimalFormat currencyFormatter = (DecimalFormat) NumberFormat.getInstance(locale);
-        char decimalSeparator = currencyFormatter.getDecimalFormatSymbols().getDecimalSeparator();
+        char decimalSeparator = getAppLocaleSymbols().getDecimalSeparator();
 
         String separator = Character.toString(decimalSeparator);
 
@@ -130,10 +131,7 @@ public class FormatUtilities {
     }
 
     public String getGroupingSeparatorForAppLocale() {
-        Locale locale = MmexApplication.getApp().getAppLocale();
-
-        DecimalFormat currencyFormatter = (DecimalFormat) NumberFormat.getInstance(locale);
-        char groupingSeparator = currencyFormatter.getDecimalFormatSymbols().getGroupingSeparator();
+        char groupingSeparator = getAppLocaleSymbols().getGroupingSeparator();
 
         String separator = Character.toString(groupingSeparator);
 
@@ -156,19 +154,7 @@ public class FormatUtilities {
     public String format(Money value, boolean showSymbols, Currency currency) {
         if (currency == null) return "n/a";
 
-        String result = this.format(value, currency.getScale(),
-            currency.getDecimalSeparator(), currency.getGroupSeparator());
-
-        // check suffix
-        if ((showSymbols) && (!TextUtils.isEmpty(currency.getSfxSymbol()))) {
-            result = result + " " + currency.getSfxSymbol();
-        }
-        // check prefix
-        if (((showSymbols) && !TextUtils.isEmpty(currency.getPfxSymbol()))) {
-            result = currency.getPfxSymbol() + " " + result;
-        }
-
-        return result;
+        return CurrencyFormatters.get(currency, showSymbols).format(value);
     }
 
     /**
@@ -188,42 +174,15 @@ public class FormatUtilities {
     }
 
     public String format(Money value, int scale, String decimalSeparator, String groupSeparator) {
-        int decimals = new NumericHelper(getContext()).getNumberOfDecimals(scale);
-
-        value = value.truncate(decimals);
-
-        // set format
-        DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
-        // getDecimalSeparator()
-        if (!(TextUtils.isEmpty(decimalSeparator))) {
-            formatSymbols.setDecimalSeparator(decimalSeparator.charAt(0));
-        }
-        // getGroupSeparator()
-        if (!(TextUtils.isEmpty(groupSeparator))) {
-            formatSymbols.setGroupingSeparator(groupSeparator.charAt(0));
-        }
-
-        // All these use locale-dependent formatting.
-//        DecimalFormat formatter = new DecimalFormat();
-//        Locale appLocale = MoneyManagerApplication.getInstance().getLocale();
-//        DecimalFormat formatter = (DecimalFormat) NumberFormat.getNumberInstance(appLocale);
-        String pattern = NumericPatternGenerator.getPattern(decimals);
-
-        DecimalFormat formatter = new DecimalFormat(pattern);
-
-        formatter.setMaximumFractionDigits(decimals);
-        formatter.setMinimumFractionDigits(decimals);
+        int decimals = NumericHelper.getNumberOfDecimalsForScale(scale);
 
-        formatter.setGroupingSize(3);
-        formatter.setDecimalFormatSymbols(formatSymbols);
-
-        String result = formatter.format(value.toDouble());
-        return result;
+        return CurrencyFormatters.getNumberFormatter(decimals, decimalSeparator, groupSeparator)
+            .format(value);
     }
 
     /**
      * Ultimately, all the methods should converge to this one. Provides customization options for
-     * the amount.
+     * the amount. Rounds half even, as the DecimalFormat used before.
      *
      * @param amount Amount to be formatted
      * @param decimals Number of decimals to use.
@@ -235,39 +194,20 @@ public class FormatUtilities {
      */
     public String formatNumber(Money amount, int decimals, String decimalSeparator, String groupSeparator,
                                String prefix, String suffix) {
-        // Decimals
-
-        String pattern = NumericPatternGenerator.getPattern(decimals);
-        DecimalFormat formatter = new DecimalFormat(pattern);
-        formatter.setMaximumFractionDigits(decimals);
-        formatter.setMinimumFractionDigits(decimals);
-
-        // Separators
-
-        DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
-        if (!(TextUtils.isEmpty(decimalSeparator))) {
-            formatSymbols.setDecimalSeparator(decimalSeparator.charAt(0));
-        }
-        if (!(TextUtils.isEmpty(groupSeparator))) {
-            formatSymbols.setGroupingSeparator(groupSeparator.charAt(0));
+        StringBuilder result = new StringBuilder();
+        if (prefix != null) {
+            result.append(prefix);
         }
-        // Group size
-        formatter.setGroupingSize(3);
-
-        formatter.setDecimalFormatSymbols(formatSymbols);
-
-        String result = formatter.format(amount.toDouble());
 
-        // Currency symbol, prefix/suffix
+        CurrencyFormatters.getNumberFormatter(decimals, decimalSeparator, groupSeparator,
+                RoundingMode.HALF_EVEN)
+            .format(amount, result);
 
-        if (prefix != null) {
-            result = prefix + result;
-        }
         if (suffix != null) {
-            result += suffix;
+            result.append(suffix);
         }
 
-        return result;
+        return result.toString();
     }
 
     /**
@@ -307,4 +247,17 @@ public class FormatUtilities {
         return format(value, service.getBaseCurrency());
     }
 
+    /**
+     * The number symbols of the app locale, kept until the locale changes.
+     */
+    private static synchronized DecimalFormatSymbols getAppLocaleSymbols() {
+        Locale locale = MmexApplication.getApp().getAppLocale();
+        if (!locale.equals(appLocale)) {
+            DecimalFormat currencyFormatter = (DecimalFormat) NumberFormat.getInstance(locale);
+            appLocaleSymbols = currencyFormatter.getDecimalFormatSymbols();
+            appLocale = locale;
+        }
+        return appLocaleSymbols;
+    }
+
 }
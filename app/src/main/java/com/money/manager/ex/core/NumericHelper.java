@@ -101,6 +101,10 @@ public class NumericHelper {
      * @return Number of decimals to use (precision?).
      */
     public int getNumberOfDecimals(int scale) {
+        return getNumberOfDecimalsForScale(scale);
+    }
+
+    public static int getNumberOfDecimalsForScale(int scale) {
         double decimals = Math.log(scale) / Math.log(10.0);
         int result = (int) Math.round(decimals);
         return result;
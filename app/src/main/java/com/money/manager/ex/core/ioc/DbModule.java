@@ -17,15 +17,11 @@
 
 package com.money.manager.ex.core.ioc;
 
-import androidx.sqlite.db.SupportSQLiteOpenHelper;
-
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.database.MmxOpenHelper;
 import com.squareup.sqlbrite3.BriteDatabase;
 import com.squareup.sqlbrite3.SqlBrite;
 
-import net.sqlcipher.database.SupportFactory;
-
 import dagger.Module;
 import dagger.Provides;
 import io.reactivex.schedulers.Schedulers;
@@ -58,14 +54,12 @@ public final class DbModule {
         }).build();
     }
 
+    /**
+     * Wraps the connection shared through the open helper, so that Brite queries do not
+     * open (and key) the database file again.
+     */
     @Provides BriteDatabase provideDatabase(SqlBrite sqlBrite, MmxOpenHelper helper) {
-        SupportSQLiteOpenHelper.Factory factory = new SupportFactory(helper.getPassword().getBytes());
-        SupportSQLiteOpenHelper.Configuration configuration =
-                SupportSQLiteOpenHelper.Configuration.builder(helper.getContext())
-                        .name(helper.getDbPath())
-                        .callback(helper)
-                        .build();
-        BriteDatabase db = sqlBrite.wrapDatabaseHelper(factory.create(configuration), Schedulers.io());
+        BriteDatabase db = sqlBrite.wrapDatabaseHelper(helper.getOpenHelper(), Schedulers.io());
         db.setLoggingEnabled(true);
         return db;
     }
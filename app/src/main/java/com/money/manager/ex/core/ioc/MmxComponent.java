@@ -18,6 +18,7 @@
 package com.money.manager.ex.core.ioc;
 
 import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.budget.BudgetActualsService;
 import com.money.manager.ex.budget.BudgetAdapter;
 import com.money.manager.ex.common.CalculatorActivity;
 import com.money.manager.ex.core.Core;
@@ -33,14 +34,16 @@ import com.money.manager.ex.home.MainActivity;
 import com.money.manager.ex.home.SelectDatabaseActivity;
 import com.money.manager.ex.investment.EditPriceDialog;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
+import com.money.manager.ex.investment.prices.SecurityPriceUpdaterBase;
 import com.money.manager.ex.investment.InvestmentTransactionEditActivity;
 import com.money.manager.ex.investment.PriceEditActivity;
 import com.money.manager.ex.investment.PriceEditModel;
-import com.money.manager.ex.investment.morningstar.MorningstarPriceUpdater;
 import com.money.manager.ex.recurring.transactions.RecurringTransactionEditActivity;
 import com.money.manager.ex.recurring.transactions.RecurringTransactionListFragment;
 import com.money.manager.ex.reports.BaseReportFragment;
 import com.money.manager.ex.search.SearchParametersFragment;
+import com.money.manager.ex.search.TransactionSearchService;
+import com.money.manager.ex.servicelayer.CategoryService;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.DatabaseSettingsFragment;
@@ -94,7 +97,7 @@ public interface MmxComponent {
 
     // Custom objects
     void inject(ISecurityPriceUpdater updater);
-    void inject(MorningstarPriceUpdater updater);
+    void inject(SecurityPriceUpdaterBase updater);
     void inject(AppSettings settings);
     void inject(Core core);
     void inject(MmxContentProvider provider);
@@ -111,6 +114,9 @@ public interface MmxComponent {
     // Business Services
     void inject(CurrencyService service);
     void inject(InfoService service);
+    void inject(CategoryService service);
+    void inject(BudgetActualsService service);
+    void inject(TransactionSearchService service);
 
     // Intent Services
     void inject(SyncService service);
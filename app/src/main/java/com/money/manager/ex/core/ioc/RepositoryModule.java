@@ -17,6 +17,7 @@
 
 package com.money.manager.ex.core.ioc;
 
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.datalayer.StockHistoryRepositorySql;
 import com.money.manager.ex.datalayer.StockRepositorySql;
 import com.squareup.sqlbrite3.BriteDatabase;
@@ -30,8 +31,8 @@ import dagger.Provides;
 @Module
 public class RepositoryModule {
     @Provides
-    StockRepositorySql provideStockRepository(BriteDatabase db) {
-        return new StockRepositorySql(db);
+    StockRepositorySql provideStockRepository(BriteDatabase db, MmxOpenHelper openHelper) {
+        return new StockRepositorySql(db, openHelper);
     }
 
     @Provides
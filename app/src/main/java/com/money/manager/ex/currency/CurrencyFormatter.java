@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFormatter;
+
+/**
+ * Formats amounts with the settings of a currency: decimals, separators and, optionally, the
+ * symbols. Immutable; get the instances from {@link CurrencyFormatters}.
+ */
+public class CurrencyFormatter {
+
+    CurrencyFormatter(MoneyFormatter numberFormatter, String prefix, String suffix) {
+        this.numberFormatter = numberFormatter;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    private final MoneyFormatter numberFormatter;
+    /** Prefix symbol, with the separating space, or null */
+    private final String prefix;
+    /** Suffix symbol, with the separating space, or null */
+    private final String suffix;
+
+    public String format(Money value) {
+        StringBuilder builder = CurrencyFormatters.getBuffer();
+        return format(value, builder).toString();
+    }
+
+    /**
+     * Appends the formatted value to the given builder, for the callers that compose a text.
+     */
+    public StringBuilder format(Money value, StringBuilder out) {
+        if (prefix != null) {
+            out.append(prefix);
+        }
+        numberFormatter.format(value, out);
+        if (suffix != null) {
+            out.append(suffix);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.text.TextUtils;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.core.NumericHelper;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.domainmodel.Currency;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Set;
+
+import info.javaperformance.money.MoneyFormatter;
+
+/**
+ * Registry of the currency formatters, by currency and whether the symbols are shown.
+ * The formatters are created once from the currency settings and the symbols of the default
+ * locale. They are dropped when the currencies table changes or the default locale changes.
+ * The number formatters are kept by decimals, separators and rounding, and are dropped only when
+ * the default locale changes.
+ */
+public final class CurrencyFormatters {
+
+    private static final String CURRENCY_TABLE = "CURRENCYFORMATS_V1";
+
+    private static final SparseArray<CurrencyFormatter> formatters = new SparseArray<>();
+    private static final LongSparseArray<MoneyFormatter> numberFormatters = new LongSparseArray<>();
+    private static Locale locale;
+    private static DecimalFormatSymbols localeSymbols;
+    private static boolean listening;
+
+    private static final ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
+
+    private static final TableChangeFeed.Listener listener = new TableChangeFeed.Listener() {
+        @Override
+        public void onTablesChanged(Set<String> tables) {
+            if (tables.contains(CURRENCY_TABLE)) {
+                invalidate();
+            }
+        }
+    };
+
+    private CurrencyFormatters() {
+    }
+
+    /**
+     * @return The cached formatter for the currency, or null if there is none yet.
+     */
+    public static synchronized CurrencyFormatter find(int currencyId, boolean showSymbols) {
+        checkLocale();
+        return formatters.get(getKey(currencyId, showSymbols));
+    }
+
+    public static synchronized CurrencyFormatter get(Currency currency, boolean showSymbols) {
+        checkLocale();
+        int key = getKey(currency.getCurrencyId(), showSymbols);
+        CurrencyFormatter formatter = formatters.get(key);
+        if (formatter == null) {
+            formatter = create(currency, showSymbols);
+            formatters.put(key, formatter);
+        }
+        return formatter;
+    }
+
+    /**
+     * A number formatter for the given decimals and separators, in the default locale.
+     * @param decimalSeparator Decimal separator, or empty for the one of the locale.
+     * @param groupSeparator Group separator, or empty for the one of the locale.
+     */
+    public static MoneyFormatter getNumberFormatter(int decimals, String decimalSeparator,
+                                                    String groupSeparator) {
+        return getNumberFormatter(decimals, decimalSeparator, groupSeparator, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * @param rounding HALF_UP, as Money.truncate, or HALF_EVEN, as DecimalFormat.
+     */
+    public static synchronized MoneyFormatter getNumberFormatter(int decimals, String decimalSeparator,
+                                                                 String groupSeparator, RoundingMode rounding) {
+        checkLocale();
+        char decimal = TextUtils.isEmpty(decimalSeparator)
+            ? localeSymbols.getDecimalSeparator() : decimalSeparator.charAt(0);
+        char group = TextUtils.isEmpty(groupSeparator)
+            ? localeSymbols.getGroupingSeparator() : groupSeparator.charAt(0);
+
+        long key = ((long) rounding.ordinal() << 40) | ((long) group << 24) | ((long) decimal << 8) | decimals;
+        MoneyFormatter formatter = numberFormatters.get(key);
+        if (formatter == null) {
+            formatter = new MoneyFormatter(decimals, decimal, group,
+                localeSymbols.getZeroDigit(), localeSymbols.getMinusSign(), rounding);
+            numberFormatters.put(key, formatter);
+        }
+        return formatter;
+    }
+
+    public static synchronized void invalidate() {
+        formatters.clear();
+    }
+
+    /**
+     * @return A builder for the formatted text, cleared, reused by the calling thread.
+     */
+    static StringBuilder getBuffer() {
+        StringBuilder builder = buffer.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static CurrencyFormatter create(Currency currency, boolean showSymbols) {
+        int decimals = NumericHelper.getNumberOfDecimalsForScale(currency.getScale());
+        MoneyFormatter numberFormatter = getNumberFormatter(decimals,
+            currency.getDecimalSeparator(), currency.getGroupSeparator());
+
+        String prefix = null;
+        String suffix = null;
+        if (showSymbols && !TextUtils.isEmpty(currency.getPfxSymbol())) {
+            prefix = currency.getPfxSymbol() + " ";
+        }
+        if (showSymbols && !TextUtils.isEmpty(currency.getSfxSymbol())) {
+            suffix = " " + currency.getSfxSymbol();
+        }
+        return new CurrencyFormatter(numberFormatter, prefix, suffix);
+    }
+
+    private static void checkLocale() {
+        if (!listening) {
+            MmxContentProvider.getChangeFeed().addListener(listener);
+            listening = true;
+        }
+
+        Locale current = Locale.getDefault(Locale.Category.FORMAT);
+        if (!current.equals(locale)) {
+            formatters.clear();
+            numberFormatters.clear();
+            locale = current;
+            localeSymbols = new DecimalFormatSymbols();
+        }
+    }
+
+    private static int getKey(int currencyId, boolean showSymbols) {
+        return currencyId * 2 + (showSymbols ? 1 : 0);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.datalayer.RepositoryBase;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.utils.MmxDate;
+
+import java.util.Date;
+
+import info.javaperformance.money.Money;
+
+/**
+ * The history of the exchange rates (CURRENCYHISTORY_V1).
+ * There is one rate per currency and date; storing a rate for an existing date replaces it.
+ */
+public class CurrencyHistoryRepository
+    extends RepositoryBase<CurrencyHistory> {
+
+    public static final String TABLE_NAME = "currencyhistory_v1";
+
+    public CurrencyHistoryRepository(Context context) {
+        super(context, TABLE_NAME, DatasetType.TABLE, "currencyhistory");
+    }
+
+    enum UpdateType {
+        Online(1),
+        Manual(2);
+
+        UpdateType(int i) {
+            this.type = i;
+        }
+        public int type;
+    }
+
+    @Override
+    public String[] getAllColumns() {
+        return new String[] { "CURRHISTID AS _id",
+                CurrencyHistory.CURRHISTID,
+                CurrencyHistory.CURRENCYID,
+                CurrencyHistory.CURRDATE,
+                CurrencyHistory.CURRVALUE,
+                CurrencyHistory.CURRUPDTYPE
+        };
+    }
+
+    public ContentValues getContentValues(int currencyId, Money rate, Date date) {
+        ContentValues values = new ContentValues();
+        values.put(CurrencyHistory.CURRENCYID, currencyId);
+        values.put(CurrencyHistory.CURRDATE, new MmxDate(date).toIsoDateString());
+        values.put(CurrencyHistory.CURRVALUE, rate.toString());
+        values.put(CurrencyHistory.CURRUPDTYPE, UpdateType.Online.type);
+
+        return values;
+    }
+}
@@ -16,11 +16,13 @@
  */
 package com.money.manager.ex.currency;
 
+import android.content.ContentProviderOperation;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.os.RemoteException;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.SparseArray;
 
 import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.sqlite.db.SupportSQLiteQuery;
@@ -28,13 +30,14 @@ import androidx.sqlite.db.SupportSQLiteQueryBuilder;
 
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.MmxContentProvider;
 import com.money.manager.ex.R;
-import com.money.manager.ex.core.FormatUtilities;
 import com.money.manager.ex.core.InfoKeys;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.CurrencyRepositorySql;
 import com.money.manager.ex.datalayer.Select;
+import com.money.manager.ex.investment.SecurityPriceModel;
 import com.money.manager.ex.investment.prices.IExchangeRateUpdater;
 import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.servicelayer.InfoService;
@@ -44,6 +47,7 @@ import com.money.manager.ex.servicelayer.ServiceBase;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -64,22 +68,11 @@ public class CurrencyService
     public CurrencyService(Context context) {
         super(context);
 
-        mCurrencyCodes = new HashMap<>();
-        mCurrencies = new SparseArray<>();
-
         MmexApplication.getApp().iocComponent.inject(this);
     }
 
     @Inject CurrencyRepositorySql mRepository;
 
-    private Integer mBaseCurrencyId = null;
-    // hash map of all currencies
-    private final SparseArray<Currency> mCurrencies;
-    /**
-     * a fast lookup for symbol -> id. i.e. EUR->2.
-     */
-    private final HashMap<String, Integer> mCurrencyCodes;
-
     /**
      * @param currencyId of the currency to be get
      * @return a Currency. Null if fail
@@ -87,20 +80,11 @@ public class CurrencyService
     public Currency getCurrency(Integer currencyId) {
         if (currencyId == null || currencyId == Constants.NOT_SET) return null;
 
-        if (mCurrencies.indexOfKey(currencyId) >= 0) {
-            return mCurrencies.get(currencyId);
-        }
-
-        CurrencyRepository repository = getRepository();
-        Currency currency = repository.loadCurrency(currencyId);
-
-        mCurrencies.put(currencyId, currency);
-
-        return currency;
+        return getSnapshot().getCurrency(currencyId);
     }
 
     public Currency getCurrency(String currencyCode) {
-        int id = getIdForCode(currencyCode);
+        Integer id = getIdForCode(currencyCode);
         return getCurrency(id);
     }
 
@@ -122,19 +106,11 @@ public class CurrencyService
         return currency.getCode();
     }
 
+    /**
+     * @return The id of the currency, or null if there is no currency with the given code.
+     */
     public Integer getIdForCode(String code) {
-        if (mCurrencyCodes.containsKey(code)) {
-            return mCurrencyCodes.get(code);
-        }
-
-        CurrencyRepository repo = getRepository();
-        Currency currency = repo.loadCurrency(code);
-
-        mCurrencyCodes.put(code, currency.getCurrencyId());
-
-        Integer result = currency.getCurrencyId();
-
-        return result;
+        return getSnapshot().getIdForCode(code);
     }
 
     public List<Currency> getUsedCurrencies() {
@@ -176,28 +152,48 @@ public class CurrencyService
     }
 
     public Money doCurrencyExchange(Integer toCurrencyId, Money amount, Integer fromCurrencyId) {
+        return doCurrencyExchange(toCurrencyId, amount, fromCurrencyId, null);
+    }
+
+    /**
+     * Converts the amount at the rates in effect on the given date. The currencies that have
+     * no historical rate up to the date are converted at the current rate.
+     * @param date The date of the rates. Null for the current rates.
+     */
+    public Money doCurrencyExchange(Integer toCurrencyId, Money amount, Integer fromCurrencyId, Date date) {
         if (toCurrencyId == null || fromCurrencyId == null) return amount;
         if (toCurrencyId == Constants.NOT_SET || fromCurrencyId == Constants.NOT_SET) return amount;
 
         // e same currencies
         if (toCurrencyId.equals(fromCurrencyId)) return amount;
 
-        Currency fromCurrencyFormats = getCurrency(fromCurrencyId);
-        Currency toCurrencyFormats = getCurrency(toCurrencyId);
+        double fromConversionRate = Double.NaN;
+        double toConversionRate = Double.NaN;
+        if (date != null) {
+            ExchangeRateHistory history = getRateHistory();
+            fromConversionRate = history.getRate(fromCurrencyId, date);
+            toConversionRate = history.getRate(toCurrencyId, date);
+        }
+
+        CurrencySnapshot snapshot = getSnapshot();
+        if (Double.isNaN(fromConversionRate)) {
+            fromConversionRate = snapshot.getConversionRate(fromCurrencyId);
+        }
+        if (Double.isNaN(toConversionRate)) {
+            toConversionRate = snapshot.getConversionRate(toCurrencyId);
+        }
         // check if exists from and to currencies
-        if (fromCurrencyFormats == null || toCurrencyFormats == null) {
-            String message = fromCurrencyFormats == null
+        if (Double.isNaN(fromConversionRate) || Double.isNaN(toConversionRate)) {
+            String message = Double.isNaN(fromConversionRate)
                     ? "currency " + fromCurrencyId + " not loaded."
                     : "";
-            message += toCurrencyFormats == null
+            message += Double.isNaN(toConversionRate)
                     ? " currency " + toCurrencyId + " not loaded."
                     : "";
             throw new RuntimeException(message);
         }
 
         // exchange
-        double toConversionRate = toCurrencyFormats.getBaseConversionRate();
-        double fromConversionRate = fromCurrencyFormats.getBaseConversionRate();
 
 //        double result = (amount * fromConversionRate) / toConversionRate;
         Money result = amount.multiply(fromConversionRate).divide(toConversionRate, Constants.DEFAULT_PRECISION);
@@ -211,11 +207,9 @@ public class CurrencyService
      * @return Id of base currency
      */
     public int getBaseCurrencyId() {
-        if (mBaseCurrencyId != null) return mBaseCurrencyId;
-
         int result;
 
-        Integer baseCurrencyId = loadBaseCurrencyId();
+        Integer baseCurrencyId = getSnapshot().getBaseCurrencyId();
 
         if (baseCurrencyId != null) {
             result = baseCurrencyId;
@@ -229,11 +223,10 @@ public class CurrencyService
                 Log.w("CurrencyService", "system default currency is null!");
                 result = 2;
             } else {
-                CurrencyRepository repo = getRepository();
-                Currency defaultCurrency = repo.loadCurrency(systemCurrency.getCurrencyCode());
+                Integer defaultCurrencyId = getIdForCode(systemCurrency.getCurrencyCode());
 
-                if (defaultCurrency != null) {
-                    result = defaultCurrency.getCurrencyId();
+                if (defaultCurrencyId != null) {
+                    result = defaultCurrencyId;
                 } else {
                     // currency not found.
                     Log.w("CurrencyService", "currency " + systemCurrency.getCurrencyCode() +
@@ -242,16 +235,15 @@ public class CurrencyService
                 }
             }
         }
-        mBaseCurrencyId = result;
 
         return result;
     }
 
     public void setBaseCurrencyId(int baseCurrencyId) {
-        mBaseCurrencyId = baseCurrencyId;
-
         InfoService service = new InfoService(getContext());
         boolean saved = service.setInfoValue(InfoKeys.BASECURRENCYID, Integer.toString(baseCurrencyId));
+        // The info table is written directly, not through the content provider.
+        CurrencySnapshot.invalidate();
         if (!saved) {
             new UIHelper(getContext()).showToast(R.string.error_saving_default_currency);
         }
@@ -287,25 +279,32 @@ public class CurrencyService
 
         // find currency id
         if (currencyId != null) {
-            Currency currency = getCurrency(currencyId);
-//            NumericHelper helper = new NumericHelper(mContext);
-
-            if (currency == null) {
-                // no currency
-                return value.toString();
-                // we can not simply cut off the decimals!
-//                result = String.format("%.2f", value);
-            } else {
-                // formatted value
-                FormatUtilities formats = new FormatUtilities(getContext());
-                result = formats.format(value, currency);
+            CurrencyFormatter formatter = CurrencyFormatters.find(currencyId, true);
+            if (formatter == null) {
+                Currency currency = getCurrency(currencyId);
+                if (currency == null) {
+                    // no currency
+                    return value.toString();
+                    // we can not simply cut off the decimals!
+                }
+                formatter = CurrencyFormatters.get(currency, true);
             }
+            // formatted value
+            result = formatter.format(value);
         } else {
             result = String.valueOf(value);
         }
         return result;
     }
 
+    public CurrencySnapshot getSnapshot() {
+        return CurrencySnapshot.get(getContext());
+    }
+
+    public ExchangeRateHistory getRateHistory() {
+        return ExchangeRateHistory.get(getContext());
+    }
+
     private CurrencyRepository oldRepository;
     public CurrencyRepository getRepository() {
         if (oldRepository == null) {
@@ -378,23 +377,6 @@ public class CurrencyService
         return accountRepository.anyAccountsUsingCurrency(currencyId);
     }
 
-    /**
-     * Loads id of base currency
-     *
-     * @return Id base currency
-     */
-    protected Integer loadBaseCurrencyId() {
-        InfoService infoService = new InfoService(getContext());
-        String currencyString = infoService.getInfoValue(InfoKeys.BASECURRENCYID);
-        Integer currencyId = null;
-
-        if (!TextUtils.isEmpty(currencyString)) {
-            currencyId = Integer.parseInt(currencyString);
-        }
-
-        return currencyId;
-    }
-
     public java.util.Currency getSystemDefaultCurrency() {
         java.util.Currency currency = null;
 
@@ -480,6 +462,44 @@ public class CurrencyService
         return updateResult > 0;
     }
 
+    /**
+     * Stores the downloaded rates and appends them to the rate history, in one transaction.
+     * The rates of unknown currencies are ignored.
+     * @return The stored rates. Empty if the transaction failed.
+     */
+    public List<SecurityPriceModel> saveExchangeRates(List<SecurityPriceModel> rates) {
+        CurrencyRepository repository = getRepository();
+        CurrencyHistoryRepository historyRepository = new CurrencyHistoryRepository(getContext());
+        CurrencySnapshot snapshot = getSnapshot();
+
+        List<SecurityPriceModel> saved = new ArrayList<>(rates.size());
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(rates.size() * 2);
+        for (SecurityPriceModel rate : rates) {
+            if (rate.symbol == null || rate.price == null || rate.date == null) continue;
+
+            Integer currencyId = snapshot.getIdForCode(rate.symbol.toUpperCase(Locale.ENGLISH));
+            if (currencyId == null) continue;
+
+            operations.add(ContentProviderOperation.newUpdate(repository.getUri())
+                .withValue(Currency.BASECONVRATE, rate.price.toString())
+                .withSelection(Currency.CURRENCYID + "=?", new String[] { Integer.toString(currencyId) })
+                .build());
+            operations.add(ContentProviderOperation.newInsert(historyRepository.getUri())
+                .withValues(historyRepository.getContentValues(currencyId, rate.price, rate.date))
+                .build());
+            saved.add(rate);
+        }
+        if (operations.isEmpty()) return saved;
+
+        try {
+            getContext().getContentResolver().applyBatch(MmxContentProvider.getAuthority(), operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            Timber.e(e, "saving exchange rates");
+            saved.clear();
+        }
+        return saved;
+    }
+
     public void updateExchangeRate(int currencyId) {
         List<Currency> currencies = new ArrayList<>();
         currencies.add(getCurrency(currencyId));
@@ -506,7 +526,7 @@ public class CurrencyService
 
         IExchangeRateUpdater updater = ExchangeRateUpdaterFactory.getUpdaterInstance(getContext());
         updater.downloadPrices(baseCurrencySymbol.trim().toLowerCase(), currencySymbols);
-        // result received via event
+        // the rates are stored by the updater.
     }
 
     // Private
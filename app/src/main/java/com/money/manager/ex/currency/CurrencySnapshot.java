@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.core.InfoKeys;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.datalayer.Select;
+import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.servicelayer.InfoService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import timber.log.Timber;
+
+/**
+ * Immutable copy of the currencies and the base currency, shared by all the CurrencyService
+ * instances. Loaded on first use and replaced after the currencies or the base currency change.
+ * The Currency entities are kept private; {@link #getCurrency} returns a copy.
+ */
+public class CurrencySnapshot {
+
+    private static final String CURRENCY_TABLE = "CURRENCYFORMATS_V1";
+
+    private static final AtomicReference<CurrencySnapshot> current = new AtomicReference<>();
+    /** Incremented on each invalidation, so that a snapshot loaded before it is not kept */
+    private static final AtomicInteger generation = new AtomicInteger();
+    private static volatile boolean listening;
+
+    private static final TableChangeFeed.Listener listener = new TableChangeFeed.Listener() {
+        @Override
+        public void onTablesChanged(Set<String> tables) {
+            if (tables.contains(CURRENCY_TABLE)) {
+                invalidate();
+            }
+        }
+    };
+
+    public static CurrencySnapshot get(Context context) {
+        CurrencySnapshot snapshot = current.get();
+        if (snapshot != null) return snapshot;
+
+        startListening();
+
+        int loadedGeneration = generation.get();
+        snapshot = load(context);
+        if (generation.get() == loadedGeneration) {
+            current.compareAndSet(null, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the current snapshot. The next access loads a new one.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        current.set(null);
+    }
+
+    static CurrencySnapshot load(Context context) {
+        CurrencyRepository repository = new CurrencyRepository(context);
+        List<Currency> currencies = repository.query(Currency.class,
+            new Select(repository.getAllColumns()));
+        if (currencies == null) {
+            currencies = Collections.emptyList();
+        }
+
+        Integer baseCurrencyId = null;
+        String baseCurrency = new InfoService(context).getInfoValue(InfoKeys.BASECURRENCYID);
+        if (!TextUtils.isEmpty(baseCurrency)) {
+            try {
+                baseCurrencyId = Integer.parseInt(baseCurrency);
+            } catch (NumberFormatException e) {
+                Timber.w("invalid base currency id %s", baseCurrency);
+            }
+        }
+
+        return new CurrencySnapshot(currencies, baseCurrencyId);
+    }
+
+    private static void startListening() {
+        if (listening) return;
+
+        synchronized (CurrencySnapshot.class) {
+            if (!listening) {
+                MmxContentProvider.getChangeFeed().addListener(listener);
+                listening = true;
+            }
+        }
+    }
+
+    CurrencySnapshot(List<Currency> currencies, Integer baseCurrencyId) {
+        int maxId = 0;
+        for (Currency currency : currencies) {
+            maxId = Math.max(maxId, currency.getCurrencyId());
+        }
+
+        this.currencies = new Currency[maxId + 1];
+        this.conversionRates = new double[maxId + 1];
+        Map<String, Integer> codes = new HashMap<>();
+        for (Currency currency : currencies) {
+            int id = currency.getCurrencyId();
+            if (id < 0) continue;
+
+            this.currencies[id] = currency;
+            Double rate = currency.getBaseConversionRate();
+            // a missing rate is taken as the base currency
+            this.conversionRates[id] = rate == null ? 1 : rate;
+            if (currency.getCode() != null) {
+                codes.put(currency.getCode(), id);
+            }
+        }
+        this.idsByCode = Collections.unmodifiableMap(codes);
+        this.baseCurrencyId = baseCurrencyId;
+    }
+
+    /** Currencies by id */
+    private final Currency[] currencies;
+    /** Conversion rates to the base currency, by currency id */
+    private final double[] conversionRates;
+    private final Map<String, Integer> idsByCode;
+    private final Integer baseCurrencyId;
+
+    /**
+     * @return A copy of the currency, which the caller may modify, or null if there is none
+     * with the given id.
+     */
+    public Currency getCurrency(int currencyId) {
+        Currency currency = find(currencyId);
+        if (currency == null) return null;
+
+        Currency copy = new Currency();
+        copy.contentValues.putAll(currency.contentValues);
+        return copy;
+    }
+
+    /**
+     * @return The id of the currency with the given code, or null if there is none.
+     */
+    public Integer getIdForCode(String code) {
+        return idsByCode.get(code);
+    }
+
+    /**
+     * @return The base currency id stored in the database, or null if it is not set.
+     */
+    public Integer getBaseCurrencyId() {
+        return baseCurrencyId;
+    }
+
+    /**
+     * @return The conversion rate to the base currency, or NaN for an unknown currency.
+     */
+    public double getConversionRate(int currencyId) {
+        if (find(currencyId) == null) return Double.NaN;
+        return conversionRates[currencyId];
+    }
+
+    private Currency find(int currencyId) {
+        if (currencyId < 0 || currencyId >= currencies.length) return null;
+        return currencies[currencyId];
+    }
+}
@@ -21,7 +21,6 @@ import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
-import android.widget.Toast;
 
 import com.mikepenz.fontawesome_typeface_library.FontAwesome;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
@@ -33,9 +32,6 @@ import com.money.manager.ex.utils.DialogUtils;
 
 import org.greenrobot.eventbus.EventBus;
 
-import java.util.Date;
-
-import info.javaperformance.money.Money;
 import rx.Observable;
 import rx.Subscriber;
 import rx.android.schedulers.AndroidSchedulers;
@@ -76,33 +72,6 @@ public class CurrencyUIFeatures {
                 .show();
     }
 
-    /**
-     *
-     * @return Indicator whether the rate was successfully updated.
-     */
-    public boolean onPriceDownloaded(String symbol, Money price, Date date) {
-        // extract destination currency
-        String baseCurrencyCode = getService().getBaseCurrencyCode();
-        String destinationCurrency = symbol.replace(baseCurrencyCode, "");
-        destinationCurrency = destinationCurrency.replace("=X", "");
-        boolean success = false;
-
-        try {
-            // update exchange rate.
-            success = getService().saveExchangeRate(destinationCurrency, price);
-        } catch (Exception ex) {
-            Timber.e(ex, "saving exchange rate");
-        }
-
-        if (!success) {
-            String message = getContext().getString(R.string.error_update_currency_exchange_rate);
-            message += " " + destinationCurrency;
-
-            Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
-        }
-        return success;
-    }
-
     public void showDialogDeleteCurrency(final int currencyId, final int itemPosition) {
         UIHelper ui = new UIHelper(getContext());
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
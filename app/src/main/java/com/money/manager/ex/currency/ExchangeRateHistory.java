@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.utils.MmxDate;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable in-memory copy of the exchange rate history (CURRENCYHISTORY_V1), shared by all the
+ * CurrencyService instances. The rates of each currency are kept in arrays sorted by date, so
+ * that the rate on a date is found with a binary search.
+ * Loaded in one query on first use and replaced after the history changes.
+ */
+public class ExchangeRateHistory {
+
+    private static final String HISTORY_TABLE = "CURRENCYHISTORY_V1";
+
+    private static final AtomicReference<ExchangeRateHistory> current = new AtomicReference<>();
+    /** Incremented on each invalidation, so that a history loaded before it is not kept */
+    private static final AtomicInteger generation = new AtomicInteger();
+    private static volatile boolean listening;
+
+    private static final TableChangeFeed.Listener listener = new TableChangeFeed.Listener() {
+        @Override
+        public void onTablesChanged(Set<String> tables) {
+            if (tables.contains(HISTORY_TABLE)) {
+                invalidate();
+            }
+        }
+    };
+
+    public static ExchangeRateHistory get(Context context) {
+        ExchangeRateHistory history = current.get();
+        if (history != null) return history;
+
+        startListening();
+
+        int loadedGeneration = generation.get();
+        history = load(context);
+        if (generation.get() == loadedGeneration) {
+            current.compareAndSet(null, history);
+        }
+        return history;
+    }
+
+    /**
+     * Drops the current history. The next access loads it again.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        current.set(null);
+    }
+
+    static ExchangeRateHistory load(Context context) {
+        Builder builder = new Builder();
+
+        CurrencyHistoryRepository repository = new CurrencyHistoryRepository(context);
+        Cursor cursor = repository.openCursor(
+            new String[] { CurrencyHistory.CURRENCYID, CurrencyHistory.CURRDATE, CurrencyHistory.CURRVALUE },
+            null, null,
+            CurrencyHistory.CURRENCYID + ", " + CurrencyHistory.CURRDATE);
+        if (cursor == null) return builder.build();
+
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(0) || cursor.isNull(1) || cursor.isNull(2)) continue;
+
+                builder.add(cursor.getInt(0), cursor.getString(1), cursor.getDouble(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return builder.build();
+    }
+
+    private static void startListening() {
+        if (listening) return;
+
+        synchronized (ExchangeRateHistory.class) {
+            if (!listening) {
+                MmxContentProvider.getChangeFeed().addListener(listener);
+                listening = true;
+            }
+        }
+    }
+
+    /**
+     * @return The date as a yyyymmdd number, or -1 if it is not an ISO date (yyyy-MM-dd).
+     * The time part, if any, is ignored.
+     */
+    static int toDateKey(String isoDate) {
+        if (isoDate == null || isoDate.length() < 10) return -1;
+        if (isoDate.charAt(4) != '-' || isoDate.charAt(7) != '-') return -1;
+
+        int key = 0;
+        for (int i = 0; i < 10; i++) {
+            if (i == 4 || i == 7) continue;
+
+            char c = isoDate.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    private ExchangeRateHistory(int[][] dates, double[][] rates, int size) {
+        this.dates = dates;
+        this.rates = rates;
+        this.size = size;
+    }
+
+    /** The dates of the rates (yyyymmdd), ascending, by currency id */
+    private final int[][] dates;
+    /** The rates, in the order of the dates, by currency id */
+    private final double[][] rates;
+    private final int size;
+
+    /**
+     * @return The rate of the currency in effect on the date: the last rate on or before it.
+     * NaN if the currency has no rate up to that date.
+     */
+    public double getRate(int currencyId, String isoDate) {
+        if (currencyId < 0 || currencyId >= dates.length || dates[currencyId] == null) {
+            return Double.NaN;
+        }
+        int key = toDateKey(isoDate);
+        if (key < 0) return Double.NaN;
+
+        int index = Arrays.binarySearch(dates[currencyId], key);
+        if (index < 0) {
+            // the last date before the insertion point
+            index = -index - 2;
+        }
+        return index < 0 ? Double.NaN : rates[currencyId][index];
+    }
+
+    public double getRate(int currencyId, Date date) {
+        return getRate(currencyId, new MmxDate(date).toIsoDateString());
+    }
+
+    public boolean hasHistory(int currencyId) {
+        return currencyId >= 0 && currencyId < dates.length && dates[currencyId] != null;
+    }
+
+    /**
+     * @return The number of rates in the history.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Collects the rates, in any order, and arranges them by currency and date.
+     * Of multiple rates for the same currency and date, the last one added is kept.
+     */
+    public static class Builder {
+        private int count;
+        private int[] currencyIds = new int[64];
+        private int[] dateKeys = new int[64];
+        private double[] values = new double[64];
+
+        /**
+         * Adds a rate. The rates with a negative currency id or an invalid date are ignored.
+         */
+        public Builder add(int currencyId, String isoDate, double rate) {
+            int key = toDateKey(isoDate);
+            if (currencyId < 0 || key < 0) return this;
+
+            if (count == currencyIds.length) {
+                int capacity = count * 2;
+                currencyIds = Arrays.copyOf(currencyIds, capacity);
+                dateKeys = Arrays.copyOf(dateKeys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            currencyIds[count] = currencyId;
+            dateKeys[count] = key;
+            values[count] = rate;
+            count++;
+            return this;
+        }
+
+        public ExchangeRateHistory build() {
+            int maxId = -1;
+            for (int i = 0; i < count; i++) {
+                maxId = Math.max(maxId, currencyIds[i]);
+            }
+
+            int[] lengths = new int[maxId + 1];
+            for (int i = 0; i < count; i++) {
+                lengths[currencyIds[i]]++;
+            }
+
+            int[][] dates = new int[maxId + 1][];
+            double[][] rates = new double[maxId + 1][];
+            for (int id = 0; id <= maxId; id++) {
+                if (lengths[id] == 0) continue;
+                dates[id] = new int[lengths[id]];
+                rates[id] = new double[lengths[id]];
+            }
+
+            int[] filled = new int[maxId + 1];
+            boolean sorted = true;
+            for (int i = 0; i < count; i++) {
+                int id = currencyIds[i];
+                int position = filled[id]++;
+                dates[id][position] = dateKeys[i];
+                rates[id][position] = values[i];
+                if (position > 0 && dates[id][position - 1] >= dateKeys[i]) {
+                    sorted = false;
+                }
+            }
+
+            int size = count;
+            if (!sorted) {
+                // not in the order of the index
+                size = 0;
+                for (int id = 0; id <= maxId; id++) {
+                    if (dates[id] == null) continue;
+                    sortByDate(dates, rates, id);
+                    size += dates[id].length;
+                }
+            }
+            return new ExchangeRateHistory(dates, rates, size);
+        }
+
+        /**
+         * Sorts the rates of a currency by date, keeping the last added rate for each date.
+         */
+        private static void sortByDate(int[][] dates, double[][] rates, int id) {
+            int length = dates[id].length;
+            Integer[] order = new Integer[length];
+            for (int i = 0; i < length; i++) order[i] = i;
+            // stable: the rates for the same date stay in the order they were added.
+            Arrays.sort(order, (a, b) -> Integer.compare(dates[id][a], dates[id][b]));
+
+            int[] sortedDates = new int[length];
+            double[] sortedRates = new double[length];
+            int unique = 0;
+            for (int i = 0; i < length; i++) {
+                int date = dates[id][order[i]];
+                if (unique > 0 && sortedDates[unique - 1] == date) {
+                    unique--;
+                }
+                sortedDates[unique] = date;
+                sortedRates[unique] = rates[id][order[i]];
+                unique++;
+            }
+            dates[id] = Arrays.copyOf(sortedDates, unique);
+            rates[id] = Arrays.copyOf(sortedRates, unique);
+        }
+    }
+}
@@ -49,7 +49,6 @@ import com.money.manager.ex.currency.events.ExchangeRateUpdateConfirmedEvent;
 import com.money.manager.ex.datalayer.Select;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
-import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.utils.MmxDatabaseUtils;
 
@@ -332,12 +331,6 @@ public class CurrencyListFragment
         return result;
     }
 
-    @Subscribe
-    public void onEvent(PriceDownloadedEvent event) {
-        CurrencyUIFeatures ui = new CurrencyUIFeatures(getContext());
-        ui.onPriceDownloaded(event.symbol, event.price, event.date);
-    }
-
     @Subscribe
     public void onEvent(ExchangeRateUpdateConfirmedEvent event) {
         // proceed with rate update
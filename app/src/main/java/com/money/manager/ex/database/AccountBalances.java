@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Balance summary per account: the sum of the transactions and of the investments held in
+ * the account, in total and reconciled. The initial balance and the exchange rate are applied
+ * in query_account_bills.sql, so that the edits of the accounts and currencies do not affect
+ * this table.
+ * <p>
+ * The balances are maintained by applying the difference of each write to the affected
+ * accounts, in the same transaction as the write.
+ */
+public class AccountBalances
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "ACCOUNTBALANCES";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String TOTAL = "TOTAL";
+    public static final String RECONCILED = "RECONCILED";
+
+    private static final double TOLERANCE = 0.005;
+
+    /**
+     * The amounts the transactions contribute to the account balances, by account.
+     * %1$s is the filter on the transactions, %2$s the filter on the stocks.
+     */
+    private static final String MOVEMENTS = "SELECT ACCOUNTID, SUM(TOTAL) AS TOTAL, SUM(RECONCILED) AS RECONCILED FROM ("
+            + " SELECT ACCOUNTID,"
+            + "  CASE WHEN STATUS IN ('R', 'F', 'D', '') THEN AMOUNT ELSE 0 END AS TOTAL,"
+            + "  CASE WHEN STATUS = 'R' THEN AMOUNT ELSE 0 END AS RECONCILED"
+            + " FROM ("
+            + "  SELECT ACCOUNTID, STATUS,"
+            + "   CASE WHEN TRANSCODE = 'Deposit' THEN TRANSAMOUNT ELSE -TRANSAMOUNT END AS AMOUNT"
+            + "  FROM CHECKINGACCOUNT_V1"
+            + "  WHERE TRANSCODE IN ('Withdrawal', 'Deposit', 'Transfer')"
+            + "   AND (DELETEDTIME IS NULL OR DELETEDTIME = '') AND %1$s"
+            + "  UNION ALL"
+            + "  SELECT TOACCOUNTID AS ACCOUNTID, STATUS, TOTRANSAMOUNT AS AMOUNT"
+            + "  FROM CHECKINGACCOUNT_V1"
+            + "  WHERE TRANSCODE = 'Transfer' AND TOACCOUNTID <> -1"
+            + "   AND (DELETEDTIME IS NULL OR DELETEDTIME = '') AND %1$s"
+            + " )"
+            + " UNION ALL"
+            + " SELECT HELDAT AS ACCOUNTID, NUMSHARES * CURRENTPRICE AS TOTAL, NUMSHARES * CURRENTPRICE AS RECONCILED"
+            + " FROM STOCK_V1 WHERE %2$s"
+            + ") GROUP BY ACCOUNTID";
+
+    public AccountBalances() {
+        super(TABLE_NAME, "CHECKINGACCOUNT_V1", "STOCK_V1");
+    }
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + ACCOUNTID + " INTEGER PRIMARY KEY, "
+                + TOTAL + " numeric NOT NULL DEFAULT 0, "
+                + RECONCILED + " numeric NOT NULL DEFAULT 0)");
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (" + ACCOUNTID + ", " + TOTAL + ", " + RECONCILED + ") "
+                + movements("1 = 1", "1 = 1"));
+    }
+
+    @Override
+    public Map<String, String> getFallbackQueries() {
+        return Collections.singletonMap(TABLE_NAME, movements("1 = 1", "1 = 1"));
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        // remove the contribution of the rows as they were.
+        apply(db, table, rowIds, -1);
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        apply(db, table, rowIds, 1);
+    }
+
+    /**
+     * Compares the stored balances with the balances calculated from the transactions.
+     * @return True if all the balances match.
+     */
+    @Override
+    public boolean verify(SupportSQLiteDatabase db) {
+        Map<Long, double[]> expected = load(db, movements("1 = 1", "1 = 1"));
+        Map<Long, double[]> stored = load(db, "SELECT " + ACCOUNTID + ", " + TOTAL + ", " + RECONCILED
+                + " FROM " + TABLE_NAME);
+
+        for (Map.Entry<Long, double[]> entry : expected.entrySet()) {
+            double[] actual = stored.remove(entry.getKey());
+            if (actual == null) actual = new double[2];
+            if (!matches(entry.getValue(), actual)) {
+                Timber.w("balance of account %d differs: %f, stored %f",
+                        entry.getKey(), entry.getValue()[0], actual[0]);
+                return false;
+            }
+        }
+        // the remaining stored balances must be zero.
+        for (double[] actual : stored.values()) {
+            if (!matches(new double[2], actual)) return false;
+        }
+        return true;
+    }
+
+    private void apply(SupportSQLiteDatabase db, String table, long[] rowIds, int sign) {
+        if (rowIds.length == 0) return;
+
+        String inList = toInList(rowIds);
+        String sql;
+        switch (table.toUpperCase(Locale.ENGLISH)) {
+            case "CHECKINGACCOUNT_V1":
+                sql = movements("TRANSID IN " + inList, "0 = 1");
+                break;
+            case "STOCK_V1":
+                sql = movements("0 = 1", "STOCKID IN " + inList);
+                break;
+            default:
+                return;
+        }
+
+        Cursor cursor = db.query(sql);
+        try {
+            while (cursor.moveToNext()) {
+                long accountId = cursor.getLong(0);
+                db.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " (" + ACCOUNTID + ") VALUES (?)",
+                        new Object[] { accountId });
+                db.execSQL("UPDATE " + TABLE_NAME + " SET " + TOTAL + " = " + TOTAL + " + ?, "
+                                + RECONCILED + " = " + RECONCILED + " + ? WHERE " + ACCOUNTID + " = ?",
+                        new Object[] { sign * cursor.getDouble(1), sign * cursor.getDouble(2), accountId });
+            }
+        } finally {
+            cursor.close();
+        }
+        markChanged();
+    }
+
+    private static String movements(String transactionFilter, String stockFilter) {
+        return String.format(MOVEMENTS, "(" + transactionFilter + ")", "(" + stockFilter + ")");
+    }
+
+    private static Map<Long, double[]> load(SupportSQLiteDatabase db, String sql) {
+        Map<Long, double[]> result = new HashMap<>();
+        Cursor cursor = db.query(sql);
+        try {
+            while (cursor.moveToNext()) {
+                result.put(cursor.getLong(0), new double[] { cursor.getDouble(1), cursor.getDouble(2) });
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    private static boolean matches(double[] expected, double[] actual) {
+        return Math.abs(expected[0] - actual[0]) < TOLERANCE
+                && Math.abs(expected[1] - actual[1]) < TOLERANCE;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Monthly balance checkpoints per account: the sum of the account's (non-void) transactions
+ * up to the end of each month that has transactions. The initial balance of the account is
+ * not included.
+ * <p>
+ * The balance on any date is the last checkpoint before the month of the date plus the
+ * transactions of that month up to the date, see {@link #BALANCE_ON}.
+ * On writes, the checkpoints of the affected accounts are recalculated from the month of
+ * the modified transactions forward.
+ */
+public class BalanceCheckpoints
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "ACCOUNTCHECKPOINTS";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    /**
+     * The month, yyyy-MM.
+     */
+    public static final String PERIOD = "PERIOD";
+    public static final String BALANCE = "BALANCE";
+
+    private static final String ACTIVE = "STATUS <> 'V' AND (DELETEDTIME IS NULL OR DELETEDTIME = '')";
+
+    /**
+     * Movements of one account: the date and the amount of each transaction.
+     * Parameters: account id (twice).
+     */
+    private static final String ACCOUNT_MOVEMENTS = "SELECT TRANSDATE,"
+            + " CASE WHEN TRANSCODE = 'Deposit' THEN TRANSAMOUNT ELSE -TRANSAMOUNT END AS AMOUNT"
+            + " FROM CHECKINGACCOUNT_V1"
+            + " WHERE ACCOUNTID = ? AND TRANSCODE IN ('Withdrawal', 'Deposit', 'Transfer') AND " + ACTIVE
+            + " UNION ALL"
+            + " SELECT TRANSDATE, TOTRANSAMOUNT AS AMOUNT"
+            + " FROM CHECKINGACCOUNT_V1"
+            + " WHERE TOACCOUNTID = ? AND TRANSCODE = 'Transfer' AND " + ACTIVE;
+
+    /**
+     * Balance of an account on a date: the last checkpoint before the month plus the
+     * transactions in the month up to the date.
+     * Parameters: account id, month (yyyy-MM), account id, account id, first day of the month,
+     * day after the date (exclusive upper bound, so that the times on the date are included).
+     */
+    public static final String BALANCE_ON = "SELECT"
+            + " ifnull((SELECT " + BALANCE + " FROM " + TABLE_NAME
+            + "  WHERE " + ACCOUNTID + " = ? AND " + PERIOD + " < ?"
+            + "  ORDER BY " + PERIOD + " DESC LIMIT 1), 0)"
+            + " + ifnull((SELECT SUM(AMOUNT) FROM (" + ACCOUNT_MOVEMENTS + ")"
+            + "  WHERE TRANSDATE >= ? AND TRANSDATE < ?), 0) AS " + BALANCE;
+
+    /**
+     * Sums of the transactions per account and month.
+     * %1$s is the filter for the source accounts, %2$s for the destination accounts.
+     */
+    private static final String MONTHLY_MOVEMENTS = "SELECT ACCOUNTID, PERIOD, SUM(AMOUNT) AS AMOUNT FROM ("
+            + " SELECT ACCOUNTID, substr(TRANSDATE, 1, 7) AS PERIOD,"
+            + "  CASE WHEN TRANSCODE = 'Deposit' THEN TRANSAMOUNT ELSE -TRANSAMOUNT END AS AMOUNT"
+            + " FROM CHECKINGACCOUNT_V1"
+            + " WHERE TRANSCODE IN ('Withdrawal', 'Deposit', 'Transfer') AND " + ACTIVE + " AND %1$s"
+            + " UNION ALL"
+            + " SELECT TOACCOUNTID AS ACCOUNTID, substr(TRANSDATE, 1, 7) AS PERIOD, TOTRANSAMOUNT AS AMOUNT"
+            + " FROM CHECKINGACCOUNT_V1"
+            + " WHERE TRANSCODE = 'Transfer' AND TOACCOUNTID <> -1 AND " + ACTIVE + " AND %2$s"
+            + ") GROUP BY ACCOUNTID, PERIOD ORDER BY ACCOUNTID, PERIOD";
+
+    public BalanceCheckpoints() {
+        super(TABLE_NAME, "CHECKINGACCOUNT_V1");
+    }
+
+    /**
+     * The earliest modified month, by account, of the write in progress.
+     */
+    private final Map<Long, String> pendingAccounts = new HashMap<>();
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + ACCOUNTID + " INTEGER NOT NULL, "
+                + PERIOD + " TEXT NOT NULL, "
+                + BALANCE + " numeric NOT NULL, "
+                + "PRIMARY KEY (" + ACCOUNTID + ", " + PERIOD + "))");
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        insertCheckpoints(db, String.format(MONTHLY_MOVEMENTS, "1 = 1", "1 = 1"), 0);
+    }
+
+    /**
+     * The running sums of the monthly movements. Sums all the earlier months for each row.
+     */
+    @Override
+    public Map<String, String> getFallbackQueries() {
+        String movements = String.format(MONTHLY_MOVEMENTS, "1 = 1", "1 = 1");
+        return Collections.singletonMap(TABLE_NAME, "SELECT M." + ACCOUNTID + " AS " + ACCOUNTID
+                + ", M." + PERIOD + " AS " + PERIOD
+                + ", (SELECT TOTAL(P.AMOUNT) FROM (" + movements + ") P"
+                + "  WHERE P.ACCOUNTID = M.ACCOUNTID AND P.PERIOD <= M.PERIOD) AS " + BALANCE
+                + " FROM (" + movements + ") M");
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, rowIds);
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, rowIds);
+    }
+
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+        if (!pendingAccounts.isEmpty()) {
+            for (Map.Entry<Long, String> entry : pendingAccounts.entrySet()) {
+                recalculateFrom(db, entry.getKey(), entry.getValue());
+            }
+            pendingAccounts.clear();
+            markChanged();
+        }
+
+        super.onWriteCompleted(db);
+    }
+
+    /**
+     * Replaces the checkpoints of the account from the given month forward.
+     * @param period The first month to recalculate, yyyy-MM.
+     */
+    public void recalculateFrom(SupportSQLiteDatabase db, long accountId, String period) {
+        String previous = queryString(db, "SELECT " + BALANCE + " FROM " + TABLE_NAME
+                + " WHERE " + ACCOUNTID + " = ? AND " + PERIOD + " < ?"
+                + " ORDER BY " + PERIOD + " DESC LIMIT 1", accountId, period);
+        double balance = previous == null ? 0 : Double.parseDouble(previous);
+
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + ACCOUNTID + " = ? AND " + PERIOD + " >= ?",
+                new Object[] { accountId, period });
+
+        String fromDate = "TRANSDATE >= '" + period + "-01'";
+        insertCheckpoints(db, String.format(MONTHLY_MOVEMENTS,
+                "ACCOUNTID = " + accountId + " AND " + fromDate,
+                "TOACCOUNTID = " + accountId + " AND " + fromDate), balance);
+    }
+
+    /**
+     * Inserts the running sums of the monthly movements, ordered by account and month.
+     * @param openingBalance The balance before the first month, for each account.
+     */
+    private void insertCheckpoints(SupportSQLiteDatabase db, String monthlyMovements, double openingBalance) {
+        Cursor cursor = db.query(monthlyMovements);
+        try {
+            long accountId = 0;
+            double balance = 0;
+            boolean first = true;
+
+            while (cursor.moveToNext()) {
+                if (first || cursor.getLong(0) != accountId) {
+                    accountId = cursor.getLong(0);
+                    balance = openingBalance;
+                    first = false;
+                }
+                balance += cursor.getDouble(2);
+
+                db.execSQL("INSERT INTO " + TABLE_NAME + " (" + ACCOUNTID + ", " + PERIOD + ", " + BALANCE
+                        + ") VALUES (?, ?, ?)", new Object[] { accountId, cursor.getString(1), balance });
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void collectAffected(SupportSQLiteDatabase db, long[] rowIds) {
+        if (rowIds.length == 0) return;
+
+        Cursor cursor = db.query("SELECT ACCOUNTID, TOACCOUNTID, substr(TRANSDATE, 1, 7)"
+                + " FROM CHECKINGACCOUNT_V1 WHERE TRANSID IN " + toInList(rowIds));
+        try {
+            while (cursor.moveToNext()) {
+                String period = cursor.getString(2);
+                if (period == null) continue;
+
+                addPending(cursor.getLong(0), period);
+                if (!cursor.isNull(1) && cursor.getLong(1) != -1) {
+                    addPending(cursor.getLong(1), period);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void addPending(long accountId, String period) {
+        String current = pendingAccounts.get(accountId);
+        if (current == null || period.compareTo(current) < 0) {
+            pendingAccounts.put(accountId, period);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * The category hierarchy, materialized for the queries instead of the recursive CTE over
+ * CATEGORY_V1.
+ * <p>
+ * CATEGORYTREE holds one row per category with the full name and the pre-order numbering
+ * (LFT, RGT: the range of the descendants). CATEGORYCLOSURE holds a row for each
+ * ancestor/descendant pair, including the category itself at depth 0.
+ * The tables, and the in-memory {@link CategoryTreeSnapshot}, are rebuilt on the writes to
+ * CATEGORY_V1 only. The new snapshot is published once the rebuild is committed.
+ */
+public class CategoryTree
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "CATEGORYTREE";
+    public static final String CLOSURE_TABLE_NAME = "CATEGORYCLOSURE";
+
+    /**
+     * The categories reachable from the root categories, as in {@link CategoryTreeSnapshot}.
+     */
+    private static final String REACHABLE = "WITH RECURSIVE NODES(CATEGID, CATEGNAME, BASENAME, PARENTID,"
+            + " PARENTNAME, FULLCATID, ACTIVE, LEVEL) AS ("
+            + " SELECT CATEGID, CATEGNAME, CATEGNAME, -1, NULL, ':' || CATEGID || ':',"
+            + "  CASE WHEN ifnull(ACTIVE, 1) <> 0 THEN 1 ELSE 0 END, 1"
+            + " FROM CATEGORY_V1 WHERE ifnull(PARENTID, -1) = -1"
+            + " UNION ALL"
+            + " SELECT C.CATEGID, N.CATEGNAME || '" + CategoryTreeSnapshot.PATH_SEPARATOR + "' || C.CATEGNAME,"
+            + "  C.CATEGNAME, N.CATEGID, N.CATEGNAME, N.FULLCATID || C.CATEGID || ':',"
+            + "  CASE WHEN ifnull(C.ACTIVE, 1) <> 0 THEN 1 ELSE 0 END, N.LEVEL + 1"
+            + " FROM NODES N INNER JOIN CATEGORY_V1 C ON C.PARENTID = N.CATEGID AND C.CATEGID <> N.CATEGID)";
+
+    public CategoryTree() {
+        super(TABLE_NAME, "CATEGORY_V1");
+    }
+
+    private volatile CategoryTreeSnapshot snapshot;
+    /**
+     * Incremented whenever a new snapshot is published. Prevents a snapshot loaded
+     * concurrently with a rebuild from replacing the newer one.
+     */
+    private long generation = 0;
+    private boolean pendingRebuild = false;
+    /**
+     * Snapshot of a rebuild that is not committed yet.
+     */
+    private CategoryTreeSnapshot pendingSnapshot;
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "CATEGID INTEGER PRIMARY KEY, CATEGNAME TEXT, BASENAME TEXT, PARENTID integer, "
+                + "PARENTNAME TEXT, FULLCATID TEXT, ACTIVE integer, LEVEL integer, LFT integer, RGT integer)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + CLOSURE_TABLE_NAME + " ("
+                + "ANCESTORID integer NOT NULL, DESCENDANTID integer NOT NULL, DEPTH integer NOT NULL, "
+                + "PRIMARY KEY (ANCESTORID, DESCENDANTID))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_CATEGORYCLOSURE_DESCENDANTID ON "
+                + CLOSURE_TABLE_NAME + " (DESCENDANTID)");
+    }
+
+    /**
+     * The recursive queries over CATEGORY_V1. Without the pre-order numbering (LFT, RGT).
+     */
+    @Override
+    public Map<String, String> getFallbackQueries() {
+        Map<String, String> queries = new HashMap<>();
+        queries.put(TABLE_NAME, REACHABLE + " SELECT CATEGID, CATEGNAME, BASENAME, PARENTID, PARENTNAME,"
+                + " FULLCATID, ACTIVE, LEVEL, NULL AS LFT, NULL AS RGT FROM NODES");
+        queries.put(CLOSURE_TABLE_NAME, REACHABLE + ", PATHS(ANCESTORID, DESCENDANTID, DEPTH) AS ("
+                + " SELECT CATEGID, CATEGID, 0 FROM NODES"
+                + " UNION ALL"
+                + " SELECT P.ANCESTORID, C.CATEGID, P.DEPTH + 1"
+                + " FROM PATHS P INNER JOIN CATEGORY_V1 C ON C.PARENTID = P.DESCENDANTID AND C.CATEGID <> P.DESCENDANTID)"
+                + " SELECT ANCESTORID, DESCENDANTID, DEPTH FROM PATHS");
+        return queries;
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + CLOSURE_TABLE_NAME);
+
+        CategoryTreeSnapshot tree = CategoryTreeSnapshot.load(db);
+
+        SupportSQLiteStatement insertNode = db.compileStatement("INSERT INTO " + TABLE_NAME
+                + " (CATEGID, CATEGNAME, BASENAME, PARENTID, PARENTNAME, FULLCATID, ACTIVE, LEVEL, LFT, RGT)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        SupportSQLiteStatement insertPath = db.compileStatement("INSERT INTO " + CLOSURE_TABLE_NAME
+                + " (ANCESTORID, DESCENDANTID, DEPTH) VALUES (?, ?, ?)");
+        try {
+            String[] fullIds = new String[tree.size()];
+            for (int i = 0; i < tree.size(); i++) {
+                int parent = tree.getParentIndex(i);
+                fullIds[i] = (parent < 0 ? ":" : fullIds[parent]) + tree.getId(i) + ":";
+
+                insertNode.clearBindings();
+                insertNode.bindLong(1, tree.getId(i));
+                insertNode.bindString(2, tree.getFullPath(i));
+                insertNode.bindString(3, tree.getName(i));
+                if (parent < 0) {
+                    insertNode.bindLong(4, -1);
+                    // NULL, as in the recursive queries
+                    insertNode.bindNull(5);
+                } else {
+                    insertNode.bindLong(4, tree.getId(parent));
+                    insertNode.bindString(5, tree.getFullPath(parent));
+                }
+                insertNode.bindString(6, fullIds[i]);
+                insertNode.bindLong(7, tree.isActive(i) ? 1 : 0);
+                insertNode.bindLong(8, tree.getLevel(i));
+                insertNode.bindLong(9, i);
+                insertNode.bindLong(10, tree.getLastDescendantIndex(i));
+                insertNode.executeInsert();
+
+                int depth = 0;
+                for (int ancestor = i; ancestor >= 0; ancestor = tree.getParentIndex(ancestor)) {
+                    insertPath.bindLong(1, tree.getId(ancestor));
+                    insertPath.bindLong(2, tree.getId(i));
+                    insertPath.bindLong(3, depth++);
+                    insertPath.executeInsert();
+                }
+            }
+        } finally {
+            close(insertNode);
+            close(insertPath);
+        }
+
+        pendingSnapshot = tree;
+    }
+
+    /**
+     * Publishes the new snapshot right away when the rebuild is not part of a write.
+     */
+    @Override
+    public void rebuild(SupportSQLiteDatabase db) {
+        boolean inWrite = db.inTransaction();
+        try {
+            super.rebuild(db);
+        } catch (RuntimeException e) {
+            pendingSnapshot = null;
+            throw e;
+        }
+
+        if (!inWrite) {
+            onWriteEnded(true);
+        }
+    }
+
+    /**
+     * @param categoryIds The ids of the categories, as an IN (...) list.
+     * @return The query for the transactions using the given categories, or their descendants,
+     * directly or in the splits. Reads the closure, so it gives the tree before the rebuild.
+     */
+    public static String getTransactionsInCategories(String categoryIds) {
+        String categories = "CATEGID IN " + categoryIds + " OR CATEGID IN (SELECT DESCENDANTID FROM "
+                + CLOSURE_TABLE_NAME + " WHERE ANCESTORID IN " + categoryIds + ")";
+        return "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE " + categories
+                + " UNION SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE " + categories;
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        // the deleted categories
+        if (rowIds.length > 0) pendingRebuild = true;
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        if (rowIds.length > 0) pendingRebuild = true;
+    }
+
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+        if (pendingRebuild) {
+            pendingRebuild = false;
+            rebuild(db);
+            return;
+        }
+
+        super.onWriteCompleted(db);
+    }
+
+    @Override
+    public void onWriteEnded(boolean committed) {
+        CategoryTreeSnapshot tree = pendingSnapshot;
+        pendingSnapshot = null;
+        if (committed && tree != null) {
+            publish(tree);
+        }
+    }
+
+    /**
+     * @return The current category tree. Loaded on the first use and replaced on every
+     * rebuild of the table.
+     */
+    public CategoryTreeSnapshot getSnapshot(SupportSQLiteDatabase db) {
+        CategoryTreeSnapshot current = snapshot;
+        if (current != null) return current;
+
+        long loadedGeneration;
+        synchronized (this) {
+            loadedGeneration = generation;
+        }
+        current = CategoryTreeSnapshot.load(db);
+        synchronized (this) {
+            if (generation == loadedGeneration) {
+                snapshot = current;
+            }
+            return snapshot != null ? snapshot : current;
+        }
+    }
+
+    private synchronized void publish(CategoryTreeSnapshot tree) {
+        generation++;
+        snapshot = tree;
+    }
+
+    private static void close(SupportSQLiteStatement statement) {
+        try {
+            statement.close();
+        } catch (Exception e) {
+            Timber.e(e, "closing category tree statement");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.util.SparseIntArray;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable in-memory copy of the category hierarchy.
+ * <p>
+ * The categories are stored in parallel arrays in the pre-order (Euler tour) of the tree,
+ * children ordered by name, so that all the descendants of a category occupy the contiguous
+ * range [index, lastDescendant]. Only the categories reachable from the root categories
+ * (PARENTID = -1) are included, as in the recursive queries this replaces.
+ */
+public class CategoryTreeSnapshot {
+
+    public static final String PATH_SEPARATOR = ":";
+
+    /**
+     * Loads the snapshot from CATEGORY_V1.
+     */
+    public static CategoryTreeSnapshot load(SupportSQLiteDatabase db) {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> parentIds = new ArrayList<>();
+        List<Boolean> active = new ArrayList<>();
+
+        Cursor cursor = db.query("SELECT CATEGID, CATEGNAME, PARENTID, ACTIVE FROM CATEGORY_V1 ORDER BY CATEGNAME, CATEGID");
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+                names.add(cursor.getString(1));
+                parentIds.add(cursor.isNull(2) ? Constants.NOT_SET : cursor.getInt(2));
+                active.add(cursor.isNull(3) || cursor.getInt(3) != 0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return new CategoryTreeSnapshot(ids, names, parentIds, active);
+    }
+
+    CategoryTreeSnapshot(List<Integer> ids, List<String> names, List<Integer> parentIds, List<Boolean> active) {
+        int count = ids.size();
+
+        // children lists, in the (name) order of the input
+        SparseIntArray inputIndex = new SparseIntArray(count);
+        for (int i = 0; i < count; i++) {
+            inputIndex.put(ids.get(i), i);
+        }
+        int[] firstChild = new int[count];
+        int[] nextSibling = new int[count];
+        int[] lastChild = new int[count];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(lastChild, -1);
+        List<Integer> roots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int parentId = parentIds.get(i);
+            int parent = parentId == Constants.NOT_SET ? -1 : inputIndex.get(parentId, -1);
+            if (parentId == Constants.NOT_SET) {
+                roots.add(i);
+            } else if (parent >= 0 && parent != i) {
+                if (lastChild[parent] < 0) {
+                    firstChild[parent] = i;
+                } else {
+                    nextSibling[lastChild[parent]] = i;
+                }
+                lastChild[parent] = i;
+            }
+        }
+
+        // pre-order traversal with an explicit stack. A node is visited only once, which also
+        // excludes the cycles.
+        this.ids = new int[count];
+        this.names = new String[count];
+        this.fullPaths = new String[count];
+        this.parents = new int[count];
+        this.levels = new int[count];
+        this.lastDescendants = new int[count];
+        this.active = new boolean[count];
+        this.indexes = new SparseIntArray(count);
+
+        boolean[] visited = new boolean[count];
+        // the next child to visit, by input index
+        int[] nextChild = firstChild;
+        // input index of each position
+        int[] inputOf = new int[count];
+        // positions on the path from the root
+        int[] path = new int[count];
+        int size = 0;
+        for (int root : roots) {
+            visited[root] = true;
+            inputOf[size] = root;
+            visit(root, size, -1, ids, names, active);
+            path[0] = size++;
+
+            int depth = 0;
+            while (depth >= 0) {
+                int current = inputOf[path[depth]];
+                int next = nextChild[current];
+                while (next >= 0 && visited[next]) next = nextSibling[next];
+                if (next < 0) {
+                    lastDescendants[path[depth]] = size - 1;
+                    depth--;
+                    continue;
+                }
+                nextChild[current] = nextSibling[next];
+
+                visited[next] = true;
+                inputOf[size] = next;
+                visit(next, size, path[depth], ids, names, active);
+                depth++;
+                path[depth] = size++;
+            }
+        }
+        this.size = size;
+    }
+
+    private final int[] ids;
+    private final String[] names;
+    private final String[] fullPaths;
+    /**
+     * Position of the parent, -1 for the root categories.
+     */
+    private final int[] parents;
+    private final int[] levels;
+    /**
+     * Position of the last descendant, the end of the descendant range.
+     */
+    private final int[] lastDescendants;
+    private final boolean[] active;
+    /**
+     * Category id -> position.
+     */
+    private final SparseIntArray indexes;
+    private final int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int categoryId) {
+        return indexes.get(categoryId, -1) >= 0;
+    }
+
+    /**
+     * @return The position of the category in the pre-order, or -1 if not in the tree.
+     */
+    public int indexOf(int categoryId) {
+        return indexes.get(categoryId, -1);
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return The full name of the category, i.e. Parent:Child, as in the queries.
+     */
+    public String getFullPath(int index) {
+        return fullPaths[index];
+    }
+
+    /**
+     * @return The position of the parent category, or -1 for the root categories.
+     */
+    public int getParentIndex(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @return The level of the category, 1 for the root categories.
+     */
+    public int getLevel(int index) {
+        return levels[index];
+    }
+
+    public int getLastDescendantIndex(int index) {
+        return lastDescendants[index];
+    }
+
+    public boolean isActive(int index) {
+        return active[index];
+    }
+
+    /**
+     * @return The full name of the category with the given separator between the levels, or
+     * null if the category is not in the tree.
+     */
+    public String getFullPath(int categoryId, String separator) {
+        int index = indexOf(categoryId);
+        if (index < 0) return null;
+        if (PATH_SEPARATOR.equals(separator)) return fullPaths[index];
+
+        StringBuilder path = new StringBuilder(names[index]);
+        for (int parent = parents[index]; parent >= 0; parent = parents[parent]) {
+            path.insert(0, separator).insert(0, names[parent]);
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return True if the category is the ancestor itself or one of its descendants.
+     */
+    public boolean isDescendantOf(int categoryId, int ancestorId) {
+        int index = indexOf(categoryId);
+        int ancestor = indexOf(ancestorId);
+        if (index < 0 || ancestor < 0) return false;
+
+        return index >= ancestor && index <= lastDescendants[ancestor];
+    }
+
+    /**
+     * @return The ids of the category and all its descendants, in the tree order.
+     */
+    public int[] getDescendantIds(int categoryId) {
+        int index = indexOf(categoryId);
+        if (index < 0) return new int[0];
+
+        int[] result = new int[lastDescendants[index] - index + 1];
+        System.arraycopy(ids, index, result, 0, result.length);
+        return result;
+    }
+
+    private void visit(int input, int position, int parent,
+                       List<Integer> inputIds, List<String> inputNames, List<Boolean> inputActive) {
+        ids[position] = inputIds.get(input);
+        names[position] = inputNames.get(input);
+        parents[position] = parent;
+        levels[position] = parent < 0 ? 1 : levels[parent] + 1;
+        fullPaths[position] = parent < 0
+                ? names[position]
+                : fullPaths[parent] + PATH_SEPARATOR + names[position];
+        active[position] = inputActive.get(input);
+        lastDescendants[position] = position;
+        indexes.put(ids[position], position);
+    }
+}
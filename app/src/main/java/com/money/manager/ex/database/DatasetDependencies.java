@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the base tables read by each dataset. Tells which datasets, and so which loaders
+ * showing them, are affected by the writes to a set of tables.
+ * <p>
+ * The tables of the queries and views are found in their SQL. A derived table read by a query
+ * stands for the base tables it is calculated from, as it is maintained in the same transaction
+ * as the writes to those. The raw SQL dataset can read any table.
+ */
+public class DatasetDependencies {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    public DatasetDependencies(List<Dataset> datasets, List<DerivedTable> derivedTables) {
+        Set<String> baseTables = new HashSet<>();
+        for (Dataset dataset : datasets) {
+            if (dataset.getType() == DatasetType.TABLE) {
+                baseTables.add(normalize(dataset.getSource()));
+            }
+        }
+        Map<String, String[]> derived = new HashMap<>();
+        for (DerivedTable table : derivedTables) {
+            derived.put(normalize(table.getName()), table.getSourceTables());
+        }
+
+        for (Dataset dataset : datasets) {
+            switch (dataset.getType()) {
+                case TABLE:
+                    register(dataset, Collections.singleton(dataset.getSource()));
+                    break;
+                case QUERY:
+                case VIEW:
+                    register(dataset, findTables(dataset.getSource(), baseTables, derived));
+                    break;
+                default:
+                    register(dataset, null);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Base tables by dataset. A null set means any table.
+     */
+    private final Map<Dataset, Set<String>> tables = new HashMap<>();
+
+    /**
+     * @param dataset Dataset.
+     * @param tables  Base tables read by the dataset, null if it can read any table.
+     */
+    public void register(Dataset dataset, Set<String> tables) {
+        if (tables == null) {
+            this.tables.put(dataset, null);
+            return;
+        }
+
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(normalize(table));
+        }
+        this.tables.put(dataset, Collections.unmodifiableSet(names));
+    }
+
+    /**
+     * @return The base tables read by the dataset, null if it can read any table or is not
+     * registered.
+     */
+    public Set<String> getTables(Dataset dataset) {
+        return tables.get(dataset);
+    }
+
+    /**
+     * @param dataset       Dataset.
+     * @param changedTables Names of the tables written, in upper case.
+     * @return Indicator whether the data of the dataset may have been changed by the writes.
+     */
+    public boolean isAffected(Dataset dataset, Set<String> changedTables) {
+        Set<String> read = tables.get(dataset);
+        if (read == null) return true;
+
+        for (String table : changedTables) {
+            if (read.contains(table)) return true;
+        }
+        return false;
+    }
+
+    public List<Dataset> getAffected(Set<String> changedTables) {
+        List<Dataset> affected = new ArrayList<>();
+        for (Dataset dataset : tables.keySet()) {
+            if (isAffected(dataset, changedTables)) {
+                affected.add(dataset);
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Finds the tables referenced in the SQL.
+     * @param sql           Source of a query or view.
+     * @param baseTables    Names of the base tables, in upper case.
+     * @param derivedTables Source tables of the derived tables, by name in upper case.
+     * @return The base tables read, directly or through the derived tables.
+     */
+    public static Set<String> findTables(String sql, Set<String> baseTables, Map<String, String[]> derivedTables) {
+        Set<String> result = new HashSet<>();
+        if (TextUtils.isEmpty(sql)) return result;
+
+        Matcher matcher = IDENTIFIER.matcher(sql);
+        while (matcher.find()) {
+            String name = normalize(matcher.group());
+            if (baseTables.contains(name)) {
+                result.add(name);
+            }
+            String[] sources = derivedTables.get(name);
+            if (sources != null) {
+                for (String source : sources) {
+                    result.add(normalize(source));
+                }
+            }
+        }
+        return result;
+    }
+
+    public static String normalize(String table) {
+        return table.toUpperCase(Locale.ENGLISH);
+    }
+}
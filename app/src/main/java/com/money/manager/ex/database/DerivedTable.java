@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import timber.log.Timber;
+
+/**
+ * Base for the tables that hold data derived from the base (MMEX) tables.
+ * <p>
+ * The derived tables are not part of the MMEX schema. They are maintained incrementally on
+ * the writes made through the content provider and rebuilt from the base tables when the
+ * database has been changed elsewhere (i.e. by the desktop application). The changes made
+ * elsewhere are detected with a fingerprint of the source tables, stored in DERIVED_INFO.
+ * <p>
+ * Computing the fingerprint reads the whole source tables, so it is not done on every write.
+ * It is checked in the background once the database is opened ({@link #ensureCurrent}), and
+ * stored by {@link #storeFingerprintIfChanged}, which the open helper calls before the database
+ * file is closed or handed over (sync). If the application is stopped before that, the table is
+ * rebuilt on the next open.
+ * <p>
+ * Until the table has been checked, the readers use the equivalent queries on the base tables
+ * ({@link #getFallbackQueries}) in its place.
+ */
+public abstract class DerivedTable
+    implements ITableWriteObserver {
+
+    public static final String INFO_TABLE = "DERIVED_INFO";
+
+    /**
+     * 64-bit FNV-1a, for the checksums of the rows.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Keywords that can follow a table name in the FROM clause, when the table has no alias.
+     */
+    private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList("WHERE", "ON",
+            "USING", "JOIN", "LEFT", "INNER", "CROSS", "NATURAL", "OUTER", "GROUP", "HAVING",
+            "ORDER", "LIMIT", "UNION", "EXCEPT", "INTERSECT", "WINDOW", "INDEXED", "NOT"));
+
+    /**
+     * Primary key (rowid alias) of the observed tables.
+     */
+    private static final Map<String, String> KEY_COLUMNS = new HashMap<>();
+
+    static {
+        KEY_COLUMNS.put("CHECKINGACCOUNT_V1", "TRANSID");
+        KEY_COLUMNS.put("SPLITTRANSACTIONS_V1", "SPLITTRANSID");
+        KEY_COLUMNS.put("CATEGORY_V1", "CATEGID");
+        KEY_COLUMNS.put("PAYEE_V1", "PAYEEID");
+        KEY_COLUMNS.put("ACCOUNTLIST_V1", "ACCOUNTID");
+        KEY_COLUMNS.put("CURRENCYFORMATS_V1", "CURRENCYID");
+        KEY_COLUMNS.put("CURRENCYHISTORY_V1", "CURRHISTID");
+        KEY_COLUMNS.put("STOCK_V1", "STOCKID");
+    }
+
+    /**
+     * @return The primary key column of the table, or null if not known.
+     */
+    public static String getKeyColumn(String table) {
+        return KEY_COLUMNS.get(table.toUpperCase(Locale.ENGLISH));
+    }
+
+    protected DerivedTable(String name, String... sourceTables) {
+        this.name = name;
+        this.sourceTables = sourceTables;
+    }
+
+    private final String name;
+    private final String[] sourceTables;
+    /**
+     * The derived data has been changed since the fingerprint was stored.
+     */
+    private volatile boolean fingerprintOutdated = false;
+    /**
+     * The table has been checked against the base tables, or rebuilt, since it was opened.
+     */
+    private volatile boolean current = false;
+    private volatile RuntimeException error;
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getSourceTables() {
+        return sourceTables;
+    }
+
+    /**
+     * @return True once the table has been checked against the base tables, see
+     * {@link #ensureCurrent}. Until then the readers use {@link #getFallbackQueries}.
+     */
+    public boolean isCurrent() {
+        return current;
+    }
+
+    /**
+     * @return The failure of the last check of the table, null if it succeeded.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * @return The queries calculating the content of the tables from the base tables, by table
+     * name. Empty if the table can not be replaced by a query.
+     */
+    public Map<String, String> getFallbackQueries() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Version of the derived table structure/content. Increase to force a rebuild.
+     */
+    protected abstract int getVersion();
+
+    /**
+     * Creates the table and its indexes, if they do not exist.
+     */
+    protected abstract void createSchema(SupportSQLiteDatabase db);
+
+    /**
+     * Drops the table, when its version has changed. The indexes are dropped with it.
+     */
+    protected void dropSchema(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + name);
+    }
+
+    /**
+     * Fills the table from the base tables.
+     */
+    protected abstract void fill(SupportSQLiteDatabase db);
+
+    @Override
+    public boolean isObserving(String table) {
+        for (String source : sourceTables) {
+            if (source.equalsIgnoreCase(table)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The fingerprint is not updated here, see {@link #storeFingerprintIfChanged}.
+     */
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+    }
+
+    @Override
+    public void onWriteEnded(boolean committed) {
+    }
+
+    /**
+     * Stores the fingerprint of the source tables, if the derived data has been changed since
+     * it was last stored. To be called in a write transaction, so that no write runs between
+     * the fingerprint and the data it describes. Nothing is stored before the table is current,
+     * as the fingerprint would hide the changes made elsewhere.
+     */
+    public void storeFingerprintIfChanged(SupportSQLiteDatabase db) {
+        if (!fingerprintOutdated || !current) return;
+
+        storeFingerprint(db);
+    }
+
+    /**
+     * Creates the table if needed, and recreates it if its version has changed. Called when
+     * the database is opened; the content is checked later, by {@link #ensureCurrent}.
+     */
+    public void ensureSchema(SupportSQLiteDatabase db) {
+        current = false;
+
+        createInfoTable(db);
+
+        String stored = getInfo(db, name);
+        if (stored != null && !stored.startsWith(getVersion() + "|")) {
+            // the structure may have changed with the version.
+            Timber.d("%s has a new version, recreating", name);
+            dropSchema(db);
+        }
+        createSchema(db);
+    }
+
+    /**
+     * Creates the table if needed and rebuilds it if the base tables have been changed outside
+     * of the content provider. Reads the whole source tables: called in the background once
+     * the database is opened.
+     * @throws RuntimeException if the table could not be checked or rebuilt. The failure is
+     * also kept, see {@link #getError()}, and the table is not current.
+     */
+    public void ensureCurrent(SupportSQLiteDatabase db) {
+        try {
+            ensureSchema(db);
+
+            if (!computeFingerprint(db).equals(getInfo(db, name))) {
+                Timber.d("%s is out of date, rebuilding", name);
+                rebuild(db);
+            }
+            error = null;
+            current = true;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the derived data against the base tables.
+     * The default implementation only compares the fingerprint of the source tables, after
+     * storing the one for the incremental changes made in this session.
+     * @return True if the derived data is consistent.
+     */
+    public boolean verify(SupportSQLiteDatabase db) {
+        storeFingerprintIfChanged(db);
+        return computeFingerprint(db).equals(getInfo(db, name));
+    }
+
+    /**
+     * Verifies the table and rebuilds it if it is not consistent.
+     * @return True if the table was consistent, false if it had to be rebuilt.
+     */
+    public boolean verifyOrRebuild(SupportSQLiteDatabase db) {
+        if (verify(db)) return true;
+
+        Timber.w("%s is not consistent with the base tables, rebuilding", name);
+        rebuild(db);
+        return false;
+    }
+
+    /**
+     * Rebuilds the whole table from the base tables. The table is current afterwards.
+     */
+    public void rebuild(SupportSQLiteDatabase db) {
+        long start = System.nanoTime();
+
+        db.beginTransaction();
+        try {
+            createInfoTable(db);
+            createSchema(db);
+            db.execSQL("DELETE FROM " + name);
+            fill(db);
+            storeFingerprint(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        current = true;
+
+        Timber.d("%s rebuilt in %d ms", name, (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * To be called by the subclasses whenever the derived data is changed incrementally.
+     */
+    protected void markChanged() {
+        fingerprintOutdated = true;
+    }
+
+    protected String computeFingerprint(SupportSQLiteDatabase db) {
+        StringBuilder fingerprint = new StringBuilder().append(getVersion());
+
+        for (String table : sourceTables) {
+            fingerprint.append('|').append(computeChecksum(db, table));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Checksum of the content of a table: the number of rows and the sum of a hash of each
+     * row, over all the columns. Independent of the order of the rows, and changed by any
+     * update of a value, i.e. a rename that keeps the length of the name.
+     */
+    static String computeChecksum(SupportSQLiteDatabase db, String table) {
+        long rows = 0;
+        long sum = 0;
+
+        Cursor cursor = db.query("SELECT * FROM " + table);
+        try {
+            int columns = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                long hash = FNV_OFFSET_BASIS;
+                for (int i = 0; i < columns; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            hash = hash(hash, 0);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            for (byte b : cursor.getBlob(i)) hash = hash(hash, b);
+                            break;
+                        default:
+                            String value = cursor.getString(i);
+                            for (int c = 0; c < value.length(); c++) hash = hash(hash, value.charAt(c));
+                            break;
+                    }
+                    // separates the values, so that "ab", "c" differs from "a", "bc".
+                    hash = hash(hash, 0xffff);
+                }
+                sum += hash;
+                rows++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows + ":" + Long.toHexString(sum);
+    }
+
+    private static long hash(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    protected static String queryString(SupportSQLiteDatabase db, String sql, Object... args) {
+        Cursor cursor = db.query(sql, args);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Replaces the table in the FROM and JOIN clauses of the query with the given subquery,
+     * keeping the table name as the alias when the query does not give one.
+     */
+    public static String replaceTable(String sql, String table, String subquery) {
+        Matcher matcher = Pattern.compile("\\b(FROM|JOIN)\\s+" + table + "\\b(\\s+(AS\\s+)?(\\w+))?",
+                Pattern.CASE_INSENSITIVE).matcher(sql);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String next = matcher.group(4);
+            boolean aliased = next != null && (matcher.group(3) != null
+                    || !CLAUSE_KEYWORDS.contains(next.toUpperCase(Locale.ENGLISH)));
+
+            String replacement = matcher.group(1) + " (" + subquery + ")";
+            if (aliased) {
+                replacement += matcher.group(2);
+            } else {
+                replacement += " " + table + (next != null ? matcher.group(2) : "");
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Formats the ids for an IN (...) list.
+     */
+    protected static String toInList(long[] ids) {
+        String list = Arrays.toString(ids);
+        return "(" + list.substring(1, list.length() - 1) + ")";
+    }
+
+    private void storeFingerprint(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR REPLACE INTO " + INFO_TABLE + " (NAME, VALUE) VALUES (?, ?)",
+                new Object[] { name, computeFingerprint(db) });
+        fingerprintOutdated = false;
+    }
+
+    private static void createInfoTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + INFO_TABLE + " (NAME TEXT PRIMARY KEY, VALUE TEXT)");
+    }
+
+    private static String getInfo(SupportSQLiteDatabase db, String key) {
+        return queryString(db, "SELECT VALUE FROM " + INFO_TABLE + " WHERE NAME = ?", key);
+    }
+}
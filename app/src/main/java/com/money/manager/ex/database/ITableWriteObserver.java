@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Receives the writes made through the content provider, inside the write transaction.
+ * Used to keep the derived data (summary tables, indexes) consistent with the base tables.
+ */
+public interface ITableWriteObserver {
+    /**
+     * @param table Name of the table being written.
+     * @return Indicator whether the observer wants to receive the writes to the table.
+     */
+    boolean isObserving(String table);
+
+    /**
+     * Called before the rows are changed.
+     * @param table  Table being written.
+     * @param rowIds Rows that are about to be updated or deleted. Empty for inserts.
+     */
+    void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds);
+
+    /**
+     * Called after the rows have been changed.
+     * @param table  Table being written.
+     * @param rowIds Rows that have been inserted or updated. Empty for deletes.
+     */
+    void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds);
+
+    /**
+     * Called once the write, or the whole batch of writes, is complete. Still inside the
+     * write transaction.
+     */
+    void onWriteCompleted(SupportSQLiteDatabase db);
+
+    /**
+     * Called once the write transaction, or the whole batch, has ended. Outside of the
+     * transaction, so the changes are visible to the other connections if committed.
+     * @param committed False if the transaction was rolled back.
+     */
+    void onWriteEnded(boolean committed);
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Monthly income/expense rollup: the sum of the postings by year, month, account, currency
+ * and transaction type, in the currency of the account. The postings with a historical rate
+ * are also summed in the base currency; the others are converted at the current rate in
+ * report_income_vs_expenses.sql, so that the exchange rate updates do not affect the rollup.
+ * <p>
+ * Calculated from {@link LedgerPostings}, which must be maintained before this table.
+ * On writes, the affected months are recalculated. Of the account changes, only the currency
+ * affects the rollup.
+ */
+public class IncomeExpenseRollup
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "INCOMEEXPENSEROLLUP";
+    public static final String YEAR = "YEAR";
+    public static final String MONTH = "MONTH";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String CURRENCYID = "CURRENCYID";
+    public static final String TRANSACTIONTYPE = "TRANSACTIONTYPE";
+    public static final String AMOUNT = "AMOUNT";
+    /**
+     * Sum of the postings with a historical rate, in the base currency.
+     */
+    public static final String HISTORICALAMOUNT = "HISTORICALAMOUNT";
+    /**
+     * Sum of the postings without a historical rate, in the currency of the account.
+     */
+    public static final String CURRENTRATEAMOUNT = "CURRENTRATEAMOUNT";
+
+    private static final String COLUMNS = YEAR + ", " + MONTH + ", " + ACCOUNTID + ", " + CURRENCYID
+            + ", " + TRANSACTIONTYPE + ", " + AMOUNT + ", " + HISTORICALAMOUNT + ", " + CURRENTRATEAMOUNT;
+
+    /**
+     * Same selection as the original report over the mobile data.
+     */
+    private static final String ROLLUP = "SELECT year AS " + YEAR + ", month AS " + MONTH
+            + ", AccountID AS " + ACCOUNTID + ", CurrencyID AS " + CURRENCYID
+            + ", TransactionType AS " + TRANSACTIONTYPE + ", SUM(Amount) AS " + AMOUNT
+            + ", TOTAL(Amount * HistoryRate) AS " + HISTORICALAMOUNT
+            + ", TOTAL(CASE WHEN HistoryRate IS NULL THEN Amount END) AS " + CURRENTRATEAMOUNT
+            + " FROM " + LedgerPostings.TABLE_NAME
+            + " WHERE NOT (Status = 'V')"
+            + "  AND NOT (ToAccountID = 32702 AND lower(TransactionType) IN ('deposit', 'withdrawal'))"
+            + "  AND %s"
+            + " GROUP BY year, month, AccountID, CurrencyID, TransactionType";
+
+    public IncomeExpenseRollup() {
+        super(TABLE_NAME, "CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1", "ACCOUNTLIST_V1",
+                "CURRENCYHISTORY_V1");
+    }
+
+    /**
+     * Months affected by the write in progress, as year * 100 + month.
+     */
+    private final Set<Integer> pendingMonths = new HashSet<>();
+    /**
+     * Currency of the accounts being written, as before the write, by account id.
+     */
+    private final Map<Long, Long> pendingAccounts = new HashMap<>();
+    private boolean pendingRebuild = false;
+
+    @Override
+    protected int getVersion() {
+        return 2;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + YEAR + " integer, " + MONTH + " integer, " + ACCOUNTID + " integer, "
+                + CURRENCYID + " integer, " + TRANSACTIONTYPE + " TEXT, " + AMOUNT + " numeric, "
+                + HISTORICALAMOUNT + " numeric, " + CURRENTRATEAMOUNT + " numeric)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_INCOMEEXPENSEROLLUP_YEAR_MONTH ON "
+                + TABLE_NAME + " (" + YEAR + ", " + MONTH + ")");
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMNS + ") " + String.format(ROLLUP, "1 = 1"));
+    }
+
+    @Override
+    public Map<String, String> getFallbackQueries() {
+        return Collections.singletonMap(TABLE_NAME, String.format(ROLLUP, "1 = 1"));
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        if (isAccounts(table)) {
+            collectAccounts(db, rowIds);
+            return;
+        }
+        collectAffected(db, table, rowIds);
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        // the accounts are compared once the write is complete, see collectCurrencyChanges.
+        if (isAccounts(table)) return;
+
+        collectAffected(db, table, rowIds);
+    }
+
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+        if (pendingRebuild) {
+            pendingRebuild = false;
+            pendingMonths.clear();
+            pendingAccounts.clear();
+            rebuild(db);
+            return;
+        }
+
+        collectCurrencyChanges(db);
+
+        if (!pendingMonths.isEmpty()) {
+            for (int key : pendingMonths) {
+                recalculateMonth(db, key / 100, key % 100);
+            }
+            pendingMonths.clear();
+            markChanged();
+        }
+
+        super.onWriteCompleted(db);
+    }
+
+    public void recalculateMonth(SupportSQLiteDatabase db, int year, int month) {
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + YEAR + " = ? AND " + MONTH + " = ?",
+                new Object[] { year, month });
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMNS + ") "
+                        + String.format(ROLLUP, "year = ? AND month = ?"),
+                new Object[] { year, month });
+    }
+
+    private void collectAffected(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        if (rowIds.length == 0) return;
+
+        String inList = toInList(rowIds);
+        String transactions;
+        switch (table.toUpperCase(Locale.ENGLISH)) {
+            case "CHECKINGACCOUNT_V1":
+                transactions = inList;
+                break;
+            case "SPLITTRANSACTIONS_V1":
+                transactions = "(SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE SPLITTRANSID IN " + inList + ")";
+                break;
+            case "CURRENCYHISTORY_V1":
+                transactions = "(" + LedgerPostings.getTransactionsForRates(inList) + ")";
+                break;
+            default:
+                pendingRebuild = true;
+                return;
+        }
+
+        collectMonths(db, "TRANSID IN " + transactions);
+    }
+
+    private static boolean isAccounts(String table) {
+        return "ACCOUNTLIST_V1".equalsIgnoreCase(table);
+    }
+
+    /**
+     * Keeps the currency of the accounts about to be updated or deleted. New accounts have no
+     * transactions yet.
+     */
+    private void collectAccounts(SupportSQLiteDatabase db, long[] rowIds) {
+        if (rowIds.length == 0) return;
+
+        Cursor cursor = db.query("SELECT ACCOUNTID, CURRENCYID FROM ACCOUNTLIST_V1 WHERE ACCOUNTID IN "
+                + toInList(rowIds));
+        try {
+            while (cursor.moveToNext()) {
+                if (pendingAccounts.containsKey(cursor.getLong(0))) continue;
+                pendingAccounts.put(cursor.getLong(0), cursor.isNull(1) ? null : cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Collects the months of the accounts whose currency has changed, or which were deleted.
+     */
+    private void collectCurrencyChanges(SupportSQLiteDatabase db) {
+        if (pendingAccounts.isEmpty()) return;
+
+        long[] ids = new long[pendingAccounts.size()];
+        int i = 0;
+        for (Long id : pendingAccounts.keySet()) ids[i++] = id;
+
+        Map<Long, Long> current = new HashMap<>();
+        Cursor cursor = db.query("SELECT ACCOUNTID, CURRENCYID FROM ACCOUNTLIST_V1 WHERE ACCOUNTID IN "
+                + toInList(ids));
+        try {
+            while (cursor.moveToNext()) {
+                current.put(cursor.getLong(0), cursor.isNull(1) ? null : cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Set<Long> changed = new HashSet<>();
+        for (Map.Entry<Long, Long> account : pendingAccounts.entrySet()) {
+            if (!current.containsKey(account.getKey())
+                    || !Objects.equals(account.getValue(), current.get(account.getKey()))) {
+                changed.add(account.getKey());
+            }
+        }
+        pendingAccounts.clear();
+        if (changed.isEmpty()) return;
+
+        ids = new long[changed.size()];
+        i = 0;
+        for (Long id : changed) ids[i++] = id;
+        collectMonths(db, "ACCOUNTID IN " + toInList(ids));
+    }
+
+    private void collectMonths(SupportSQLiteDatabase db, String transactionFilter) {
+        Cursor cursor = db.query("SELECT DISTINCT CAST(strftime('%Y', TRANSDATE) AS INTEGER) * 100"
+                + " + CAST(strftime('%m', TRANSDATE) AS INTEGER)"
+                + " FROM CHECKINGACCOUNT_V1 WHERE " + transactionFilter);
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(0)) continue;
+                pendingMonths.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import timber.log.Timber;
+
+/**
+ * Cursor that measures the time spent in the database for a query. SQLite runs the query when
+ * the cursor window is filled, on the first move or count and again when moving outside of
+ * the window, so the time of those calls is added to the time of the query. The statistics
+ * are recorded when the cursor is closed.
+ */
+public class InstrumentedCursor
+    extends CursorWrapper {
+
+    public InstrumentedCursor(Cursor cursor, QueryStatistics statistics, SupportSQLiteDatabase db,
+                              String dataset, String sql, Object[] args, long queryNanos) {
+        super(cursor);
+
+        this.statistics = statistics;
+        this.db = db;
+        this.dataset = dataset;
+        this.sql = sql;
+        this.args = args;
+        this.nanos = queryNanos;
+    }
+
+    private final QueryStatistics statistics;
+    private final SupportSQLiteDatabase db;
+    private final String dataset;
+    private final String sql;
+    private final Object[] args;
+    private long nanos;
+    private boolean executed;
+    private boolean recorded;
+
+    @Override
+    public int getCount() {
+        long start = System.nanoTime();
+        try {
+            return super.getCount();
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean move(int offset) {
+        long start = System.nanoTime();
+        try {
+            return super.move(offset);
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        long start = System.nanoTime();
+        try {
+            return super.moveToPosition(position);
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        long start = System.nanoTime();
+        try {
+            return super.moveToFirst();
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean moveToLast() {
+        long start = System.nanoTime();
+        try {
+            return super.moveToLast();
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean moveToNext() {
+        long start = System.nanoTime();
+        try {
+            return super.moveToNext();
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        long start = System.nanoTime();
+        try {
+            return super.moveToPrevious();
+        } finally {
+            addTime(start);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!recorded) {
+            recorded = true;
+            try {
+                record();
+            } catch (Exception e) {
+                Timber.e(e, "recording query statistics");
+            }
+        }
+        super.close();
+    }
+
+    private void addTime(long start) {
+        nanos += System.nanoTime() - start;
+        executed = true;
+    }
+
+    private void record() {
+        // the count is known once the cursor has been used; asking before would run the query.
+        long rows = executed ? super.getCount() : 0;
+        long windowBytes = getWindowBytes();
+
+        statistics.record(dataset, QueryStatistics.Operation.QUERY, nanos, rows, windowBytes);
+
+        if (statistics.isSlow(nanos)) {
+            String plan;
+            try {
+                plan = QueryStatistics.explain(db, sql, args);
+            } catch (Exception e) {
+                plan = e.getMessage();
+            }
+            statistics.recordSlowQuery(new QueryStatistics.SlowQuery(dataset, QueryStatistics.Operation.QUERY,
+                    sql, args, nanos, rows, plan));
+        }
+    }
+
+    /**
+     * @return An estimate of the bytes used in the current window: the cell slots and the
+     * values of the text and blob columns.
+     */
+    private long getWindowBytes() {
+        Cursor cursor = getWrappedCursor();
+        if (!(cursor instanceof AbstractWindowedCursor)) return 0;
+
+        CursorWindow window = ((AbstractWindowedCursor) cursor).getWindow();
+        if (window == null) return 0;
+
+        int first = window.getStartPosition();
+        int rows = window.getNumRows();
+        int columns = cursor.getColumnCount();
+        long bytes = (long) rows * columns * 16;
+        for (int row = first; row < first + rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                switch (window.getType(row, column)) {
+                    case Cursor.FIELD_TYPE_STRING:
+                        bytes += window.getString(row, column).length();
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        bytes += window.getBlob(row, column).length;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+/**
+ * Histogram of durations with logarithmic buckets: four buckets per doubling, from one
+ * microsecond to about two minutes. The percentiles are the upper bounds of the buckets, so
+ * they are at most 19% above the exact values. Not thread-safe.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKETS = 27 * BUCKETS_PER_DOUBLING + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        counts[getBucket(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param percentile i.e. 50, 95, 99.
+     * @return The duration under which the given percentage of the values are.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(getUpperBoundNanos(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Bucket 0 holds the durations under a microsecond, bucket i the durations up to
+     * 2^(i/4) microseconds.
+     */
+    private static int getBucket(long nanos) {
+        double micros = nanos / 1000.0;
+        if (micros < 1) return 0;
+
+        int bucket = (int) Math.floor(Math.log(micros) / Math.log(2) * BUCKETS_PER_DOUBLING) + 1;
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static long getUpperBoundNanos(int bucket) {
+        return (long) Math.ceil(Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING) * 1000);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.R;
+import com.money.manager.ex.utils.MmxFileUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Materialized postings: one row per transaction, or per split leg of a split transaction,
+ * with the same columns as the mobile data view (query_mobiledata.sql). The year/month,
+ * the full category path and the amount in base currency are precomputed and indexed, so that
+ * the reports, the budgets and the dashboard do not re-run the view over all the transactions.
+ * The column names are in {@link ViewMobileData}.
+ */
+public class LedgerPostings
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "LEDGERPOSTINGS";
+
+    private static final String COLUMNS = "ID, TransactionType, Date, CategoryFullName, Category, "
+            + "Subcategory, currency, Status, Notes, BaseConvRate, Amount, CurrencyID, AccountName, "
+            + "AccountID, ToAccountName, ToAccountID, ToAmount, ToCurrencyID, SPLITTED, CATEGID, "
+            + "SubcategID, Payee, PayeeID, TransactionNumber, day, month, year, AmountBaseConvRate, "
+            + "HistoryRate";
+
+    /**
+     * The base tables the postings are calculated from.
+     */
+    public static final String[] SOURCE_TABLES = { "CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1",
+            "CATEGORY_V1", "PAYEE_V1", "ACCOUNTLIST_V1", "CURRENCYFORMATS_V1", "CURRENCYHISTORY_V1" };
+
+    public LedgerPostings(Context context) {
+        super(TABLE_NAME, SOURCE_TABLES);
+
+        this.context = context.getApplicationContext();
+    }
+
+    private final Context context;
+    /**
+     * Transactions affected by the write in progress.
+     */
+    private final Set<Long> pendingTransactions = new HashSet<>();
+    private boolean pendingRebuild = false;
+
+    @Override
+    protected int getVersion() {
+        return 2;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "ID integer, TransactionType TEXT, Date TEXT, CategoryFullName TEXT, Category TEXT, "
+                + "Subcategory TEXT, currency TEXT, Status TEXT, Notes TEXT, BaseConvRate numeric, "
+                + "Amount numeric, CurrencyID integer, AccountName TEXT, AccountID integer, "
+                + "ToAccountName TEXT, ToAccountID integer, ToAmount numeric, ToCurrencyID integer, "
+                + "SPLITTED integer, CATEGID integer, SubcategID integer, Payee TEXT, PayeeID integer, "
+                + "TransactionNumber TEXT, day integer, month integer, year integer, "
+                + "AmountBaseConvRate numeric, HistoryRate numeric)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_LEDGERPOSTINGS_ID ON " + TABLE_NAME + " (ID)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_LEDGERPOSTINGS_YEAR_MONTH ON " + TABLE_NAME + " (year, month, CATEGID)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_LEDGERPOSTINGS_CATEGID ON " + TABLE_NAME + " (CATEGID)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_LEDGERPOSTINGS_PAYEEID ON " + TABLE_NAME + " (PayeeID)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_LEDGERPOSTINGS_DATE ON " + TABLE_NAME + " (Date)");
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        insertPostings(db, null);
+    }
+
+    /**
+     * The mobile data view the postings are calculated with.
+     */
+    @Override
+    public Map<String, String> getFallbackQueries() {
+        return Collections.singletonMap(TABLE_NAME, getPostingsQuery(null));
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, table, rowIds, true);
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, table, rowIds, false);
+    }
+
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+        if (pendingRebuild) {
+            pendingRebuild = false;
+            pendingTransactions.clear();
+            rebuild(db);
+            return;
+        }
+
+        if (!pendingTransactions.isEmpty()) {
+            long[] ids = new long[pendingTransactions.size()];
+            int i = 0;
+            for (Long id : pendingTransactions) ids[i++] = id;
+            pendingTransactions.clear();
+
+            refreshTransactions(db, ids);
+            markChanged();
+        }
+
+        super.onWriteCompleted(db);
+    }
+
+    /**
+     * Replaces the postings of the given transactions with the current data.
+     */
+    public void refreshTransactions(SupportSQLiteDatabase db, long[] transactionIds) {
+        if (transactionIds.length == 0) return;
+
+        String inList = toInList(transactionIds);
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE ID IN " + inList);
+        insertPostings(db, "TX.TRANSID IN " + inList);
+    }
+
+    private void insertPostings(SupportSQLiteDatabase db, String filter) {
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMNS + ") " + getPostingsQuery(filter));
+    }
+
+    private String getPostingsQuery(String filter) {
+        String source = MmxFileUtils.getRawAsString(context, R.raw.query_mobiledata).trim();
+        if (!TextUtils.isEmpty(filter)) {
+            // the view ends with the WHERE clause for the deleted transactions.
+            source += " AND (" + filter + ")";
+        }
+        return "SELECT " + COLUMNS + " FROM (" + source + ")";
+    }
+
+    private void collectAffected(SupportSQLiteDatabase db, String table, long[] rowIds,
+                                 boolean beforeWrite) {
+        if (rowIds.length == 0) return;
+
+        String inList = toInList(rowIds);
+        switch (table.toUpperCase(Locale.ENGLISH)) {
+            case "CHECKINGACCOUNT_V1":
+                for (long id : rowIds) pendingTransactions.add(id);
+                break;
+            case "SPLITTRANSACTIONS_V1":
+                collect(db, "SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE SPLITTRANSID IN " + inList);
+                break;
+            case "PAYEE_V1":
+                collect(db, "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE PAYEEID IN " + inList);
+                break;
+            case "ACCOUNTLIST_V1":
+                collect(db, "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE ACCOUNTID IN " + inList
+                        + " OR TOACCOUNTID IN " + inList);
+                break;
+            case "CURRENCYFORMATS_V1":
+                // the symbol and the rate: the postings of the accounts in the currency.
+                collect(db, "SELECT TX.TRANSID FROM CHECKINGACCOUNT_V1 TX"
+                        + " INNER JOIN ACCOUNTLIST_V1 A ON A.ACCOUNTID IN (TX.ACCOUNTID, TX.TOACCOUNTID)"
+                        + " WHERE A.CURRENCYID IN " + inList);
+                break;
+            case "CURRENCYHISTORY_V1":
+                collect(db, getTransactionsForRates(inList));
+                break;
+            case "CATEGORY_V1":
+                // the paths of the transactions in the categories and their subcategories.
+                // Collected before the write only: an update keeps the subtree of the category,
+                // and a new category has no transactions yet.
+                if (beforeWrite) collect(db, CategoryTree.getTransactionsInCategories(inList));
+                break;
+            default:
+                pendingRebuild = true;
+                break;
+        }
+    }
+
+    /**
+     * @param historyIds The ids of the rate history records, as an IN (...) list.
+     * @return The query for the transactions converted with the given historical rates: the
+     * transactions in the currency of the rate, on or after its date.
+     */
+    public static String getTransactionsForRates(String historyIds) {
+        return "SELECT TX.TRANSID FROM CHECKINGACCOUNT_V1 TX"
+                + " INNER JOIN ACCOUNTLIST_V1 A ON A.ACCOUNTID = TX.ACCOUNTID"
+                + " INNER JOIN CURRENCYHISTORY_V1 H ON H.CURRENCYID = A.CURRENCYID"
+                + " WHERE H.CURRHISTID IN " + historyIds + " AND TX.TRANSDATE >= H.CURRDATE";
+    }
+
+    private void collect(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            while (cursor.moveToNext()) {
+                pendingTransactions.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
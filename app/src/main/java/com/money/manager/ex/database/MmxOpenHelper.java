@@ -18,6 +18,7 @@ package com.money.manager.ex.database;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteException;
 import android.text.TextUtils;
 
@@ -34,6 +35,7 @@ import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.datalayer.InfoRepositorySql;
 import com.money.manager.ex.domainmodel.Info;
+import com.money.manager.ex.log.ExceptionHandler;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.utils.MmxFileUtils;
 
@@ -41,8 +43,15 @@ import net.sqlcipher.database.SupportFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import rx.Completable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -53,7 +62,11 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
     /**
      * Database schema version.
      */
-    private static final int DATABASE_VERSION = 19;
+    private static final int DATABASE_VERSION = 20;
+    /**
+     * Default number of read-only connections used when write-ahead logging is enabled.
+     */
+    public static final int DEFAULT_READ_CONNECTIONS = 2;
     private String dbPath;
 
     // Dynamic
@@ -71,6 +84,26 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
 
     private final Context mContext;
     private String mPassword = "";
+    /**
+     * The single (keyed) connection to the database file. Created on first access and kept
+     * open until {@link #close()} so that SQLCipher key derivation and schema loading
+     * are paid only once per database, not once per query.
+     */
+    private SupportSQLiteOpenHelper mOpenHelper;
+    private final AtomicInteger mOpenCount = new AtomicInteger();
+    private final AtomicInteger mKeyDerivationCount = new AtomicInteger();
+    /**
+     * Write-ahead logging. When enabled, the reads are spread over a pool of read-only
+     * connections and can run in parallel with the writer connection.
+     */
+    private boolean mWriteAheadLogging = false;
+    private int mReadConnectionCount = DEFAULT_READ_CONNECTIONS;
+    private final List<SupportSQLiteOpenHelper> mReadConnections = new ArrayList<>();
+    private final AtomicInteger mNextReadConnection = new AtomicInteger();
+    /**
+     * Tables with the data derived from the base tables, i.e. for the reports.
+     */
+    private List<DerivedTable> mDerivedTables;
 
     public Context getContext() {
         return this.mContext;
@@ -80,11 +113,14 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
         return this.dbPath;
     }
 
-//    @Override
-//    public void onConfigure(SQLiteDatabase db) {
-//        super.onConfigure(db);
-//        db.rawQuery("PRAGMA journal_mode=OFF", null).close();
-//    }
+    @Override
+    public void onConfigure(SupportSQLiteDatabase db) {
+        super.onConfigure(db);
+
+        if (mWriteAheadLogging) {
+            db.enableWriteAheadLogging();
+        }
+    }
 
     /**
      * Called when the database is being created.
@@ -102,12 +138,47 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
     }
 
     public void onOpen(SupportSQLiteDatabase db) {
-        db.disableWriteAheadLogging();
+        mOpenCount.incrementAndGet();
+        if (hasPassword()) {
+            mKeyDerivationCount.incrementAndGet();
+        }
+        Timber.d("database opened (%d opens, %d key derivations)",
+                mOpenCount.get(), mKeyDerivationCount.get());
+
+        if (!mWriteAheadLogging) {
+            db.disableWriteAheadLogging();
+        }
+
+        if (!db.isReadOnly()) {
+            for (DerivedTable table : getDerivedTables()) {
+                table.ensureSchema(db);
+            }
+            updateDerivedTables(db);
+        }
    //     super.onOpen(db);
 
 //        int version = db.getVersion();
     }
 
+    /**
+     * Checks the derived tables against the base tables, in the order of maintenance, and
+     * rebuilds the ones changed elsewhere. Runs in the background: until a table is current,
+     * the readers use the queries on the base tables, see {@link #resolveDerivedTables}.
+     * A failure is reported to the user and leaves the remaining tables on the base tables.
+     */
+    private void updateDerivedTables(final SupportSQLiteDatabase db) {
+        Completable.fromAction(() -> {
+                    for (DerivedTable table : getDerivedTables()) {
+                        // the database was closed (i.e. switched) in the meantime.
+                        if (!db.isOpen()) return;
+                        table.ensureCurrent(db);
+                    }
+                })
+                .subscribeOn(getDerivedTablesScheduler())
+                .subscribe(() -> Timber.d("derived tables are current"),
+                        e -> new ExceptionHandler(mContext, this).e(e, "updating the derived tables"));
+    }
+
     public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
         Timber.d("Upgrading from version %d to %d", oldVersion, newVersion);
 
@@ -125,28 +196,296 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
         updateDatabase(db, oldVersion, newVersion);
     }
 
-    private SupportSQLiteDatabase getDatabase(boolean writable) {
-        SupportSQLiteOpenHelper.Factory factory = new SupportFactory(this.mPassword.getBytes());
+    /**
+     * @return The derived tables, maintained on the writes through the content provider.
+     * In the order of maintenance: the tables calculated from other derived tables follow them.
+     */
+    public synchronized List<DerivedTable> getDerivedTables() {
+        if (mDerivedTables == null) {
+            mDerivedTables = new ArrayList<>();
+            // used by the queries of the postings
+            mDerivedTables.add(new CategoryTree());
+            mDerivedTables.add(new LedgerPostings(mContext));
+            // calculated from the postings
+            mDerivedTables.add(new IncomeExpenseRollup());
+            mDerivedTables.add(new AccountBalances());
+            mDerivedTables.add(new BalanceCheckpoints());
+            mDerivedTables.add(new TransactionSearchIndex());
+        }
+        return mDerivedTables;
+    }
+
+    /**
+     * Replaces the derived tables that are not current yet with the equivalent queries on the
+     * base tables, see {@link DerivedTable#getFallbackQueries()}.
+     * @param sql The query to run on a readable connection.
+     * @return The query reading only the current tables.
+     */
+    public String resolveDerivedTables(String sql) {
+        if (sql == null) return null;
+
+        List<DerivedTable> tables = getDerivedTables();
+        // backwards: the queries of a table read the tables maintained before it.
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            DerivedTable table = tables.get(i);
+            if (table.isCurrent()) continue;
+
+            for (Map.Entry<String, String> query : table.getFallbackQueries().entrySet()) {
+                sql = DerivedTable.replaceTable(sql, query.getKey(), query.getValue());
+            }
+        }
+        return sql;
+    }
+
+    public CategoryTree getCategoryTree() {
+        return (CategoryTree) getDerivedTables().get(0);
+    }
+
+    /**
+     * @return The in-memory category tree of the current database.
+     */
+    public CategoryTreeSnapshot getCategoryTreeSnapshot() {
+        return getCategoryTree().getSnapshot(getReadableDatabase());
+    }
+
+    /**
+     * Returns the shared open helper, creating it on the first call.
+     * All the consumers (content provider, BriteDatabase, receivers) must go through this
+     * instance so that they share the same connection.
+     * @return The open helper for the current database file and password.
+     */
+    public synchronized SupportSQLiteOpenHelper getOpenHelper() {
+        if (mOpenHelper == null) {
+            mOpenHelper = createOpenHelper(this);
+        }
+        return mOpenHelper;
+    }
+
+    /**
+     * The scheduler on which the derived tables are checked, once the database is opened.
+     */
+    protected Scheduler getDerivedTablesScheduler() {
+        return Schedulers.io();
+    }
+
+    /**
+     * Creates the factory for the database connections. Encrypted (SQLCipher) by default.
+     * @return Open helper factory.
+     */
+    protected SupportSQLiteOpenHelper.Factory createFactory() {
+        return new SupportFactory(this.mPassword.getBytes());
+    }
+
+    private SupportSQLiteOpenHelper createOpenHelper(SupportSQLiteOpenHelper.Callback callback) {
         SupportSQLiteOpenHelper.Configuration configuration =
                 SupportSQLiteOpenHelper.Configuration.builder(mContext)
                         .name(this.dbPath)
-                        .callback(this)
+                        .callback(callback)
                         .build();
-        SupportSQLiteDatabase sqLiteDatabase = writable
-                ? factory.create(configuration).getWritableDatabase()
-                : factory.create(configuration).getReadableDatabase();
-        return sqLiteDatabase;
+        return createFactory().create(configuration);
     }
 
+    private SupportSQLiteDatabase getDatabase(boolean writable) {
+        SupportSQLiteOpenHelper helper = getOpenHelper();
+        return writable
+                ? helper.getWritableDatabase()
+                : helper.getReadableDatabase();
+    }
+
+    /**
+     * Returns a connection for reading. With write-ahead logging this is one of the pooled
+     * read-only connections, so that the readers do not queue behind a running write
+     * transaction. Do not use the returned instance for writing.
+     */
     public SupportSQLiteDatabase getReadableDatabase() {
-        return getDatabase(false);
+        if (!mWriteAheadLogging) {
+            return getDatabase(false);
+        }
+        return getReadConnection();
     }
 
     public SupportSQLiteDatabase getWritableDatabase() {
         return getDatabase(true);
     }
 
-    public void setPassword(String password) {
+    /**
+     * Opens the connection, if not already open.
+     * @return The shared database instance.
+     */
+    public SupportSQLiteDatabase open() {
+        return getWritableDatabase();
+    }
+
+    public synchronized boolean isOpen() {
+        return mOpenHelper != null;
+    }
+
+    /**
+     * Closes the shared connection. The next access will open the database again.
+     */
+    public synchronized void close() {
+        closeReadConnections();
+
+        if (mOpenHelper == null) return;
+
+        storeDerivedFingerprints();
+        try {
+            mOpenHelper.close();
+        } catch (Exception e) {
+            Timber.e(e, "closing database");
+        }
+        mOpenHelper = null;
+    }
+
+    /**
+     * Stores the fingerprints of the derived tables changed since the database was opened, so
+     * that they are not rebuilt on the next open. Reads the whole source tables; not to be
+     * called on the main thread.
+     */
+    public void storeDerivedFingerprints() {
+        if (!isOpen()) return;
+
+        SupportSQLiteDatabase db = getWritableDatabase();
+        if (db.isReadOnly()) return;
+
+        db.beginTransaction();
+        try {
+            for (DerivedTable table : getDerivedTables()) {
+                table.storeFingerprintIfChanged(db);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Timber.e(e, "storing the fingerprints of the derived tables");
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public boolean isWriteAheadLoggingEnabled() {
+        return mWriteAheadLogging;
+    }
+
+    /**
+     * Switches the write-ahead logging. Closes the open connections so that the new journal
+     * mode is applied on the next access.
+     * @param enabled Use WAL journal mode and the read connection pool.
+     */
+    public synchronized void setWriteAheadLoggingEnabled(boolean enabled) {
+        if (enabled == mWriteAheadLogging) return;
+
+        close();
+        mWriteAheadLogging = enabled;
+    }
+
+    public int getReadConnectionCount() {
+        return mReadConnectionCount;
+    }
+
+    /**
+     * @param count Maximum number of read-only connections used in WAL mode.
+     */
+    public synchronized void setReadConnectionCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one read connection is required");
+        }
+        closeReadConnections();
+        mReadConnectionCount = count;
+    }
+
+    /**
+     * Copies the content of the write-ahead log into the main database file and truncates
+     * the log, so that the database file alone contains all the data. Needed before the file
+     * is copied or uploaded, for compatibility with the desktop application.
+     * @return Indicator whether the checkpoint was executed.
+     */
+    public boolean checkpoint() {
+        if (!mWriteAheadLogging || !isOpen()) return false;
+
+        // the file may be changed elsewhere from now on.
+        storeDerivedFingerprints();
+
+        Cursor cursor = null;
+        try {
+            cursor = getWritableDatabase().query("PRAGMA wal_checkpoint(TRUNCATE)");
+            // the pragma is executed on step
+            return cursor != null && cursor.moveToFirst() && cursor.getInt(0) == 0;
+        } catch (Exception e) {
+            Timber.e(e, "checkpoint");
+            return false;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    private SupportSQLiteDatabase getReadConnection() {
+        SupportSQLiteOpenHelper helper;
+
+        synchronized (this) {
+            // The writer connection opens (creates, upgrades) the database and sets the journal
+            // mode before any reader gets to the file.
+            getDatabase(true);
+
+            int index = Math.abs(mNextReadConnection.getAndIncrement() % mReadConnectionCount);
+            while (mReadConnections.size() <= index) {
+                mReadConnections.add(createOpenHelper(new ReadConnectionCallback()));
+            }
+            helper = mReadConnections.get(index);
+        }
+        return helper.getReadableDatabase();
+    }
+
+    private synchronized void closeReadConnections() {
+        for (SupportSQLiteOpenHelper reader : mReadConnections) {
+            try {
+                reader.close();
+            } catch (Exception e) {
+                Timber.e(e, "closing read connection");
+            }
+        }
+        mReadConnections.clear();
+    }
+
+    /**
+     * Changes the encryption key of the open database and keeps the connection open.
+     * @param newPassword The new password. Empty string removes the encryption.
+     */
+    public synchronized void rekey(String newPassword) {
+        if (newPassword == null) newPassword = "";
+
+        SupportSQLiteDatabase db = getWritableDatabase();
+        db.execSQL("PRAGMA rekey = " + DatabaseUtils.sqlEscapeString(newPassword));
+        mKeyDerivationCount.incrementAndGet();
+        // the pooled readers are keyed with the old password
+        closeReadConnections();
+
+        this.mPassword = newPassword;
+    }
+
+    /**
+     * @return Number of times the database file has been opened by this helper.
+     */
+    public int getOpenCount() {
+        return mOpenCount.get();
+    }
+
+    /**
+     * @return Number of times the encryption key has been derived (open or rekey).
+     */
+    public int getKeyDerivationCount() {
+        return mKeyDerivationCount.get();
+    }
+
+    /**
+     * Sets the password to use on the next open. Closes the current connection if the
+     * password differs, as the key of an open connection can not be changed this way.
+     * Use {@link #rekey(String)} to change the password of the database itself.
+     * @param password Database password.
+     */
+    public synchronized void setPassword(String password) {
+        if (password == null) password = "";
+        if (!password.equals(this.mPassword)) {
+            close();
+        }
         this.mPassword = password;
     }
     public String getPassword() { return this.mPassword;}
@@ -327,4 +666,40 @@ public class MmxOpenHelper extends SupportSQLiteOpenHelper.Callback {
         //FileUtils.copyFile(in, out);
         Files.copy(in, out);
     }
+
+    /**
+     * Callback for the pooled read-only connections. The schema is maintained by the writer
+     * connection only.
+     */
+    private class ReadConnectionCallback
+            extends SupportSQLiteOpenHelper.Callback {
+
+        ReadConnectionCallback() {
+            super(DATABASE_VERSION);
+        }
+
+        @Override
+        public void onConfigure(SupportSQLiteDatabase db) {
+            super.onConfigure(db);
+            db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void onOpen(SupportSQLiteDatabase db) {
+            mOpenCount.incrementAndGet();
+            if (hasPassword()) {
+                mKeyDerivationCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onCreate(SupportSQLiteDatabase db) {
+            // created by the writer connection
+        }
+
+        @Override
+        public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            // upgraded by the writer connection
+        }
+    }
 }
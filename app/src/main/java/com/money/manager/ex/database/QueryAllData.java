@@ -54,6 +54,14 @@ public class QueryAllData
     public static final String Status = "Status";
     public static final String Notes = "Notes";
     public static final String currency = "currency";
+    /**
+     * The transaction date as stored, for the filters that can use the indexes.
+     */
+    public static final String TransDate = "TransDate";
+    /**
+     * The stored TOACCOUNTID, -1 if not a transfer. For the filters that can use the indexes.
+     */
+    public static final String TransferAccountID = "TransferAccountID";
 
     public QueryAllData(Context context) {
         super(MmxFileUtils.getRawAsString(context, R.raw.query_alldata), DatasetType.QUERY, "queryalldata");
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the statements prepared by the content provider for the datasets.
+ * <p>
+ * The literal values in the selection are replaced with bound parameters, so that all the
+ * queries with the same shape (dataset, projection, selection without values, sort order)
+ * produce exactly the same SQL text. The composed statement is then taken from the cache
+ * instead of being concatenated again, and SQLite finds the compiled statement in the
+ * connection's statement cache, which is keyed on the SQL text, instead of parsing the whole
+ * dataset query (i.e. query_alldata.sql) on every call.
+ */
+public class QueryStatementCache {
+
+    public static final int DEFAULT_SIZE = 64;
+
+    public QueryStatementCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public QueryStatementCache(final int maxSize) {
+        this.statements = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private final LinkedHashMap<String, CacheEntry> statements;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Interface for composing the statement on a cache miss.
+     */
+    public interface StatementBuilder {
+        String build(String source, String[] projection, String selection, String sortOrder);
+    }
+
+    /**
+     * Returns the statement to run for the given dataset query, with the arguments to bind.
+     * @param dataset       Dataset being queried.
+     * @param projection    Columns.
+     * @param selection     Where clause, may contain literal values and/or '?' placeholders.
+     * @param selectionArgs Values for the '?' placeholders.
+     * @param sortOrder     Order by.
+     * @param builder       Composes the statement on a cache miss.
+     * @return Statement with the arguments to bind.
+     */
+    public PreparedQuery get(Dataset dataset, String[] projection, String selection,
+                             String[] selectionArgs, String sortOrder, StatementBuilder builder) {
+        PreparedQuery shape = parameterize(selection, selectionArgs);
+
+        String key = createKey(dataset, projection, shape.sql, sortOrder);
+        String source = dataset.getSource();
+        String sql;
+
+        synchronized (statements) {
+            CacheEntry entry = statements.get(key);
+            if (entry != null && entry.source.equals(source)) {
+                hits.incrementAndGet();
+                sql = entry.sql;
+            } else {
+                misses.incrementAndGet();
+                sql = builder.build(source, projection, shape.sql, sortOrder);
+                statements.put(key, new CacheEntry(source, sql));
+            }
+        }
+
+        return new PreparedQuery(sql, shape.args);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (statements) {
+            return statements.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    /**
+     * Replaces the literal values (numbers and quoted strings) in the selection with '?'
+     * placeholders. The values are returned as arguments, merged in order with the existing
+     * selection arguments. If the selection can not be safely parameterized, it is returned
+     * unchanged, with the original arguments.
+     * @param selection Where clause.
+     * @param selectionArgs Arguments for the existing placeholders.
+     * @return Parameterized selection with all the arguments.
+     */
+    public static PreparedQuery parameterize(String selection, String[] selectionArgs) {
+        PreparedQuery unchanged = new PreparedQuery(selection, selectionArgs);
+        if (selection == null || selection.isEmpty()) return unchanged;
+        // positional GROUP BY/ORDER BY numbers must stay literals
+        if (selection.toUpperCase(Locale.ENGLISH).contains(" BY ")) return unchanged;
+
+        StringBuilder sql = new StringBuilder(selection.length());
+        List<Object> args = new ArrayList<>();
+        int nextArg = 0;
+        int length = selection.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = selection.charAt(i);
+
+            if (c == '\'') {
+                // string literal; '' is an escaped quote
+                StringBuilder value = new StringBuilder();
+                int j = i + 1;
+                boolean closed = false;
+                while (j < length) {
+                    char d = selection.charAt(j);
+                    if (d == '\'') {
+                        if (j + 1 < length && selection.charAt(j + 1) == '\'') {
+                            value.append('\'');
+                            j += 2;
+                            continue;
+                        }
+                        closed = true;
+                        break;
+                    }
+                    value.append(d);
+                    j++;
+                }
+                if (!closed) return unchanged;
+
+                sql.append('?');
+                args.add(value.toString());
+                i = j + 1;
+            } else if (c == '"' || c == '`' || c == '[') {
+                // quoted identifier, copy as is
+                char end = c == '[' ? ']' : c;
+                int j = selection.indexOf(end, i + 1);
+                if (j < 0) return unchanged;
+                sql.append(selection, i, j + 1);
+                i = j + 1;
+            } else if (c == '?') {
+                // existing placeholder; numbered parameters are not supported.
+                if (i + 1 < length && Character.isDigit(selection.charAt(i + 1))) return unchanged;
+                if (selectionArgs == null || nextArg >= selectionArgs.length) return unchanged;
+
+                sql.append('?');
+                args.add(selectionArgs[nextArg++]);
+                i++;
+            } else if (isIdentifierStart(c)) {
+                int j = i + 1;
+                while (j < length && isIdentifierPart(selection.charAt(j))) j++;
+                // blob literal X'..' stays as is
+                if (j == i + 1 && (c == 'x' || c == 'X') && j < length && selection.charAt(j) == '\'') {
+                    return unchanged;
+                }
+                sql.append(selection, i, j);
+                i = j;
+            } else if (Character.isDigit(c)) {
+                int j = i;
+                boolean decimal = false;
+                while (j < length && Character.isDigit(selection.charAt(j))) j++;
+                if (j < length && selection.charAt(j) == '.') {
+                    decimal = true;
+                    j++;
+                    while (j < length && Character.isDigit(selection.charAt(j))) j++;
+                }
+                // exponents, hex and the like: leave the selection alone.
+                if (j < length && isIdentifierPart(selection.charAt(j))) return unchanged;
+
+                String number = selection.substring(i, j);
+                try {
+                    args.add(decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    return unchanged;
+                }
+                sql.append('?');
+                i = j;
+            } else {
+                sql.append(c);
+                i++;
+            }
+        }
+
+        // all the given arguments must have been used.
+        if (selectionArgs != null && nextArg != selectionArgs.length) return unchanged;
+
+        return new PreparedQuery(sql.toString(), args.isEmpty() ? null : args.toArray());
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private String createKey(Dataset dataset, String[] projection, String selection, String sortOrder) {
+        StringBuilder key = new StringBuilder(dataset.getBasePath()).append('\u0001');
+        if (projection != null) {
+            for (String column : projection) {
+                key.append(column).append(',');
+            }
+        }
+        key.append('\u0001');
+        if (selection != null) key.append(selection);
+        key.append('\u0001');
+        if (sortOrder != null) key.append(sortOrder);
+        return key.toString();
+    }
+
+    /**
+     * Statement to execute with its arguments.
+     */
+    public static class PreparedQuery {
+        public PreparedQuery(String sql, Object[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        public final String sql;
+        public final Object[] args;
+    }
+
+    private static class CacheEntry {
+        CacheEntry(String source, String sql) {
+            this.source = source;
+            this.sql = sql;
+        }
+
+        final String source;
+        final String sql;
+    }
+}
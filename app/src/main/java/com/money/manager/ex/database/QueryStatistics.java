@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Statistics of the operations through the content provider: per dataset and operation the
+ * number of calls, the latency histogram, the rows returned and the bytes held in the cursor
+ * windows. The slowest queries are kept with their SQL and query plan.
+ * <p>
+ * Collected only while enabled, from the database settings.
+ */
+public class QueryStatistics {
+
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 100;
+    private static final int SLOW_QUERY_LOG_SIZE = 50;
+
+    public enum Operation {
+        QUERY, INSERT, BULK_INSERT, UPDATE, DELETE, BATCH
+    }
+
+    private volatile boolean enabled;
+    private volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MILLIS);
+    /**
+     * Statistics by dataset and operation, sorted for the report.
+     */
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSlowQueryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    public void setSlowQueryMillis(long millis) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= slowQueryNanos;
+    }
+
+    /**
+     * @param dataset     Base path of the dataset.
+     * @param operation   Operation.
+     * @param nanos       Time spent in the database.
+     * @param rows        Rows returned or changed.
+     * @param windowBytes Bytes held in the cursor window, for the queries.
+     */
+    public void record(String dataset, Operation operation, long nanos, long rows, long windowBytes) {
+        if (!enabled) return;
+
+        String key = dataset + " " + operation;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(dataset, operation);
+                entries.put(key, entry);
+            }
+            entry.histogram.record(nanos);
+            entry.rows += rows;
+            entry.windowBytes = Math.max(entry.windowBytes, windowBytes);
+        }
+    }
+
+    public void recordSlowQuery(SlowQuery query) {
+        if (!enabled) return;
+
+        Timber.w("slow %s on %s: %d ms, %s", query.operation, query.dataset,
+                TimeUnit.NANOSECONDS.toMillis(query.nanos), query.sql);
+
+        synchronized (slowQueries) {
+            if (slowQueries.size() >= SLOW_QUERY_LOG_SIZE) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(query);
+        }
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void reset() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * @return The statistics as a table, one line per dataset and operation.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ENGLISH, "%-28s %-11s %7s %8s %8s %8s %8s %9s %9s%n",
+                "dataset", "operation", "count", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows", "window kB"));
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                LatencyHistogram histogram = entry.histogram;
+                report.append(String.format(Locale.ENGLISH, "%-28s %-11s %7d %8.1f %8.1f %8.1f %8.1f %9d %9d%n",
+                        entry.dataset, entry.operation, histogram.getCount(),
+                        toMillis(histogram.getPercentileNanos(50)),
+                        toMillis(histogram.getPercentileNanos(95)),
+                        toMillis(histogram.getPercentileNanos(99)),
+                        toMillis(histogram.getMaxNanos()),
+                        entry.rows, entry.windowBytes / 1024));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return The slow queries, the most recent first.
+     */
+    public String getSlowQueryReport() {
+        List<SlowQuery> queries = getSlowQueries();
+        StringBuilder report = new StringBuilder();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+        for (int i = queries.size() - 1; i >= 0; i--) {
+            SlowQuery query = queries.get(i);
+            report.append(format.format(new Date(query.timestamp)))
+                    .append(String.format(Locale.ENGLISH, " %s %s: %.1f ms, %d rows%n",
+                            query.dataset, query.operation, toMillis(query.nanos), query.rows))
+                    .append(query.sql).append('\n');
+            if (query.args != null && query.args.length > 0) {
+                report.append("args: ").append(Arrays.toString(query.args)).append('\n');
+            }
+            if (!TextUtils.isEmpty(query.plan)) {
+                report.append(query.plan).append('\n');
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+
+    public void dump(Writer writer) throws IOException {
+        writer.write(getReport());
+        writer.write(String.format(Locale.ENGLISH, "%nSlow queries (over %d ms)%n%n", getSlowQueryMillis()));
+        writer.write(getSlowQueryReport());
+        writer.flush();
+    }
+
+    /**
+     * @return The query plan, one step per line, indented by depth.
+     */
+    public static String explain(SupportSQLiteDatabase db, String sql, Object[] args) {
+        StringBuilder plan = new StringBuilder();
+        Map<Integer, Integer> depths = new TreeMap<>();
+        Cursor cursor = args == null
+                ? db.query("EXPLAIN QUERY PLAN " + sql)
+                : db.query("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                Integer parentDepth = depths.get(cursor.getInt(1));
+                int depth = parentDepth == null ? 0 : parentDepth + 1;
+                depths.put(id, depth);
+
+                for (int i = 0; i < depth; i++) {
+                    plan.append("  ");
+                }
+                plan.append(cursor.getString(3)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString().trim();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Statistics of one operation on one dataset.
+     */
+    private static class Entry {
+        Entry(String dataset, Operation operation) {
+            this.dataset = dataset;
+            this.operation = operation;
+        }
+
+        final String dataset;
+        final Operation operation;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long rows;
+        // the largest cursor window seen
+        long windowBytes;
+    }
+
+    public static class SlowQuery {
+        public SlowQuery(String dataset, Operation operation, String sql, Object[] args,
+                         long nanos, long rows, String plan) {
+            this.timestamp = System.currentTimeMillis();
+            this.dataset = dataset;
+            this.operation = operation;
+            this.sql = sql;
+            this.args = args;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.plan = plan;
+        }
+
+        public final long timestamp;
+        public final String dataset;
+        public final Operation operation;
+        public final String sql;
+        public final Object[] args;
+        public final long nanos;
+        public final long rows;
+        public final String plan;
+    }
+}
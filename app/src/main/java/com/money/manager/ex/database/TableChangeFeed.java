@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import timber.log.Timber;
+
+/**
+ * Feed of the tables changed through the content provider. The tables written in a transaction
+ * are collected and published once, after the commit, so a batch of writes is seen as a single
+ * change.
+ * <p>
+ * Also keeps a version per table, for the in-memory caches of data read from a few tables only.
+ */
+public class TableChangeFeed {
+
+    /**
+     * Receives the changes. Called on the thread that made the writes.
+     */
+    public interface Listener {
+        /**
+         * @param tables Names of the tables changed by the transaction, in upper case.
+         */
+        void onTablesChanged(Set<String> tables);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> versions = new HashMap<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param tables Names of the tables the cached data is read from.
+     * @return A value that changes whenever one of the tables is changed. To be read before
+     * reading the data, so that a change committed meanwhile invalidates the result.
+     */
+    public long getVersion(String... tables) {
+        long version = 0;
+        synchronized (versions) {
+            for (String table : tables) {
+                Long tableVersion = versions.get(DatasetDependencies.normalize(table));
+                if (tableVersion != null) {
+                    version += tableVersion;
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Publishes the tables changed by a committed transaction.
+     */
+    public void publish(Set<String> tables) {
+        if (tables.isEmpty()) return;
+
+        Set<String> changed = new HashSet<>();
+        for (String table : tables) {
+            changed.add(DatasetDependencies.normalize(table));
+        }
+        changed = Collections.unmodifiableSet(changed);
+
+        synchronized (versions) {
+            for (String table : changed) {
+                Long version = versions.get(table);
+                versions.put(table, version == null ? 1 : version + 1);
+            }
+        }
+
+        Timber.d("tables changed: %s", changed);
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onTablesChanged(changed);
+            } catch (Exception e) {
+                Timber.e(e, "notifying table changes");
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Full-text index of the transactions: notes, notes of the splits, payee, category paths and
+ * the transaction number. An FTS4 table with the transaction id as the docid.
+ * <p>
+ * The category paths come from {@link CategoryTree}, which must be maintained before this
+ * table.
+ * <p>
+ * MATCH needs the FTS table, so the index has no fallback query: until it is current, the
+ * searches read the index as it was stored.
+ */
+public class TransactionSearchIndex
+    extends DerivedTable {
+
+    public static final String TABLE_NAME = "TRANSACTIONSEARCH";
+    // columns, in the order of the matchinfo/offsets data
+    public static final String NOTES = "NOTES";
+    public static final String SPLITNOTES = "SPLITNOTES";
+    public static final String PAYEE = "PAYEE";
+    public static final String CATEGORY = "CATEGORY";
+    public static final String TRANSACTIONNUMBER = "TRANSACTIONNUMBER";
+
+    public static final String[] COLUMNS = { NOTES, SPLITNOTES, PAYEE, CATEGORY, TRANSACTIONNUMBER };
+
+    private static final String CONTENT = "SELECT TX.TRANSID, TX.NOTES,"
+            + " (SELECT group_concat(S.NOTES, ' ') FROM SPLITTRANSACTIONS_V1 S WHERE S.TRANSID = TX.TRANSID),"
+            + " PAYEE.PAYEENAME,"
+            + " ifnull(CAT.CATEGNAME, (SELECT group_concat(C.CATEGNAME, ' ') FROM SPLITTRANSACTIONS_V1 S"
+            + "  JOIN " + CategoryTree.TABLE_NAME + " C ON C.CATEGID = S.CATEGID WHERE S.TRANSID = TX.TRANSID)),"
+            + " TX.TRANSACTIONNUMBER"
+            + " FROM CHECKINGACCOUNT_V1 TX"
+            + " LEFT JOIN PAYEE_V1 PAYEE ON PAYEE.PAYEEID = TX.PAYEEID"
+            + " LEFT JOIN " + CategoryTree.TABLE_NAME + " CAT ON CAT.CATEGID = TX.CATEGID"
+            + " WHERE (TX.DELETEDTIME IS NULL OR TX.DELETEDTIME = '') AND %s";
+
+    public TransactionSearchIndex() {
+        super(TABLE_NAME, "CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1", "PAYEE_V1", "CATEGORY_V1");
+    }
+
+    private final Set<Long> pendingTransactions = new HashSet<>();
+    private boolean pendingRebuild = false;
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected void createSchema(SupportSQLiteDatabase db) {
+        // accents are ignored, as in Core.highlight. The prefix indexes speed up the prefix queries.
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4("
+                + NOTES + ", " + SPLITNOTES + ", " + PAYEE + ", " + CATEGORY + ", " + TRANSACTIONNUMBER + ", "
+                + "tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\")");
+    }
+
+    @Override
+    protected void fill(SupportSQLiteDatabase db) {
+        insert(db, "1 = 1");
+    }
+
+    @Override
+    public void beforeWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, table, rowIds, true);
+    }
+
+    @Override
+    public void afterWrite(SupportSQLiteDatabase db, String table, long[] rowIds) {
+        collectAffected(db, table, rowIds, false);
+    }
+
+    @Override
+    public void onWriteCompleted(SupportSQLiteDatabase db) {
+        if (pendingRebuild) {
+            pendingRebuild = false;
+            pendingTransactions.clear();
+            rebuild(db);
+            return;
+        }
+
+        if (!pendingTransactions.isEmpty()) {
+            long[] ids = new long[pendingTransactions.size()];
+            int i = 0;
+            for (Long id : pendingTransactions) ids[i++] = id;
+            pendingTransactions.clear();
+
+            refreshTransactions(db, ids);
+            markChanged();
+        }
+
+        super.onWriteCompleted(db);
+    }
+
+    /**
+     * Replaces the indexed text of the given transactions with the current data.
+     */
+    public void refreshTransactions(SupportSQLiteDatabase db, long[] transactionIds) {
+        if (transactionIds.length == 0) return;
+
+        String inList = toInList(transactionIds);
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE docid IN " + inList);
+        insert(db, "TX.TRANSID IN " + inList);
+    }
+
+    private void insert(SupportSQLiteDatabase db, String filter) {
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (docid, " + NOTES + ", " + SPLITNOTES + ", " + PAYEE + ", "
+                + CATEGORY + ", " + TRANSACTIONNUMBER + ") " + String.format(CONTENT, filter));
+    }
+
+    private void collectAffected(SupportSQLiteDatabase db, String table, long[] rowIds,
+                                 boolean beforeWrite) {
+        if (rowIds.length == 0) return;
+
+        String inList = toInList(rowIds);
+        switch (table.toUpperCase(Locale.ENGLISH)) {
+            case "CHECKINGACCOUNT_V1":
+                for (long id : rowIds) pendingTransactions.add(id);
+                break;
+            case "SPLITTRANSACTIONS_V1":
+                collect(db, "SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE SPLITTRANSID IN " + inList);
+                break;
+            case "PAYEE_V1":
+                collect(db, "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE PAYEEID IN " + inList);
+                break;
+            case "CATEGORY_V1":
+                // the paths of the transactions in the categories and their subcategories.
+                // Collected before the write only: an update keeps the subtree of the category,
+                // and a new category has no transactions yet.
+                if (beforeWrite) collect(db, CategoryTree.getTransactionsInCategories(inList));
+                break;
+            default:
+                pendingRebuild = true;
+                break;
+        }
+    }
+
+    private void collect(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            while (cursor.moveToNext()) {
+                pendingTransactions.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
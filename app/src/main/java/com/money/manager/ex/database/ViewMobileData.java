@@ -19,11 +19,10 @@ package com.money.manager.ex.database;
 import android.content.Context;
 import android.text.TextUtils;
 
-import com.money.manager.ex.R;
-import com.money.manager.ex.utils.MmxFileUtils;
-
 /**
  * This has been migrated to QueryAllData.
+ * Reads the materialized ledger postings, which have the columns of query_mobiledata.sql, so
+ * that the filters on the date and the category use the indexes.
  */
 public class ViewMobileData
 	extends Dataset {
@@ -57,32 +56,32 @@ public class ViewMobileData
 	public static final String Notes = "Notes";
 	public static final String currency = "currency";
 	public static final String AmountBaseConvRate = "AmountBaseConvRate";
+	/**
+	 * The historical rate on the transaction date, null if there is no rate history.
+	 */
+	public static final String HistoryRate = "HistoryRate";
 	
 	public ViewMobileData(Context context) {
 		super("", DatasetType.VIEW, "mobiledata");
 
-        this.mContext = context.getApplicationContext();
-
-        initialize(mContext, null);
+        initialize(null);
 	}
 
-    private final Context mContext;
-
 	@Override
 	public String[] getAllColumns() {
 		return new String[] {"ID AS _id", ID, TransactionType, Date, Year, Month, Day,
 				Category, Subcategory, CategoryFullName, Amount, BaseConvRate, CURRENCYID, AccountName, ACCOUNTID,
                 ToAccountName, ToAccountID, TOTRANSAMOUNT, ToCurrencyID, Splitted , CATEGID,
                 SubcategID, Payee, PAYEEID, TransactionNumber, Status, Notes, currency,
-                AmountBaseConvRate};
+                AmountBaseConvRate, HistoryRate};
 	}
 
     public void setWhere(String where) {
-        initialize(mContext, where);
+        initialize(where);
     }
 
-    private void initialize(Context context, String where) {
-        String source = MmxFileUtils.getRawAsString(context, R.raw.query_mobiledata);
+    private void initialize(String where) {
+        String source = "SELECT * FROM " + LedgerPostings.TABLE_NAME;
 
         // insert WHERE statement, filter.
         if(!TextUtils.isEmpty(where)) {
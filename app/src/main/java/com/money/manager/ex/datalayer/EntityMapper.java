@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.datalayer;
+
+import android.database.Cursor;
+
+import com.money.manager.ex.domainmodel.EntityBase;
+
+import java.util.Locale;
+
+/**
+ * Loads entities from a cursor without reflection. The column names and the columns holding
+ * amounts are resolved once per cursor, so each row is only read by index.
+ * An instance is bound to one cursor at a time and is not thread-safe.
+ */
+public class EntityMapper<T extends EntityBase>
+    implements RowMapper<T> {
+
+    public interface Factory<T> {
+        T create();
+    }
+
+    public EntityMapper(Factory<T> factory, String... realColumns) {
+        this.factory = factory;
+        this.realColumnNames = realColumns;
+    }
+
+    private final Factory<T> factory;
+    private final String[] realColumnNames;
+
+    private Cursor boundCursor;
+    private String[] columnNames;
+    private boolean[] realColumns;
+
+    @Override
+    public T map(Cursor cursor) {
+        T entity = factory.create();
+        load(cursor, entity);
+        return entity;
+    }
+
+    /**
+     * Loads the current row into an existing entity. Used when iterating over a large cursor
+     * with a single instance.
+     */
+    public void load(Cursor cursor, T entity) {
+        if (cursor != boundCursor) {
+            bind(cursor);
+        }
+        entity.loadFromCursor(cursor, columnNames, realColumns);
+    }
+
+    private void bind(Cursor cursor) {
+        columnNames = cursor.getColumnNames();
+        realColumns = new boolean[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            realColumns[i] = isReal(columnNames[i]);
+        }
+        boundCursor = cursor;
+    }
+
+    private boolean isReal(String column) {
+        String name = column.toUpperCase(Locale.ENGLISH);
+        for (String real : realColumnNames) {
+            if (real.toUpperCase(Locale.ENGLISH).equals(name)) return true;
+        }
+        return false;
+    }
+}
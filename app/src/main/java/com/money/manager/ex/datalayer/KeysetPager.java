@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.datalayer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the results of a query in pages, for the lists that load the rows as they are scrolled.
+ * The pages are read with keyset pagination: a page starts after the sort key of the last row
+ * of the previous one, so no page needs to skip over the rows before it.
+ * The sort must identify the rows, the id column is added to it when missing.
+ */
+public class KeysetPager {
+
+    /**
+     * A column of the sort.
+     */
+    public static class SortKey {
+        public SortKey(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        public final String column;
+        public final boolean descending;
+    }
+
+    public KeysetPager(Context context, Uri uri, String[] projection, String selection,
+                       String[] selectionArgs, String sort, String idColumn, int pageSize) {
+        this.context = context.getApplicationContext();
+        this.uri = uri;
+        this.projection = projection;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs == null ? new String[0] : selectionArgs;
+        this.keys = parseSort(sort, idColumn);
+        this.pageSize = pageSize;
+    }
+
+    private final Context context;
+    private final Uri uri;
+    private final String[] projection;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final List<SortKey> keys;
+    private final int pageSize;
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param limit The number of rows. At least a page, more to reload the pages already displayed.
+     * @return The query for the first rows, for the cursor loader.
+     */
+    public Select getFirstPageQuery(int limit) {
+        return new Select(projection)
+                .where(selection, selectionArgs)
+                .orderBy(getSort(Math.max(limit, pageSize)));
+    }
+
+    /**
+     * Loads the page following the given key. To be called on a background thread.
+     * The rows are read here, as the cursor loader does, so that the page is not filled on the
+     * main thread when it is used.
+     * @param lastKey The sort key of the last row loaded, see {@link #readLastKey(Cursor)}.
+     * @return The next page, empty at the end of the results.
+     */
+    public Cursor loadPageAfter(Object[] lastKey) {
+        List<String> args = new ArrayList<>(Arrays.asList(selectionArgs));
+
+        String condition = getKeysetCondition(keys, lastKey, args);
+        String pageSelection = TextUtils.isEmpty(selection)
+                ? condition
+                : "(" + selection + ") AND " + condition;
+
+        Cursor page = context.getContentResolver().query(uri, projection, pageSelection,
+                args.toArray(new String[0]), getSort(pageSize));
+        if (page != null) {
+            // fills the cursor window.
+            page.getCount();
+        }
+        return page;
+    }
+
+    /**
+     * @return All the rows, in order. I.e. for the exports.
+     */
+    public Cursor loadAll() {
+        return context.getContentResolver().query(uri, projection, selection, selectionArgs,
+                getSort(0));
+    }
+
+    /**
+     * Reads the sort key of the last row of the page. The cursor is not thread-safe, this is
+     * to be called on the thread using the page.
+     * @param page A page, not empty.
+     */
+    public Object[] readLastKey(Cursor page) {
+        if (!page.moveToLast()) {
+            throw new IllegalArgumentException("The page is empty");
+        }
+
+        Object[] key = new Object[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            int column = page.getColumnIndexOrThrow(keys.get(i).column);
+            switch (page.getType(column)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    key[i] = null;
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    key[i] = page.getLong(column);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    key[i] = page.getDouble(column);
+                    break;
+                default:
+                    key[i] = page.getString(column);
+                    break;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return True if there are no more rows after the page.
+     */
+    public boolean isLastPage(Cursor page, int limit) {
+        return page == null || page.getCount() < limit;
+    }
+
+    /**
+     * @return The number of rows in the results, without reading them.
+     */
+    public int count() {
+        Cursor cursor = context.getContentResolver().query(uri, new String[] { "COUNT(*)" },
+                selection, selectionArgs, null);
+        if (cursor == null) return 0;
+
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Parses an ORDER BY clause of the form "column [ASC|DESC], ...".
+     * @param idColumn The unique column, added at the end if not in the sort.
+     */
+    public static List<SortKey> parseSort(String sort, String idColumn) {
+        List<SortKey> result = new ArrayList<>();
+        boolean hasId = false;
+
+        if (!TextUtils.isEmpty(sort)) {
+            for (String term : sort.split(",")) {
+                String[] words = term.trim().split("\\s+");
+                if (words.length > 2 || words[0].isEmpty()) {
+                    throw new IllegalArgumentException("Sort not supported for paging: " + sort);
+                }
+                boolean descending = words.length == 2 && "DESC".equalsIgnoreCase(words[1]);
+                if (words.length == 2 && !descending && !"ASC".equalsIgnoreCase(words[1])) {
+                    throw new IllegalArgumentException("Sort not supported for paging: " + sort);
+                }
+
+                result.add(new SortKey(words[0], descending));
+                hasId = hasId || words[0].equalsIgnoreCase(idColumn);
+            }
+        }
+        if (!hasId) {
+            result.add(new SortKey(idColumn, false));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the condition for the rows that follow the given key in the sort order.
+     * NULL values sort first, as in SQLite.
+     * @param key  The sort values of the last row read.
+     * @param args Receives the values of the parameters of the condition.
+     */
+    public static String getKeysetCondition(List<SortKey> keys, Object[] key, List<String> args) {
+        return getKeysetCondition(keys, key, args, 0);
+    }
+
+    private static String getKeysetCondition(List<SortKey> keys, Object[] key, List<String> args, int index) {
+        SortKey sortKey = keys.get(index);
+        Object value = key[index];
+
+        String after;
+        if (value == null) {
+            after = sortKey.descending ? "0" : sortKey.column + " IS NOT NULL";
+        } else {
+            args.add(value.toString());
+            after = sortKey.descending
+                    ? "(" + sortKey.column + " < " + getParameter(value) + " OR " + sortKey.column + " IS NULL)"
+                    : sortKey.column + " > " + getParameter(value);
+        }
+        if (index == keys.size() - 1) {
+            return after;
+        }
+
+        String same;
+        if (value == null) {
+            same = sortKey.column + " IS NULL";
+        } else {
+            args.add(value.toString());
+            same = sortKey.column + " = " + getParameter(value);
+        }
+        return "(" + after + " OR (" + same + " AND " + getKeysetCondition(keys, key, args, index + 1) + "))";
+    }
+
+    /**
+     * The arguments are passed as text, the numbers are converted back so that they are not
+     * compared as text to the columns without affinity (expressions).
+     */
+    private static String getParameter(Object value) {
+        if (value instanceof Long) return "CAST(? AS INTEGER)";
+        if (value instanceof Double) return "CAST(? AS REAL)";
+        return "?";
+    }
+
+    /**
+     * @param limit The number of rows, 0 for all.
+     */
+    private String getSort(int limit) {
+        StringBuilder sort = new StringBuilder();
+        for (SortKey key : keys) {
+            if (sort.length() > 0) sort.append(", ");
+            sort.append(key.column).append(key.descending ? " DESC" : " ASC");
+        }
+        if (limit > 0) {
+            sort.append(String.format(Locale.ENGLISH, " LIMIT %d", limit));
+        }
+        return sort.toString();
+    }
+}
@@ -106,9 +106,7 @@ public abstract class RepositoryBase<T extends EntityBase>
 
             if (c.moveToNext()) {
                 try {
-                    entity = resultType.newInstance();
-                    //resultType.cast(entity);
-                    entity.loadFromCursor(c);
+                    entity = RowMappers.get(resultType).map(c);
                 } catch (Exception e) {
                     Timber.e(e, "creating %s", resultType.getName());
                 }
@@ -126,15 +124,12 @@ public abstract class RepositoryBase<T extends EntityBase>
         Cursor c = openCursor(query.projection, query.selection, query.selectionArgs, query.sort);
         if (c == null) return null;
 
-        List<T> results = new ArrayList<>();
-        //T entity = null;
+        List<T> results = new ArrayList<>(c.getCount());
+        RowMapper<T> mapper = RowMappers.get(resultType);
 
         while (c.moveToNext()) {
             try {
-                T entity = resultType.newInstance();
-                entity.loadFromCursor(c);
-
-                results.add(entity);
+                results.add(mapper.map(c));
             } catch (Exception e) {
                 Timber.e(e, "creating %s", resultType.getName());
             }
@@ -203,24 +198,44 @@ public abstract class RepositoryBase<T extends EntityBase>
     }
 
     /**
-     * Warning: this works only with Asset Class entities!
+     * Updates all the entities in one transaction.
      * Ref:
      * http://www.grokkingandroid.com/better-performance-with-contentprovideroperation/
      * http://www.grokkingandroid.com/android-tutorial-using-content-providers/
-     * @param entities array of entities to update in a transaction
-     * @return results of the bulk update
+     * @param entities entities to update
+     * @param idColumn primary key column, used to select the record of each entity
+     * @return results of the bulk update, null on error
      */
-    protected ContentProviderResult[] bulkUpdate(EntityBase[] entities) {
+    protected ContentProviderResult[] bulkUpdate(List<? extends EntityBase> entities, String idColumn) {
         ArrayList<ContentProviderOperation> operations = new ArrayList<>();
 
-        ContentProviderResult[] results = null;
-        try {
-            results = getContext().getContentResolver()
-                .applyBatch(MmxContentProvider.getAuthority(), operations);
-        } catch (RemoteException | OperationApplicationException e) {
-            Timber.e(e, "bulk updating");
+        for (EntityBase entity : entities) {
+            ContentValues values = new ContentValues(entity.contentValues);
+            values.remove("_id");
+            String id = values.getAsString(idColumn);
+
+            operations.add(ContentProviderOperation.newUpdate(getUri())
+                .withValues(values)
+                .withSelection(idColumn + "=?", new String[] { id })
+                .build());
         }
-        return results;
+
+        return applyBatch(operations);
+    }
+
+    /**
+     * Inserts all the entities in one transaction.
+     * @param entities entities to insert
+     * @return number of inserted records
+     */
+    protected int bulkInsert(List<? extends EntityBase> entities) {
+        ContentValues[] items = new ContentValues[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            ContentValues values = new ContentValues(entities.get(i).contentValues);
+            values.remove("_id");
+            items[i] = values;
+        }
+        return bulkInsert(items);
     }
 
     protected int delete(String where, String[] args) {
@@ -231,15 +246,31 @@ public abstract class RepositoryBase<T extends EntityBase>
         return result;
     }
 
-    protected ContentProviderResult[] bulkDelete(List<Integer> ids) {
+    /**
+     * Deletes the records with the given ids in one transaction.
+     * @param ids ids of the records to delete
+     * @param idColumn primary key column
+     * @return results of the bulk delete, null on error
+     */
+    protected ContentProviderResult[] bulkDelete(List<Integer> ids, String idColumn) {
         ArrayList<ContentProviderOperation> operations = new ArrayList<>();
 
+        for (Integer id : ids) {
+            operations.add(ContentProviderOperation.newDelete(getUri())
+                .withSelection(idColumn + "=?", new String[] { Integer.toString(id) })
+                .build());
+        }
+
+        return applyBatch(operations);
+    }
+
+    private ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) {
         ContentProviderResult[] results = null;
         try {
             results = getContext().getContentResolver()
                 .applyBatch(MmxContentProvider.getAuthority(), operations);
         } catch (RemoteException | OperationApplicationException e) {
-            Timber.e(e, "bulk updating");
+            Timber.e(e, "applying batch");
         }
         return results;
     }
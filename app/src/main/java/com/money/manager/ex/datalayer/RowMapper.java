@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
  *
  * This program is free software; you can redistribute it and/or
  * modify it under the terms of the GNU General Public License
@@ -14,21 +14,13 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+package com.money.manager.ex.datalayer;
 
-package com.money.manager.ex.account.events;
-
-import java.util.HashMap;
-
-import info.javaperformance.money.Money;
+import android.database.Cursor;
 
 /**
- * Fired when a running balance has been calculated for account.
+ * Creates an object from the current row of a cursor.
  */
-public class RunningBalanceCalculatedEvent {
-
-    public RunningBalanceCalculatedEvent(HashMap<Integer, Money> balances) {
-        this.balances = balances;
-    }
-
-    public HashMap<Integer, Money> balances;
+public interface RowMapper<T> {
+    T map(Cursor cursor);
 }
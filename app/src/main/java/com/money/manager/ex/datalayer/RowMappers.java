@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.datalayer;
+
+import android.database.Cursor;
+
+import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.domainmodel.Account;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.domainmodel.Attachment;
+import com.money.manager.ex.domainmodel.Budget;
+import com.money.manager.ex.domainmodel.BudgetEntry;
+import com.money.manager.ex.domainmodel.Category;
+import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.domainmodel.EntityBase;
+import com.money.manager.ex.domainmodel.Payee;
+import com.money.manager.ex.domainmodel.RecurringTransaction;
+import com.money.manager.ex.domainmodel.SplitCategory;
+import com.money.manager.ex.domainmodel.SplitRecurringCategory;
+import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.domainmodel.StockHistory;
+import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The row mappers for the entities. Each entity is registered with its constructor and the
+ * columns that hold amounts, which are read as doubles.
+ * Entities that are not registered are created by reflection and loaded with their own
+ * loadFromCursor.
+ */
+public final class RowMappers {
+
+    private interface Registration<T extends EntityBase> {
+        EntityMapper<T> create();
+    }
+
+    private static final Map<Class<?>, Registration<?>> registrations = new HashMap<>();
+
+    static {
+        register(Account.class, () -> new EntityMapper<>(Account::new, Account.INITIALBAL));
+        register(AccountTransaction.class, () -> new EntityMapper<>(AccountTransaction::new,
+            ITransactionEntity.TRANSAMOUNT, ITransactionEntity.TOTRANSAMOUNT));
+        register(AccountTransactionDisplay.class, () -> new EntityMapper<>(AccountTransactionDisplay::new,
+            QueryAllData.Amount, QueryAllData.ToAmount));
+        register(Attachment.class, () -> new EntityMapper<>(Attachment::new));
+        register(Budget.class, () -> new EntityMapper<>(Budget::new));
+        register(BudgetEntry.class, () -> new EntityMapper<>(BudgetEntry::new));
+        register(Category.class, () -> new EntityMapper<>(Category::new));
+        register(Currency.class, () -> new EntityMapper<>(Currency::new,
+            Currency.SCALE, Currency.BASECONVRATE));
+        register(CurrencyHistory.class, () -> new EntityMapper<>(CurrencyHistory::new,
+            CurrencyHistory.CURRVALUE));
+        register(Payee.class, () -> new EntityMapper<>(Payee::new));
+        register(RecurringTransaction.class, () -> new EntityMapper<>(RecurringTransaction::new,
+            ITransactionEntity.TRANSAMOUNT, ITransactionEntity.TOTRANSAMOUNT));
+        register(SplitCategory.class, () -> new EntityMapper<>(SplitCategory::new,
+            SplitCategory.SPLITTRANSAMOUNT));
+        register(SplitRecurringCategory.class, () -> new EntityMapper<>(SplitRecurringCategory::new,
+            SplitRecurringCategory.SPLITTRANSAMOUNT));
+        register(Stock.class, () -> new EntityMapper<>(Stock::new,
+            StockFields.COMMISSION, StockFields.CURRENTPRICE, StockFields.NUMSHARES, StockFields.PURCHASEPRICE));
+        register(StockHistory.class, () -> new EntityMapper<>(StockHistory::new, StockHistory.VALUE));
+    }
+
+    private RowMappers() {
+    }
+
+    private static <T extends EntityBase> void register(Class<T> type, Registration<T> registration) {
+        registrations.put(type, registration);
+    }
+
+    /**
+     * @return A new mapper for the given type. Mappers keep state for the cursor they read,
+     * so use one per query.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EntityBase> RowMapper<T> get(Class<T> type) {
+        Registration<T> registration = (Registration<T>) registrations.get(type);
+        if (registration != null) {
+            return registration.create();
+        }
+        return new ReflectionMapper<>(type);
+    }
+
+    /**
+     * @return The mapper for a registered type, for the loops that reuse a single entity.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EntityBase> EntityMapper<T> getEntityMapper(Class<T> type) {
+        Registration<T> registration = (Registration<T>) registrations.get(type);
+        if (registration == null) {
+            throw new IllegalArgumentException("no row mapper registered for " + type.getName());
+        }
+        return registration.create();
+    }
+
+    private static class ReflectionMapper<T extends EntityBase>
+        implements RowMapper<T> {
+
+        ReflectionMapper(Class<T> type) {
+            this.type = type;
+        }
+
+        private final Class<T> type;
+
+        @Override
+        public T map(Cursor cursor) {
+            T entity;
+            try {
+                entity = type.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("creating " + type.getName(), e);
+            }
+            entity.loadFromCursor(cursor);
+            return entity;
+        }
+    }
+}
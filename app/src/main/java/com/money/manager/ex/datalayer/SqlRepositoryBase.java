@@ -77,9 +77,7 @@ abstract class SqlRepositoryBase<T extends EntityBase> {
 
             if (c.moveToNext()) {
                 try {
-                    entity = resultType.newInstance();
-                    //resultType.cast(entity);
-                    entity.loadFromCursor(c);
+                    entity = RowMappers.get(resultType).map(c);
                 } catch (Exception e) {
                     Timber.e(e, "creating %s", resultType.getName());
                 }
@@ -22,12 +22,18 @@ import static android.database.sqlite.SQLiteDatabase.CONFLICT_FAIL;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteStatement;
 
 import com.money.manager.ex.domainmodel.StockHistory;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.MmxDate;
 import com.squareup.sqlbrite3.BriteDatabase;
 
+import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -42,6 +48,17 @@ public class StockHistoryRepositorySql
 
     private static final String TABLE_NAME = "stockhistory_v1";
 
+    /**
+     * Inserts the price or replaces the one for the same day, using the UNIQUE(SYMBOL, DATE)
+     * constraint of the table.
+     */
+    private static final String UPSERT = "INSERT INTO " + TABLE_NAME + " ("
+        + StockHistory.SYMBOL + ", " + StockHistory.DATE + ", " + StockHistory.VALUE + ", "
+        + StockHistory.UPDTYPE + ") VALUES (?, ?, ?, ?)"
+        + " ON CONFLICT (" + StockHistory.SYMBOL + ", " + StockHistory.DATE + ") DO UPDATE SET "
+        + StockHistory.VALUE + " = excluded." + StockHistory.VALUE + ", "
+        + StockHistory.UPDTYPE + " = excluded." + StockHistory.UPDTYPE;
+
     @Inject
     public StockHistoryRepositorySql(BriteDatabase db) {
         super(TABLE_NAME, db);
@@ -75,6 +92,41 @@ public class StockHistoryRepositorySql
         return success;
     }
 
+    /**
+     * Stores the downloaded prices in one transaction, with a single compiled statement.
+     * The subscribers are notified once, at the end of the transaction. The exception is
+     * passed on, so that an enclosing transaction is not committed.
+     * @return Number of prices stored.
+     */
+    public int addStockHistoryRecords(List<PriceDownloadedEvent> prices) throws IOException {
+        if (prices.isEmpty()) return 0;
+
+        int stored = 0;
+        BriteDatabase.Transaction tx = database.newTransaction();
+        try {
+            SupportSQLiteStatement statement = database.getWritableDatabase().compileStatement(UPSERT);
+            try {
+                for (PriceDownloadedEvent price : prices) {
+                    if (TextUtils.isEmpty(price.symbol) || price.price == null || price.date == null) continue;
+
+                    statement.clearBindings();
+                    statement.bindString(1, price.symbol);
+                    statement.bindString(2, new MmxDate(price.date).toIsoDateString());
+                    statement.bindString(3, price.price.toString());
+                    statement.bindLong(4, StockHistoryRepository.UpdateType.Online.type);
+                    database.executeInsert(TABLE_NAME, statement);
+                    stored++;
+                }
+            } finally {
+                statement.close();
+            }
+            tx.markSuccessful();
+        } finally {
+            tx.end();
+        }
+        return stored;
+    }
+
     public ContentValues getContentValues(String symbol, Money price, Date date) {
         String isoDate = new MmxDate(date).toIsoDateString();
 
@@ -18,17 +18,38 @@
 package com.money.manager.ex.datalayer;
 
 import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.database.DatasetDependencies;
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.ITableWriteObserver;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.squareup.sqlbrite3.BriteDatabase;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 import info.javaperformance.money.Money;
+import timber.log.Timber;
 
 /**
  * Stock Repository, using Sqlite via SqlBrite.
+ * <p>
+ * The writes do not go through the content provider, so the repository passes them to the
+ * derived tables (account balances) itself and publishes them on the provider's change feed.
  */
 
 public class StockRepositorySql
@@ -36,17 +57,35 @@ public class StockRepositorySql
 
     public static final String TABLE_NAME = "stock_v1";
 
+    /**
+     * Prices per statement in the batch update: two parameters each, within the default
+     * limit of 999 parameters.
+     */
+    private static final int PRICES_PER_STATEMENT = 400;
+
     @Inject
-    public StockRepositorySql(BriteDatabase db) {
+    public StockRepositorySql(BriteDatabase db, MmxOpenHelper openHelper) {
         super(TABLE_NAME, db);
 
+        this.openHelper = openHelper;
 //        application.iocComponent.inject(this);
     }
 
+    private final MmxOpenHelper openHelper;
 
     public boolean delete(int id) {
-        int result = super.delete(StockFields.STOCKID + "=?", Integer.toString(id));
-        return result > 0;
+        boolean committed = false;
+        try {
+            int result = writeStocks(new long[] { id }, false,
+                () -> super.delete(StockFields.STOCKID + "=?", Integer.toString(id)));
+            committed = true;
+            return result > 0;
+        } catch (IOException e) {
+            Timber.e(e, "deleting stock");
+            return false;
+        } finally {
+            endWrite(committed);
+        }
     }
 
     public Stock load(int id) {
@@ -81,14 +120,189 @@ public class StockRepositorySql
         // todo: update notification for sync
     }
 
+    /**
+     * Stores the downloaded prices: the current prices of the stocks and the price history,
+     * in a single transaction. Nothing is stored if any of the statements fails.
+     * @return True if all the prices were stored.
+     */
+    public boolean savePrices(List<PriceDownloadedEvent> prices) {
+        if (prices.isEmpty()) return true;
+
+        StockHistoryRepositorySql history = new StockHistoryRepositorySql(database);
+        boolean committed = false;
+        BriteDatabase.Transaction tx = database.newTransaction();
+        try {
+            updateCurrentPrices(prices);
+            history.addStockHistoryRecords(prices);
+            tx.markSuccessful();
+            committed = true;
+        } catch (Exception e) {
+            Timber.e(e, "saving the downloaded prices");
+        } finally {
+            tx.end();
+        }
+        endWrite(committed);
+        return committed;
+    }
+
+    /**
+     * Updates the current price and the value of all the stocks with the downloaded symbols,
+     * in one transaction, with one statement per {@value #PRICES_PER_STATEMENT} prices.
+     * Of multiple prices for a symbol, the last one is used.
+     * The exception is passed on, so that the enclosing transaction is not committed.
+     * @return Number of stock records updated.
+     */
+    private int updateCurrentPrices(List<PriceDownloadedEvent> prices) throws IOException {
+        Map<String, Money> latest = new LinkedHashMap<>();
+        for (PriceDownloadedEvent price : prices) {
+            if (TextUtils.isEmpty(price.symbol) || price.price == null) continue;
+            latest.put(price.symbol, price.price);
+        }
+        if (latest.isEmpty()) return 0;
+
+        List<Map.Entry<String, Money>> entries = new ArrayList<>(latest.entrySet());
+        int updated = 0;
+        BriteDatabase.Transaction tx = database.newTransaction();
+        try {
+            for (int start = 0; start < entries.size(); start += PRICES_PER_STATEMENT) {
+                List<Map.Entry<String, Money>> chunk =
+                    entries.subList(start, Math.min(start + PRICES_PER_STATEMENT, entries.size()));
+                updated += writeStocks(findIdsBySymbols(chunk), true,
+                    () -> updateCurrentPrices(database.getWritableDatabase(), chunk));
+            }
+            tx.markSuccessful();
+        } finally {
+            tx.end();
+        }
+        return updated;
+    }
+
     public boolean save(Stock stock) {
         int id = stock.getId();
 
-        return update(stock, StockFields.STOCKID + "=?", Integer.toString(id));
+        boolean committed = false;
+        try {
+            int result = writeStocks(new long[] { id }, true,
+                () -> update(stock, StockFields.STOCKID + "=?", Integer.toString(id)) ? 1 : 0);
+            committed = true;
+            return result > 0;
+        } catch (IOException e) {
+            Timber.e(e, "saving stock");
+            return false;
+        } finally {
+            endWrite(committed);
+        }
     }
 
     // Private
 
+    private interface StockWrite {
+        int execute() throws IOException;
+    }
+
+    /**
+     * Runs a write to the stocks in a transaction, together with the changes of the derived
+     * tables, as the content provider does for its writes.
+     * @param ids Stocks being written.
+     * @param keepsRows False for deletes.
+     * @return Result of the write.
+     */
+    private int writeStocks(long[] ids, boolean keepsRows, StockWrite write) throws IOException {
+        SupportSQLiteDatabase db = database.getWritableDatabase();
+        List<ITableWriteObserver> observers = getWriteObservers();
+
+        BriteDatabase.Transaction tx = database.newTransaction();
+        try {
+            for (ITableWriteObserver observer : observers) {
+                observer.beforeWrite(db, TABLE_NAME, ids);
+            }
+            int result = write.execute();
+            for (ITableWriteObserver observer : observers) {
+                observer.afterWrite(db, TABLE_NAME, keepsRows ? ids : new long[0]);
+                observer.onWriteCompleted(db);
+            }
+            tx.markSuccessful();
+            return result;
+        } finally {
+            tx.end();
+        }
+    }
+
+    private List<ITableWriteObserver> getWriteObservers() {
+        List<ITableWriteObserver> observers = new ArrayList<>();
+        for (DerivedTable derivedTable : openHelper.getDerivedTables()) {
+            if (derivedTable.isObserving(TABLE_NAME)) {
+                observers.add(derivedTable);
+            }
+        }
+        return observers;
+    }
+
+    /**
+     * Ends the write, once the outermost transaction has ended: notifies the derived tables
+     * and, if committed, publishes the change of the stocks to the listeners of the content
+     * provider's writes (widgets, caches).
+     */
+    private void endWrite(boolean committed) {
+        if (database.getWritableDatabase().inTransaction()) return;
+
+        for (ITableWriteObserver observer : getWriteObservers()) {
+            observer.onWriteEnded(committed);
+        }
+        if (!committed) return;
+
+        MmxContentProvider.getChangeFeed().publish(
+            Collections.singleton(DatasetDependencies.normalize(TABLE_NAME)));
+    }
+
+    private long[] findIdsBySymbols(List<Map.Entry<String, Money>> prices) {
+        StringBuilder placeholders = new StringBuilder();
+        String[] symbols = new String[prices.size()];
+        for (int i = 0; i < prices.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+            symbols[i] = prices.get(i).getKey();
+        }
+
+        Cursor cursor = database.query("SELECT " + StockFields.STOCKID + " FROM " + TABLE_NAME
+            + " WHERE " + StockFields.SYMBOL + " IN (" + placeholders + ")", (Object[]) symbols);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int updateCurrentPrices(SupportSQLiteDatabase db, List<Map.Entry<String, Money>> prices)
+        throws IOException {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < prices.size(); i++) {
+            values.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        String price = "(SELECT P.PRICE FROM PRICES P WHERE P.SYMBOL = " + TABLE_NAME + "."
+            + StockFields.SYMBOL + ")";
+        String sql = "WITH PRICES (SYMBOL, PRICE) AS (VALUES " + values + ")"
+            + " UPDATE " + TABLE_NAME
+            + " SET " + StockFields.CURRENTPRICE + " = " + price + ", "
+            + StockFields.VALUE + " = " + StockFields.NUMSHARES + " * " + price
+            + " WHERE " + StockFields.SYMBOL + " IN (SELECT SYMBOL FROM PRICES)";
+
+        SupportSQLiteStatement statement = db.compileStatement(sql);
+        try {
+            int index = 1;
+            for (Map.Entry<String, Money> entry : prices) {
+                statement.bindString(index++, entry.getKey());
+                statement.bindString(index++, entry.getValue().toString());
+            }
+            return database.executeUpdateDelete(TABLE_NAME, statement);
+        } finally {
+            statement.close();
+        }
+    }
+
     /**
      * Retrieves all record ids which refer the given symbol.
      * @return array of ids of records which contain the symbol.
@@ -18,7 +18,6 @@ package com.money.manager.ex.domainmodel;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.text.TextUtils;
 
 import com.money.manager.ex.Constants;
@@ -52,10 +51,31 @@ public class EntityBase
 
     public ContentValues contentValues;
 
+    /**
+     * Copies the current row. The values are kept in the type they have in the database, so
+     * that the numbers are not converted to text and parsed again in the getters.
+     */
     public void loadFromCursor(Cursor c) {
         this.contentValues.clear();
 
-        DatabaseUtils.cursorRowToContentValues(c, contentValues);
+        int columnCount = c.getColumnCount();
+        for (int i = 0; i < columnCount; i++) {
+            putValue(c, i, c.getColumnName(i), false);
+        }
+    }
+
+    /**
+     * Copies the current row, with the column names and types resolved once for the cursor.
+     * Used by the row mappers, in place of the overrides of {@link #loadFromCursor(Cursor)}.
+     * @param columnNames Names of the cursor columns.
+     * @param realColumns Columns to read as floating point numbers (amounts), by index.
+     */
+    public void loadFromCursor(Cursor c, String[] columnNames, boolean[] realColumns) {
+        this.contentValues.clear();
+
+        for (int i = 0; i < columnNames.length; i++) {
+            putValue(c, i, columnNames[i], realColumns[i]);
+        }
     }
 
     public ContentValues getContentValues() {
@@ -71,10 +91,13 @@ public class EntityBase
     }
 
     protected Money getMoney(String fieldName) {
-        String value = contentValues.getAsString(fieldName);
-        if (value == null || TextUtils.isEmpty(value)) return null;
+        Object value = contentValues.get(fieldName);
+        if (value instanceof Number) {
+            return MoneyFactory.fromDouble(((Number) value).doubleValue()).truncate(Constants.DEFAULT_PRECISION);
+        }
+        if (value == null || TextUtils.isEmpty(value.toString())) return null;
 
-        Money result = MoneyFactory.fromString(value).truncate(Constants.DEFAULT_PRECISION);
+        Money result = MoneyFactory.fromString(value.toString()).truncate(Constants.DEFAULT_PRECISION);
         return result;
     }
 
@@ -125,4 +148,37 @@ public class EntityBase
     protected void setDouble(String column, Double value) {
         contentValues.put(column, value);
     }
+
+    private void putValue(Cursor c, int index, String column, boolean real) {
+        switch (c.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                contentValues.putNull(column);
+                break;
+            case Cursor.FIELD_TYPE_INTEGER:
+                if (real) {
+                    contentValues.put(column, c.getDouble(index));
+                } else {
+                    long value = c.getLong(index);
+                    if (value == (int) value) {
+                        contentValues.put(column, (int) value);
+                    } else {
+                        contentValues.put(column, value);
+                    }
+                }
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                contentValues.put(column, c.getDouble(index));
+                break;
+            case Cursor.FIELD_TYPE_BLOB:
+                contentValues.put(column, c.getBlob(index));
+                break;
+            default:
+                if (real) {
+                    contentValues.put(column, c.getDouble(index));
+                } else {
+                    contentValues.put(column, c.getString(index));
+                }
+                break;
+        }
+    }
 }
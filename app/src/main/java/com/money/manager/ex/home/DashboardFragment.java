@@ -48,6 +48,7 @@ import com.money.manager.ex.common.MmxCursorLoader;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.LedgerPostings;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
 import com.money.manager.ex.database.SQLDataSet;
@@ -218,7 +219,6 @@ public class DashboardFragment
     //@SuppressWarnings("deprecation")
     private String prepareQueryTopWithdrawals() {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
         // data to compose builder
         String[] projectionIn = new String[]{"ID AS _id", ViewMobileData.CATEGID, ViewMobileData.Category, ViewMobileData.SubcategID,
                 ViewMobileData.Subcategory, "SUM(" + ViewMobileData.AmountBaseConvRate + ") AS TOTAL", "COUNT(*) AS NUM"};
@@ -231,7 +231,7 @@ public class DashboardFragment
         String sortOrder = "ABS(SUM(" + ViewMobileData.AmountBaseConvRate + ")) DESC";
         String limit = "10";
         // compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(LedgerPostings.TABLE_NAME);
         // return query
         return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
     }
@@ -239,7 +239,6 @@ public class DashboardFragment
     @SuppressWarnings("deprecation")
     private String prepareQueryTopPayees() {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
         // data to compose builder
         String[] projectionIn = new String[]{"ID AS _id",
                 ViewMobileData.PAYEEID, ViewMobileData.Payee,
@@ -254,7 +253,7 @@ public class DashboardFragment
         String sortOrder = "ABS(SUM(" + ViewMobileData.AmountBaseConvRate + ")) DESC";
         String limit = "10";
         // compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(LedgerPostings.TABLE_NAME);
         // return query
         return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
     }
@@ -96,6 +96,7 @@ import javax.inject.Inject;
 
 import dagger.Lazy;
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
 import rx.Single;
 import rx.SingleSubscriber;
@@ -136,8 +137,8 @@ public class HomeFragment
     private final HashMap<String, List<QueryAccountBills>> mAccountsByType = new HashMap<>();
     private final HashMap<String, QueryAccountBills> mTotalsByType = new HashMap<>();
 
-    private Money mGrandTotal = MoneyFactory.fromDouble(0);
-    private Money mGrandReconciled = MoneyFactory.fromDouble(0);
+    private final MoneyAccumulator mGrandTotal = new MoneyAccumulator(Constants.DEFAULT_PRECISION);
+    private final MoneyAccumulator mGrandReconciled = new MoneyAccumulator(Constants.DEFAULT_PRECISION);
 
     int accountBalancedId = Constants.NOT_SET;
     private QueryAccountBills accountBeingBalanced = null;
@@ -787,8 +788,8 @@ public class HomeFragment
         mAccountsByType.clear();
         mTotalsByType.clear();
         mAccountTypes.clear();
-        mGrandTotal = MoneyFactory.fromDouble(0);
-        mGrandReconciled = MoneyFactory.fromDouble(0);
+        mGrandTotal.reset();
+        mGrandReconciled.reset();
 
         // display individual accounts with balances
         if (cursor != null) {
@@ -814,9 +815,9 @@ public class HomeFragment
             accountTransaction.setValueFromCursor(cursor);
 
             double total = accountTransaction.getTotalBaseConvRate();
-            mGrandTotal = mGrandTotal.add(MoneyFactory.fromDouble(total));
+            mGrandTotal.add(total);
             double totalReconciled = accountTransaction.getReconciledBaseConvRate();
-            mGrandReconciled = mGrandReconciled.add(MoneyFactory.fromDouble(totalReconciled));
+            mGrandReconciled.add(totalReconciled);
 
             String accountType = accountTransaction.getAccountType().toLowerCase();
             QueryAccountBills totalForType;
@@ -17,9 +17,9 @@
 
 package com.money.manager.ex.investment.morningstar;
 
+import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
-import rx.Observable;
 
 /**
  * Morningstar network service
@@ -28,5 +28,5 @@ import rx.Observable;
  */
 public interface IMorningstarService {
     @GET("/stockq/c-header")
-    Observable<String> getPrice(@Query("t") String symbol);
+    Call<String> getPrice(@Query("t") String symbol);
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.money.manager.ex.investment.SecurityPriceModel;
+import com.money.manager.ex.utils.MmxDate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import info.javaperformance.money.MoneyFactory;
+import timber.log.Timber;
+
+/**
+ * Streaming parser for the exchange rate responses: an object with the "date" and an object
+ * with the rates of all the currencies against the base currency, i.e.
+ * {"date": "2024-01-31", "rates": {"EUR": 0.92, "GBP": 0.79}}.
+ * Only the requested currencies are kept. The rates are inverted, to the value of one unit of
+ * the currency in the base currency, as stored in BASECONVRATE.
+ */
+public class ExchangeRateParser {
+
+    /**
+     * Decimals of the inverted rates.
+     */
+    private static final int RATE_SCALE = 10;
+
+    /**
+     * @param ratesKey The name of the object with the rates.
+     */
+    public ExchangeRateParser(String ratesKey) {
+        this.ratesKey = ratesKey;
+    }
+
+    private final String ratesKey;
+
+    /**
+     * @param symbols The currency codes to keep. All the currencies if null.
+     * @return The rates, with the currency code in upper case. Null if the response has no rates.
+     */
+    public List<SecurityPriceModel> parse(Reader content, Collection<String> symbols) throws IOException {
+        Set<String> wanted = null;
+        if (symbols != null) {
+            wanted = new HashSet<>();
+            for (String symbol : symbols) {
+                wanted.add(symbol.toUpperCase(Locale.ENGLISH));
+            }
+        }
+
+        List<SecurityPriceModel> result = null;
+        String dateString = null;
+
+        JsonReader reader = new JsonReader(content);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("date".equals(name) && reader.peek() == JsonToken.STRING) {
+                dateString = reader.nextString();
+            } else if (ratesKey.equalsIgnoreCase(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                result = readRates(reader, wanted);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (result == null) return null;
+
+        // the date may follow the rates.
+        Date date = dateString == null
+            ? new MmxDate().toDate()
+            : new MmxDate(dateString).toDate();
+        for (SecurityPriceModel model : result) {
+            model.date = date;
+        }
+        return result;
+    }
+
+    private List<SecurityPriceModel> readRates(JsonReader reader, Set<String> wanted) throws IOException {
+        List<SecurityPriceModel> result = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String symbol = reader.nextName().toUpperCase(Locale.ENGLISH);
+            JsonToken token = reader.peek();
+            if ((wanted != null && !wanted.contains(symbol))
+                || (token != JsonToken.NUMBER && token != JsonToken.STRING)) {
+                reader.skipValue();
+                continue;
+            }
+
+            // read as text, to keep all the decimals.
+            String value = reader.nextString();
+            BigDecimal rate;
+            try {
+                rate = new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                Timber.w("invalid rate %s for %s", value, symbol);
+                continue;
+            }
+            if (rate.signum() == 0) continue;
+
+            SecurityPriceModel model = new SecurityPriceModel();
+            model.symbol = symbol;
+            model.price = MoneyFactory.fromBigDecimal(
+                BigDecimal.ONE.divide(rate, RATE_SCALE, RoundingMode.HALF_EVEN));
+            result.add(model);
+        }
+        reader.endObject();
+
+        return result;
+    }
+}
@@ -18,15 +18,118 @@
 package com.money.manager.ex.investment.prices;
 
 import android.content.Context;
+import android.widget.Toast;
+
+import com.money.manager.ex.R;
+import com.money.manager.ex.core.UIHelper;
+import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.investment.SecurityPriceModel;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
 
 /**
- * Base class for all exchange rate services.
+ * Base for the exchange rate providers that return the rates of all the currencies in a single
+ * response. The response is fetched once per base currency and parsed as a stream, on a
+ * background thread. All the rates and their history records are stored in one transaction.
  */
+public abstract class ExchangeRateUpdaterBase
+    extends PriceUpdaterBase
+    implements IExchangeRateUpdater {
 
-public class ExchangeRateUpdaterBase
-    extends PriceUpdaterBase {
-    public ExchangeRateUpdaterBase(Context context) {
+    protected ExchangeRateUpdaterBase(Context context) {
         super(context);
     }
 
+    /**
+     * @return The request for the rates of the currencies against the base currency.
+     */
+    protected abstract Call<ResponseBody> createRequest(String baseCurrency, List<String> symbols);
+
+    protected abstract ExchangeRateParser createParser(String baseCurrency);
+
+    @Override
+    public void downloadPrices(final String baseCurrency, final List<String> symbols) {
+        if (symbols == null || symbols.isEmpty()) return;
+
+        showProgressDialog(symbols.size());
+
+        Single.fromCallable(() -> updateRates(baseCurrency, symbols))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<List<SecurityPriceModel>>() {
+                @Override
+                public void onSuccess(List<SecurityPriceModel> rates) {
+                    closeProgressDialog();
+                    notifyUpdated(rates);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    closeProgressDialog();
+                    Timber.e(error, "updating exchange rates");
+                    new UIHelper(getContext()).showToast(R.string.error_updating_rates);
+                }
+            });
+    }
+
+    /**
+     * Downloads the rates and stores them on the calling thread.
+     * @return The stored rates. Null if the response has no rates.
+     */
+    public List<SecurityPriceModel> updateRates(String baseCurrency, List<String> symbols) throws IOException {
+        List<SecurityPriceModel> rates = fetchRates(baseCurrency, symbols);
+        if (rates == null || rates.isEmpty()) return rates;
+
+        return new CurrencyService(getContext()).saveExchangeRates(rates);
+    }
+
+    /**
+     * Downloads and parses the rates on the calling thread.
+     * @return The rates of the requested currencies. Null if the response has no rates.
+     */
+    public List<SecurityPriceModel> fetchRates(String baseCurrency, List<String> symbols) throws IOException {
+        Response<ResponseBody> response = createRequest(baseCurrency, symbols).execute();
+        if (!response.isSuccessful()) {
+            // releases the connection
+            try (ResponseBody ignored = response.errorBody()) {
+                throw new IOException("exchange rates request failed with " + response.code());
+            }
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            throw new IOException("exchange rates request returned no content");
+        }
+
+        try (Reader content = body.charStream()) {
+            return createParser(baseCurrency).parse(content, symbols);
+        }
+    }
+
+    private void notifyUpdated(List<SecurityPriceModel> rates) {
+        UIHelper uiHelper = new UIHelper(getContext());
+        if (rates == null || rates.isEmpty()) {
+            uiHelper.showToast(R.string.error_no_price_found_for_symbol);
+            return;
+        }
+
+        StringBuilder updatedCurrencies = new StringBuilder();
+        for (SecurityPriceModel rate : rates) {
+            if (updatedCurrencies.length() > 0) updatedCurrencies.append(",");
+            updatedCurrencies.append(rate.symbol);
+        }
+        String message = getContext().getString(R.string.download_complete) +
+            " (" + updatedCurrencies + ")";
+        uiHelper.showToast(message, Toast.LENGTH_LONG);
+    }
 }
@@ -17,18 +17,19 @@
 
 package com.money.manager.ex.investment.prices;
 
-import com.google.gson.JsonElement;
-
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 /**
  * Fixer.io
  * https://api.fixer.io/latest?base=USD&symbols=USD,GBP
  */
 public interface IFixerService {
+    @Streaming
     @GET("/latest")
-    Call<JsonElement> getPrices(@Query("base") String baseCurrency,
+    Call<ResponseBody> getPrices(@Query("base") String baseCurrency,
                                 @Query("symbols") String symbols);
 }
@@ -17,17 +17,18 @@
 
 package com.money.manager.ex.investment.prices;
 
-import com.google.gson.JsonObject;
-
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
 /**
  * Free Currency Exchange Rates API
  * https://cdn.jsdelivr.net/npm/@fawazahmed0/currency-api@latest/v1/currencies/eur.json
  */
 public interface IFreeCurrencyExchangeRateAPIService {
+    @Streaming
     @GET("currency-api@latest/v1/currencies/{base}.json")
-    Call<JsonObject> getExchangeRates(@Path("base") String baseCurrency);
+    Call<ResponseBody> getExchangeRates(@Path("base") String baseCurrency);
 }
@@ -30,4 +30,9 @@ public interface ISecurityPriceUpdater {
      * Store the values in the history table.
      */
     void downloadPrices(List<String> symbols);
+
+    /**
+     * Stop the downloads in progress, i.e. when the user leaves the screen.
+     */
+    void cancel();
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trading hours of an exchange, used to decide how long a quote stays current.
+ * The exchange is taken from the suffix of the Yahoo symbol, i.e. BNP.PA. Symbols without a
+ * known suffix are taken as traded in New York. Sessions run Monday to Friday; holidays are
+ * not known and are treated as trading days.
+ */
+public class MarketHours {
+
+    private static final MarketHours NEW_YORK = new MarketHours("America/New_York", 9, 30, 16, 0);
+    private static final Map<String, MarketHours> exchanges = new HashMap<>();
+
+    static {
+        exchanges.put("AS", new MarketHours("Europe/Amsterdam", 9, 0, 17, 30));
+        exchanges.put("AX", new MarketHours("Australia/Sydney", 10, 0, 16, 0));
+        exchanges.put("DE", new MarketHours("Europe/Berlin", 9, 0, 17, 30));
+        exchanges.put("L", new MarketHours("Europe/London", 8, 0, 16, 30));
+        exchanges.put("MI", new MarketHours("Europe/Rome", 9, 0, 17, 30));
+        exchanges.put("PA", new MarketHours("Europe/Paris", 9, 0, 17, 30));
+        exchanges.put("SW", new MarketHours("Europe/Zurich", 9, 0, 17, 30));
+        exchanges.put("TO", new MarketHours("America/Toronto", 9, 30, 16, 0));
+    }
+
+    public static MarketHours forSymbol(String symbol) {
+        if (symbol == null) return NEW_YORK;
+
+        int separator = symbol.lastIndexOf('.');
+        if (separator < 0) return NEW_YORK;
+
+        String suffix = symbol.substring(separator + 1).toUpperCase(Locale.ROOT);
+        MarketHours hours = exchanges.get(suffix);
+        return hours != null ? hours : NEW_YORK;
+    }
+
+    public MarketHours(String zone, int openHour, int openMinute, int closeHour, int closeMinute) {
+        this.zone = ZoneId.of(zone);
+        this.open = LocalTime.of(openHour, openMinute);
+        this.close = LocalTime.of(closeHour, closeMinute);
+    }
+
+    private final ZoneId zone;
+    private final LocalTime open;
+    private final LocalTime close;
+
+    public boolean isOpen(Instant now) {
+        ZonedDateTime local = now.atZone(zone);
+        if (!isTradingDay(local.toLocalDate())) return false;
+
+        LocalTime time = local.toLocalTime();
+        return !time.isBefore(open) && time.isBefore(close);
+    }
+
+    /**
+     * @return The end of the last session that closed at or before the given time.
+     */
+    public Instant getLastClose(Instant now) {
+        ZonedDateTime local = now.atZone(zone);
+        LocalDate date = local.toLocalDate();
+        if (local.toLocalTime().isBefore(close)) {
+            date = date.minusDays(1);
+        }
+        while (!isTradingDay(date)) {
+            date = date.minusDays(1);
+        }
+        return date.atTime(close).atZone(zone).toInstant();
+    }
+
+    private boolean isTradingDay(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY;
+    }
+}
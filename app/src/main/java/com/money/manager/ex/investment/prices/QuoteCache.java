@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers when the price of each symbol was last downloaded and stored, so that a refresh
+ * requests only the stale symbols. While the market of a symbol is open, its price is current
+ * for the freshness interval of the provider. While the market is closed, a price downloaded
+ * after the last close stays current until the next session.
+ * Shared by all the price updaters for the lifetime of the process and cleared when another
+ * database is opened.
+ */
+public class QuoteCache {
+
+    public static final long DEFAULT_FRESHNESS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final QuoteCache instance = new QuoteCache();
+
+    public static QuoteCache get() {
+        return instance;
+    }
+
+    /**
+     * Forgets all the downloads. The next refresh requests every symbol.
+     */
+    public static void invalidate() {
+        instance.clear();
+    }
+
+    private final Map<String, Long> downloaded = new ConcurrentHashMap<>();
+    private final Metrics metrics = new Metrics();
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isFresh(String symbol, long freshness, Instant now) {
+        Long downloadedAt = downloaded.get(symbol);
+        if (downloadedAt == null) return false;
+
+        MarketHours hours = MarketHours.forSymbol(symbol);
+        if (hours.isOpen(now)) {
+            return now.toEpochMilli() - downloadedAt < freshness;
+        }
+        return downloadedAt >= hours.getLastClose(now).toEpochMilli();
+    }
+
+    /**
+     * Filters out the symbols with a current price and counts the hits and misses.
+     * @param freshness How long a price stays current during the session, in milliseconds.
+     * @return The symbols to download.
+     */
+    public List<String> getStaleSymbols(Collection<String> symbols, long freshness, Instant now) {
+        List<String> stale = new ArrayList<>();
+        for (String symbol : symbols) {
+            if (!isFresh(symbol, freshness, now)) {
+                stale.add(symbol);
+            }
+        }
+        metrics.hits.addAndGet(symbols.size() - stale.size());
+        metrics.misses.addAndGet(stale.size());
+        return stale;
+    }
+
+    public void put(String symbol, Instant downloadedAt) {
+        if (symbol == null) return;
+
+        downloaded.put(symbol, downloadedAt.toEpochMilli());
+    }
+
+    public void clear() {
+        downloaded.clear();
+    }
+
+    /**
+     * Cache hits and misses and the download volume, to tune the freshness intervals.
+     */
+    public static class Metrics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong downloadedSymbols = new AtomicLong();
+        private final AtomicLong downloadedBytes = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getDownloadedBytes() {
+            return downloadedBytes.get();
+        }
+
+        /**
+         * @return The bytes not downloaded thanks to the hits, at the average size per symbol.
+         */
+        public long getBytesSaved() {
+            long symbols = downloadedSymbols.get();
+            if (symbols == 0) return 0;
+
+            return hits.get() * downloadedBytes.get() / symbols;
+        }
+
+        /**
+         * @param symbols Number of symbols requested successfully.
+         */
+        public void recordSymbols(int symbols) {
+            downloadedSymbols.addAndGet(symbols);
+        }
+
+        /**
+         * @param bytes Size of a response body.
+         */
+        public void recordBytes(long bytes) {
+            if (bytes > 0) {
+                downloadedBytes.addAndGet(bytes);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "hits %d, misses %d, downloaded %d bytes, saved %d bytes",
+                getHits(), getMisses(), getDownloadedBytes(), getBytesSaved());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import android.text.TextUtils;
+
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Downloads the quotes for a list of symbols from a quote provider.
+ * Each symbol is requested once, in batches of the size the provider accepts. At most
+ * {@link #getParallelism()} requests run at the same time and the requests to the same provider
+ * are spaced by its request interval, across all the downloads.
+ * Transient failures are retried with exponential backoff. Unsubscribing cancels the
+ * pending requests.
+ */
+public class QuoteDownloadScheduler {
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_RETRIES = 3;
+    public static final long DEFAULT_BACKOFF = 500;
+
+    /**
+     * A quote provider, as used by the scheduler.
+     */
+    public interface QuoteSource {
+        /**
+         * @return Name of the provider. The request rate is limited per name.
+         */
+        String getName();
+
+        /**
+         * @return Maximum number of symbols in one request.
+         */
+        int getBatchSize();
+
+        /**
+         * @return Minimum interval between the requests to the provider, in milliseconds.
+         */
+        long getRequestInterval();
+
+        /**
+         * Fetches the prices for the symbols, on the calling thread.
+         * An IOException is a transient failure and the request is retried.
+         * @return The prices found. Symbols without a price are skipped.
+         */
+        List<PriceDownloadedEvent> fetch(List<String> symbols) throws Exception;
+    }
+
+    /**
+     * Outcome of one request.
+     */
+    public static class BatchResult {
+        public BatchResult(List<String> symbols, List<PriceDownloadedEvent> prices, Throwable error) {
+            this.symbols = symbols;
+            this.prices = prices;
+            this.error = error;
+        }
+
+        public final List<String> symbols;
+        public final List<PriceDownloadedEvent> prices;
+        /**
+         * The last failure, if the request did not succeed. Null otherwise.
+         */
+        public final Throwable error;
+    }
+
+    private static final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    public QuoteDownloadScheduler(QuoteSource source) {
+        this(source, DEFAULT_PARALLELISM, DEFAULT_RETRIES, DEFAULT_BACKOFF);
+    }
+
+    /**
+     * @param parallelism Maximum number of requests running at the same time.
+     * @param retries Number of retries after a transient failure.
+     * @param backoff Delay before the first retry, in milliseconds. Doubled on each retry.
+     */
+    public QuoteDownloadScheduler(QuoteSource source, int parallelism, int retries, long backoff) {
+        this(source, parallelism, retries, backoff, Schedulers.io());
+    }
+
+    public QuoteDownloadScheduler(QuoteSource source, int parallelism, int retries, long backoff,
+                                  Scheduler scheduler) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+
+        this.source = source;
+        this.parallelism = parallelism;
+        this.retries = retries;
+        this.backoff = backoff;
+        this.scheduler = scheduler;
+    }
+
+    private final QuoteSource source;
+    private final int parallelism;
+    private final int retries;
+    private final long backoff;
+    private final Scheduler scheduler;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Removes the blank and the repeated symbols, keeping the order.
+     */
+    public static List<String> getUniqueSymbols(Collection<String> symbols) {
+        Set<String> unique = new LinkedHashSet<>();
+        if (symbols == null) return new ArrayList<>(unique);
+
+        for (String symbol : symbols) {
+            if (TextUtils.isEmpty(symbol)) continue;
+            String trimmed = symbol.trim();
+            if (trimmed.isEmpty()) continue;
+            unique.add(trimmed);
+        }
+        return new ArrayList<>(unique);
+    }
+
+    /**
+     * Downloads the quotes for the symbols. One result is emitted per request, as the requests
+     * complete. Failed requests are reported in the results and do not stop the others.
+     */
+    public Observable<BatchResult> download(Collection<String> symbols) {
+        List<String> unique = getUniqueSymbols(symbols);
+        int batchSize = Math.max(1, source.getBatchSize());
+
+        List<List<String>> batches = new ArrayList<>();
+        for (int start = 0; start < unique.size(); start += batchSize) {
+            batches.add(Collections.unmodifiableList(
+                new ArrayList<>(unique.subList(start, Math.min(start + batchSize, unique.size())))));
+        }
+
+        return Observable.from(batches)
+            .flatMap(this::fetch, parallelism);
+    }
+
+    private Observable<BatchResult> fetch(final List<String> batch) {
+        final RateLimiter limiter = getRateLimiter(source.getName(), source.getRequestInterval());
+
+        return Observable.defer(() -> {
+                long delay = limiter.reserve(scheduler.now());
+                return Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler)
+                    .flatMap(tick -> Observable.fromCallable(() -> source.fetch(batch)));
+            })
+            .retryWhen(this::backoff)
+            .map(prices -> new BatchResult(batch, prices, null))
+            .onErrorReturn(error -> new BatchResult(batch, Collections.emptyList(), error))
+            .subscribeOn(scheduler);
+    }
+
+    /**
+     * Retries the transient failures, doubling the delay each time.
+     */
+    private Observable<Long> backoff(Observable<? extends Throwable> errors) {
+        return errors
+            .zipWith(Observable.range(1, retries + 1), (error, attempt) ->
+                attempt <= retries && error instanceof IOException
+                    ? Observable.timer(backoff << (attempt - 1), TimeUnit.MILLISECONDS, scheduler)
+                    : Observable.<Long>error(error))
+            .flatMap(retry -> retry);
+    }
+
+    private static RateLimiter getRateLimiter(String provider, long interval) {
+        RateLimiter limiter = rateLimiters.get(provider);
+        if (limiter == null) {
+            rateLimiters.putIfAbsent(provider, new RateLimiter());
+            limiter = rateLimiters.get(provider);
+        }
+        limiter.setInterval(interval);
+        return limiter;
+    }
+
+    /**
+     * Spaces the requests to one provider by the given interval.
+     */
+    static class RateLimiter {
+        private long interval;
+        private long next;
+
+        synchronized void setInterval(long interval) {
+            this.interval = Math.max(0, interval);
+        }
+
+        /**
+         * Takes the next free slot.
+         * @return Delay until the slot, in milliseconds.
+         */
+        synchronized long reserve(long now) {
+            long start = Math.max(now, next);
+            next = start + interval;
+            return start - now;
+        }
+    }
+}
@@ -19,21 +19,227 @@ package com.money.manager.ex.investment.prices;
 
 import android.content.Context;
 
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.R;
+import com.money.manager.ex.core.UIHelper;
+import com.money.manager.ex.datalayer.StockRepositorySql;
+import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
+import javax.inject.Inject;
+
+import dagger.Lazy;
+import retrofit2.Call;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
 /**
  * Base class for all security price updaters.
+ * Only the symbols without a current price in the {@link QuoteCache} are requested. The quotes
+ * are downloaded through the {@link QuoteDownloadScheduler} and all the prices are stored in one
+ * batch when the downloads are complete or cancelled.
  */
-
-public class SecurityPriceUpdaterBase
+public abstract class SecurityPriceUpdaterBase
     extends PriceUpdaterBase
-    implements ISecurityPriceUpdater {
+    implements ISecurityPriceUpdater, QuoteDownloadScheduler.QuoteSource {
+
     public SecurityPriceUpdaterBase(Context context) {
         super(context);
+
+        MmexApplication.getApp().iocComponent.inject(this);
     }
 
+    @Inject Lazy<StockRepositorySql> stockRepository;
+
+    /**
+     * Prices downloaded in the current run. Accessed on the main thread.
+     */
+    private final List<PriceDownloadedEvent> mDownloadedPrices = new ArrayList<>();
+    private final QuoteCache mCache = QuoteCache.get();
+    private Subscription mSubscription;
+    private Instant mStartedAt;
+    private int mCounter;
+    private int mFailed;
+
     @Override
     public void downloadPrices(List<String> symbols) {
+        List<String> unique = QuoteDownloadScheduler.getUniqueSymbols(symbols);
+        if (unique.isEmpty()) return;
+
+        cancel();
+
+        mStartedAt = Instant.now();
+        List<String> stale = mCache.getStaleSymbols(unique, getFreshness(), mStartedAt);
+        if (stale.isEmpty()) {
+            Timber.d("all %d prices are current; quote cache: %s", unique.size(), mCache.getMetrics());
+            onPricesSaved(0);
+            return;
+        }
+
+        mDownloadedPrices.clear();
+        mCounter = 0;
+        mFailed = 0;
+        showProgressDialog(stale.size());
+
+        mSubscription = createScheduler().download(stale)
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new Subscriber<QuoteDownloadScheduler.BatchResult>() {
+                @Override
+                public void onCompleted() {
+                    savePrices(true);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    Timber.e(e, "downloading prices");
+                    savePrices(true);
+                }
+
+                @Override
+                public void onNext(QuoteDownloadScheduler.BatchResult result) {
+                    mCounter += result.symbols.size();
+                    setProgress(mCounter);
+
+                    mDownloadedPrices.addAll(result.prices);
+                    if (result.error != null) {
+                        mFailed += result.symbols.size();
+                        Timber.e(result.error, "downloading prices for %s", result.symbols);
+                    } else {
+                        mCache.getMetrics().recordSymbols(result.symbols.size());
+                    }
+                }
+            });
+    }
+
+    /**
+     * Stops the pending downloads. The prices downloaded so far are stored silently, as the
+     * host is being stopped: no messages and no {@link AllPricesDownloadedEvent}.
+     */
+    @Override
+    public void cancel() {
+        if (mSubscription == null || mSubscription.isUnsubscribed()) return;
+
+        mSubscription.unsubscribe();
+        // the host is still valid here, but not once the prices are stored.
+        closeProgressDialog();
+        savePrices(false);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public long getRequestInterval() {
+        return 0;
+    }
+
+    /**
+     * @return How long a downloaded price stays current while its market is open, in
+     * milliseconds. Override to match the quote delay of the provider.
+     */
+    public long getFreshness() {
+        return QuoteCache.DEFAULT_FRESHNESS;
+    }
+
+    /**
+     * @return The scheduler for the downloads. Override to change the number of parallel requests.
+     */
+    protected QuoteDownloadScheduler createScheduler() {
+        return new QuoteDownloadScheduler(this);
+    }
+
+    /**
+     * Executes the request on the calling thread.
+     * Server errors and throttling are reported as IOException, so that the request is retried.
+     * @return The response body.
+     */
+    protected <T> T execute(Call<T> call) throws IOException {
+        Response<T> response = call.execute();
+        if (response.isSuccessful()) {
+            T body = response.body();
+            long bytes = response.raw().body() != null ? response.raw().body().contentLength() : -1;
+            if (bytes < 0 && body instanceof String) {
+                bytes = ((String) body).length();
+            }
+            mCache.getMetrics().recordBytes(bytes);
+            return body;
+        }
+
+        int code = response.code();
+        if (code == 408 || code == 429 || code >= 500) {
+            throw new IOException("HTTP " + code + " " + response.message());
+        }
+        throw new HttpException(response);
+    }
+
+    /**
+     * @param notify Whether to report the result to the user and the host once stored.
+     */
+    private void savePrices(final boolean notify) {
+        mSubscription = null;
+        final List<PriceDownloadedEvent> prices = new ArrayList<>(mDownloadedPrices);
+        final int failed = mFailed;
+        final Instant downloadedAt = mStartedAt;
+        mDownloadedPrices.clear();
+
+        // store all the prices in one transaction.
+        Single.fromCallable(() -> stockRepository.get().savePrices(prices))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Boolean>() {
+                @Override
+                public void onSuccess(Boolean saved) {
+                    if (saved) {
+                        for (PriceDownloadedEvent price : prices) {
+                            mCache.put(price.symbol, downloadedAt);
+                        }
+                    }
+                    Timber.d("quote cache: %s", mCache.getMetrics());
+
+                    if (notify) {
+                        onPricesSaved(failed);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (notify) {
+                        closeProgressDialog();
+                    }
+
+                    Timber.e(error, "saving prices");
+                }
+            });
+    }
+
+    private void onPricesSaved(int failed) {
+        closeProgressDialog();
+
+        // Notify user that all the prices have been downloaded.
+        UIHelper ui = new UIHelper(getContext());
+        if (failed > 0) {
+            ui.showToast(R.string.error_downloading_symbol);
+        } else {
+            ui.showToast(R.string.download_complete);
+        }
 
+        // fire an event so that the data can be reloaded.
+        EventBus.getDefault().post(new AllPricesDownloadedEvent());
     }
 }
@@ -21,7 +21,6 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -49,13 +48,11 @@ import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.StockFields;
 import com.money.manager.ex.datalayer.StockHistoryRepository;
-import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.investment.PriceCsvExport;
 import com.money.manager.ex.investment.QuoteProviders;
 import com.money.manager.ex.investment.SecurityPriceUpdaterFactory;
 import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
-import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceUpdateRequestEvent;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.log.ErrorRaisedEvent;
@@ -69,10 +66,8 @@ import org.parceler.Parcels;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.List;
 
-import info.javaperformance.money.Money;
 import timber.log.Timber;
 
 /**
@@ -102,12 +97,8 @@ public class WatchlistFragment
 
     private WatchlistItemsFragment mDataFragment;
     private String mFragmentName;
-    private StockRepository mStockRepository;
     private Account mAccount;
-
-    // price update counter. Used to know when all the prices are done downloading.
-    private int mUpdateCounter;
-    private int mToUpdateTotal;
+    private ISecurityPriceUpdater mPriceUpdater;
     private WatchlistViewHolder viewHolder;
 
     @Override
@@ -119,8 +110,6 @@ public class WatchlistFragment
         if ((savedInstanceState != null)) {
             mAccount = Parcels.unwrap(savedInstanceState.getParcelable(KEY_ACCOUNT));
         }
-
-        mUpdateCounter = 0;
     }
 
     @Override
@@ -134,6 +123,12 @@ public class WatchlistFragment
     public void onStop() {
         super.onStop();
 
+        // stop the price downloads when leaving the screen.
+        if (mPriceUpdater != null) {
+            mPriceUpdater.cancel();
+            mPriceUpdater = null;
+        }
+
         EventBus.getDefault().unregister(this);
     }
 
@@ -286,11 +281,6 @@ public class WatchlistFragment
         reloadData();
     }
 
-    @Subscribe
-    public void onEvent(PriceDownloadedEvent event) {
-        onPriceDownloaded(event.symbol, event.price, event.date);
-    }
-
     @Subscribe
     public void onEvent(PriceUpdateRequestEvent event) {
         onPriceUpdateRequested(event.symbol);
@@ -320,47 +310,28 @@ public class WatchlistFragment
 
     // Private
 
-    /**
-     * Called from asynchronous task when a first price is downloaded.
-     * @param symbol Stock symbol
-     * @param price Stock price
-     * @param date Date of the price
-     */
-    private void onPriceDownloaded(String symbol, Money price, Date date) {
-        // prices updated.
-
-        if (TextUtils.isEmpty(symbol)) return;
-
-        // update the current price of the stock.
-        StockRepository repo = getStockRepository();
-        repo.updateCurrentPrice(symbol, price);
-
-        // update price history record.
-        StockHistoryRepository historyRepo = mDataFragment.getStockHistoryRepository();
-        historyRepo.addStockHistoryRecord(symbol, price, date);
-
-        mUpdateCounter += 1;
-        if (mUpdateCounter == mToUpdateTotal) {
-            completePriceUpdate();
-        }
-    }
-
     /**
      * Price update requested from the securities list context menu.
      * @param symbol Stock symbol for which to fetch the price.
      */
     private void onPriceUpdateRequested(String symbol) {
-        // reset counter & max.
-        mToUpdateTotal = 1;
-        mUpdateCounter = 0;
-
         // http://stackoverflow.com/questions/1005073/initialization-of-an-arraylist-in-one-line
         List<String> symbols = new ArrayList<>();
         symbols.add(symbol);
 
-        ISecurityPriceUpdater updater = SecurityPriceUpdaterFactory.getUpdaterInstance(getActivity());
-        updater.downloadPrices(symbols);
-        // result received via onEvent.
+        downloadPrices(symbols);
+    }
+
+    /**
+     * Downloads the prices with the selected provider. The data is reloaded on
+     * AllPricesDownloadedEvent.
+     */
+    private void downloadPrices(List<String> symbols) {
+        if (mPriceUpdater != null) {
+            mPriceUpdater.cancel();
+        }
+        mPriceUpdater = SecurityPriceUpdaterFactory.getUpdaterInstance(getActivity());
+        mPriceUpdater.downloadPrices(symbols);
     }
 
     /**
@@ -398,24 +369,6 @@ public class WatchlistFragment
 
     }
 
-    private void completePriceUpdate() {
-        // this call is made from async task so have to get back to the main thread.
-        getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                // refresh the data.
-                mDataFragment.reloadData();
-            }
-        });
-    }
-
-    private StockRepository getStockRepository() {
-        if (mStockRepository == null) {
-            mStockRepository = new StockRepository(getActivity());
-        }
-        return mStockRepository;
-    }
-
     private String[] getAllShownSymbols() {
         int itemCount = mDataFragment.getListAdapter().getCount();
         String[] result = new String[itemCount];
@@ -461,13 +414,9 @@ public class WatchlistFragment
                     public void onClick(DialogInterface dialog, int which) {
                         // Get the list of symbols
                         String[] symbols = getAllShownSymbols();
-                        mToUpdateTotal = symbols.length;
-                        mUpdateCounter = 0;
 
                         // Update security prices
-                        ISecurityPriceUpdater updater = SecurityPriceUpdaterFactory
-                                .getUpdaterInstance(getContext());
-                        updater.downloadPrices(Arrays.asList(symbols));
+                        downloadPrices(Arrays.asList(symbols));
                         // Results received via event
                     }
                 })
@@ -19,21 +19,13 @@ package com.money.manager.ex.investment.yahoocsv;
 
 import android.content.Context;
 
-import com.money.manager.ex.R;
-import com.money.manager.ex.core.UIHelper;
-import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.investment.PriceCsvParser;
-import com.money.manager.ex.investment.prices.PriceUpdaterBase;
-import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
+import com.money.manager.ex.investment.prices.SecurityPriceUpdaterBase;
 
-import org.greenrobot.eventbus.EventBus;
-
+import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 import timber.log.Timber;
@@ -42,97 +34,61 @@ import timber.log.Timber;
  * Implementation of the Yahoo CSV quote provider using Retrofit.
  */
 public class YahooCsvQuoteDownloaderRetrofit
-    extends PriceUpdaterBase
-    implements ISecurityPriceUpdater {
+    extends SecurityPriceUpdaterBase {
 
-    /**
-     * Tracks the number of records to update. Used to close progress binaryDialog when all done.
-     */
-    private int mCounter;
-    private int mTotalRecords;
+    private static final String BASE_URL = "https://download.finance.yahoo.com";
 
     public YahooCsvQuoteDownloaderRetrofit(Context context) {
-        super(context);
+        this(context, BASE_URL);
     }
 
-    @Override
-    public void downloadPrices(List<String> symbols) {
-        if (symbols == null || symbols.isEmpty()) return;
-        mTotalRecords = symbols.size();
-        if (mTotalRecords == 0) return;
-
-        showProgressDialog(mTotalRecords);
-
-        IYahooCsvService service = getYahooCsvService();
-
-        Callback<String> callback = new Callback<String>() {
-            @Override
-            public void onResponse(Call<String> call, Response<String> response) {
-                onContentDownloaded(response.body());
-            }
-
-            @Override
-            public void onFailure(Call<String> call, Throwable t) {
-                closeProgressDialog();
-
-                Timber.e(t, "fetching price");
-            }
-        };
+    /**
+     * @param baseUrl Address of the quote service. Used to run against a local server.
+     */
+    public YahooCsvQuoteDownloaderRetrofit(Context context, String baseUrl) {
+        super(context);
 
-        for (String symbol : symbols) {
-            try {
-                service.getPrice(symbol).enqueue(callback);
-            } catch (Exception ex) {
-                Timber.e(ex, "downloading quotes");
-            }
-        }
+        mBaseUrl = baseUrl;
     }
 
-    private synchronized void finishIfAllDone() {
-        if (mCounter != mTotalRecords) return;
-
-        closeProgressDialog();
-
-        // Notify user that all the prices have been downloaded.
-        new UIHelper(getContext()).showToast(getContext().getString(R.string.download_complete));
+    private final String mBaseUrl;
+    private IYahooCsvService service;
 
-        // fire an event so that the data can be reloaded.
-        EventBus.getDefault().post(new AllPricesDownloadedEvent());
+    @Override
+    public String getName() {
+        return "YahooCsv";
     }
 
-    private void onContentDownloaded(String content) {
-        mCounter++;
-        setProgress(mCounter);
-
-        if (content == null) {
-            new UIHelper(getContext()).showToast(getContext().getString(R.string.error_updating_rates));
-            closeProgressDialog();
-            return;
-        }
-
+    @Override
+    public List<PriceDownloadedEvent> fetch(List<String> symbols) throws Exception {
         PriceCsvParser parser = new PriceCsvParser(getContext());
-        PriceDownloadedEvent event;
-        try {
-            event = parser.parse(content);
-        } catch (IllegalArgumentException e) {
-            Timber.e(e, "parsing the csv contents.");
-            return;
-        }
+        List<PriceDownloadedEvent> prices = new ArrayList<>();
+        for (String symbol : symbols) {
+            String content = execute(getYahooCsvService().getPrice(symbol));
+            if (content == null) continue;
 
-        // Notify the caller by invoking the interface method.
-        if (event != null) {
-            EventBus.getDefault().post(event);
+            PriceDownloadedEvent price;
+            try {
+                price = parser.parse(content);
+            } catch (IllegalArgumentException e) {
+                Timber.e(e, "parsing the csv contents.");
+                continue;
+            }
+            if (price != null) {
+                prices.add(price);
+            }
         }
-
-        finishIfAllDone();
+        return prices;
     }
 
-    public IYahooCsvService getYahooCsvService() {
-        String BASE_URL = "https://download.finance.yahoo.com";
+    public synchronized IYahooCsvService getYahooCsvService() {
+        if (service != null) return service;
+
         Retrofit retrofit = new Retrofit.Builder()
                 .addConverterFactory(ScalarsConverterFactory.create())
-                .baseUrl(BASE_URL)
+                .baseUrl(mBaseUrl)
                 .build();
-        return retrofit.create(IYahooCsvService.class);
+        service = retrofit.create(IYahooCsvService.class);
+        return service;
     }
 }
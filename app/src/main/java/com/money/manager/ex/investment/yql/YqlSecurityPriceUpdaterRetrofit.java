@@ -22,26 +22,18 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
-import com.money.manager.ex.R;
-import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.core.NumericHelper;
-import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
-import com.money.manager.ex.investment.prices.PriceUpdaterBase;
+import com.money.manager.ex.investment.prices.SecurityPriceUpdaterBase;
 import com.money.manager.ex.investment.SecurityPriceModel;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.MmxDate;
 
-import org.greenrobot.eventbus.EventBus;
-
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 import timber.log.Timber;
@@ -50,17 +42,30 @@ import timber.log.Timber;
  * Updates security prices from Yahoo Finance using YQL. Using Retrofit for network access.
  */
 public class YqlSecurityPriceUpdaterRetrofit
-    extends PriceUpdaterBase
-    implements ISecurityPriceUpdater {
+    extends SecurityPriceUpdaterBase {
+
+    private static final String BASE_URL = "https://query.yahooapis.com";
 
     /**
      *
      * @param context Executing context
      */
     public YqlSecurityPriceUpdaterRetrofit(Context context) {
+        this(context, BASE_URL);
+    }
+
+    /**
+     * @param baseUrl Address of the YQL service. Used to run against a local server.
+     */
+    public YqlSecurityPriceUpdaterRetrofit(Context context, String baseUrl) {
         super(context);
+
+        mBaseUrl = baseUrl;
     }
 
+    private final String mBaseUrl;
+    private IYqlService service;
+
     // https://query.yahooapis.com/v1/public/yql
     // ?q=... url escaped
     // &format=json
@@ -68,72 +73,38 @@ public class YqlSecurityPriceUpdaterRetrofit
     // &env=store%3A%2F%2Fdatatables.org%2Falltableswithkeys
     // &callback=
 
+    @Override
+    public String getName() {
+        return "YahooYql";
+    }
+
     /**
-     * Update prices for all the symbols in the list.
+     * All the symbols of a batch go into one query.
      */
-    public void downloadPrices(List<String> symbols) {
-        if (symbols == null) return;
-        int items = symbols.size();
-        if (symbols.isEmpty()) return;
-
-        showProgressDialog(items);
+    @Override
+    public int getBatchSize() {
+        return 50;
+    }
 
+    @Override
+    public List<PriceDownloadedEvent> fetch(List<String> symbols) throws Exception {
         YqlQueryGenerator queryGenerator = new YqlQueryGenerator();
         String query = queryGenerator.getQueryFor(symbols);
 
-        IYqlService yql = getYqlService();
-
-        // Async response handler.
-        Callback<JsonElement> callback = new Callback<JsonElement>() {
-            @Override
-            public void onResponse(Call<JsonElement> call, Response<JsonElement> response) {
-                onContentDownloaded(response.body());
-            }
-
-            @Override
-            public void onFailure(Call<JsonElement> call, Throwable t) {
-                Timber.e(t, "fetching price");
-                closeProgressDialog();
-            }
-        };
-
-        try {
-            // This would be the synchronous call.
-//            prices = yql.getPrices(query).execute().body();
-            yql.getPrices(query).enqueue(callback);
-        } catch (Exception e) {
-            Timber.e(e, "fetching prices");
-        }
-    }
-
-    /**
-     * Called when the file is downloaded and the contents read.
-     * Here we have all the prices.
-     */
-    public void onContentDownloaded(JsonElement response) {
-        UIHelper uiHelper = new UIHelper(getContext());
-
-        if (response == null) {
-            uiHelper.showToast(R.string.error_updating_rates);
-            closeProgressDialog();
-            return;
-        }
+        JsonElement response = execute(getYqlService().getPrices(query));
+        List<PriceDownloadedEvent> prices = new ArrayList<>();
+        if (response == null) return prices;
 
         // parse Json results
         List<SecurityPriceModel> pricesList = getPricesFromJson(response.getAsJsonObject());
         if (pricesList == null) {
-            uiHelper.showToast(R.string.error_no_price_found_for_symbol);
-        } else {
-            // Send the parsed price data to the listener(s).
-            for (SecurityPriceModel model : pricesList) {
-                // Notify the caller.
-                EventBus.getDefault().post(new PriceDownloadedEvent(model.symbol, model.price, model.date));
-            }
+            Timber.w("no prices found for %s", symbols);
+            return prices;
         }
-        closeProgressDialog();
-
-        // Notify user that all the prices have been downloaded.
-        uiHelper.showToast(R.string.download_complete);
+        for (SecurityPriceModel model : pricesList) {
+            prices.add(new PriceDownloadedEvent(model.symbol, model.price, model.date));
+        }
+        return prices;
     }
 
     private List<SecurityPriceModel> getPricesFromJson(JsonObject root) {
@@ -176,18 +147,16 @@ public class YqlSecurityPriceUpdaterRetrofit
         SecurityPriceModel priceModel = new SecurityPriceModel();
         priceModel.symbol = quote.get("symbol").getAsString();
 
-        UIHelper ui = new UIHelper(getContext());
-
         // Price
 
         JsonElement priceElement = quote.get("LastTradePriceOnly");
         if (priceElement == JsonNull.INSTANCE) {
-            ui.showToast(getContext().getString(R.string.error_no_price_found_for_symbol) + " " + priceModel.symbol);
+            Timber.w("no price found for %s", priceModel.symbol);
             return null;
         }
         String priceString = priceElement.getAsString();
         if (!NumericHelper.isNumeric(priceString)) {
-            ui.showToast(getContext().getString(R.string.error_no_price_found_for_symbol) + " " + priceModel.symbol);
+            Timber.w("no price found for %s", priceModel.symbol);
             return null;
         }
 
@@ -206,18 +175,18 @@ public class YqlSecurityPriceUpdaterRetrofit
         return priceModel;
     }
 
-    public IYqlService getYqlService() {
-        String BASE_URL = "https://query.yahooapis.com";
+    public synchronized IYqlService getYqlService() {
+        if (service != null) return service;
 
         Retrofit retrofit = new Retrofit.Builder()
                 .addConverterFactory(GsonConverterFactory.create())
-                .baseUrl(BASE_URL)
+                .baseUrl(mBaseUrl)
                 .build();
-        return retrofit.create(IYqlService.class);
+        service = retrofit.create(IYqlService.class);
+        return service;
     }
 
     private Money readPrice(String priceString, JsonObject quote) {
-        UIHelper ui = new UIHelper(getContext());
         Money price = MoneyFactory.fromString(priceString);
 
         /**
@@ -228,7 +197,7 @@ public class YqlSecurityPriceUpdaterRetrofit
 
         // validation
         if (currencyElement == null || currencyElement.isJsonNull()) {
-            ui.showToast(R.string.error_downloading_symbol);
+            Timber.w("no currency for the price of %s", quote.get("symbol"));
             return MoneyFactory.fromDouble(0);
         }
 
@@ -423,8 +423,6 @@ public class NestedCategoryListFragment
                         if (rowsDelete == 0) {
                             Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -482,8 +480,6 @@ public class NestedCategoryListFragment
                                 }
                                 break;
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -568,8 +564,6 @@ public class NestedCategoryListFragment
                                 }
                                 break;
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -22,6 +22,7 @@ import android.database.Cursor;
 
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
+import com.money.manager.ex.database.CategoryTree;
 import com.money.manager.ex.database.Dataset;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.utils.MmxFileUtils;
@@ -98,9 +99,12 @@ public class QueryNestedCategory
         return  getNestedCategoryEntities( filter, CATEGNAME);
     }
 
+    /**
+     * @return The category and all its descendants.
+     */
     public List<NestedCategoryEntity> getChildrenNestedCategoryEntities(Integer categoryId ){
-        return getNestedCategoryEntities( FULLCATID +
-                        " LIKE '%:"+Integer.toString(categoryId)+":%'");
+        return getNestedCategoryEntities(CATEGID + " IN (SELECT DESCENDANTID FROM "
+                + CategoryTree.CLOSURE_TABLE_NAME + " WHERE ANCESTORID = " + categoryId + ")");
     }
 
 }
@@ -44,6 +44,7 @@ import android.telephony.SmsMessage;
 import android.widget.Toast;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.TransactionTypes;
@@ -197,7 +198,11 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                             Intent t_intent = new Intent(mContext, CheckingTransactionEditActivity.class);
 
                             // Db setup
-                            MmxHelper = new MmxOpenHelper(mContext, app_settings.getDatabaseSettings().getDatabasePath());
+                            // Use the shared connection instead of opening the file again.
+                            if (MmexApplication.getApp().openHelperAtomicReference == null) {
+                                MmexApplication.getApp().initDb(app_settings.getDatabaseSettings().getDatabasePath());
+                            }
+                            MmxHelper = MmexApplication.getApp().openHelperAtomicReference.get();
                             db = MmxHelper.getReadableDatabase();
 
                             baseCurencyID = gen_settings.getBaseCurrencyId();
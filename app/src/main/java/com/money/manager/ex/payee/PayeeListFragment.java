@@ -343,7 +343,6 @@ public class PayeeListFragment
                         if (success) {
                             Toast.makeText(getActivity(), R.string.delete_success, Toast.LENGTH_SHORT).show();
                         }
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -406,8 +405,6 @@ public class PayeeListFragment
                             default:
                                 break;
                         }
-                        // restart loader
-                        restartLoader();
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -313,10 +313,6 @@ public class RecurringTransactionListFragment
                     public void onClick(DialogInterface dialog, int which) {
                         RecurringTransactionService recurringTransaction = new RecurringTransactionService(id, getActivity());
                         recurringTransaction.delete();
-
-                        // restart loader
-                        getLoaderManager().restartLoader(ID_LOADER_REPEATING,
-                                null, RecurringTransactionListFragment.this);
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
@@ -342,8 +338,6 @@ public class RecurringTransactionListFragment
                     public void onClick(DialogInterface dialog, int which) {
                         RecurringTransactionService recurringTransaction = new RecurringTransactionService(id, getActivity());
                         recurringTransaction.moveNextOccurrence();
-                        getLoaderManager().restartLoader(ID_LOADER_REPEATING, null,
-                                RecurringTransactionListFragment.this);
                     }
                 })
                 .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
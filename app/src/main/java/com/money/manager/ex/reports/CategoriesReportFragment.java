@@ -33,10 +33,12 @@ import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.LedgerPostings;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.search.CategorySub;
 import com.money.manager.ex.search.SearchActivity;
@@ -49,7 +51,7 @@ import java.util.ArrayList;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 import androidx.loader.content.Loader;
-import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
 import timber.log.Timber;
 
@@ -125,17 +127,17 @@ public class CategoriesReportFragment
 
             CurrencyService currencyService = new CurrencyService(getActivity().getApplicationContext());
 
-            Money totalAmount = MoneyFactory.fromString("0");
+            MoneyAccumulator totalAmount = new MoneyAccumulator(Constants.DEFAULT_PRECISION);
+            int totalColumn = data.getColumnIndex("TOTAL");
             while (data.moveToNext()) {
-                String totalRow = data.getString(data.getColumnIndex("TOTAL"));
-                if (!TextUtils.isEmpty(totalRow)) {
-                    totalAmount = totalAmount.add(MoneyFactory.fromString(totalRow));
+                if (!data.isNull(totalColumn)) {
+                    totalAmount.add(data.getDouble(totalColumn));
                 } else {
                     new UIHelper(getActivity()).showToast("reading total");
                 }
             }
             TextView txtColumn2 = mListViewFooter.findViewById(R.id.textViewColumn2);
-            txtColumn2.setText(currencyService.getBaseCurrencyFormatted(totalAmount));
+            txtColumn2.setText(currencyService.getBaseCurrencyFormatted(totalAmount.toMoney()));
 
             // solved bug chart
             if (data.getCount() > 0) {
@@ -207,7 +209,6 @@ public class CategoriesReportFragment
     @Override
     protected String prepareQuery(String whereClause) {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
 
         //data to compose builder
         String[] projectionIn = new String[]{
@@ -242,7 +243,7 @@ public class CategoriesReportFragment
         String sortOrder = ViewMobileData.CategoryFullName;
 
         //compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(LedgerPostings.TABLE_NAME);
 
         //return query
         return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, null);
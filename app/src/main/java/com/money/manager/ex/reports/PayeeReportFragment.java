@@ -35,6 +35,7 @@ import android.widget.TextView;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.LedgerPostings;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.domainmodel.Payee;
 import com.money.manager.ex.search.SearchActivity;
@@ -160,7 +161,6 @@ public class PayeeReportFragment
     @Override
     protected String prepareQuery(String whereClause) {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
         //data to compose builder
         String[] projectionIn = new String[]{ ViewMobileData.PAYEEID + " AS _id",
                 ViewMobileData.PAYEEID, ViewMobileData.Payee,
@@ -175,7 +175,7 @@ public class PayeeReportFragment
         String sortOrder = ViewMobileData.Payee;
         String limit = null;
         //compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(LedgerPostings.TABLE_NAME);
         //return query
         return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
     }
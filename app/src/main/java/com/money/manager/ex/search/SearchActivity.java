@@ -34,6 +34,8 @@ import com.money.manager.ex.database.QueryAllData;
 
 import org.parceler.Parcels;
 
+import java.util.ArrayList;
+
 import androidx.fragment.app.FragmentTransaction;
 
 import timber.log.Timber;
@@ -166,10 +168,11 @@ public class SearchActivity
     private void performSearch() {
         SearchParametersFragment searchParametersFragment = getSearchFragment();
         String where = searchParametersFragment.getWhereStatement();
-        showSearchResultsFragment(where);
+        showSearchResultsFragment(where, searchParametersFragment.getWhereParameters(),
+                searchParametersFragment.getMatchExpression());
     }
 
-    private void showSearchResultsFragment(String where) {
+    private void showSearchResultsFragment(String where, ArrayList<String> whereParams, String matchExpression) {
         //create a fragment for search results.
         AllDataListFragment searchResultsFragment = (AllDataListFragment) this.getSupportFragmentManager()
             .findFragmentByTag(AllDataListFragment.class.getSimpleName());
@@ -187,6 +190,8 @@ public class SearchActivity
         //create parameter bundle
         Bundle args = new Bundle();
         args.putString(AllDataListFragment.KEY_ARGUMENTS_WHERE, where);
+        args.putStringArrayList(AllDataListFragment.KEY_ARGUMENTS_WHERE_PARAMS, whereParams);
+        args.putString(AllDataListFragment.KEY_ARGUMENTS_HIGHLIGHT, matchExpression);
         // Sorting
         args.putString(AllDataListFragment.KEY_ARGUMENTS_SORT,
                 QueryAllData.TOACCOUNTID + ", " + QueryAllData.Date + ", " +
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.search;
+
+import android.util.SparseArray;
+
+import com.money.manager.ex.database.TransactionSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A transaction found by the full-text search, with its rank and the positions of the
+ * matched terms.
+ */
+public class SearchHit {
+
+    SearchHit(long transactionId, double score) {
+        this.transactionId = transactionId;
+        this.score = score;
+    }
+
+    private final long transactionId;
+    private final double score;
+    /**
+     * Column index -> matched ranges (start, end), as character positions in the column text.
+     */
+    private final SparseArray<List<int[]>> highlights = new SparseArray<>();
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return The relevance. Higher is better.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @param column Index of the column in TransactionSearchIndex.COLUMNS.
+     * @return The matched ranges in the column text, for Core.highlight.
+     */
+    public List<int[]> getHighlights(int column) {
+        List<int[]> ranges = highlights.get(column);
+        return ranges == null ? Collections.<int[]>emptyList() : ranges;
+    }
+
+    /**
+     * @param column The name of the column in TransactionSearchIndex.
+     */
+    public List<int[]> getHighlights(String column) {
+        return getHighlights(Arrays.asList(TransactionSearchIndex.COLUMNS).indexOf(column));
+    }
+
+    void addHighlight(int column, int start, int end) {
+        List<int[]> ranges = highlights.get(column);
+        if (ranges == null) {
+            ranges = new ArrayList<>();
+            highlights.put(column, ranges);
+        }
+        ranges.add(new int[] { start, end });
+    }
+}
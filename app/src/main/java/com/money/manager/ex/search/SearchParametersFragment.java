@@ -56,6 +56,7 @@ import com.money.manager.ex.core.RequestCodes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionSearchIndex;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
@@ -93,6 +94,8 @@ public class SearchParametersFragment
 
     private Spinner spinAccount, spinStatus, spinCurrency;
     private EditText txtNotes;
+    private final ArrayList<String> mWhereParameters = new ArrayList<>();
+    private String mMatchExpression;
     private TextView txtSelectCategory;
     private CheckBox cbxWithdrawal, cbxTransfer;
     private CheckBox cbxSearchSubCategory;
@@ -329,6 +332,21 @@ public class SearchParametersFragment
         return parameters;
     }
 
+    /**
+     * @return The values of the parameters in the where statement, in order.
+     */
+    public ArrayList<String> getWhereParameters() {
+        return mWhereParameters;
+    }
+
+    /**
+     * @return The full-text match expression used in the where statement, or null.
+     * Used to highlight the matches in the results.
+     */
+    public String getMatchExpression() {
+        return mMatchExpression;
+    }
+
     public String getWhereStatement() {
         // Store parameters from UI.
         SearchParameters searchParameters = collectSearchCriteria();
@@ -518,13 +536,20 @@ public class SearchParametersFragment
 
         }
 
-        // transaction number
-        if (!TextUtils.isEmpty(searchParameters.transactionNumber)) {
-            where.addStatement(QueryAllData.TransactionNumber, " LIKE ", searchParameters.transactionNumber);
-        }
-        // notes
-        if (!TextUtils.isEmpty(searchParameters.notes)) {
-            where.addStatement(QueryAllData.Notes + " LIKE '%" + searchParameters.notes + "%'");
+        // transaction number and notes, through the full-text index
+        mMatchExpression = null;
+        mWhereParameters.clear();
+        String numberExpression = TransactionSearchService.getMatchExpression(
+                searchParameters.transactionNumber, TransactionSearchIndex.TRANSACTIONNUMBER);
+        String notesExpression = TransactionSearchService.getMatchExpression(
+                searchParameters.notes, TransactionSearchIndex.NOTES);
+        if (numberExpression != null || notesExpression != null) {
+            mMatchExpression = numberExpression == null ? notesExpression
+                    : notesExpression == null ? numberExpression
+                    : numberExpression + " " + notesExpression;
+
+            where.addStatement(TransactionSearchService.TRANSACTION_FILTER);
+            mWhereParameters.add(mMatchExpression);
         }
 
         return where.getWhere();
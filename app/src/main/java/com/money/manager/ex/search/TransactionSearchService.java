@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.search;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.database.MmxOpenHelper;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionSearchIndex;
+import com.money.manager.ex.servicelayer.ServiceBase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Inject;
+
+import dagger.Lazy;
+
+/**
+ * Full-text search of the transactions, over {@link TransactionSearchIndex}.
+ * The words of the search text are matched as prefixes, the matches are ranked by the
+ * frequency of the terms, weighted by column.
+ */
+public class TransactionSearchService
+    extends ServiceBase {
+
+    /**
+     * Selection for QueryAllData: the transactions matching the expression given as the
+     * (bound) parameter.
+     */
+    public static final String TRANSACTION_FILTER = QueryAllData.ID + " IN (SELECT docid FROM "
+            + TransactionSearchIndex.TABLE_NAME + " WHERE " + TransactionSearchIndex.TABLE_NAME + " MATCH ?)";
+
+    /**
+     * Weights of the columns, in the order of TransactionSearchIndex.COLUMNS.
+     */
+    private static final double[] WEIGHTS = { 1.0, 0.5, 2.0, 1.0, 2.0 };
+
+    public TransactionSearchService(Context context) {
+        super(context);
+
+        MmexApplication.getApp().iocComponent.inject(this);
+    }
+
+    @Inject
+    Lazy<MmxOpenHelper> openHelper;
+
+    /**
+     * Converts the text entered by the user into an FTS match expression: all the words, as
+     * prefixes. The operators and quotes in the text are not interpreted.
+     * @param text   The search text.
+     * @param column The column to search in, or null for all the columns.
+     * @return The match expression, null if the text does not contain any words.
+     */
+    public static String getMatchExpression(String text, String column) {
+        if (TextUtils.isEmpty(text)) return null;
+
+        // same normalization as the index: no accents, lower case.
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .toLowerCase(Locale.ENGLISH);
+
+        StringBuilder expression = new StringBuilder();
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+
+            if (expression.length() > 0) expression.append(' ');
+            if (column != null) expression.append(column).append(':');
+            expression.append(word).append('*');
+        }
+        return expression.length() > 0 ? expression.toString() : null;
+    }
+
+    /**
+     * Searches all the indexed columns.
+     * @return The best matches first, at most limit.
+     */
+    public List<SearchHit> search(String text, int limit) {
+        String expression = getMatchExpression(text, null);
+        if (expression == null) return Collections.emptyList();
+
+        return search(openHelper.get().getReadableDatabase(), expression, limit);
+    }
+
+    /**
+     * @param expression The match expression, see {@link #getMatchExpression(String, String)}.
+     * @return All the matches of the expression, with the highlights. Not ranked.
+     */
+    public List<SearchHit> findAll(String expression) {
+        if (expression == null) return Collections.emptyList();
+
+        return search(openHelper.get().getReadableDatabase(), expression, 0);
+    }
+
+    /**
+     * @param limit The maximum number of hits, ranked. 0 for all the hits in any order.
+     */
+    public static List<SearchHit> search(SupportSQLiteDatabase db, String expression, int limit) {
+        String table = TransactionSearchIndex.TABLE_NAME;
+        String sql = "SELECT docid, matchinfo(" + table + ", 'pcx'), offsets(" + table + "), "
+                + TextUtils.join(", ", TransactionSearchIndex.COLUMNS)
+                + " FROM " + table + " WHERE " + table + " MATCH ?";
+
+        List<SearchHit> hits = new ArrayList<>();
+        Cursor cursor = db.query(sql, new Object[] { expression });
+        try {
+            while (cursor.moveToNext()) {
+                SearchHit hit = new SearchHit(cursor.getLong(0), score(cursor.getBlob(1)));
+                addHighlights(hit, cursor.getString(2), cursor);
+                hits.add(hit);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (limit <= 0) return hits;
+
+        // best first, then the most recent
+        Collections.sort(hits, (a, b) -> a.getScore() != b.getScore()
+                ? Double.compare(b.getScore(), a.getScore())
+                : Long.compare(b.getTransactionId(), a.getTransactionId()));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Sum of the weighted term frequencies, relative to the frequencies in all the rows.
+     * @param matchInfo The matchinfo 'pcx' data: phrases, columns, then 3 values per phrase
+     *                  and column (hits in this row, hits in all rows, rows with hits).
+     */
+    static double score(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 8 + 12 * (phrase * columns + column);
+                int rowHits = buffer.getInt(offset);
+                int allHits = buffer.getInt(offset + 4);
+                if (rowHits > 0 && allHits > 0) {
+                    double weight = column < WEIGHTS.length ? WEIGHTS[column] : 1.0;
+                    score += weight * rowHits / allHits;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @param offsets The FTS offsets: column, term, byte offset and byte size for each match.
+     * @param cursor  The column texts start at index 3.
+     */
+    private static void addHighlights(SearchHit hit, String offsets, Cursor cursor) {
+        if (TextUtils.isEmpty(offsets)) return;
+
+        String[] values = offsets.trim().split(" ");
+        for (int i = 0; i + 3 < values.length; i += 4) {
+            int column = Integer.parseInt(values[i]);
+            int byteStart = Integer.parseInt(values[i + 2]);
+            int byteEnd = byteStart + Integer.parseInt(values[i + 3]);
+
+            String text = cursor.getString(3 + column);
+            if (text == null) continue;
+            hit.addHighlight(column, toCharIndex(text, byteStart), toCharIndex(text, byteEnd));
+        }
+    }
+
+    /**
+     * Converts an offset in the UTF-8 encoding of the text into a character index.
+     */
+    static int toCharIndex(String text, int byteOffset) {
+        int bytes = 0;
+        int index = 0;
+        while (index < text.length() && bytes < byteOffset) {
+            int codePoint = text.codePointAt(index);
+            if (codePoint < 0x80) {
+                bytes += 1;
+            } else if (codePoint < 0x800) {
+                bytes += 2;
+            } else if (codePoint < 0x10000) {
+                bytes += 3;
+            } else {
+                bytes += 4;
+            }
+            index += Character.charCount(codePoint);
+        }
+        return index;
+    }
+}
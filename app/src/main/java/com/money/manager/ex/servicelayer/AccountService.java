@@ -29,14 +29,13 @@ import com.money.manager.ex.R;
 import com.money.manager.ex.account.AccountStatuses;
 import com.money.manager.ex.account.AccountTypes;
 import com.money.manager.ex.core.ToolbarSpinnerAdapter;
-import com.money.manager.ex.core.TransactionStatuses;
-import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.BalanceCheckpoints;
 import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.database.QueryAccountBills;
-import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SQLDataSet;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.datalayer.StockFields;
@@ -44,13 +43,14 @@ import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
-import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
+import com.money.manager.ex.utils.MmxDate;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
 import timber.log.Timber;
 
@@ -105,74 +105,30 @@ public class AccountService
      * Calculate simple balance by adding together all transactions before and on the
      * given date. To get the real balance, this amount should be subtracted from the
      * account initial balance.
+     * Uses the monthly balance checkpoints, so only the transactions of the given month are
+     * summed up.
      * @param isoDate date in ISO format
      */
     public Money calculateBalanceOn(int accountId, String isoDate) {
         Money total = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
 
-        WhereStatementGenerator where = new WhereStatementGenerator();
-        // load all transactions on the account before and on given date.
-        where.addStatement(
-            where.concatenateOr(
-                where.getStatement(ITransactionEntity.ACCOUNTID, "=", accountId),
-                where.getStatement(ITransactionEntity.TOACCOUNTID, "=", accountId)
-            )
-        );
-
-        where.addStatement(ITransactionEntity.TRANSDATE, "<=", isoDate);
-        where.addStatement(ITransactionEntity.STATUS, "<>", TransactionStatuses.VOID.getCode());
+        MmxDate date = new MmxDate(isoDate);
+        String account = Integer.toString(accountId);
+        String month = isoDate.substring(0, 7);
+        String[] args = new String[] {
+                account, month,
+                account, account, month + "-01", date.plusDays(1).toIsoDateString()
+        };
 
-        String selection = where.getWhere();
-
-        AccountTransactionRepository repo = new AccountTransactionRepository(getContext());
-
-        Cursor cursor = getContext().getContentResolver().query(repo.getUri(),
-            null,
-            selection,
+        Cursor cursor = getContext().getContentResolver().query(new SQLDataSet().getUri(),
             null,
+            BalanceCheckpoints.BALANCE_ON,
+            args,
             null);
         if (cursor == null) return total;
 
-        AccountTransactionDisplay tx = new AccountTransactionDisplay();
-        Money amount;
-
-        // calculate balance.
-        while (cursor.moveToNext()) {
-            tx.contentValues.clear();
-            String transType = cursor.getString(cursor.getColumnIndex(ITransactionEntity.TRANSCODE));
-
-            // Some users have invalid Transaction Type. Should we check .contains()?
-
-            switch (TransactionTypes.valueOf(transType)) {
-                case Withdrawal:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                            tx.contentValues, QueryAllData.Amount);
-                    amount = tx.getAmount();
-                    total = total.subtract(amount);
-                    break;
-                case Deposit:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                            tx.contentValues, QueryAllData.Amount);
-                    amount = tx.getAmount();
-                    total = total.add(amount);
-                    break;
-                case Transfer:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.ACCOUNTID,
-                            tx.contentValues, QueryAllData.ACCOUNTID);
-
-                    if (tx.getAccountId().equals(accountId)) {
-                        DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                                tx.contentValues, QueryAllData.Amount);
-                        amount = tx.getAmount();
-                        total = total.subtract(amount);
-                    } else {
-                        DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TOTRANSAMOUNT,
-                                tx.contentValues, QueryAllData.Amount);
-                        amount = tx.getAmount();
-                        total = total.add(amount);
-                    }
-                    break;
-            }
+        if (cursor.moveToFirst()) {
+            total = MoneyFactory.fromString(Double.toString(cursor.getDouble(0)));
         }
 
         cursor.close();
@@ -345,7 +301,7 @@ public class AccountService
      * @return current balance in the currency of the account.
      */
     public Money loadBalance(String where) {
-        Money curTotal = MoneyFactory.fromString("0");
+        MoneyAccumulator curTotal = new MoneyAccumulator(Constants.DEFAULT_PRECISION);
 
         QueryAccountBills accountBills = new QueryAccountBills(getContext());
         Cursor cursor = getContext().getContentResolver().query(accountBills.getUri(),
@@ -353,16 +309,16 @@ public class AccountService
                 where,
                 null,
                 null);
-        if (cursor == null) return curTotal;
+        if (cursor == null) return curTotal.toMoney();
 
         // calculate summary
+        int totalColumn = cursor.getColumnIndex(QueryAccountBills.TOTAL);
         while (cursor.moveToNext()) {
-//            curTotal = curTotal.add(MoneyFactory.fromDouble(cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTAL))));
-            curTotal = curTotal.add(MoneyFactory.fromString(cursor.getString(cursor.getColumnIndex(QueryAccountBills.TOTAL))));
+            curTotal.add(cursor.getDouble(totalColumn));
         }
         cursor.close();
 
-        return curTotal;
+        return curTotal.toMoney();
     }
 
     // Private
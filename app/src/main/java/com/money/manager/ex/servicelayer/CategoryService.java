@@ -23,6 +23,8 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.datalayer.CategoryRepository;
 import com.money.manager.ex.datalayer.Select;
@@ -32,6 +34,10 @@ import com.money.manager.ex.nestedcategory.QueryNestedCategory;
 
 import java.util.List;
 
+import javax.inject.Inject;
+
+import dagger.Lazy;
+
 /**
  * Category
  */
@@ -40,8 +46,13 @@ public class CategoryService
 
     public CategoryService(Context context) {
         super(context);
+
+        MmexApplication.getApp().iocComponent.inject(this);
     }
 
+    @Inject
+    Lazy<MmxOpenHelper> openHelper;
+
     private CategoryRepository mRepository;
 
     public int loadIdByName(String name) {
@@ -71,27 +82,20 @@ public class CategoryService
         return ((int) id);
     }
 
+    /**
+     * @return The full name of the category (Parent : Child), empty if not set, null if the
+     * category does not exist.
+     */
     public String getCategorySubcategoryName(int categoryId) {
-        String categoryName = "";
-
-        if (categoryId != Constants.NOT_SET) {
-            CategoryRepository categoryRepository = new CategoryRepository(getContext());
-            Category category = categoryRepository.load(categoryId);
-            if (category != null) {
-                categoryName = category.getName();
-                // TODO parent category : category
-                if (category.getParentId() > 0)
-                {
-                    Category parentCategory = categoryRepository.load(category.getParentId());
-                    if (parentCategory != null)
-                        categoryName = parentCategory.getName() + " : " + category.getName();
-                }
-            } else {
-                categoryName = null;
-            }
-        }
+        if (categoryId == Constants.NOT_SET) return "";
+
+        String categoryName = openHelper.get().getCategoryTreeSnapshot()
+                .getFullPath(categoryId, " : ");
+        if (categoryName != null) return categoryName;
 
-        return categoryName;
+        // not in the tree, i.e. an orphan
+        Category category = getRepository().load(categoryId);
+        return category != null ? category.getName() : null;
     }
 
     /**
@@ -21,6 +21,8 @@ import android.database.Cursor;
 
 import com.money.manager.ex.adapter.AllDataAdapter;
 import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.datalayer.EntityMapper;
+import com.money.manager.ex.datalayer.RowMappers;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 
 import java.text.ParseException;
@@ -50,10 +52,11 @@ public class QifGenerator implements IQifGenerator {
         QifHeader header = new QifHeader(mContext);
         QifRecord record = new QifRecord(mContext);
         AccountTransactionDisplay transaction = new AccountTransactionDisplay();
+        EntityMapper<AccountTransactionDisplay> mapper = RowMappers.getEntityMapper(AccountTransactionDisplay.class);
 
         while (!cursor.isAfterLast()) {
             // get data from cursor.
-            transaction.loadFromCursor(cursor);
+            mapper.load(cursor, transaction);
 
             int accountId;
             if (transaction.getTransactionType() == TransactionTypes.Transfer) {
@@ -36,4 +36,16 @@ public class DatabaseSettings {
     public void setDatabasePath(String path) {
         mAppSettings.set(R.string.pref_database_path, path);
     }
+
+    public boolean getWriteAheadLogging() {
+        return mAppSettings.get(R.string.pref_db_write_ahead_logging, false);
+    }
+
+    public void setWriteAheadLogging(boolean value) {
+        mAppSettings.set(R.string.pref_db_write_ahead_logging, value);
+    }
+
+    public boolean getQueryStatistics() {
+        return mAppSettings.get(R.string.pref_db_query_statistics, false);
+    }
 }
@@ -90,6 +90,8 @@ public class DatabaseSettingsFragment
 
         // Fix duplicates
         initFixDuplicates();
+
+        initWriteAheadLoggingOption();
     }
 
     @Override
@@ -183,6 +185,9 @@ public class DatabaseSettingsFragment
                 Timber.d("checking db integrity.");
 
                 result = db.checkIntegrity();
+                if (result && !db.verifyDerivedTables()) {
+                    Timber.w("derived tables were out of date and have been rebuilt");
+                }
 
                 if (result) {
                     showToast(R.string.db_check_integrity_success, Toast.LENGTH_SHORT);
@@ -285,6 +290,17 @@ public class DatabaseSettingsFragment
         });
     }
 
+    private void initWriteAheadLoggingOption() {
+        Preference preference = findPreference(getString(R.string.pref_db_write_ahead_logging));
+        if (preference == null) return;
+
+        preference.setOnPreferenceChangeListener((preference1, newValue) -> {
+            // reopens the connection in the new journal mode
+            openHelper.get().setWriteAheadLoggingEnabled((Boolean) newValue);
+            return true;
+        });
+    }
+
     private void showNumberOfRecentFiles() {
         Preference preference = findPreference(getString(R.string.pref_clear_recent_files));
         if (preference == null) return;
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.settings;
+
+import android.app.AlertDialog;
+import android.graphics.Typeface;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.widget.HorizontalScrollView;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceFragmentCompat;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.R;
+import com.money.manager.ex.database.QueryStatistics;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * Developer preferences: the statistics of the database queries and the slow query log.
+ */
+public class DeveloperSettingsFragment
+    extends PreferenceFragmentCompat {
+
+    private ActivityResultLauncher<String> dumpLauncher;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        dumpLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument("text/plain"),
+                uri -> {
+                    if (uri != null) dumpStatistics(uri);
+                });
+
+        addPreferencesFromResource(R.xml.preferences_developer);
+
+        initQueryStatisticsOption();
+        initShowStatistics();
+        initShowSlowQueries();
+        initDumpStatistics();
+        initResetStatistics();
+    }
+
+    @Override
+    public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
+    }
+
+    // private
+
+    private QueryStatistics getStatistics() {
+        return MmxContentProvider.getStatistics();
+    }
+
+    private void initQueryStatisticsOption() {
+        Preference preference = findPreference(getString(R.string.pref_db_query_statistics));
+        if (preference == null) return;
+
+        preference.setOnPreferenceChangeListener((preference1, newValue) -> {
+            getStatistics().setEnabled((Boolean) newValue);
+            return true;
+        });
+    }
+
+    private void initShowStatistics() {
+        Preference preference = findPreference(getString(R.string.pref_query_statistics_show));
+        if (preference == null) return;
+
+        preference.setOnPreferenceClickListener(preference1 -> {
+            showReport(getString(R.string.query_statistics), getStatistics().getReport());
+            return true;
+        });
+    }
+
+    private void initShowSlowQueries() {
+        Preference preference = findPreference(getString(R.string.pref_slow_queries_show));
+        if (preference == null) return;
+
+        preference.setSummary(getString(R.string.slow_queries_summary, getStatistics().getSlowQueryMillis()));
+        preference.setOnPreferenceClickListener(preference1 -> {
+            showReport(getString(R.string.slow_queries), getStatistics().getSlowQueryReport());
+            return true;
+        });
+    }
+
+    private void initDumpStatistics() {
+        Preference preference = findPreference(getString(R.string.pref_query_statistics_dump));
+        if (preference == null) return;
+
+        preference.setOnPreferenceClickListener(preference1 -> {
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ENGLISH).format(new Date());
+            dumpLauncher.launch("query-statistics-" + timestamp + ".txt");
+            return true;
+        });
+    }
+
+    private void initResetStatistics() {
+        Preference preference = findPreference(getString(R.string.pref_query_statistics_reset));
+        if (preference == null) return;
+
+        preference.setOnPreferenceClickListener(preference1 -> {
+            getStatistics().reset();
+            Toast.makeText(getActivity(), R.string.cleared, Toast.LENGTH_SHORT).show();
+            return true;
+        });
+    }
+
+    /**
+     * Shows the report in a dialog, in a fixed-width font and without wrapping the lines.
+     */
+    private void showReport(String title, String report) {
+        TextView text = new TextView(getActivity());
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextSize(10);
+        int padding = getResources().getDimensionPixelSize(R.dimen.mmx_padding);
+        text.setPadding(padding, padding, padding, padding);
+        text.setTextIsSelectable(true);
+        text.setText(TextUtils.isEmpty(report.trim()) ? getString(R.string.query_statistics_empty) : report);
+
+        HorizontalScrollView horizontal = new HorizontalScrollView(getActivity());
+        horizontal.addView(text);
+        ScrollView scroll = new ScrollView(getActivity());
+        scroll.addView(horizontal);
+
+        new AlertDialog.Builder(getActivity())
+                .setTitle(title)
+                .setView(scroll)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> dialog.dismiss())
+                .show();
+    }
+
+    private void dumpStatistics(Uri uri) {
+        try (OutputStream stream = requireActivity().getContentResolver().openOutputStream(uri);
+             Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            getStatistics().dump(writer);
+            Toast.makeText(getActivity(), R.string.success, Toast.LENGTH_SHORT).show();
+        } catch (Exception e) {
+            Timber.e(e, "saving query statistics");
+        }
+    }
+}
@@ -145,6 +145,19 @@ public class SettingsFragment
             });
         }
 
+        final Preference developerPreference = findPreference(getString(R.string.pref_developer));
+        if (developerPreference != null) {
+            developerPreference.setIcon(uiHelper.getIcon(GoogleMaterial.Icon.gmd_build)
+                    .color(uiHelper.getSecondaryTextColor()));
+            developerPreference.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    startActivity(new Intent(getActivity(), DeveloperSettingsActivity.class));
+                    return true;
+                }
+            });
+        }
+
         // Synchronisation
         final Preference syncPreference = findPreference(getString(R.string.pref_synchronization));
         if (syncPreference != null) {
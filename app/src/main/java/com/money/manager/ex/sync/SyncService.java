@@ -33,6 +33,7 @@ import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.RequestCodes;
 import com.money.manager.ex.core.docstorage.FileStorageHelper;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.home.DatabaseMetadata;
 import com.money.manager.ex.home.MainActivity;
 import com.money.manager.ex.home.RecentDatabasesProvider;
@@ -128,10 +129,12 @@ public class SyncService
                 sendMessage(outMessenger, SyncServiceMessage.DOWNLOAD_COMPLETE);
                 break;
             case SyncConstants.INTENT_ACTION_UPLOAD:
+                checkpointDatabase(localFile);
                 storage.pushDatabase(currentDb);
                 sendMessage(outMessenger, SyncServiceMessage.UPLOAD_COMPLETE);
                 break;
             case SyncConstants.INTENT_ACTION_SYNC:
+                checkpointDatabase(localFile);
                 triggerSync(outMessenger, localFile);
                 break;
             default:
@@ -152,6 +155,23 @@ public class SyncService
         enqueueWork(context, SyncService.class, SyncService.SYNC_JOB_ID, intent);
     }
 
+    /**
+     * Moves the pending changes from the write-ahead log into the database file, so that the
+     * uploaded .mmb file is complete and readable by the desktop application.
+     * @param localFile The database file being synchronized.
+     */
+    private void checkpointDatabase(File localFile) {
+        MmexApplication app = MmexApplication.getApp();
+        if (app.openHelperAtomicReference == null) return;
+
+        MmxOpenHelper helper = app.openHelperAtomicReference.get();
+        if (helper == null || !helper.isWriteAheadLoggingEnabled()) return;
+        if (!localFile.getAbsolutePath().equals(new File(helper.getDbPath()).getAbsolutePath())) return;
+
+        boolean result = helper.checkpoint();
+        Timber.d("WAL checkpoint before sync: %b", result);
+    }
+
     private void showNotificationUploadComplete(boolean result, File localFile) {
         if (mNotificationManager == null) return;
 
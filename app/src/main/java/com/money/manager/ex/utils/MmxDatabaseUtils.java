@@ -33,6 +33,7 @@ import com.money.manager.ex.R;
 import com.money.manager.ex.core.InfoKeys;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.core.database.DatabaseManager;
+import com.money.manager.ex.database.DerivedTable;
 import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.datalayer.InfoRepositorySql;
 import com.money.manager.ex.domainmodel.Info;
@@ -115,6 +116,20 @@ public class MmxDatabaseUtils {
         return result;
     }
 
+    /**
+     * Verifies the derived tables (report postings, account balances) against the base
+     * tables and rebuilds the ones that are not consistent.
+     * @return A boolean indicating whether all the derived tables were consistent.
+     */
+    public boolean verifyDerivedTables() {
+        SupportSQLiteDatabase db = openHelper.get().getWritableDatabase();
+        boolean result = true;
+        for (DerivedTable table : openHelper.get().getDerivedTables()) {
+            result &= table.verifyOrRebuild(db);
+        }
+        return result;
+    }
+
     /**
      * Checks if all the required tables are present.
      * Should be expanded and improved to check for the whole schema.
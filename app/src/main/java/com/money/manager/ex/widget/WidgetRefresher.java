@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+
+import com.money.manager.ex.database.TableChangeFeed;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Updates the widgets showing the account balances when the tables they are read from change.
+ * Called once per committed write transaction.
+ */
+public class WidgetRefresher
+    implements TableChangeFeed.Listener {
+
+    private static final List<String> TABLES = Arrays.asList("ACCOUNTLIST_V1", "CHECKINGACCOUNT_V1",
+            "CURRENCYFORMATS_V1", "STOCK_V1");
+    private static final Class<?>[] WIDGETS = { SummaryWidgetProvider.class,
+            AccountBillsWidgetProvider.class, SingleAccountWidget.class };
+
+    public WidgetRefresher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private final Context context;
+
+    @Override
+    public void onTablesChanged(Set<String> tables) {
+        boolean affected = false;
+        for (String table : TABLES) {
+            affected |= tables.contains(table);
+        }
+        if (!affected) return;
+
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        if (manager == null) return;
+
+        for (Class<?> widget : WIDGETS) {
+            int[] ids = manager.getAppWidgetIds(new ComponentName(context, widget));
+            if (ids == null || ids.length == 0) continue;
+
+            Intent intent = new Intent(context, widget);
+            intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, ids);
+            context.sendBroadcast(intent);
+        }
+    }
+}
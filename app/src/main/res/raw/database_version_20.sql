@@ -0,0 +1,11 @@
+-- Indexes for the lookups on the transactions
+-- Transactions of an account (or transferred to it), by date.
+CREATE INDEX IF NOT EXISTS IDX_CHECKINGACCOUNT_ACCOUNTID_TRANSDATE ON CHECKINGACCOUNT_V1 (ACCOUNTID, TRANSDATE);
+CREATE INDEX IF NOT EXISTS IDX_CHECKINGACCOUNT_TOACCOUNTID_TRANSDATE ON CHECKINGACCOUNT_V1 (TOACCOUNTID, TRANSDATE);
+-- Payee and category in use
+CREATE INDEX IF NOT EXISTS IDX_CHECKINGACCOUNT_PAYEEID ON CHECKINGACCOUNT_V1 (PAYEEID);
+CREATE INDEX IF NOT EXISTS IDX_CHECKINGACCOUNT_CATEGID ON CHECKINGACCOUNT_V1 (CATEGID);
+CREATE INDEX IF NOT EXISTS IDX_SPLITTRANSACTIONS_CATEGID ON SPLITTRANSACTIONS_V1 (CATEGID);
+-- Date ordered lists of the transactions that are not deleted
+CREATE INDEX IF NOT EXISTS IDX_CHECKINGACCOUNT_ACTIVE_TRANSDATE ON CHECKINGACCOUNT_V1 (TRANSDATE, TRANSID)
+    WHERE DELETEDTIME IS NULL OR DELETEDTIME = '';
@@ -1,11 +1,4 @@
 -- Account Transactions list
-WITH RECURSIVE categories(categid, categname, parentid) AS
-    (SELECT a.categid, a.categname, a.parentid FROM category_v1 a WHERE parentid = '-1'
-        UNION ALL
-     SELECT c.categid, r.categname || ':' || c.categname, c.parentid
-     FROM categories r, category_v1 c
-	 WHERE r.categid = c.parentid
-	 )
 SELECT 
     TX.TransID AS ID,
     TX.TransCode AS TransactionType,
@@ -18,7 +11,7 @@ SELECT
     ( CASE TX.TRANSCODE WHEN 'Deposit' THEN 1 ELSE -1 END ) *  TX.TransAmount AS Amount,
     FromAcc.CurrencyID AS CurrencyID,
     cf.currency_symbol AS currency,
-    FromAcc.AccountID AS AccountID,
+    TX.ACCOUNTID AS AccountID,
     FromAcc.AccountName AS AccountName,
     -- Destination
     ifnull(ToAcc.AccountId, FromAcc.AccountId) AS ToAccountId,
@@ -32,14 +25,16 @@ SELECT
     ifnull( PAYEE.PayeeName, '') AS Payee,
     ifnull( PAYEE.PayeeID, -1 ) AS PayeeID,
     TX.TRANSACTIONNUMBER AS TransactionNumber,
+    -- unconverted, for the indexed filters
+    TX.TRANSDATE AS TransDate,
+    TX.TOACCOUNTID AS TransferAccountID,
 
     round( strftime( '%d', TX.transdate ) ) AS day,
     round( strftime( '%m', TX.transdate ) ) AS month,
     round( strftime( '%Y', TX.transdate ) ) AS year
 
 FROM CHECKINGACCOUNT_V1 TX
-    LEFT JOIN categories CAT ON CAT.CATEGID = TX.CATEGID
-    LEFT JOIN categories PARENTCAT ON PARENTCAT.CATEGID = CAT.PARENTID
+    LEFT JOIN CATEGORYTREE CAT ON CAT.CATEGID = TX.CATEGID
     LEFT JOIN PAYEE_V1 PAYEE ON PAYEE.PAYEEID = TX.PAYEEID
     LEFT JOIN ACCOUNTLIST_V1 FROMACC ON FROMACC.ACCOUNTID = TX.ACCOUNTID
     LEFT JOIN ACCOUNTLIST_V1 TOACC ON TOACC.ACCOUNTID = TX.TOACCOUNTID
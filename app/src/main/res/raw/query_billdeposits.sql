@@ -1,10 +1,3 @@
-WITH RECURSIVE categories(categid, categname, parentid) AS
-    (SELECT a.categid, a.categname, a.parentid FROM category_v1 a WHERE parentid = '-1'
-        UNION ALL
-     SELECT c.categid, r.categname || ':' || c.categname, c.parentid
-     FROM categories r, category_v1 c
-	 WHERE r.categid = c.parentid
-	 )
 SELECT
     BILLSDEPOSITS_V1.BDID,
     BILLSDEPOSITS_V1.PAYEEID,
@@ -15,7 +8,7 @@ SELECT
     ACCOUNTLIST_V1.ACCOUNTNAME,
     ACCOUNTLIST_V1.CURRENCYID,
     NULL AS SUBCATEGNAME,
-    categories.CATEGNAME AS CATEGNAME,
+    CAT.CATEGNAME AS CATEGNAME,
     BILLSDEPOSITS_V1.TRANSCODE,
     BILLSDEPOSITS_V1.TRANSAMOUNT,
     BILLSDEPOSITS_V1.NEXTOCCURRENCEDATE,
@@ -32,4 +25,4 @@ FROM BILLSDEPOSITS_V1
     JOIN ACCOUNTLIST_V1 ON BILLSDEPOSITS_V1.ACCOUNTID = ACCOUNTLIST_V1.ACCOUNTID
     LEFT OUTER JOIN PAYEE_V1 ON BILLSDEPOSITS_V1.PAYEEID = PAYEE_V1.PAYEEID
     LEFT OUTER JOIN ACCOUNTLIST_V1 TOACCOUNT ON BILLSDEPOSITS_V1.TOACCOUNTID = TOACCOUNT.ACCOUNTID
-    LEFT OUTER JOIN categories ON BILLSDEPOSITS_V1.CATEGID = categories.CATEGID
+    LEFT OUTER JOIN CATEGORYTREE CAT ON BILLSDEPOSITS_V1.CATEGID = CAT.CATEGID
@@ -1,3 +1,6 @@
+-- Income, expenses and transfers by month, in the base currency.
+-- Reads the monthly rollup (see IncomeExpenseRollup.java) instead of the mobile data.
+-- The postings with a historical rate are already converted at the rate of their date.
 SELECT SUB2.Year, SUB2.Month, SUM(SUB2.i) AS Income, SUM(SUB2.e) AS Expenses, SUM(SUB2.t) AS Transfers
 FROM (
     select sub1.month, sub1.year,
@@ -5,11 +8,10 @@ FROM (
     case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
     case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
     from (
-        select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-        from %%mobiledata%%
-        where not(mobiledata.status = 'V')
-            and not (mobiledata.TOACCOUNTID = 32702 and lower(mobiledata.transactiontype) in ('deposit', 'withdrawal'))
-        group by month, year, transactiontype
+        select r.month, r.year, r.transactiontype, sum(r.HISTORICALAMOUNT + r.CURRENTRATEAMOUNT * ifnull(cf.BaseConvRate, 1)) as total
+        from INCOMEEXPENSEROLLUP r
+            left join CURRENCYFORMATS_V1 cf on cf.CURRENCYID = r.CURRENCYID
+        group by r.month, r.year, r.transactiontype
         ) sub1
     ) SUB2
 GROUP BY SUB2.Year, SUB2.Month
@@ -23,12 +25,10 @@ FROM (
 	case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
 	case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
 	from (
-		select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-		from %%mobiledata%%
-    where not(mobiledata.status = 'V')
-            and not (mobiledata.TOACCOUNTID = 32702 and lower(mobiledata.transactiontype) in ('deposit', 'withdrawal'))
-    group by month, year, transactiontype
+		select r.month, r.year, r.transactiontype, sum(r.HISTORICALAMOUNT + r.CURRENTRATEAMOUNT * ifnull(cf.BaseConvRate, 1)) as total
+		from INCOMEEXPENSEROLLUP r
+            left join CURRENCYFORMATS_V1 cf on cf.CURRENCYID = r.CURRENCYID
+    group by r.month, r.year, r.transactiontype
     ) sub1
 ) SUB2
 GROUP BY SUB2.Year
-
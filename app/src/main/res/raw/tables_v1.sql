@@ -184,6 +184,12 @@ TRANSID integer primary key
 );
 CREATE INDEX IDX_CHECKINGACCOUNT_ACCOUNT ON CHECKINGACCOUNT_V1 (ACCOUNTID, TOACCOUNTID);
 CREATE INDEX IDX_CHECKINGACCOUNT_TRANSDATE ON CHECKINGACCOUNT_V1 (TRANSDATE);
+CREATE INDEX IDX_CHECKINGACCOUNT_ACCOUNTID_TRANSDATE ON CHECKINGACCOUNT_V1 (ACCOUNTID, TRANSDATE);
+CREATE INDEX IDX_CHECKINGACCOUNT_TOACCOUNTID_TRANSDATE ON CHECKINGACCOUNT_V1 (TOACCOUNTID, TRANSDATE);
+CREATE INDEX IDX_CHECKINGACCOUNT_PAYEEID ON CHECKINGACCOUNT_V1 (PAYEEID);
+CREATE INDEX IDX_CHECKINGACCOUNT_CATEGID ON CHECKINGACCOUNT_V1 (CATEGID);
+CREATE INDEX IDX_CHECKINGACCOUNT_ACTIVE_TRANSDATE ON CHECKINGACCOUNT_V1 (TRANSDATE, TRANSID)
+    WHERE DELETEDTIME IS NULL OR DELETEDTIME = '';
 
 -- Describe CURRENCYHISTORY_V1
 CREATE TABLE CURRENCYHISTORY_V1(
@@ -417,6 +423,7 @@ SPLITTRANSID integer primary key
 , NOTES TEXT
 );
 CREATE INDEX IDX_SPLITTRANSACTIONS_TRANSID ON SPLITTRANSACTIONS_V1(TRANSID);
+CREATE INDEX IDX_SPLITTRANSACTIONS_CATEGID ON SPLITTRANSACTIONS_V1(CATEGID);
 
 -- Describe STOCK_V1
 CREATE TABLE STOCK_V1(
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.testhelpers;
+
+import android.content.Context;
+
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.money.manager.ex.database.MmxOpenHelper;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Open helper using the framework SQLite instead of SQLCipher, as the SQLCipher native
+ * library is not available in the unit tests. The derived tables are checked on open, on the
+ * calling thread, unless another scheduler is given.
+ */
+public class FrameworkOpenHelper
+        extends MmxOpenHelper {
+
+    public FrameworkOpenHelper(Context context, String dbPath) {
+        this(context, dbPath, Schedulers.immediate());
+    }
+
+    public FrameworkOpenHelper(Context context, String dbPath, Scheduler derivedTablesScheduler) {
+        super(context, dbPath);
+
+        this.derivedTablesScheduler = derivedTablesScheduler;
+    }
+
+    private final Scheduler derivedTablesScheduler;
+
+    @Override
+    protected Scheduler getDerivedTablesScheduler() {
+        return derivedTablesScheduler;
+    }
+
+    @Override
+    protected SupportSQLiteOpenHelper.Factory createFactory() {
+        return new FrameworkSQLiteOpenHelperFactory();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.testhelpers;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.BalanceCheckpoints;
+import com.money.manager.ex.database.CategoryTree;
+import com.money.manager.ex.database.LedgerPostings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN QUERY PLAN and finds the full scans of the tables that grow with the data.
+ * Handles both the old (SCAN TABLE x AS y) and the new (SCAN y) plan formats.
+ */
+public class QueryPlan {
+
+    /**
+     * The tables where a full scan is a regression. The small lookup tables (accounts,
+     * currencies, categories) and the complete lists (i.e. scheduled transactions) are not
+     * included.
+     */
+    public static final List<String> LARGE_TABLES = Arrays.asList(
+            "CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1", "STOCKHISTORY_V1", "CURRENCYHISTORY_V1",
+            LedgerPostings.TABLE_NAME, BalanceCheckpoints.TABLE_NAME, CategoryTree.CLOSURE_TABLE_NAME);
+
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)(?: AS (\\w+))?");
+    // also the table in parentheses, as the content provider wraps the source: FROM (TABLE) T
+    private static final Pattern TABLE_REFERENCE = Pattern.compile(
+            "(?i)\\b(?:FROM|JOIN)\\s+(?:\\(\\s*(\\w+)\\s*\\)|(\\w+))(?:\\s+(?:AS\\s+)?(\\w+))?");
+    private static final List<String> KEYWORDS = Arrays.asList("ON", "WHERE", "LEFT", "INNER",
+            "OUTER", "CROSS", "JOIN", "GROUP", "ORDER", "LIMIT", "UNION", "USING", "AND", "OR");
+
+    /**
+     * @return The detail lines of the query plan.
+     */
+    public static List<String> explain(SupportSQLiteDatabase db, String sql, Object... args) {
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+
+    /**
+     * @return The plan lines that scan one of the {@link #LARGE_TABLES}.
+     */
+    public static List<String> findFullScans(SupportSQLiteDatabase db, String sql, Object... args) {
+        Map<String, String> aliases = getAliases(sql);
+
+        List<String> scans = new ArrayList<>();
+        for (String line : explain(db, sql, args)) {
+            Matcher matcher = SCAN.matcher(line);
+            if (!matcher.find()) continue;
+
+            String name = matcher.group(1).toUpperCase(Locale.ENGLISH);
+            String table = aliases.containsKey(name) ? aliases.get(name) : name;
+            if (LARGE_TABLES.contains(table)) {
+                scans.add(line);
+            }
+        }
+        return scans;
+    }
+
+    /**
+     * @return Alias (or table name) -> table name, for the table references in the query.
+     */
+    private static Map<String, String> getAliases(String sql) {
+        Map<String, String> aliases = new HashMap<>();
+        Matcher matcher = TABLE_REFERENCE.matcher(sql);
+        while (matcher.find()) {
+            String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            String table = name.toUpperCase(Locale.ENGLISH);
+            String alias = matcher.group(3);
+            if (alias != null && !KEYWORDS.contains(alias.toUpperCase(Locale.ENGLISH))) {
+                aliases.put(alias.toUpperCase(Locale.ENGLISH), table);
+            }
+        }
+        return aliases;
+    }
+}
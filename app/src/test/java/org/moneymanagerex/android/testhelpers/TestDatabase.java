@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.testhelpers;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.MmxOpenHelper;
+
+import java.io.File;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import static android.database.sqlite.SQLiteDatabase.CONFLICT_NONE;
+
+/**
+ * A database file in the cache directory, opened with the {@link FrameworkOpenHelper}, and the
+ * rows the tests insert into it. The helper is created right away and the database is opened
+ * on the first use, so that the helper can be configured first. The files are deleted on close.
+ */
+public class TestDatabase {
+
+    public TestDatabase(String name) {
+        this(name, Schedulers.immediate());
+    }
+
+    public TestDatabase(String name, Scheduler derivedTablesScheduler) {
+        file = new File(UnitTestHelper.getContext().getCacheDir(), name);
+        deleteFiles();
+
+        helper = new FrameworkOpenHelper(UnitTestHelper.getContext(), file.getPath(), derivedTablesScheduler);
+    }
+
+    private final File file;
+    private MmxOpenHelper helper;
+
+    public MmxOpenHelper getHelper() {
+        return helper;
+    }
+
+    public SupportSQLiteDatabase getDatabase() {
+        return helper.getWritableDatabase();
+    }
+
+    /**
+     * Closes the database and opens the same file again.
+     * @param derivedTablesScheduler Where the derived tables are checked after the open.
+     * @return The new helper.
+     */
+    public MmxOpenHelper reopen(Scheduler derivedTablesScheduler) {
+        helper.close();
+        helper = new FrameworkOpenHelper(UnitTestHelper.getContext(), file.getPath(), derivedTablesScheduler);
+        return helper;
+    }
+
+    public void close() {
+        helper.close();
+        deleteFiles();
+    }
+
+    /**
+     * @return The first column of the first row, as a number. 0 when there are no rows.
+     */
+    public long count(String sql) {
+        Cursor cursor = getDatabase().query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return The first column of the first row, as a decimal. 0 when there are no rows.
+     */
+    public double getDouble(String sql) {
+        Cursor cursor = getDatabase().query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getDouble(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return A withdrawal of 10 from account 1, to payee 1, in category 1, on 2024-01-01.
+     */
+    public TransactionBuilder transaction() {
+        return new TransactionBuilder();
+    }
+
+    public long insertAccount(int accountId, String name, int currencyId) {
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTID", accountId);
+        values.put("ACCOUNTNAME", name);
+        values.put("ACCOUNTTYPE", "Checking");
+        values.put("STATUS", "Open");
+        values.put("FAVORITEACCT", "TRUE");
+        values.put("CURRENCYID", currencyId);
+        values.put("INITIALBAL", 0);
+        return getDatabase().insert("ACCOUNTLIST_V1", CONFLICT_NONE, values);
+    }
+
+    public long insertCategory(int categoryId, String name, int parentId) {
+        ContentValues values = new ContentValues();
+        values.put("CATEGID", categoryId);
+        values.put("CATEGNAME", name);
+        values.put("PARENTID", parentId);
+        values.put("ACTIVE", 1);
+        return getDatabase().insert("CATEGORY_V1", CONFLICT_NONE, values);
+    }
+
+    public long insertCurrency(int currencyId, double baseConversionRate) {
+        ContentValues values = new ContentValues();
+        values.put("CURRENCYID", currencyId);
+        values.put("CURRENCYNAME", "Test " + currencyId);
+        values.put("CURRENCY_SYMBOL", "T" + currencyId);
+        values.put("BASECONVRATE", baseConversionRate);
+        values.put("SCALE", 100);
+        values.put("CURRENCY_TYPE", "Fiat");
+        return getDatabase().insert("CURRENCYFORMATS_V1", CONFLICT_NONE, values);
+    }
+
+    public long insertRate(int currencyId, String date, double rate) {
+        ContentValues values = new ContentValues();
+        values.put("CURRENCYID", currencyId);
+        values.put("CURRDATE", date);
+        values.put("CURRVALUE", rate);
+        return getDatabase().insert("CURRENCYHISTORY_V1", CONFLICT_NONE, values);
+    }
+
+    public long insertSplit(long transactionId, int categoryId, double amount) {
+        ContentValues values = new ContentValues();
+        values.put("TRANSID", transactionId);
+        values.put("CATEGID", categoryId);
+        values.put("SPLITTRANSAMOUNT", amount);
+        return getDatabase().insert("SPLITTRANSACTIONS_V1", CONFLICT_NONE, values);
+    }
+
+    /**
+     * A stock in account 1, bought and priced at 1.
+     */
+    public long insertStock(String symbol, int shares) {
+        ContentValues values = new ContentValues();
+        values.put("HELDAT", 1);
+        values.put("PURCHASEDATE", "2024-01-01");
+        values.put("STOCKNAME", symbol);
+        values.put("SYMBOL", symbol);
+        values.put("NUMSHARES", shares);
+        values.put("PURCHASEPRICE", 1);
+        values.put("CURRENTPRICE", 1);
+        values.put("VALUE", shares);
+        return getDatabase().insert("STOCK_V1", CONFLICT_NONE, values);
+    }
+
+    private void deleteFiles() {
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        new File(file.getPath() + "-journal").delete();
+    }
+
+    /**
+     * A row of CHECKINGACCOUNT_V1. Inserted directly, or through the content provider with
+     * the {@link #values()}.
+     */
+    public class TransactionBuilder {
+
+        private final ContentValues values = new ContentValues();
+
+        TransactionBuilder() {
+            values.put("ACCOUNTID", 1);
+            values.put("TOACCOUNTID", -1);
+            values.put("PAYEEID", 1);
+            values.put("TRANSCODE", "Withdrawal");
+            values.put("TRANSAMOUNT", 10);
+            values.put("STATUS", "");
+            values.put("CATEGID", 1);
+            values.put("TRANSDATE", "2024-01-01");
+        }
+
+        public TransactionBuilder account(int accountId) {
+            values.put("ACCOUNTID", accountId);
+            return this;
+        }
+
+        public TransactionBuilder toAccount(int accountId) {
+            values.put("TOACCOUNTID", accountId);
+            return this;
+        }
+
+        public TransactionBuilder type(String transactionCode) {
+            values.put("TRANSCODE", transactionCode);
+            return this;
+        }
+
+        public TransactionBuilder amount(double amount) {
+            values.put("TRANSAMOUNT", amount);
+            return this;
+        }
+
+        public TransactionBuilder toAmount(double amount) {
+            values.put("TOTRANSAMOUNT", amount);
+            return this;
+        }
+
+        public TransactionBuilder status(String status) {
+            values.put("STATUS", status);
+            return this;
+        }
+
+        public TransactionBuilder category(int categoryId) {
+            values.put("CATEGID", categoryId);
+            return this;
+        }
+
+        public TransactionBuilder date(String date) {
+            values.put("TRANSDATE", date);
+            return this;
+        }
+
+        public TransactionBuilder number(String number) {
+            values.put("TRANSACTIONNUMBER", number);
+            return this;
+        }
+
+        public TransactionBuilder notes(String notes) {
+            values.put("NOTES", notes);
+            return this;
+        }
+
+        public ContentValues values() {
+            return values;
+        }
+
+        /**
+         * @return The id of the new transaction.
+         */
+        public long insert() {
+            return getDatabase().insert("CHECKINGACCOUNT_V1", CONFLICT_NONE, values);
+        }
+    }
+}
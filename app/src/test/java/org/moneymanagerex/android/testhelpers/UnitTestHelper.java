@@ -21,11 +21,13 @@ import android.content.ContentProvider;
 import android.content.Intent;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.MmxContentProvider;
 import com.money.manager.ex.common.CategoryListActivity;
 import com.money.manager.ex.common.MmxBaseFragmentActivity;
 import com.money.manager.ex.currency.CurrencyRepository;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.domainmodel.Currency;
 import org.robolectric.Robolectric;
 import org.robolectric.RuntimeEnvironment;
@@ -33,6 +35,7 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.shadows.ShadowLog;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Additionally simplify and standardize certain calls to assist when setting up and running
@@ -95,6 +98,15 @@ public class UnitTestHelper {
         return contentProvider;
     }
 
+    /**
+     * Creates the content provider over the given database, instead of the default
+     * (encrypted) one.
+     */
+    public static MmxContentProvider setupContentProvider(MmxOpenHelper openHelper) {
+        MmexApplication.getApp().openHelperAtomicReference = new AtomicReference<>(openHelper);
+        return Robolectric.buildContentProvider(MmxContentProvider.class).create().get();
+    }
+
     private static void resetSingleton(Class clazz, String fieldName) {
         Field instance;
         try {
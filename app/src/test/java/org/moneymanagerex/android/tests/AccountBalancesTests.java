@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.AccountBalances;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Incremental maintenance and verification of the account balance summary.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AccountBalancesTests {
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private AccountBalances balances;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("balances.mmb");
+        db = database.getDatabase();
+        balances = new AccountBalances();
+        balances.rebuild(db);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void writesUpdateTheBalance() {
+        long deposit = insert("Deposit", 100, "R");
+        insert("Withdrawal", 30, "");
+
+        assertThat(getBalance("TOTAL"), is(70.0));
+        assertThat(getBalance("RECONCILED"), is(100.0));
+
+        // void the deposit
+        long[] ids = new long[] { deposit };
+        balances.beforeWrite(db, TRANSACTIONS, ids);
+        db.execSQL("UPDATE " + TRANSACTIONS + " SET STATUS = 'V' WHERE TRANSID = " + deposit);
+        balances.afterWrite(db, TRANSACTIONS, ids);
+
+        assertThat(getBalance("TOTAL"), is(-30.0));
+        assertThat(getBalance("RECONCILED"), is(0.0));
+        assertThat(balances.verify(db), is(true));
+    }
+
+    @Test
+    public void verificationRebuildsTheBalances() {
+        insert("Deposit", 100, "");
+        // written without the observer
+        db.execSQL("UPDATE " + TRANSACTIONS + " SET TRANSAMOUNT = 150");
+
+        assertThat(balances.verifyOrRebuild(db), is(false));
+        assertThat(getBalance("TOTAL"), is(150.0));
+        assertThat(balances.verify(db), is(true));
+    }
+
+    private long insert(String type, double amount, String status) {
+        long id = database.transaction().type(type).amount(amount).status(status).insert();
+
+        balances.afterWrite(db, TRANSACTIONS, new long[] { id });
+        return id;
+    }
+
+    private double getBalance(String column) {
+        return database.getDouble("SELECT " + column + " FROM " + AccountBalances.TABLE_NAME
+                + " WHERE ACCOUNTID = 1");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.BalanceCheckpoints;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Balance on date from the monthly checkpoints.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BalanceCheckpointsTests {
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private BalanceCheckpoints checkpoints;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("checkpoints.mmb");
+        db = database.getDatabase();
+        checkpoints = new BalanceCheckpoints();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void balanceOnDate() {
+        insert(1, -1, "Deposit", 100, "2024-01-10");
+        insert(1, -1, "Withdrawal", 30, "2024-02-05T10:15:00");
+        insert(1, 2, "Transfer", 20, "2024-02-20");
+        insert(2, -1, "Deposit", 1000, "2024-02-21");
+        checkpoints.rebuild(db);
+
+        assertThat(balanceOn(1, "2024-01-09"), is(0.0));
+        assertThat(balanceOn(1, "2024-01-31"), is(100.0));
+        assertThat(balanceOn(1, "2024-02-05"), is(70.0));
+        assertThat(balanceOn(1, "2024-12-31"), is(50.0));
+        assertThat(balanceOn(2, "2024-02-20"), is(20.0));
+    }
+
+    @Test
+    public void checkpointsAreRecalculatedFromTheModifiedMonth() {
+        insert(1, -1, "Deposit", 100, "2024-01-10");
+        insert(1, -1, "Deposit", 50, "2024-03-10");
+        checkpoints.rebuild(db);
+
+        long id = insert(1, -1, "Withdrawal", 40, "2024-02-01");
+        checkpoints.afterWrite(db, TRANSACTIONS, new long[] { id });
+        checkpoints.onWriteCompleted(db);
+
+        assertThat(balanceOn(1, "2024-01-31"), is(100.0));
+        assertThat(balanceOn(1, "2024-04-01"), is(110.0));
+        assertThat(checkpoints.verify(db), is(true));
+    }
+
+    private long insert(int accountId, int toAccountId, String type, double amount, String date) {
+        return database.transaction().account(accountId).toAccount(toAccountId).type(type)
+                .amount(amount).toAmount(amount).date(date).insert();
+    }
+
+    private double balanceOn(int accountId, String isoDate) {
+        String account = Integer.toString(accountId);
+        String month = isoDate.substring(0, 7);
+        // upper bound: the day after, compared as text.
+        String nextDay = isoDate + "~";
+
+        Cursor cursor = db.query(BalanceCheckpoints.BALANCE_ON,
+                new Object[] { account, month, account, account, month + "-01", nextDay });
+        try {
+            cursor.moveToFirst();
+            return cursor.getDouble(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.budget.BudgetActuals;
+import com.money.manager.ex.budget.BudgetActualsService;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Budget actuals from the ledger postings: rolled up to the parent categories, by period,
+ * and cached until the transactions change.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BudgetActualsTests {
+
+    private static final int ACCOUNT_ID = 9001;
+    private static final int FOOD = 9001;
+    private static final int GROCERIES = 9002;
+    private static final int FRUIT = 9003;
+    private static final long BUDGET_ID = 9001;
+
+    private Context context;
+    private TestDatabase database;
+    private MmxContentProvider provider;
+    private BudgetActualsService service;
+
+    @Before
+    public void setup() {
+        context = UnitTestHelper.getContext();
+        database = new TestDatabase("budget.mmb");
+        provider = UnitTestHelper.setupContentProvider(database.getHelper());
+        BudgetActualsService.clearCache();
+
+        database.insertCategory(FOOD, "Food", -1);
+        database.insertCategory(GROCERIES, "Groceries", FOOD);
+        database.insertCategory(FRUIT, "Fruit", GROCERIES);
+        database.getHelper().getCategoryTree().rebuild(database.getDatabase());
+        database.insertAccount(ACCOUNT_ID, "Budget", 2);
+
+        service = new BudgetActualsService(context);
+    }
+
+    @After
+    public void tearDown() {
+        BudgetActualsService.clearCache();
+        database.close();
+    }
+
+    @Test
+    public void amountsAreRolledUpToTheParents() {
+        insertTransaction(FOOD, 10, "2024-03-05");
+        insertTransaction(GROCERIES, 20, "2024-03-10");
+        insertTransaction(FRUIT, 5, "2024-03-15");
+
+        BudgetActuals actuals = service.getActuals(BUDGET_ID, "2024");
+
+        assertThat(actuals.getActual(FOOD), is(-10.0));
+        assertThat(actuals.getActual(GROCERIES), is(-20.0));
+        assertThat(actuals.getActualWithSubcategories(FOOD), is(-35.0));
+        assertThat(actuals.getActualWithSubcategories(GROCERIES), is(-25.0));
+        assertThat(actuals.getActualWithSubcategories(FRUIT), is(-5.0));
+    }
+
+    @Test
+    public void monthlyBudgetCountsOnlyItsMonth() {
+        insertTransaction(FOOD, 10, "2024-03-31");
+        insertTransaction(FOOD, 20, "2024-04-01");
+        insertTransaction(FOOD, 40, "2023-03-15");
+
+        assertThat(service.getActuals(BUDGET_ID, "2024-03").getActual(FOOD), is(-10.0));
+        assertThat(service.getActuals(BUDGET_ID, "2024").getActual(FOOD), is(-30.0));
+    }
+
+    @Test
+    public void transactionWriteInvalidatesTheCache() {
+        insertTransaction(FOOD, 10, "2024-03-05");
+        BudgetActuals first = service.getActuals(BUDGET_ID, "2024");
+        assertThat(service.getActuals(BUDGET_ID, "2024"), sameInstance(first));
+
+        insertTransaction(FOOD, 5, "2024-03-06");
+
+        BudgetActuals second = service.getActuals(BUDGET_ID, "2024");
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getActual(FOOD), is(-15.0));
+    }
+
+    /**
+     * Through the content provider, to update the postings and publish the change.
+     */
+    private void insertTransaction(int categoryId, double amount, String date) {
+        provider.insert(new AccountTransactionRepository(context).getUri(), database.transaction()
+                .account(ACCOUNT_ID).category(categoryId).amount(amount).date(date).values());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.CategoryTree;
+import com.money.manager.ex.database.CategoryTreeSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Category tree snapshot and the closure table.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CategoryTreeTests {
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private CategoryTree tree;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("categories.mmb");
+        db = database.getDatabase();
+        tree = database.getHelper().getCategoryTree();
+
+        db.execSQL("DELETE FROM CATEGORY_V1");
+        database.insertCategory(1, "Food", -1);
+        database.insertCategory(2, "Groceries", 1);
+        database.insertCategory(3, "Fruit", 2);
+        database.insertCategory(4, "Car", -1);
+        database.insertCategory(5, "Dining", 1);
+        // a cycle, not reachable from the root categories
+        database.insertCategory(6, "Loop A", 7);
+        database.insertCategory(7, "Loop B", 6);
+        tree.rebuild(db);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void snapshotHasFullPathsAndDescendantRanges() {
+        CategoryTreeSnapshot snapshot = tree.getSnapshot(db);
+
+        assertThat(snapshot.size(), is(5));
+        assertThat(snapshot.getFullPath(3, ":"), is("Food:Groceries:Fruit"));
+        assertThat(snapshot.getFullPath(3, " : "), is("Food : Groceries : Fruit"));
+        assertThat(snapshot.getFullPath(6, ":"), nullValue());
+        assertThat(snapshot.getLevel(snapshot.indexOf(3)), is(3));
+
+        assertThat(snapshot.isDescendantOf(3, 1), is(true));
+        assertThat(snapshot.isDescendantOf(3, 4), is(false));
+        // children by name: Dining, Groceries, Fruit
+        assertThat(snapshot.getDescendantIds(1), is(new int[] { 1, 5, 2, 3 }));
+    }
+
+    @Test
+    public void closureHoldsAllAncestors() {
+        assertThat(database.count("SELECT COUNT(*) FROM " + CategoryTree.CLOSURE_TABLE_NAME
+                + " WHERE DESCENDANTID = 3"), is(3L));
+        assertThat(database.count("SELECT COUNT(*) FROM " + CategoryTree.CLOSURE_TABLE_NAME
+                + " WHERE ANCESTORID = 1"), is(4L));
+        assertThat(database.count("SELECT DEPTH FROM " + CategoryTree.CLOSURE_TABLE_NAME
+                + " WHERE ANCESTORID = 1 AND DESCENDANTID = 3"), is(2L));
+    }
+
+    @Test
+    public void categoryWritesReplaceTheSnapshot() {
+        CategoryTreeSnapshot before = tree.getSnapshot(db);
+
+        db.beginTransaction();
+        try {
+            long id = database.insertCategory(8, "Apples", 3);
+            tree.afterWrite(db, "CATEGORY_V1", new long[] { id });
+            tree.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+            // not published before the commit
+            assertThat(tree.getSnapshot(db) == before, is(true));
+        } finally {
+            db.endTransaction();
+        }
+        tree.onWriteEnded(true);
+
+        CategoryTreeSnapshot after = tree.getSnapshot(db);
+        assertThat(after == before, is(false));
+        assertThat(after.getFullPath(8, ":"), is("Food:Groceries:Fruit:Apples"));
+        assertThat(database.count("SELECT COUNT(*) FROM " + CategoryTree.TABLE_NAME
+                + " WHERE CATEGNAME = 'Food:Groceries:Fruit:Apples'"), is(1L));
+    }
+
+    @Test
+    public void rolledBackWriteKeepsTheSnapshot() {
+        CategoryTreeSnapshot before = tree.getSnapshot(db);
+
+        db.beginTransaction();
+        try {
+            long id = database.insertCategory(8, "Apples", 3);
+            tree.afterWrite(db, "CATEGORY_V1", new long[] { id });
+            tree.onWriteCompleted(db);
+        } finally {
+            db.endTransaction();
+        }
+        tree.onWriteEnded(false);
+
+        assertThat(tree.getSnapshot(db) == before, is(true));
+        assertThat(before.contains(8), is(false));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.OperationApplicationException;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.datalayer.PayeeRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Batches through the content provider: all the operations are stored, or none.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ContentProviderBatchTests {
+
+    private TestDatabase database;
+    private MmxContentProvider provider;
+    private PayeeRepository payees;
+    private final List<Set<String>> published = new ArrayList<>();
+    private final TableChangeFeed.Listener listener = published::add;
+
+    @Before
+    public void setup() {
+        Context context = UnitTestHelper.getContext();
+        database = new TestDatabase("batch.mmb");
+        provider = UnitTestHelper.setupContentProvider(database.getHelper());
+        payees = new PayeeRepository(context);
+        MmxContentProvider.getChangeFeed().addListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        MmxContentProvider.getChangeFeed().removeListener(listener);
+        database.close();
+    }
+
+    @Test
+    public void batchIsPublishedOnceOnCommit() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(insertPayee("First"));
+        operations.add(insertPayee("Second"));
+
+        provider.applyBatch(operations);
+
+        assertThat(database.count("SELECT COUNT(*) FROM PAYEE_V1"), is(2L));
+        assertThat(published.size(), is(1));
+        assertThat(published.get(0).contains("PAYEE_V1"), is(true));
+    }
+
+    @Test
+    public void failedOperationRollsBackTheBatch() {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(insertPayee("Stored"));
+        // no such column
+        operations.add(ContentProviderOperation.newUpdate(payees.getUri())
+            .withValue("NO_SUCH_COLUMN", 1)
+            .withSelection("PAYEENAME=?", new String[] { "Stored" })
+            .build());
+        operations.add(insertPayee("After"));
+
+        try {
+            provider.applyBatch(operations);
+            fail("the batch should fail");
+        } catch (OperationApplicationException expected) {
+            // rolled back
+        }
+
+        assertThat(database.count("SELECT COUNT(*) FROM PAYEE_V1"), is(0L));
+        assertThat(published.size(), is(0));
+    }
+
+    private ContentProviderOperation insertPayee(String name) {
+        return ContentProviderOperation.newInsert(payees.getUri())
+            .withValue("PAYEENAME", name)
+            .build();
+    }
+}
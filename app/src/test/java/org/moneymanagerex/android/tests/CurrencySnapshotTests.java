@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.currency.CurrencyRepository;
+import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.currency.CurrencySnapshot;
+import com.money.manager.ex.domainmodel.Currency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The shared snapshot of the currencies: replaced after the changes, never by an older load.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CurrencySnapshotTests {
+
+    private static final int EURO = 2;
+
+    private Context context;
+    private TestDatabase database;
+
+    @Before
+    public void setup() {
+        context = UnitTestHelper.getContext();
+        database = new TestDatabase("currencies.mmb");
+        UnitTestHelper.setupContentProvider(database.getHelper());
+        CurrencySnapshot.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        CurrencySnapshot.invalidate();
+        database.close();
+    }
+
+    @Test
+    public void currencyWriteReplacesTheSnapshot() {
+        CurrencySnapshot before = CurrencySnapshot.get(context);
+
+        new CurrencyRepository(context).saveExchangeRate(EURO, MoneyFactory.fromString("1.25"));
+
+        CurrencySnapshot after = CurrencySnapshot.get(context);
+        assertThat(after, not(sameInstance(before)));
+        assertThat(after.getConversionRate(EURO), is(1.25));
+    }
+
+    @Test
+    public void baseCurrencyChangeReplacesTheSnapshot() {
+        new CurrencyService(context).setBaseCurrencyId(1);
+        assertThat(CurrencySnapshot.get(context).getBaseCurrencyId(), is(1));
+
+        new CurrencyService(context).setBaseCurrencyId(EURO);
+
+        assertThat(CurrencySnapshot.get(context).getBaseCurrencyId(), is(EURO));
+    }
+
+    @Test
+    public void staleLoadDoesNotReplaceTheNewerSnapshot() {
+        final AtomicReference<CurrencySnapshot> newer = new AtomicReference<>();
+        InterleavingProvider provider = setupInterleavingProvider();
+        // a write committed, and a new snapshot loaded, while the first load is running.
+        provider.onQuery = () -> {
+            database.getDatabase().execSQL(
+                    "UPDATE CURRENCYFORMATS_V1 SET BASECONVRATE = 1.5 WHERE CURRENCYID = " + EURO);
+            CurrencySnapshot.invalidate();
+            newer.set(CurrencySnapshot.get(context));
+        };
+
+        CurrencySnapshot stale = CurrencySnapshot.get(context);
+
+        assertThat(stale.getConversionRate(EURO), is(1.0));
+        assertThat(CurrencySnapshot.get(context), sameInstance(newer.get()));
+        assertThat(CurrencySnapshot.get(context).getConversionRate(EURO), is(1.5));
+    }
+
+    @Test
+    public void currenciesAreCopies() {
+        CurrencySnapshot snapshot = CurrencySnapshot.get(context);
+
+        Currency currency = snapshot.getCurrency(EURO);
+        currency.setCentName("changed");
+
+        assertThat(snapshot.getCurrency(EURO).getCentName(), not("changed"));
+    }
+
+    private InterleavingProvider setupInterleavingProvider() {
+        MmexApplication.getApp().openHelperAtomicReference = new AtomicReference<>(database.getHelper());
+        return Robolectric.buildContentProvider(InterleavingProvider.class)
+                .create(context.getPackageName() + ".provider").get();
+    }
+
+    /**
+     * Runs the given action once, after the first query has read its rows.
+     */
+    public static class InterleavingProvider
+            extends MmxContentProvider {
+
+        Runnable onQuery;
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            Cursor cursor = super.query(uri, projection, selection, selectionArgs, sortOrder);
+            Runnable action = onQuery;
+            onQuery = null;
+            if (action != null && cursor != null) {
+                // reads the rows before the action
+                cursor.getCount();
+                action.run();
+            }
+            return cursor;
+        }
+    }
+}
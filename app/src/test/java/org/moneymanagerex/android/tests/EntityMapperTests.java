@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.datalayer.EntityMapper;
+import com.money.manager.ex.datalayer.RowMapper;
+import com.money.manager.ex.datalayer.RowMappers;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Row mappers: the values are loaded in their database types.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntityMapperTests {
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("mapper.mmb");
+        db = database.getDatabase();
+
+        database.transaction().account(100).amount(12.34).insert();
+        database.transaction().account(-5).amount(7).number("A-1").insert();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void valuesKeepTheirTypes() {
+        RowMapper<AccountTransaction> mapper = RowMappers.get(AccountTransaction.class);
+
+        Cursor cursor = db.query("SELECT * FROM CHECKINGACCOUNT_V1 ORDER BY TRANSID");
+        try {
+            cursor.moveToFirst();
+            AccountTransaction tx = mapper.map(cursor);
+
+            assertThat(tx.contentValues.get(AccountTransaction.TRANSAMOUNT), instanceOf(Double.class));
+            assertThat(tx.contentValues.get("ACCOUNTID"), instanceOf(Integer.class));
+            assertThat(tx.getAccountId(), is(100));
+            assertThat(tx.getAmount().toDouble(), is(12.34));
+            assertThat(tx.getTransactionNumber(), nullValue());
+            assertThat(tx.getTransactionCode(), is("Withdrawal"));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void entityIsReusedAcrossRows() {
+        EntityMapper<AccountTransaction> mapper = RowMappers.getEntityMapper(AccountTransaction.class);
+        AccountTransaction tx = new AccountTransaction();
+
+        Cursor cursor = db.query("SELECT * FROM CHECKINGACCOUNT_V1 ORDER BY TRANSID");
+        try {
+            cursor.moveToFirst();
+            mapper.load(cursor, tx);
+            cursor.moveToNext();
+            mapper.load(cursor, tx);
+
+            assertThat(tx.getAccountId(), is(-5));
+            // stored as an integer, still read as an amount
+            assertThat(tx.contentValues.get(AccountTransaction.TRANSAMOUNT), instanceOf(Double.class));
+            assertThat(tx.getAmount().toDouble(), is(7.0));
+            assertThat(tx.getTransactionNumber(), is("A-1"));
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.currency.ExchangeRateHistory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exchange rate history: the rate in effect on a date.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ExchangeRateHistoryTests {
+
+    @Test
+    public void returnsTheLastRateOnOrBeforeTheDate() {
+        ExchangeRateHistory history = new ExchangeRateHistory.Builder()
+            .add(2, "2020-01-01", 1.1)
+            .add(2, "2021-01-01", 1.2)
+            .add(2, "2022-01-01", 1.3)
+            .build();
+
+        assertTrue(Double.isNaN(history.getRate(2, "2019-12-31")));
+        assertEquals(1.1, history.getRate(2, "2020-01-01"), 0);
+        assertEquals(1.1, history.getRate(2, "2020-12-31"), 0);
+        assertEquals(1.2, history.getRate(2, "2021-01-01T10:30:00"), 0);
+        assertEquals(1.3, history.getRate(2, "2030-01-01"), 0);
+    }
+
+    @Test
+    public void sortsTheRatesByCurrencyAndDate() {
+        ExchangeRateHistory history = new ExchangeRateHistory.Builder()
+            .add(5, "2021-01-01", 0.9)
+            .add(3, "2021-01-01", 2.0)
+            .add(5, "2020-01-01", 0.8)
+            .add(5, "2021-01-01", 0.95)
+            .add(-1, "2021-01-01", 1)
+            .add(3, "not a date", 1)
+            .build();
+
+        assertEquals(3, history.size());
+        assertEquals(0.8, history.getRate(5, "2020-06-01"), 0);
+        // the last rate added for the date
+        assertEquals(0.95, history.getRate(5, "2021-06-01"), 0);
+        assertEquals(2.0, history.getRate(3, "2021-06-01"), 0);
+        assertFalse(history.hasHistory(4));
+        assertTrue(Double.isNaN(history.getRate(4, "2021-06-01")));
+        assertTrue(Double.isNaN(history.getRate(100, "2021-06-01")));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import com.money.manager.ex.investment.SecurityPriceModel;
+import com.money.manager.ex.investment.prices.FixerService;
+import com.money.manager.ex.investment.prices.FreeCurrencyExchangeRateAPIService;
+import com.money.manager.ex.utils.MmxDate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Exchange rate providers, against a local server: all the rates come in one response.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ExchangeRateUpdaterTests {
+
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = UnitTestHelper.getContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void fetchesAllTheRatesForTheBaseCurrencyOnce() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+            "{\"date\": \"2024-01-31\", \"eur\": {\"usd\": 1.25, \"gbp\": 0.8, \"jpy\": 160, \"xxx\": null}}"));
+        FreeCurrencyExchangeRateAPIService updater =
+            new FreeCurrencyExchangeRateAPIService(context, server.url("/").toString());
+
+        List<SecurityPriceModel> rates = updater.fetchRates("eur", Arrays.asList("USD", "GBP", "XXX"));
+
+        assertThat(server.getRequestCount(), is(1));
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath(), is("/currency-api@latest/v1/currencies/eur.json"));
+
+        assertThat(rates.size(), is(2));
+        // inverted: the value of one unit in the base currency.
+        assertThat(rates.get(0).symbol, is("USD"));
+        assertThat(rates.get(0).price.toDouble(), is(0.8));
+        assertThat(rates.get(1).symbol, is("GBP"));
+        assertThat(rates.get(1).price.toDouble(), is(1.25));
+        assertThat(rates.get(1).date, is(new MmxDate("2024-01-31").toDate()));
+    }
+
+    @Test
+    public void readsTheDateAfterTheRates() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+            "{\"rates\": {\"USD\": 2}, \"base\": \"EUR\", \"date\": \"2024-02-01\"}"));
+        FixerService updater = new FixerService(context, server.url("/").toString());
+
+        List<SecurityPriceModel> rates = updater.fetchRates("EUR", Arrays.asList("USD"));
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getRequestUrl().encodedPath(), is("/latest"));
+        assertThat(request.getRequestUrl().queryParameter("base"), is("EUR"));
+        assertThat(rates.size(), is(1));
+        assertThat(rates.get(0).price.toDouble(), is(0.5));
+        assertThat(rates.get(0).date, is(new MmxDate("2024-02-01").toDate()));
+    }
+
+    @Test(expected = IOException.class)
+    public void failedRequestIsReported() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        FreeCurrencyExchangeRateAPIService updater =
+            new FreeCurrencyExchangeRateAPIService(context, server.url("/").toString());
+
+        updater.fetchRates("eur", Arrays.asList("USD"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.IncomeExpenseRollup;
+import com.money.manager.ex.database.LedgerPostings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Monthly income/expense rollup, maintained on the writes together with the postings.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IncomeExpenseRollupTests {
+
+    private static final String ACCOUNTS = "ACCOUNTLIST_V1";
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private DerivedTable[] tables;
+
+    @Before
+    public void setup() {
+        Context context = UnitTestHelper.getContext();
+        database = new TestDatabase("rollup.mmb");
+        db = database.getDatabase();
+        // the postings are maintained first, the rollup is calculated from them.
+        tables = new DerivedTable[] { new LedgerPostings(context), new IncomeExpenseRollup() };
+
+        database.insertAccount(1, "Account 1", 1);
+        database.insertAccount(2, "Account 2", 1);
+        database.transaction().account(1).amount(10).date("2024-01-15").insert();
+        database.transaction().account(2).amount(20).date("2024-02-15").insert();
+        for (DerivedTable table : tables) {
+            table.rebuild(db);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void accountRenameKeepsTheRollup() {
+        // marks the rollup, to detect a recalculation
+        db.execSQL("UPDATE " + IncomeExpenseRollup.TABLE_NAME + " SET AMOUNT = 999");
+
+        write(1, "UPDATE ACCOUNTLIST_V1 SET ACCOUNTNAME = 'Renamed' WHERE ACCOUNTID = 1");
+
+        assertThat(amount(2024, 1), is(999.0));
+        assertThat(amount(2024, 2), is(999.0));
+    }
+
+    @Test
+    public void currencyChangeRecalculatesTheMonthsOfTheAccount() {
+        db.execSQL("UPDATE " + IncomeExpenseRollup.TABLE_NAME + " SET AMOUNT = 999");
+
+        write(1, "UPDATE ACCOUNTLIST_V1 SET CURRENCYID = 2 WHERE ACCOUNTID = 1");
+
+        assertThat(amount(2024, 1), is(-10.0));
+        assertThat(currency(2024, 1), is(2L));
+        // the other account, in another month
+        assertThat(amount(2024, 2), is(999.0));
+    }
+
+    @Test
+    public void deletedAccountRecalculatesItsMonths() {
+        db.execSQL("UPDATE " + IncomeExpenseRollup.TABLE_NAME + " SET AMOUNT = 999");
+
+        write(2, "DELETE FROM ACCOUNTLIST_V1 WHERE ACCOUNTID = 2");
+
+        assertThat(amount(2024, 1), is(999.0));
+        // the transactions are left without an account, and without a currency.
+        assertThat(amount(2024, 2), is(-20.0));
+        assertThat(currency(2024, 2), is(0L));
+    }
+
+    /**
+     * Executes the account write the way the content provider does.
+     */
+    private void write(long accountId, String sql) {
+        long[] ids = new long[] { accountId };
+        db.beginTransaction();
+        try {
+            for (DerivedTable table : tables) {
+                table.beforeWrite(db, ACCOUNTS, ids);
+            }
+            db.execSQL(sql);
+            boolean deleted = sql.startsWith("DELETE");
+            for (DerivedTable table : tables) {
+                table.afterWrite(db, ACCOUNTS, deleted ? new long[0] : ids);
+            }
+            for (DerivedTable table : tables) {
+                table.onWriteCompleted(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private double amount(int year, int month) {
+        return database.getDouble("SELECT TOTAL(AMOUNT) FROM " + IncomeExpenseRollup.TABLE_NAME
+                + " WHERE YEAR = " + year + " AND MONTH = " + month);
+    }
+
+    private long currency(int year, int month) {
+        return database.count("SELECT CURRENCYID FROM " + IncomeExpenseRollup.TABLE_NAME
+                + " WHERE YEAR = " + year + " AND MONTH = " + month);
+    }
+}
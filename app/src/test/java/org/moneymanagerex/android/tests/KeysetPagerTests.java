@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.datalayer.KeysetPager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Keyset pagination: reading the pages gives the rows of the whole query, in order.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class KeysetPagerTests {
+
+    private static final String SOURCE = "SELECT TRANSID AS ID, date(TRANSDATE) AS Date, TRANSCODE AS TransactionType,"
+            + " TRANSACTIONNUMBER AS TransactionNumber FROM CHECKINGACCOUNT_V1";
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("pager.mmb");
+        db = database.getDatabase();
+
+        String[] types = { "Withdrawal", "Deposit", "Transfer" };
+        for (int i = 0; i < 60; i++) {
+            // few distinct values, to have ties; some numbers are NULL.
+            database.transaction().date("2024-01-0" + (1 + i % 4)).type(types[i % 3])
+                    .number(i % 5 == 0 ? null : Integer.toString(i % 7)).insert();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void idIsAddedToTheSort() {
+        List<KeysetPager.SortKey> keys = KeysetPager.parseSort("Date DESC, TransactionType", "ID");
+
+        assertThat(keys.size(), is(3));
+        assertThat(keys.get(0).descending, is(true));
+        assertThat(keys.get(1).descending, is(false));
+        assertThat(keys.get(2).column, is("ID"));
+    }
+
+    @Test
+    public void pagesGiveAllTheRowsInOrder() {
+        assertPagesMatch("Date DESC, TransactionType, ID DESC");
+        assertPagesMatch("TransactionNumber DESC, Date, ID");
+        assertPagesMatch("TransactionNumber, ID DESC");
+    }
+
+    private void assertPagesMatch(String sort) {
+        List<KeysetPager.SortKey> keys = KeysetPager.parseSort(sort, "ID");
+        List<Long> expected = readIds("SELECT ID FROM (" + SOURCE + ") T ORDER BY " + sort, new Object[0]);
+
+        List<Long> actual = new ArrayList<>();
+        Object[] lastKey = null;
+        while (true) {
+            List<String> args = new ArrayList<>();
+            String where = lastKey == null ? "1 = 1" : KeysetPager.getKeysetCondition(keys, lastKey, args);
+            String sql = "SELECT * FROM (" + SOURCE + ") T WHERE " + where + " ORDER BY " + sort + " LIMIT 7";
+
+            Cursor page = db.query(sql, args.toArray());
+            try {
+                if (!page.moveToFirst()) break;
+                do {
+                    actual.add(page.getLong(page.getColumnIndex("ID")));
+                } while (page.moveToNext());
+
+                page.moveToLast();
+                lastKey = new Object[keys.size()];
+                for (int i = 0; i < keys.size(); i++) {
+                    int column = page.getColumnIndex(keys.get(i).column);
+                    lastKey[i] = page.isNull(column) ? null
+                            : page.getType(column) == Cursor.FIELD_TYPE_INTEGER ? (Object) page.getLong(column)
+                            : page.getString(column);
+                }
+            } finally {
+                page.close();
+            }
+        }
+
+        assertThat(sort, actual, is(expected));
+    }
+
+    private List<Long> readIds(String sql, Object[] args) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.query(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.LedgerPostings;
+import com.money.manager.ex.database.MmxOpenHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import rx.schedulers.TestScheduler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Materialized ledger postings, compared with the mobile data view they replace.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LedgerPostingsTests {
+
+    private static final int CURRENCY_ID = 9001;
+
+    private TestDatabase database;
+    private MmxOpenHelper helper;
+    private SupportSQLiteDatabase db;
+    private LedgerPostings postings;
+
+    @Before
+    public void setup() {
+        Context context = UnitTestHelper.getContext();
+        database = new TestDatabase("postings.mmb");
+        helper = database.getHelper();
+        db = database.getDatabase();
+        postings = new LedgerPostings(context);
+        postings.ensureCurrent(db);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void rebuildExpandsSplitTransactions() {
+        long single = database.transaction().amount(-25).insert();
+        long split = database.transaction().amount(-100).insert();
+        database.insertSplit(split, 1, -60);
+        database.insertSplit(split, 1, -40);
+
+        postings.rebuild(db);
+
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME), is(3L));
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE ID = " + single), is(1L));
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE ID = " + split), is(2L));
+    }
+
+    @Test
+    public void writesAreAppliedIncrementally() {
+        postings.rebuild(db);
+        long id = database.transaction().amount(-25).insert();
+
+        db.beginTransaction();
+        try {
+            postings.afterWrite(db, "CHECKINGACCOUNT_V1", new long[] { id });
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME), is(1L));
+
+        // deleted elsewhere (i.e. by the desktop application): detected by the fingerprint.
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET DELETEDTIME = '2024-01-02' WHERE TRANSID = " + id);
+        postings.ensureCurrent(db);
+
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME), is(0L));
+    }
+
+    @Test
+    public void changesElsewhereThatKeepTheTotalsAreDetected() {
+        database.insertCategory(9001, "Food", -1);
+        database.insertCategory(9002, "Rent", -1);
+        long id = database.transaction().amount(-25).category(9001).insert();
+        postings.rebuild(db);
+
+        // same length and the same amounts: the checksum covers all the values of the rows.
+        db.execSQL("UPDATE CATEGORY_V1 SET CATEGNAME = 'Fuel' WHERE CATEGID = 9001");
+        helper.getCategoryTree().rebuild(db);
+        postings.ensureCurrent(db);
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE CategoryFullName = 'Fuel'"), is(1L));
+
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET CATEGID = 9002 WHERE TRANSID = " + id);
+        postings.ensureCurrent(db);
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE CATEGID = 9002"), is(1L));
+    }
+
+    @Test
+    public void amountsAreConvertedAtTheRateOfTheirDate() {
+        insertCurrencyAccount(2);
+        // withdrawals are stored as positive amounts
+        long before = database.transaction().amount(10).date("2023-01-01").insert();
+        long after = database.transaction().amount(10).date("2024-01-01").insert();
+        database.insertRate(CURRENCY_ID, "2023-06-01", 1.5);
+
+        postings.rebuild(db);
+
+        // before the first historical rate: the current rate.
+        assertThat(amountInBaseCurrency(before), is(-20.0));
+        assertThat(amountInBaseCurrency(after), is(-15.0));
+
+        long rateId = database.insertRate(CURRENCY_ID, "2024-01-01", 1.25);
+        db.beginTransaction();
+        try {
+            postings.afterWrite(db, "CURRENCYHISTORY_V1", new long[] { rateId });
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        assertThat(amountInBaseCurrency(before), is(-20.0));
+        assertThat(amountInBaseCurrency(after), is(-12.5));
+    }
+
+    @Test
+    public void rateChangeConvertsOnlyThePostingsInTheCurrency() {
+        insertCurrencyAccount(2);
+        database.insertAccount(2, "Local", 1);
+        long foreign = database.transaction().amount(10).insert();
+        long local = database.transaction().account(2).amount(10).insert();
+        postings.rebuild(db);
+        // marks the posting that must not be written again
+        db.execSQL("UPDATE " + LedgerPostings.TABLE_NAME + " SET Notes = 'kept' WHERE ID = " + local);
+
+        db.execSQL("UPDATE CURRENCYFORMATS_V1 SET BASECONVRATE = 3 WHERE CURRENCYID = " + CURRENCY_ID);
+        db.beginTransaction();
+        try {
+            postings.afterWrite(db, "CURRENCYFORMATS_V1", new long[] { CURRENCY_ID });
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        assertThat(amountInBaseCurrency(foreign), is(-30.0));
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE Notes = 'kept'"), is(1L));
+    }
+
+    @Test
+    public void categoryRenameRefreshesOnlyItsPostings() {
+        database.insertCategory(9001, "Parent", -1);
+        database.insertCategory(9002, "Child", 9001);
+        helper.getCategoryTree().rebuild(db);
+        long child = database.transaction().amount(10).category(9002).insert();
+        long other = database.transaction().amount(-25).insert();
+        postings.rebuild(db);
+        db.execSQL("UPDATE " + LedgerPostings.TABLE_NAME + " SET Notes = 'kept'");
+
+        db.beginTransaction();
+        try {
+            long[] ids = new long[] { 9001 };
+            postings.beforeWrite(db, "CATEGORY_V1", ids);
+            db.execSQL("UPDATE CATEGORY_V1 SET CATEGNAME = 'Renamed' WHERE CATEGID = 9001");
+            helper.getCategoryTree().rebuild(db);
+            postings.afterWrite(db, "CATEGORY_V1", ids);
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME + " WHERE ID = " + child
+                + " AND CategoryFullName = 'Renamed:Child'"), is(1L));
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME + " WHERE ID = " + other
+                + " AND Notes = 'kept'"), is(1L));
+    }
+
+    @Test
+    public void newCategoryDoesNotRefreshThePostings() {
+        database.transaction().amount(-25).insert();
+        postings.rebuild(db);
+        db.execSQL("UPDATE " + LedgerPostings.TABLE_NAME + " SET Notes = 'kept'");
+
+        db.beginTransaction();
+        try {
+            long id = database.insertCategory(9003, "New", -1);
+            postings.afterWrite(db, "CATEGORY_V1", new long[] { id });
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE Notes = 'kept'"), is(1L));
+    }
+
+    @Test
+    public void fingerprintIsStoredOnRequest() {
+        postings.rebuild(db);
+        long id = database.transaction().amount(-25).insert();
+        db.beginTransaction();
+        try {
+            postings.afterWrite(db, "CHECKINGACCOUNT_V1", new long[] { id });
+            postings.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // marks the posting, to detect a rebuild
+        db.execSQL("UPDATE " + LedgerPostings.TABLE_NAME + " SET Notes = 'kept'");
+
+        postings.storeFingerprintIfChanged(db);
+        postings.ensureCurrent(db);
+
+        assertThat(database.count("SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE Notes = 'kept'"), is(1L));
+    }
+
+    @Test
+    public void readersUseTheViewUntilThePostingsAreChecked() {
+        database.transaction().amount(-25).insert();
+        TestScheduler scheduler = reopenDeferred();
+        DerivedTable table = helper.getDerivedTables().get(1);
+        String sql = "SELECT COUNT(*) FROM " + LedgerPostings.TABLE_NAME;
+
+        assertThat(table.isCurrent(), is(false));
+        assertThat(database.count(sql), is(0L));
+        assertThat(database.count(helper.resolveDerivedTables(sql)), is(1L));
+
+        scheduler.triggerActions();
+
+        assertThat(table.isCurrent(), is(true));
+        assertThat(helper.resolveDerivedTables(sql), is(sql));
+        assertThat(database.count(sql), is(1L));
+    }
+
+    @Test
+    public void failedCheckIsKept() {
+        TestScheduler scheduler = reopenDeferred();
+        db.execSQL("DROP TABLE PAYEE_V1");
+
+        scheduler.triggerActions();
+
+        DerivedTable table = helper.getDerivedTables().get(1);
+        assertThat(helper.getCategoryTree().isCurrent(), is(true));
+        assertThat(table.isCurrent(), is(false));
+        assertThat(table.getError(), notNullValue());
+        // the tables calculated from the postings are not checked either.
+        assertThat(helper.getDerivedTables().get(2).isCurrent(), is(false));
+    }
+
+    /**
+     * Opens the database again, with the derived tables checked when the scheduler runs.
+     */
+    private TestScheduler reopenDeferred() {
+        TestScheduler scheduler = new TestScheduler();
+        helper = database.reopen(scheduler);
+        db = database.getDatabase();
+        return scheduler;
+    }
+
+    private void insertCurrencyAccount(double currentRate) {
+        database.insertCurrency(CURRENCY_ID, currentRate);
+        database.insertAccount(1, "Foreign", CURRENCY_ID);
+    }
+
+    private double amountInBaseCurrency(long transactionId) {
+        return database.getDouble("SELECT AmountBaseConvRate FROM " + LedgerPostings.TABLE_NAME
+                + " WHERE ID = " + transactionId);
+    }
+}
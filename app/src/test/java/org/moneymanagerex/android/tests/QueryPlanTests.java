@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.budget.BudgetNestedQuery;
+import com.money.manager.ex.budget.BudgetQuery;
+import com.money.manager.ex.currency.CurrencyHistoryRepository;
+import com.money.manager.ex.currency.CurrencyRepository;
+import com.money.manager.ex.database.BalanceCheckpoints;
+import com.money.manager.ex.database.CategoryTree;
+import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.QueryBillDeposits;
+import com.money.manager.ex.database.QueryCategorySubCategory;
+import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
+import com.money.manager.ex.database.QueryStatementCache;
+import com.money.manager.ex.database.TableAssets;
+import com.money.manager.ex.database.ViewMobileData;
+import com.money.manager.ex.datalayer.AccountRepository;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.AttachmentRepository;
+import com.money.manager.ex.datalayer.BudgetEntryRepository;
+import com.money.manager.ex.datalayer.BudgetRepository;
+import com.money.manager.ex.datalayer.CategoryRepository;
+import com.money.manager.ex.datalayer.PayeeRepository;
+import com.money.manager.ex.datalayer.RecurringTransactionRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
+import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
+import com.money.manager.ex.datalayer.StockHistoryRepository;
+import com.money.manager.ex.datalayer.StockRepository;
+import com.money.manager.ex.investment.watchlist.WatchlistDataset;
+import com.money.manager.ex.nestedcategory.QueryNestedCategory;
+import com.money.manager.ex.viewmodels.IncomeVsExpenseReportEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.moneymanagerex.android.testhelpers.QueryPlan;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Query plan regression suite: the datasets of the content provider, with the filters used by
+ * the app, and the repository lookups must not scan the tables that grow with the data.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanTests {
+
+    private Context context;
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private List<String> failures;
+    private MmxContentProvider provider;
+
+    @Before
+    public void setup() {
+        context = UnitTestHelper.getContext();
+        database = new TestDatabase("queryplan.mmb");
+        db = database.getDatabase();
+        provider = UnitTestHelper.setupContentProvider(database.getHelper());
+        failures = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Every dataset registered in the content provider, with the filter used by the app. The
+     * small tables are read whole.
+     */
+    @Test
+    public void datasetsDoNotScanLargeTables() {
+        Map<Class<?>, String> filters = new HashMap<>();
+        filters.put(QueryAllData.class,
+                "(" + QueryAllData.TransferAccountID + " = 1 OR " + QueryAllData.ACCOUNTID + " = 1)"
+                        + " AND " + QueryAllData.TransDate + " >= '2024-01-01'"
+                        + " AND " + QueryAllData.TransDate + " < '2024-02-01'"
+                        + " AND " + QueryAllData.Status + " IN ('R', '')");
+        filters.put(QueryAccountBills.class, QueryAccountBills.ACCOUNTID + " = 1");
+        filters.put(QueryBillDeposits.class, null);
+        filters.put(QueryCategorySubCategory.class, null);
+        filters.put(QueryNestedCategory.class, QueryNestedCategory.CATEGID
+                + " IN (SELECT DESCENDANTID FROM " + CategoryTree.CLOSURE_TABLE_NAME + " WHERE ANCESTORID = 1)");
+        filters.put(BudgetQuery.class, BudgetQuery.BUDGETYEARID + " = 1");
+        filters.put(QueryReportIncomeVsExpenses.class, IncomeVsExpenseReportEntity.YEAR + " IN (2024)");
+        filters.put(ViewMobileData.class, ViewMobileData.Date + " >= '2024-01-01'"
+                + " AND " + ViewMobileData.Date + " < '2024-02-01'"
+                + " AND " + ViewMobileData.TransactionType + " IN ('Withdrawal', 'Deposit')");
+        filters.put(AccountTransactionRepository.class, "TRANSID = 1");
+        filters.put(SplitCategoriesRepository.class, "TRANSID = 1");
+        filters.put(StockHistoryRepository.class, "SYMBOL = 'X'");
+        filters.put(CurrencyHistoryRepository.class, "CURRENCYID = 1 AND CURRDATE = '2024-01-01'");
+        filters.put(AccountRepository.class, null);
+        filters.put(BudgetEntryRepository.class, "BUDGETYEARID = 1");
+        filters.put(BudgetRepository.class, null);
+        filters.put(CategoryRepository.class, null);
+        filters.put(CurrencyRepository.class, null);
+        filters.put(PayeeRepository.class, null);
+        filters.put(AttachmentRepository.class, null);
+        filters.put(RecurringTransactionRepository.class, null);
+        filters.put(SplitRecurringCategoriesRepository.class, null);
+        filters.put(StockRepository.class, null);
+
+        for (Dataset dataset : MmxContentProvider.getDatasets()) {
+            // the raw statements are checked on their own.
+            if (dataset.getType() == DatasetType.SQL) continue;
+
+            if (!filters.containsKey(dataset.getClass())) {
+                failures.add(dataset.getBasePath() + ": no filter defined for the dataset");
+                continue;
+            }
+            checkDataset(dataset, filters.get(dataset.getClass()));
+        }
+        // not registered in the provider, read through the same statements.
+        checkDataset(new BudgetNestedQuery(context), BudgetNestedQuery.BUDGETYEARID + " = 1");
+        checkDataset(new TableAssets(), null);
+        check("watchlist", new WatchlistDataset(context).getSource(), 1);
+
+        assertNoFailures();
+    }
+
+    @Test
+    public void lookupsDoNotScanLargeTables() {
+        // category and payee in use
+        check("category used", "SELECT * FROM CHECKINGACCOUNT_V1 WHERE CATEGID = ?", 1);
+        check("split category used", "SELECT * FROM SPLITTRANSACTIONS_V1 WHERE CATEGID = ?", 1);
+        check("payee used", "SELECT * FROM CHECKINGACCOUNT_V1 WHERE PAYEEID = ?", 1);
+        // splits of a transaction
+        check("splits", "SELECT * FROM SPLITTRANSACTIONS_V1 WHERE TRANSID = ?", 1);
+        // balance on date
+        check("balance on", BalanceCheckpoints.BALANCE_ON, 1, "2024-01", 1, 1, "2024-01-01", "2024-01-15");
+        // prices and exchange rates
+        check("stock price", "SELECT * FROM STOCKHISTORY_V1 WHERE SYMBOL = ? ORDER BY DATE DESC LIMIT 1", "X");
+        check("exchange rate", "SELECT * FROM CURRENCYHISTORY_V1 WHERE CURRENCYID = ? AND CURRDATE <= ?"
+                + " ORDER BY CURRDATE DESC LIMIT 1", 1, "2024-01-01");
+
+        assertNoFailures();
+    }
+
+    /**
+     * The statement composed by the content provider for the dataset, through its statement
+     * cache: the literals of the selection are bound as arguments.
+     */
+    private void checkDataset(Dataset dataset, String selection) {
+        QueryStatementCache.PreparedQuery query = MmxContentProvider.getQueryCache().get(dataset,
+                null, selection, null, null, provider::prepareQuery);
+        check(dataset.getBasePath(), query.sql, query.args == null ? new Object[0] : query.args);
+    }
+
+    private void check(String name, String sql, Object... args) {
+        List<String> scans = QueryPlan.findFullScans(db, sql, args);
+        if (!scans.isEmpty()) {
+            failures.add(name + ": " + scans);
+        }
+    }
+
+    private void assertNoFailures() {
+        assertTrue("full table scans: " + failures, failures.isEmpty());
+    }
+}
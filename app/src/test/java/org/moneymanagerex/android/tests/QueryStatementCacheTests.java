@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.database.QueryStatementCache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the parameterization of the selections in the statement cache.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryStatementCacheTests {
+
+    @Test
+    public void literalsBecomeArguments() {
+        QueryStatementCache.PreparedQuery actual = QueryStatementCache.parameterize(
+                "ACCOUNTID=5 AND STATUS<>'V' AND TRANSAMOUNT > 2.50", null);
+
+        assertThat(actual.sql, equalTo("ACCOUNTID=? AND STATUS<>? AND TRANSAMOUNT > ?"));
+        assertArrayEquals(new Object[] { 5L, "V", 2.5 }, actual.args);
+    }
+
+    @Test
+    public void existingArgumentsKeepTheirOrder() {
+        QueryStatementCache.PreparedQuery actual = QueryStatementCache.parameterize(
+                "NOTES LIKE '%it''s%' AND PAYEEID = ? AND T1.CATEGID = 3", new String[] { "7" });
+
+        assertThat(actual.sql, equalTo("NOTES LIKE ? AND PAYEEID = ? AND T1.CATEGID = ?"));
+        assertArrayEquals(new Object[] { "%it's%", "7", 3L }, actual.args);
+    }
+
+    @Test
+    public void sameShapeGivesSameStatement() {
+        String first = QueryStatementCache.parameterize("ACCOUNTID=1", null).sql;
+        String second = QueryStatementCache.parameterize("ACCOUNTID=2", null).sql;
+
+        assertThat(first, equalTo(second));
+    }
+
+    @Test
+    public void unsupportedSelectionIsUnchanged() {
+        String selection = "X = 0x1F";
+
+        QueryStatementCache.PreparedQuery actual = QueryStatementCache.parameterize(selection, null);
+
+        assertThat(actual.sql, equalTo(selection));
+        assertThat(actual.args, nullValue());
+    }
+}
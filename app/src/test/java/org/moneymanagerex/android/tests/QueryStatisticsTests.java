@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.InstrumentedCursor;
+import com.money.manager.ex.database.LatencyHistogram;
+import com.money.manager.ex.database.QueryStatistics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency histograms and the slow query log of the content provider.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryStatisticsTests {
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("statistics.mmb");
+        db = database.getDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertWithin(histogram.getPercentileNanos(50), 50);
+        assertWithin(histogram.getPercentileNanos(95), 95);
+        assertWithin(histogram.getPercentileNanos(99), 99);
+        assertThat(histogram.getMaxNanos(), is(TimeUnit.MILLISECONDS.toNanos(100)));
+        assertThat(histogram.getCount(), is(100L));
+    }
+
+    @Test
+    public void closedCursorIsRecordedWithItsPlan() {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.setEnabled(true);
+        statistics.setSlowQueryMillis(0);
+
+        String sql = "SELECT ACCOUNTID, ACCOUNTNAME FROM ACCOUNTLIST_V1 WHERE ACCOUNTID > ?";
+        Object[] args = new Object[] { 0 };
+        Cursor cursor = new InstrumentedCursor(db.query(sql, args), statistics, db, "accountlist",
+                sql, args, 0);
+        while (cursor.moveToNext()) {
+            cursor.getString(1);
+        }
+        cursor.close();
+
+        assertThat(statistics.getReport(), containsString("accountlist"));
+        List<QueryStatistics.SlowQuery> slowQueries = statistics.getSlowQueries();
+        assertThat(slowQueries.size(), is(1));
+        assertThat(slowQueries.get(0).sql, is(sql));
+        assertThat(slowQueries.get(0).plan, containsString("ACCOUNTLIST_V1"));
+    }
+
+    @Test
+    public void nothingIsRecordedWhenDisabled() {
+        QueryStatistics statistics = new QueryStatistics();
+
+        statistics.record("accountlist", QueryStatistics.Operation.QUERY, 1000, 1, 0);
+
+        assertThat(statistics.getReport(), is(new QueryStatistics().getReport()));
+    }
+
+    private void assertWithin(long nanos, long expectedMillis) {
+        long expected = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+        assertTrue(nanos + " for " + expected, nanos >= expected && nanos <= expected * 1.19 + 1);
+    }
+}
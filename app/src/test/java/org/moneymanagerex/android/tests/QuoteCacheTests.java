@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.investment.prices.MarketHours;
+import com.money.manager.ex.investment.prices.QuoteCache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Quote cache: which prices are still current, depending on the market hours.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuoteCacheTests {
+
+    private static final long FRESHNESS = TimeUnit.MINUTES.toMillis(15);
+
+    @Test
+    public void pricesExpireDuringTheSession() {
+        QuoteCache cache = new QuoteCache();
+        // Wednesday, New York session 14:30 - 21:00 UTC.
+        cache.put("AAPL", Instant.parse("2024-01-31T15:00:00Z"));
+
+        assertTrue(cache.isFresh("AAPL", FRESHNESS, Instant.parse("2024-01-31T15:10:00Z")));
+        assertFalse(cache.isFresh("AAPL", FRESHNESS, Instant.parse("2024-01-31T15:20:00Z")));
+        assertFalse(cache.isFresh("MSFT", FRESHNESS, Instant.parse("2024-01-31T15:10:00Z")));
+    }
+
+    @Test
+    public void pricesFromAfterTheCloseLastUntilTheNextSession() {
+        QuoteCache cache = new QuoteCache();
+        cache.put("AAPL", Instant.parse("2024-01-31T21:05:00Z"));
+        // Friday, during the session.
+        cache.put("MSFT", Instant.parse("2024-02-02T20:00:00Z"));
+        // Friday, after the close.
+        cache.put("IBM", Instant.parse("2024-02-02T21:30:00Z"));
+
+        // Thursday, before the opening.
+        assertTrue(cache.isFresh("AAPL", FRESHNESS, Instant.parse("2024-02-01T10:00:00Z")));
+        // Thursday, after the opening.
+        assertFalse(cache.isFresh("AAPL", FRESHNESS, Instant.parse("2024-02-01T15:00:00Z")));
+        // Saturday: the price from before the close is not the closing price.
+        assertFalse(cache.isFresh("MSFT", FRESHNESS, Instant.parse("2024-02-03T12:00:00Z")));
+        assertTrue(cache.isFresh("IBM", FRESHNESS, Instant.parse("2024-02-04T12:00:00Z")));
+    }
+
+    @Test
+    public void marketHoursComeFromTheSymbolSuffix() {
+        // Paris closes at 16:30 UTC in winter, New York is still open.
+        Instant now = Instant.parse("2024-01-31T17:00:00Z");
+        assertFalse(MarketHours.forSymbol("BNP.PA").isOpen(now));
+        assertTrue(MarketHours.forSymbol("AAPL").isOpen(now));
+        assertTrue(MarketHours.forSymbol("XYZ.UNKNOWN").isOpen(now));
+        assertEquals(Instant.parse("2024-01-31T16:30:00Z"),
+            MarketHours.forSymbol("bnp.pa").getLastClose(now));
+        // Monday morning: the last close was on Friday.
+        assertEquals(Instant.parse("2024-02-02T21:00:00Z"),
+            MarketHours.forSymbol("AAPL").getLastClose(Instant.parse("2024-02-05T12:00:00Z")));
+
+        QuoteCache cache = new QuoteCache();
+        cache.put("BNP.PA", Instant.parse("2024-01-31T16:35:00Z"));
+        cache.put("AAPL", Instant.parse("2024-01-31T16:35:00Z"));
+
+        List<String> stale = cache.getStaleSymbols(Arrays.asList("BNP.PA", "AAPL"), FRESHNESS, now);
+
+        assertEquals(Arrays.asList("AAPL"), stale);
+    }
+
+    @Test
+    public void metricsCountTheHitsAndTheBytesSaved() {
+        QuoteCache cache = new QuoteCache();
+        Instant now = Instant.parse("2024-01-31T15:00:00Z");
+        cache.put("AAPL", now);
+        cache.put("MSFT", now);
+
+        cache.getStaleSymbols(Arrays.asList("AAPL", "MSFT", "IBM"), FRESHNESS, now);
+        cache.getMetrics().recordSymbols(1);
+        cache.getMetrics().recordBytes(300);
+        cache.getMetrics().recordBytes(-1);
+
+        assertEquals(2, cache.getMetrics().getHits());
+        assertEquals(1, cache.getMetrics().getMisses());
+        assertEquals(300, cache.getMetrics().getDownloadedBytes());
+        assertEquals(600, cache.getMetrics().getBytesSaved());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.investment.prices.QuoteDownloadScheduler;
+import com.money.manager.ex.investment.yahoocsv.YahooCsvQuoteDownloaderRetrofit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.HttpException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Quote download scheduler, with the Yahoo CSV provider against a local server.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QuoteDownloadSchedulerTests {
+
+    private MockWebServer server;
+    private YahooCsvQuoteDownloaderRetrofit source;
+
+    @Before
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        source = new YahooCsvQuoteDownloaderRetrofit(UnitTestHelper.getContext(),
+            server.url("/").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void repeatedSymbolsAreFetchedOnce() {
+        QuotesDispatcher dispatcher = new QuotesDispatcher();
+        server.setDispatcher(dispatcher);
+
+        List<QuoteDownloadScheduler.BatchResult> results = download(4,
+            Arrays.asList("AAA", "BBB", " AAA ", "BBB", "", null));
+
+        assertThat(server.getRequestCount(), is(2));
+        assertThat(results.size(), is(2));
+        for (QuoteDownloadScheduler.BatchResult result : results) {
+            assertThat(result.error, nullValue());
+            assertThat(result.prices.size(), is(1));
+            assertThat(result.prices.get(0).symbol, is(result.symbols.get(0)));
+        }
+    }
+
+    @Test
+    public void serverErrorsAreRetried() {
+        QuotesDispatcher dispatcher = new QuotesDispatcher();
+        dispatcher.failures.put("AAA", new AtomicInteger(2));
+        server.setDispatcher(dispatcher);
+
+        List<QuoteDownloadScheduler.BatchResult> results = download(4, Arrays.asList("AAA"));
+
+        assertThat(server.getRequestCount(), is(3));
+        assertThat(results.get(0).error, nullValue());
+        assertThat(results.get(0).prices.get(0).price.toDouble(), is(12.5));
+    }
+
+    @Test
+    public void giveUpAfterTheRetries() {
+        QuotesDispatcher dispatcher = new QuotesDispatcher();
+        dispatcher.failures.put("AAA", new AtomicInteger(10));
+        server.setDispatcher(dispatcher);
+
+        List<QuoteDownloadScheduler.BatchResult> results = download(4, Arrays.asList("AAA", "BBB"));
+
+        // the initial request and two retries for AAA.
+        assertThat(server.getRequestCount(), is(4));
+        for (QuoteDownloadScheduler.BatchResult result : results) {
+            if (result.symbols.get(0).equals("AAA")) {
+                assertThat(result.error, instanceOf(IOException.class));
+                assertThat(result.prices.size(), is(0));
+            } else {
+                assertThat(result.error, nullValue());
+            }
+        }
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        List<QuoteDownloadScheduler.BatchResult> results = download(4, Arrays.asList("AAA"));
+
+        assertThat(server.getRequestCount(), is(1));
+        assertThat(results.get(0).error, instanceOf(HttpException.class));
+    }
+
+    @Test
+    public void parallelRequestsAreLimited() {
+        QuotesDispatcher dispatcher = new QuotesDispatcher();
+        dispatcher.delay = 50;
+        server.setDispatcher(dispatcher);
+
+        List<QuoteDownloadScheduler.BatchResult> results = download(2,
+            Arrays.asList("A", "B", "C", "D", "E", "F"));
+
+        assertThat(results.size(), is(6));
+        assertThat(server.getRequestCount(), is(6));
+        assertTrue(dispatcher.maxActive.get() <= 2);
+    }
+
+    private List<QuoteDownloadScheduler.BatchResult> download(int parallelism, List<String> symbols) {
+        QuoteDownloadScheduler scheduler = new QuoteDownloadScheduler(source, parallelism, 2, 1);
+        return scheduler.download(symbols).toList().toBlocking().single();
+    }
+
+    /**
+     * Returns a CSV quote for the requested symbol, after the configured number of failures.
+     */
+    private static class QuotesDispatcher extends Dispatcher {
+        final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        long delay;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            int running = active.incrementAndGet();
+            maxActive.accumulateAndGet(running, Math::max);
+            try {
+                if (delay > 0) Thread.sleep(delay);
+
+                String symbol = request.getRequestUrl().queryParameter("s");
+                AtomicInteger remaining = failures.get(symbol);
+                if (remaining != null && remaining.getAndDecrement() > 0) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().setBody("\"" + symbol + "\",12.50,\"1/31/2024\",\"USD\"");
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
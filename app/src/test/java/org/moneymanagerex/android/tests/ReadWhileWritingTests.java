@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.LatencyHistogram;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static android.database.sqlite.SQLiteDatabase.CONFLICT_NONE;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * With write-ahead logging, the reads complete while a writer holds a transaction open
+ * (i.e. recurring transactions or sync), and see only the committed data. The latencies of the
+ * reads during the write are printed, with and without write-ahead logging. Uses the unencrypted
+ * framework SQLite, as the SQLCipher native library is not available in the unit tests.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReadWhileWritingTests {
+
+    private static final int ROWS_PER_WRITE = 100;
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final int READS = 20;
+    private static final long WRITE_MILLIS = 1000;
+    /**
+     * Longest read on the pool during the write: a quarter of the time the write is open.
+     */
+    private static final long READ_BOUND_MILLIS = WRITE_MILLIS / 4;
+
+    private TestDatabase database;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("readwhilewriting.mmb");
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void readCompletesWhileTheWriteIsOpen() throws Exception {
+        database.getHelper().setWriteAheadLoggingEnabled(true);
+        final SupportSQLiteDatabase writer = database.getDatabase();
+
+        final CountDownLatch written = new CountDownLatch(1);
+        final CountDownLatch readDone = new CountDownLatch(1);
+        Thread writerThread = new Thread(() -> {
+            writer.beginTransaction();
+            try {
+                for (int i = 0; i < ROWS_PER_WRITE; i++) {
+                    writer.insert("CHECKINGACCOUNT_V1", CONFLICT_NONE,
+                            database.transaction().amount(i).values());
+                }
+                written.countDown();
+                // the transaction stays open until the read is done.
+                readDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                writer.setTransactionSuccessful();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                writer.endTransaction();
+            }
+        });
+        writerThread.start();
+
+        long rowsRead;
+        try {
+            assertThat(written.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+
+            // on its own thread, so that a blocked read fails the test instead of hanging it.
+            FutureTask<Long> read = new FutureTask<>(this::countTransactions);
+            new Thread(read).start();
+            rowsRead = read.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            readDone.countDown();
+            writerThread.join();
+        }
+
+        // the rows of the open transaction are not seen.
+        assertThat(rowsRead, is(0L));
+        assertThat(countTransactions(), is((long) ROWS_PER_WRITE));
+    }
+
+    @Test
+    public void pooledReadsDoNotWaitForTheWrite() throws Exception {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long rowsSeen = timeReadsDuringTheWrite(true, latencies);
+        print("WAL", latencies);
+
+        // all the reads ran before the commit
+        assertThat(rowsSeen, is(0L));
+        assertThat(latencies.getCount(), is((long) READS));
+        assertTrue("max " + latencies.getMaxNanos() + " ns",
+                latencies.getMaxNanos() < TimeUnit.MILLISECONDS.toNanos(READ_BOUND_MILLIS));
+    }
+
+    @Test
+    public void readsCompleteWithoutWriteAheadLogging() throws Exception {
+        LatencyHistogram latencies = new LatencyHistogram();
+        // the reads share the connection of the writer, and queue behind the write.
+        timeReadsDuringTheWrite(false, latencies);
+        print("rollback journal", latencies);
+
+        assertThat(latencies.getCount(), is((long) READS));
+    }
+
+    /**
+     * Starts a write that stays open for {@link #WRITE_MILLIS} and reads the transactions
+     * meanwhile, on another thread.
+     * @return The most rows seen by the reads.
+     */
+    private long timeReadsDuringTheWrite(boolean writeAheadLogging, final LatencyHistogram latencies)
+            throws Exception {
+        database.getHelper().setWriteAheadLoggingEnabled(writeAheadLogging);
+        final SupportSQLiteDatabase writer = database.getDatabase();
+        // opens the pooled connections before the timing
+        for (int i = 0; i < database.getHelper().getReadConnectionCount(); i++) {
+            countTransactions();
+        }
+
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writerThread = new Thread(() -> {
+            writer.beginTransaction();
+            try {
+                for (int i = 0; i < ROWS_PER_WRITE; i++) {
+                    writer.insert("CHECKINGACCOUNT_V1", CONFLICT_NONE,
+                            database.transaction().amount(i).values());
+                }
+                written.countDown();
+                Thread.sleep(WRITE_MILLIS);
+                writer.setTransactionSuccessful();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                writer.endTransaction();
+            }
+        });
+        writerThread.start();
+
+        try {
+            assertThat(written.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+
+            FutureTask<Long> reads = new FutureTask<>(() -> {
+                long rowsSeen = 0;
+                for (int i = 0; i < READS; i++) {
+                    long start = System.nanoTime();
+                    rowsSeen = Math.max(rowsSeen, countTransactions());
+                    latencies.record(System.nanoTime() - start);
+                }
+                return rowsSeen;
+            });
+            new Thread(reads).start();
+            return reads.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            writerThread.join();
+        }
+    }
+
+    private void print(String name, LatencyHistogram latencies) {
+        System.out.printf("%s: p50 %.2f ms, p95 %.2f ms, max %.2f ms%n", name,
+                latencies.getPercentileNanos(50) / 1e6,
+                latencies.getPercentileNanos(95) / 1e6,
+                latencies.getMaxNanos() / 1e6);
+    }
+
+    private long countTransactions() {
+        Cursor cursor = database.getHelper().getReadableDatabase()
+                .query("SELECT COUNT(*) FROM CHECKINGACCOUNT_V1");
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
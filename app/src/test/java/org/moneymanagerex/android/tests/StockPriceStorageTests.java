@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.database.AccountBalances;
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.datalayer.StockRepositorySql;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
+import com.money.manager.ex.utils.MmxDate;
+import com.squareup.sqlbrite3.BriteDatabase;
+import com.squareup.sqlbrite3.SqlBrite;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import info.javaperformance.money.MoneyFactory;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Storing the downloaded prices: current stock prices and the price history.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StockPriceStorageTests {
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private StockRepositorySql repository;
+    private final Date today = new MmxDate(2024, 0, 31).toDate();
+    private final List<Set<String>> published = new ArrayList<>();
+    private final TableChangeFeed.Listener listener = published::add;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("prices.mmb");
+        db = database.getDatabase();
+        BriteDatabase briteDatabase = new SqlBrite.Builder().build()
+                .wrapDatabaseHelper(database.getHelper().getOpenHelper(), Schedulers.trampoline());
+        repository = new StockRepositorySql(briteDatabase, database.getHelper());
+        MmxContentProvider.getChangeFeed().addListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        MmxContentProvider.getChangeFeed().removeListener(listener);
+        database.close();
+    }
+
+    @Test
+    public void allStocksWithTheSymbolAreUpdated() {
+        database.insertStock("AAPL", 10);
+        database.insertStock("AAPL", 5);
+        database.insertStock("MSFT", 1);
+
+        boolean saved = repository.savePrices(Arrays.asList(
+                price("AAPL", "150"), price("AAPL", "155")));
+
+        assertThat(saved, is(true));
+        // the last price for the symbol is used
+        assertThat(database.getDouble("SELECT SUM(VALUE) FROM STOCK_V1 WHERE SYMBOL = 'AAPL'"), is(2325.0));
+        assertThat(database.getDouble("SELECT CURRENTPRICE FROM STOCK_V1 WHERE SYMBOL = 'MSFT'"), is(1.0));
+    }
+
+    @Test
+    public void sameDayPriceReplacesTheHistoryRecord() {
+        database.insertStock("AAPL", 10);
+
+        assertThat(repository.savePrices(Arrays.asList(price("AAPL", "150"))), is(true));
+        assertThat(repository.savePrices(Arrays.asList(price("AAPL", "152"))), is(true));
+
+        assertThat(database.getDouble("SELECT COUNT(*) FROM STOCKHISTORY_V1 WHERE SYMBOL = 'AAPL'"), is(1.0));
+        assertThat(database.getDouble("SELECT VALUE FROM STOCKHISTORY_V1 WHERE SYMBOL = 'AAPL'"), is(152.0));
+        assertThat(database.getDouble("SELECT CURRENTPRICE FROM STOCK_V1"), is(152.0));
+    }
+
+    @Test
+    public void pricesAreUpdatedAcrossStatements() {
+        // more prices than fit in one statement
+        int count = 450;
+        List<PriceDownloadedEvent> prices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            database.insertStock("S" + i, 2);
+            prices.add(price("S" + i, Integer.toString(i + 1)));
+        }
+
+        assertThat(repository.savePrices(prices), is(true));
+
+        assertThat(database.getDouble("SELECT COUNT(*) FROM STOCK_V1 WHERE CURRENTPRICE = 1"), is(1.0));
+        assertThat(database.getDouble("SELECT CURRENTPRICE FROM STOCK_V1 WHERE SYMBOL = 'S449'"), is(450.0));
+        assertThat(database.getDouble("SELECT SUM(VALUE) FROM STOCK_V1"), is(2.0 * count * (count + 1) / 2));
+        assertThat(database.getDouble("SELECT COUNT(*) FROM STOCKHISTORY_V1"), is((double) count));
+    }
+
+    @Test
+    public void newPricesUpdateTheAccountBalance() {
+        database.insertStock("AAPL", 10);
+        database.insertStock("MSFT", 2);
+        // the stocks were inserted directly
+        AccountBalances balances = getAccountBalances();
+        balances.rebuild(db);
+
+        assertThat(repository.savePrices(Arrays.asList(price("AAPL", "150"))), is(true));
+
+        assertThat(database.getDouble("SELECT TOTAL FROM ACCOUNTBALANCES WHERE ACCOUNTID = 1"), is(1502.0));
+        assertThat(balances.verify(db), is(true));
+        assertThat(published.size(), is(1));
+        assertThat(published.get(0).contains("STOCK_V1"), is(true));
+    }
+
+    @Test
+    public void failureRollsBackTheCurrentPrices() {
+        database.insertStock("AAPL", 10);
+        // the history can not be written
+        db.execSQL("DROP TABLE STOCKHISTORY_V1");
+
+        boolean saved = repository.savePrices(Arrays.asList(price("AAPL", "150")));
+
+        assertThat(saved, is(false));
+        assertThat(database.getDouble("SELECT CURRENTPRICE FROM STOCK_V1"), is(1.0));
+        assertThat(published.isEmpty(), is(true));
+    }
+
+    private AccountBalances getAccountBalances() {
+        for (DerivedTable table : database.getHelper().getDerivedTables()) {
+            if (table instanceof AccountBalances) return (AccountBalances) table;
+        }
+        throw new IllegalStateException("no account balances");
+    }
+
+    private PriceDownloadedEvent price(String symbol, String price) {
+        return new PriceDownloadedEvent(symbol, MoneyFactory.fromString(price), today);
+    }
+}
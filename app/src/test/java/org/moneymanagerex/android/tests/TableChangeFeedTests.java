@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import com.money.manager.ex.budget.BudgetQuery;
+import com.money.manager.ex.database.AccountBalances;
+import com.money.manager.ex.database.CategoryTree;
+import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.DatasetDependencies;
+import com.money.manager.ex.database.DerivedTable;
+import com.money.manager.ex.database.IncomeExpenseRollup;
+import com.money.manager.ex.database.LedgerPostings;
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.database.TableChangeFeed;
+import com.money.manager.ex.datalayer.AccountRepository;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.BudgetEntryRepository;
+import com.money.manager.ex.datalayer.CategoryRepository;
+import com.money.manager.ex.datalayer.StockRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The tables read by the datasets, and the feed of the changed tables.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TableChangeFeedTests {
+
+    private QueryAllData allData;
+    private QueryAccountBills accountBills;
+    private BudgetQuery budgets;
+    private SQLDataSet sql;
+    private DatasetDependencies dependencies;
+
+    @Before
+    public void setup() {
+        Context context = UnitTestHelper.getContext();
+
+        allData = new QueryAllData(context);
+        accountBills = new QueryAccountBills(context);
+        budgets = new BudgetQuery(context);
+        sql = new SQLDataSet();
+
+        List<Dataset> datasets = Arrays.asList(new AccountRepository(context),
+                new AccountTransactionRepository(context), new BudgetEntryRepository(context),
+                new CategoryRepository(context), new StockRepository(context),
+                allData, accountBills, budgets, sql);
+        List<DerivedTable> derivedTables = Arrays.asList(new CategoryTree(), new LedgerPostings(context),
+                new IncomeExpenseRollup(), new AccountBalances());
+        dependencies = new DatasetDependencies(datasets, derivedTables);
+    }
+
+    @Test
+    public void queriesDependOnTheTablesTheyRead() {
+        Set<String> tables = dependencies.getTables(allData);
+        assertThat(tables.contains("CHECKINGACCOUNT_V1"), is(true));
+        assertThat(tables.contains("ACCOUNTLIST_V1"), is(true));
+        // through the category tree
+        assertThat(tables.contains("CATEGORY_V1"), is(true));
+        assertThat(tables.contains("BUDGETTABLE_V1"), is(false));
+
+        // the balances are calculated from the transactions and the stocks
+        assertThat(dependencies.getTables(accountBills).contains("STOCK_V1"), is(true));
+
+        assertThat(dependencies.getTables(sql), nullValue());
+    }
+
+    @Test
+    public void onlyDependentDatasetsAreAffected() {
+        List<Dataset> affected = dependencies.getAffected(Collections.singleton("BUDGETTABLE_V1"));
+
+        assertThat(affected.contains(budgets), is(true));
+        assertThat(affected.contains(sql), is(true));
+        assertThat(affected.contains(allData), is(false));
+        assertThat(affected.contains(accountBills), is(false));
+    }
+
+    @Test
+    public void versionChangesWithItsTablesOnly() {
+        TableChangeFeed feed = new TableChangeFeed();
+        long version = feed.getVersion(LedgerPostings.SOURCE_TABLES);
+
+        feed.publish(Collections.singleton("BUDGETTABLE_V1"));
+        assertThat(feed.getVersion(LedgerPostings.SOURCE_TABLES), is(version));
+
+        feed.publish(Collections.singleton("checkingaccount_v1"));
+        assertThat(feed.getVersion(LedgerPostings.SOURCE_TABLES), not(version));
+    }
+
+    @Test
+    public void listenersReceiveTheTablesOfTheTransaction() {
+        TableChangeFeed feed = new TableChangeFeed();
+        final List<Set<String>> received = new ArrayList<>();
+        feed.addListener(received::add);
+
+        feed.publish(new HashSet<>(Arrays.asList("CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1")));
+        feed.publish(Collections.<String>emptySet());
+
+        assertThat(received.size(), is(1));
+        assertThat(received.get(0), is((Set<String>) new HashSet<>(Arrays.asList("CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1"))));
+    }
+}
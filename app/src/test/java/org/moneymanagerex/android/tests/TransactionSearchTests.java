@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.money.manager.ex.database.TransactionSearchIndex;
+import com.money.manager.ex.search.SearchHit;
+import com.money.manager.ex.search.TransactionSearchService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestDatabase;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Full-text index of the transactions and the search over it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TransactionSearchTests {
+
+    private TestDatabase database;
+    private SupportSQLiteDatabase db;
+    private TransactionSearchIndex index;
+
+    @Before
+    public void setup() {
+        database = new TestDatabase("search.mmb");
+        db = database.getDatabase();
+        index = new TransactionSearchIndex();
+        index.ensureCurrent(db);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void matchExpressionUsesWordPrefixes() {
+        assertThat(TransactionSearchService.getMatchExpression("Café, \"de\" OR", null), is("cafe* de* or*"));
+        assertThat(TransactionSearchService.getMatchExpression("12-3", TransactionSearchIndex.TRANSACTIONNUMBER),
+                is("TRANSACTIONNUMBER:12* TRANSACTIONNUMBER:3*"));
+        assertThat(TransactionSearchService.getMatchExpression(" - ", null), nullValue());
+    }
+
+    @Test
+    public void writtenTransactionsAreFoundWithHighlights() {
+        long id = database.transaction().notes("Dinner at the Café de Paris").insert();
+        database.transaction().notes("Groceries").insert();
+        write(id);
+
+        List<SearchHit> hits = TransactionSearchService.search(db,
+                TransactionSearchService.getMatchExpression("cafe", null), 10);
+
+        assertThat(hits.size(), is(1));
+        assertThat(hits.get(0).getTransactionId(), is(id));
+        // character positions, although the match is 5 bytes in UTF-8
+        List<int[]> ranges = hits.get(0).getHighlights(TransactionSearchIndex.NOTES);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0), is(new int[] { 14, 18 }));
+    }
+
+    @Test
+    public void deletedTransactionsAreRemoved() {
+        long id = database.transaction().notes("Dinner").insert();
+        write(id);
+
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET DELETEDTIME = '2024-01-02' WHERE TRANSID = " + id);
+        write(id);
+
+        assertThat(TransactionSearchService.search(db, "dinner*", 10).size(), is(0));
+    }
+
+    private void write(long transactionId) {
+        db.beginTransaction();
+        try {
+            index.afterWrite(db, "CHECKINGACCOUNT_V1", new long[] { transactionId });
+            index.onWriteCompleted(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
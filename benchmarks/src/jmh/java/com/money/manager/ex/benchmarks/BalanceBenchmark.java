@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.money.manager.ex.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
+import info.javaperformance.money.MoneyColumn;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Ports of the running balance (RunningBalanceCalculator) and balance on date
+ * (AccountService.calculateBalanceOn) loops, over synthetic transactions of one account sorted
+ * from the newest to the oldest, as in the account transaction list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class BalanceBenchmark {
+
+    private static final int PRECISION = 4;
+    private static final int ACCOUNT_ID = 1;
+
+    @Param({"10000"})
+    public int count;
+
+    private String[] dates;
+    private double[] amounts;
+    private double[] toAmounts;
+    private String[] statuses;
+    private String[] types;
+    private int[] accountIds;
+    private String balanceDate;
+    private Money startBalance;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        dates = new String[count];
+        amounts = new double[count];
+        toAmounts = new double[count];
+        statuses = new String[count];
+        types = new String[count];
+        accountIds = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            // a few transactions a day, newest first
+            int day = (count - i) / 3;
+            dates[i] = String.format("%04d-%02d-%02d", 2000 + day / 336, 1 + day / 28 % 12, 1 + day % 28);
+            amounts[i] = (random.nextInt(200000) - 100000) / 100.0;
+            toAmounts[i] = amounts[i] * 1.1;
+            statuses[i] = random.nextInt(50) == 0 ? "V" : "R";
+            types[i] = random.nextInt(10) == 0 ? "Transfer" : "Withdrawal";
+            accountIds[i] = types[i].equals("Transfer") && random.nextBoolean() ? 2 : ACCOUNT_ID;
+        }
+        balanceDate = dates[count / 2];
+        startBalance = MoneyFactory.fromString("15000.25");
+    }
+
+    /**
+     * The running balance with a Money per step, as before the money columns.
+     */
+    @Benchmark
+    public Money[] runningBalanceMoney() {
+        Money[] balances = new Money[count];
+        Money balance = startBalance;
+        for (int i = 0; i < count; i++) {
+            balances[i] = balance;
+            balance = balance.subtract(getAmountMoney(i));
+        }
+        return balances;
+    }
+
+    /**
+     * The running balance as the prefix sums of a money column.
+     */
+    @Benchmark
+    public MoneyColumn runningBalanceColumn() {
+        MoneyColumn changes = new MoneyColumn(PRECISION, count);
+        changes.add(startBalance);
+        for (int i = 0; i < count - 1; i++) {
+            changes.add(-getAmount(i));
+        }
+        return changes.prefixSums();
+    }
+
+    /**
+     * The balance on a date, summing the transactions with Money.
+     */
+    @Benchmark
+    public Money balanceOnMoney() {
+        Money total = MoneyFactory.fromUnits(0, 0);
+        for (int i = 0; i < count; i++) {
+            if (dates[i].compareTo(balanceDate) > 0) continue;
+            total = total.add(getAmountMoney(i));
+        }
+        return total;
+    }
+
+    /**
+     * The balance on a date, summing the transactions with an accumulator.
+     */
+    @Benchmark
+    public Money balanceOnAccumulator() {
+        MoneyAccumulator total = new MoneyAccumulator(PRECISION);
+        for (int i = 0; i < count; i++) {
+            if (dates[i].compareTo(balanceDate) > 0) continue;
+            total.add(getAmount(i));
+        }
+        return total.toMoney();
+    }
+
+    private double getAmount(int i) {
+        if ("V".equals(statuses[i])) return 0;
+        if ("Transfer".equals(types[i]) && accountIds[i] != ACCOUNT_ID) return toAmounts[i];
+        return amounts[i];
+    }
+
+    private Money getAmountMoney(int i) {
+        if ("V".equals(statuses[i])) return MoneyFactory.fromDouble(0);
+        double amount = "Transfer".equals(types[i]) && accountIds[i] != ACCOUNT_ID ? toAmounts[i] : amounts[i];
+        return MoneyFactory.fromDouble(amount).truncate(PRECISION);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.money.manager.ex.benchmarks;
+
+import com.money.manager.ex.core.NumericPatternGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.TimeUnit;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+import info.javaperformance.money.MoneyFormatter;
+
+/**
+ * Ports of the former DecimalFormat based FormatUtilities.format and formatNumber paths, which
+ * depend on the Android context only for the currency lookup and TextUtils, against the
+ * MoneyFormatter now used by them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FormatBenchmark {
+
+    private Money amount = MoneyFactory.fromString("-1234567.891");
+    private int scale = 100;
+    private String decimalSeparator = ",";
+    private String groupSeparator = ".";
+    private MoneyFormatter moneyFormatter = new MoneyFormatter(2, ',', '.', '0', '-');
+
+    @Benchmark
+    public String formatWithScale() {
+        return format(amount, scale, decimalSeparator, groupSeparator);
+    }
+
+    @Benchmark
+    public String formatWithSymbols() {
+        String result = format(amount, scale, decimalSeparator, groupSeparator);
+        return "$" + " " + result;
+    }
+
+    @Benchmark
+    public String formatNumber() {
+        return formatNumber(amount, 4, decimalSeparator, groupSeparator, "$", null);
+    }
+
+    @Benchmark
+    public String formatMoneyFormatter() {
+        return moneyFormatter.format(amount);
+    }
+
+    @Benchmark
+    public String formatPattern() {
+        DecimalFormat formatter = new DecimalFormat("#,##0.00");
+        return formatter.format(amount.toDouble());
+    }
+
+    /**
+     * FormatUtilities.format(Money, int, String, String)
+     */
+    private static String format(Money value, int scale, String decimalSeparator, String groupSeparator) {
+        int decimals = (int) Math.round(Math.log(scale) / Math.log(10.0));
+
+        value = value.truncate(decimals);
+
+        DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
+        if (!isEmpty(decimalSeparator)) {
+            formatSymbols.setDecimalSeparator(decimalSeparator.charAt(0));
+        }
+        if (!isEmpty(groupSeparator)) {
+            formatSymbols.setGroupingSeparator(groupSeparator.charAt(0));
+        }
+
+        String pattern = NumericPatternGenerator.getPattern(decimals);
+        DecimalFormat formatter = new DecimalFormat(pattern);
+        formatter.setMaximumFractionDigits(decimals);
+        formatter.setMinimumFractionDigits(decimals);
+        formatter.setGroupingSize(3);
+        formatter.setDecimalFormatSymbols(formatSymbols);
+
+        return formatter.format(value.toDouble());
+    }
+
+    /**
+     * FormatUtilities.formatNumber
+     */
+    private static String formatNumber(Money amount, int decimals, String decimalSeparator, String groupSeparator,
+                                       String prefix, String suffix) {
+        String pattern = NumericPatternGenerator.getPattern(decimals);
+        DecimalFormat formatter = new DecimalFormat(pattern);
+        formatter.setMaximumFractionDigits(decimals);
+        formatter.setMinimumFractionDigits(decimals);
+
+        DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols();
+        if (!isEmpty(decimalSeparator)) {
+            formatSymbols.setDecimalSeparator(decimalSeparator.charAt(0));
+        }
+        if (!isEmpty(groupSeparator)) {
+            formatSymbols.setGroupingSeparator(groupSeparator.charAt(0));
+        }
+        formatter.setGroupingSize(3);
+        formatter.setDecimalFormatSymbols(formatSymbols);
+
+        String result = formatter.format(amount.toDouble());
+        if (prefix != null) {
+            result = prefix + result;
+        }
+        if (suffix != null) {
+            result += suffix;
+        }
+        return result;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+}
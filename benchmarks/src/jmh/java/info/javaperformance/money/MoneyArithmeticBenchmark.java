@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arithmetic on Money values, on the long and the BigDecimal representations, and the
+ * summing of many values with Money and with the accumulator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MoneyArithmeticBenchmark {
+
+    @Param({"10000"})
+    public int count;
+
+    private Money amount;
+    private Money otherPrecision;
+    private Money large;
+    private Money big;
+    private Money[] amounts;
+    private double[] doubles;
+
+    @Setup
+    public void setup() {
+        amount = MoneyFactory.fromString("1234.56");
+        otherPrecision = MoneyFactory.fromString("0.0125");
+        large = MoneyFactory.fromUnits(Long.MAX_VALUE - 1, 2);
+        big = MoneyFactory.fromString("123456789012345678901.25");
+
+        Random random = new Random(42);
+        amounts = new Money[count];
+        doubles = new double[count];
+        for (int i = 0; i < count; i++) {
+            // cents, as stored for most currencies
+            doubles[i] = (random.nextInt(2000000) - 1000000) / 100.0;
+            amounts[i] = MoneyFactory.fromDouble(doubles[i]);
+        }
+    }
+
+    @Benchmark
+    public Money add() {
+        return amount.add(amount);
+    }
+
+    @Benchmark
+    public Money addDifferentPrecision() {
+        return amount.add(otherPrecision);
+    }
+
+    @Benchmark
+    public Money addOverflow() {
+        return large.add(large);
+    }
+
+    @Benchmark
+    public Money addBigDecimal() {
+        return big.add(amount);
+    }
+
+    @Benchmark
+    public Money multiplyLong() {
+        return amount.multiply(3L);
+    }
+
+    @Benchmark
+    public Money multiplyDouble() {
+        return amount.multiply(1.0825);
+    }
+
+    @Benchmark
+    public Money multiplyBigDecimal() {
+        return big.multiply(1.0825);
+    }
+
+    @Benchmark
+    public Money divide() {
+        return amount.divide(3L, 4);
+    }
+
+    @Benchmark
+    public Money divideBigDecimal() {
+        return big.divide(3L, 4);
+    }
+
+    @Benchmark
+    public Money truncate() {
+        return otherPrecision.truncate(2);
+    }
+
+    @Benchmark
+    public Money sumMoney() {
+        Money total = MoneyFactory.fromUnits(0, 0);
+        for (Money value : amounts) {
+            total = total.add(value);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money sumAccumulator() {
+        MoneyAccumulator total = new MoneyAccumulator(4);
+        for (Money value : amounts) {
+            total.add(value);
+        }
+        return total.toMoney();
+    }
+
+    @Benchmark
+    public Money sumAccumulatorDoubles() {
+        MoneyAccumulator total = new MoneyAccumulator(4);
+        for (double value : doubles) {
+            total.add(value);
+        }
+        return total.toMoney();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions into Money, including the inputs that end up on the BigDecimal paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MoneyFactoryBenchmark {
+
+    private String shortString = "1234.56";
+    private String negativeString = "-98765.4321";
+    /** Too long for the fast parser */
+    private String longString = "123456789012345678901.25";
+    private char[] chars = "1234.56".toCharArray();
+    private double amount = 1234.56;
+    /** Needs more digits than the maximal precision */
+    private double irrational = Math.PI * 1000;
+
+    @Benchmark
+    public Money fromString() {
+        return MoneyFactory.fromString(shortString);
+    }
+
+    @Benchmark
+    public Money fromStringNegative() {
+        return MoneyFactory.fromString(negativeString);
+    }
+
+    @Benchmark
+    public Money fromStringBigDecimal() {
+        return MoneyFactory.fromString(longString);
+    }
+
+    @Benchmark
+    public Money fromCharArray() {
+        return MoneyFactory.fromCharArray(chars, 0, chars.length);
+    }
+
+    @Benchmark
+    public Money fromDouble() {
+        return MoneyFactory.fromDouble(amount);
+    }
+
+    @Benchmark
+    public Money fromDoubleWithPrecision() {
+        return MoneyFactory.fromDouble(amount, 4);
+    }
+
+    @Benchmark
+    public Money fromDoubleBigDecimal() {
+        return MoneyFactory.fromDouble(irrational);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * <p>
+ *     Mutable sum of monetary values, for the aggregation loops. Adding a value does not
+ *     allocate: the total is kept as a number of units at a fixed scale, in a 128-bit integer,
+ *     so that it can not overflow in practice.
+ * </p>
+ * <p>
+ *     Values with more decimal digits than the scale are rounded half away from zero, as they
+ *     are added. Not thread-safe.
+ * </p>
+ */
+public final class MoneyAccumulator {
+
+    /** Scale of the units */
+    private final int m_scale;
+    /** Upper 64 bits of the total units, signed */
+    private long m_high;
+    /** Lower 64 bits of the total units, unsigned */
+    private long m_low;
+
+    /**
+     * @param scale Number of digits after the decimal point to keep. Should be between
+     *              0 and <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     */
+    public MoneyAccumulator( final int scale )
+    {
+        MoneyFactory.checkPrecision( scale );
+        m_scale = scale;
+    }
+
+    public int getScale() {
+        return m_scale;
+    }
+
+    public MoneyAccumulator reset()
+    {
+        m_high = 0;
+        m_low = 0;
+        return this;
+    }
+
+    /**
+     * Replaces the total with the given value.
+     */
+    public MoneyAccumulator set( final Money value )
+    {
+        return reset().add( value );
+    }
+
+    public MoneyAccumulator add( final Money value )
+    {
+        if ( value == null )
+            return this;
+        final long units;
+        try
+        {
+            units = MoneyUnits.fromMoney( value, m_scale );
+        }
+        catch ( ArithmeticException ex )
+        {
+            return addBig( value.toBigDecimal() );
+        }
+        return addUnits( units );
+    }
+
+    public MoneyAccumulator add( final double value )
+    {
+        final long units;
+        try
+        {
+            units = MoneyUnits.fromDouble( value, m_scale );
+        }
+        catch ( ArithmeticException ex )
+        {
+            return addBig( new BigDecimal( value ) );
+        }
+        return addUnits( units );
+    }
+
+    public MoneyAccumulator subtract( final Money value )
+    {
+        if ( value == null )
+            return this;
+        final long units;
+        try
+        {
+            units = MoneyUnits.fromMoney( value, m_scale );
+        }
+        catch ( ArithmeticException ex )
+        {
+            return addBig( value.toBigDecimal().negate() );
+        }
+        return subtractUnits( units );
+    }
+
+    public MoneyAccumulator subtract( final double value )
+    {
+        return add( -value );
+    }
+
+    /**
+     * Adds a number of units, at the scale of this accumulator.
+     */
+    public MoneyAccumulator addUnits( final long units )
+    {
+        final long low = m_low + units;
+        //the sign extension of units, plus the carry of the unsigned addition
+        m_high += ( units >> 63 ) + ( Long.compareUnsigned( low, m_low ) < 0 ? 1 : 0 );
+        m_low = low;
+        return this;
+    }
+
+    /**
+     * Subtracts a number of units, at the scale of this accumulator.
+     */
+    public MoneyAccumulator subtractUnits( final long units )
+    {
+        final long low = m_low - units;
+        //the sign extension of units, plus the borrow of the unsigned subtraction
+        m_high -= ( units >> 63 ) + ( Long.compareUnsigned( m_low, units ) < 0 ? 1 : 0 );
+        m_low = low;
+        return this;
+    }
+
+    public boolean isZero() {
+        return m_high == 0 && m_low == 0;
+    }
+
+    /**
+     * @return true if the total fits in a long number of units.
+     */
+    public boolean fitsInLong() {
+        return m_high == ( m_low >> 63 );
+    }
+
+    /**
+     * @return The total number of units.
+     * @throws ArithmeticException if the total does not fit in a long.
+     */
+    public long getUnits()
+    {
+        if ( !fitsInLong() )
+            throw new ArithmeticException( "Total does not fit in a long: " + toBigDecimal() );
+        return m_low;
+    }
+
+    public Money toMoney()
+    {
+        if ( fitsInLong() )
+            return MoneyFactory.fromUnits( m_low, m_scale );
+        return MoneyFactory.fromBigDecimal( toBigDecimal() );
+    }
+
+    public double toDouble()
+    {
+        if ( fitsInLong() )
+            return ( (double) m_low ) / MoneyFactory.MULTIPLIERS[ m_scale ];
+        return toBigDecimal().doubleValue();
+    }
+
+    public BigDecimal toBigDecimal() {
+        return new BigDecimal( toBigInteger(), m_scale );
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private BigInteger toBigInteger()
+    {
+        BigInteger low = BigInteger.valueOf( m_low & Long.MAX_VALUE );
+        if ( m_low < 0 )
+            low = low.setBit( 63 );
+        return BigInteger.valueOf( m_high ).shiftLeft( 64 ).add( low );
+    }
+
+    /**
+     * Slow path, for the values that do not fit in a long at this scale.
+     */
+    private MoneyAccumulator addBig( final BigDecimal value )
+    {
+        final BigInteger units = value.setScale( m_scale, RoundingMode.HALF_UP ).unscaledValue();
+        if ( units.bitLength() > 127 )
+            throw new ArithmeticException( "Value out of range: " + value );
+
+        final long low = units.longValue();
+        final long high = units.shiftRight( 64 ).longValue();
+        final long sum = m_low + low;
+        final long carry = Long.compareUnsigned( sum, m_low ) < 0 ? 1 : 0;
+        m_high = Math.addExact( Math.addExact( m_high, high ), carry );
+        m_low = sum;
+        return this;
+    }
+}
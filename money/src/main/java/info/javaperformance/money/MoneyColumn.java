@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     A column of monetary values, stored as <code>long</code> units at a fixed scale, with the
+ *     bulk operations used by the reports and the balances. Only the operations that return
+ *     a {@link Money} allocate.
+ * </p>
+ * <p>
+ *     Values with more decimal digits than the scale are rounded half away from zero, as they
+ *     are added. Not thread-safe.
+ * </p>
+ */
+public final class MoneyColumn {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Scale of the units */
+    private final int m_scale;
+    private long[] m_units;
+    private int m_size;
+
+    public MoneyColumn( final int scale )
+    {
+        this( scale, DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param scale Number of digits after the decimal point to keep. Should be between
+     *              0 and <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     * @param capacity Initial capacity, the expected number of values.
+     */
+    public MoneyColumn( final int scale, final int capacity )
+    {
+        MoneyFactory.checkPrecision( scale );
+        m_scale = scale;
+        m_units = new long[ Math.max( capacity, 1 ) ];
+    }
+
+    public int getScale() {
+        return m_scale;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public void clear() {
+        m_size = 0;
+    }
+
+    /**
+     * @throws ArithmeticException if the value does not fit in a long at the scale of the column.
+     */
+    public MoneyColumn add( final Money value )
+    {
+        return addUnits( MoneyUnits.fromMoney( value, m_scale ) );
+    }
+
+    /**
+     * @throws ArithmeticException if the value does not fit in a long at the scale of the column.
+     */
+    public MoneyColumn add( final double value )
+    {
+        return addUnits( MoneyUnits.fromDouble( value, m_scale ) );
+    }
+
+    /**
+     * Adds a value given as a number of units, at the scale of this column.
+     */
+    public MoneyColumn addUnits( final long units )
+    {
+        if ( m_size == m_units.length )
+            m_units = Arrays.copyOf( m_units, m_units.length * 2 );
+        m_units[ m_size++ ] = units;
+        return this;
+    }
+
+    public long getUnits( final int index )
+    {
+        checkIndex( index );
+        return m_units[ index ];
+    }
+
+    public Money get( final int index )
+    {
+        return MoneyFactory.fromUnits( getUnits( index ), m_scale );
+    }
+
+    public double getDouble( final int index )
+    {
+        return ( (double) getUnits( index ) ) / MoneyFactory.MULTIPLIERS[ m_scale ];
+    }
+
+    public Money sum()
+    {
+        return sum( 0, m_size );
+    }
+
+    /**
+     * @param from First index, inclusive.
+     * @param to Last index, exclusive.
+     */
+    public Money sum( final int from, final int to )
+    {
+        checkRange( from, to );
+        final MoneyAccumulator total = new MoneyAccumulator( m_scale );
+        for ( int i = from; i < to; ++i )
+            total.addUnits( m_units[ i ] );
+        return total.toMoney();
+    }
+
+    /**
+     * @return The smallest value, or null if the column is empty.
+     */
+    public Money min()
+    {
+        if ( m_size == 0 )
+            return null;
+        long min = m_units[ 0 ];
+        for ( int i = 1; i < m_size; ++i )
+            if ( m_units[ i ] < min )
+                min = m_units[ i ];
+        return MoneyFactory.fromUnits( min, m_scale );
+    }
+
+    /**
+     * @return The largest value, or null if the column is empty.
+     */
+    public Money max()
+    {
+        if ( m_size == 0 )
+            return null;
+        long max = m_units[ 0 ];
+        for ( int i = 1; i < m_size; ++i )
+            if ( m_units[ i ] > max )
+                max = m_units[ i ];
+        return MoneyFactory.fromUnits( max, m_scale );
+    }
+
+    /**
+     * @return A new column with the running totals: the value at each index is the sum of the
+     * values up to and including that index.
+     * @throws ArithmeticException if a running total does not fit in a long.
+     */
+    public MoneyColumn prefixSums()
+    {
+        final MoneyColumn result = new MoneyColumn( m_scale, m_size );
+        long total = 0;
+        for ( int i = 0; i < m_size; ++i )
+        {
+            total = Math.addExact( total, m_units[ i ] );
+            result.m_units[ i ] = total;
+        }
+        result.m_size = m_size;
+        return result;
+    }
+
+    private void checkIndex( final int index )
+    {
+        if ( index < 0 || index >= m_size )
+            throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + m_size );
+    }
+
+    private void checkRange( final int from, final int to )
+    {
+        if ( from < 0 || to > m_size || from > to )
+            throw new IndexOutOfBoundsException( "Range: " + from + "-" + to + ", size: " + m_size );
+    }
+}
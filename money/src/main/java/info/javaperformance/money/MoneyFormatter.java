@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * <p>
+ *     Formats monetary values with a fixed number of decimals and grouping by thousands, like a
+ *     <code>DecimalFormat</code> with the pattern <code>#,##0.00</code>. The digits of the long
+ *     values are written directly, without going through <code>double</code> or
+ *     <code>BigDecimal</code>.
+ * </p>
+ * <p>
+ *     Values with more decimals are rounded half up, as {@link Money#truncate(int)} does, or
+ *     half even, as <code>DecimalFormat</code> does by default.
+ *     Immutable and thread-safe.
+ * </p>
+ */
+public final class MoneyFormatter {
+
+    /** Powers of 10 up to the number of digits of a long */
+    private static final long[] POWERS = new long[ 19 ];
+    static
+    {
+        long val = 1;
+        for ( int i = 0; i < POWERS.length; ++i )
+        {
+            POWERS[ i ] = val;
+            val *= 10;
+        }
+    }
+
+    private final int m_decimals;
+    private final char m_decimalSeparator;
+    /** 0 for no grouping */
+    private final char m_groupSeparator;
+    private final char m_zeroDigit;
+    private final char m_minusSign;
+    private final boolean m_halfEven;
+
+    /**
+     * @param decimals Number of decimals to show. Should be between 0 and
+     *                 <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     * @param groupSeparator Separator of the thousands, 0 for none.
+     * @param zeroDigit Character of the digit zero, the other digits follow it.
+     */
+    public MoneyFormatter( final int decimals, final char decimalSeparator, final char groupSeparator,
+                           final char zeroDigit, final char minusSign )
+    {
+        this( decimals, decimalSeparator, groupSeparator, zeroDigit, minusSign, RoundingMode.HALF_UP );
+    }
+
+    /**
+     * @param rounding <code>HALF_UP</code> or <code>HALF_EVEN</code>.
+     */
+    public MoneyFormatter( final int decimals, final char decimalSeparator, final char groupSeparator,
+                           final char zeroDigit, final char minusSign, final RoundingMode rounding )
+    {
+        MoneyFactory.checkPrecision( decimals );
+        if ( rounding != RoundingMode.HALF_UP && rounding != RoundingMode.HALF_EVEN )
+            throw new IllegalArgumentException( "Unsupported rounding: " + rounding );
+        m_halfEven = rounding == RoundingMode.HALF_EVEN;
+        m_decimals = decimals;
+        m_decimalSeparator = decimalSeparator;
+        m_groupSeparator = groupSeparator;
+        m_zeroDigit = zeroDigit;
+        m_minusSign = minusSign;
+    }
+
+    public int getDecimals() {
+        return m_decimals;
+    }
+
+    public String format( final Money value )
+    {
+        return format( value, new StringBuilder( 24 ) ).toString();
+    }
+
+    /**
+     * Appends the formatted value.
+     * @return The given builder.
+     */
+    public StringBuilder format( final Money value, final StringBuilder out )
+    {
+        if ( value instanceof MoneyLong )
+        {
+            final MoneyLong money = (MoneyLong) value;
+            final long units = money.units();
+            final int precision = money.precision();
+            if ( precision == m_decimals )
+                return appendUnits( units, out );
+            if ( precision > m_decimals )
+            {
+                final long divider = MoneyFactory.MULTIPLIERS[ precision - m_decimals ];
+                if ( m_halfEven )
+                    return appendUnits( roundHalfEven( units, divider ), out );
+                final long half = divider / 2;
+                if ( units <= Long.MAX_VALUE - half )
+                    return appendUnits( Math.floorDiv( units + half, divider ), out );
+            }
+            else
+            {
+                final long multiplier = MoneyFactory.MULTIPLIERS[ m_decimals - precision ];
+                final long result = units * multiplier;
+                if ( result / multiplier == units ) //overflow check
+                    return appendUnits( result, out );
+            }
+        }
+        return appendBig( value.toBigDecimal(), out );
+    }
+
+    private static long roundHalfEven( final long units, final long divider )
+    {
+        final long quotient = Math.floorDiv( units, divider );
+        final long twice = 2 * Math.floorMod( units, divider );
+        if ( twice > divider || ( twice == divider && ( quotient & 1 ) != 0 ) )
+            return quotient + 1;
+        return quotient;
+    }
+
+    private StringBuilder appendUnits( final long units, final StringBuilder out )
+    {
+        //work on the negative value, as Long.MIN_VALUE has no positive counterpart
+        final long negative = units < 0 ? units : -units;
+        if ( units < 0 )
+            out.append( m_minusSign );
+
+        int digits = 1;
+        while ( digits < POWERS.length && negative <= -POWERS[ digits ] )
+            ++digits;
+        final int integerDigits = Math.max( digits - m_decimals, 1 );
+
+        for ( int i = integerDigits + m_decimals - 1; i >= 0; --i )
+        {
+            final int digit = (int) -( ( negative / POWERS[ i ] ) % 10 );
+            out.append( (char) ( m_zeroDigit + digit ) );
+            appendSeparator( i, out );
+        }
+        return out;
+    }
+
+    /**
+     * Slow path, for the values that do not fit in a long with the required decimals.
+     */
+    private StringBuilder appendBig( final BigDecimal value, final StringBuilder out )
+    {
+        final BigInteger units = value.setScale( m_decimals,
+            m_halfEven ? RoundingMode.HALF_EVEN : RoundingMode.HALF_UP ).unscaledValue();
+        if ( units.signum() < 0 )
+            out.append( m_minusSign );
+
+        String digits = units.abs().toString();
+        while ( digits.length() <= m_decimals )
+            digits = "0" + digits;
+
+        final int length = digits.length();
+        for ( int i = 0; i < length; ++i )
+        {
+            out.append( (char) ( m_zeroDigit + ( digits.charAt( i ) - '0' ) ) );
+            appendSeparator( length - 1 - i, out );
+        }
+        return out;
+    }
+
+    /**
+     * Appends the separator following the digit at the given position, counted from the last
+     * decimal.
+     */
+    private void appendSeparator( final int position, final StringBuilder out )
+    {
+        if ( position == m_decimals )
+        {
+            if ( m_decimals > 0 )
+                out.append( m_decimalSeparator );
+            return;
+        }
+        final int integerPosition = position - m_decimals;
+        if ( integerPosition > 0 && integerPosition % 3 == 0 && m_groupSeparator != 0 )
+            out.append( m_groupSeparator );
+    }
+}
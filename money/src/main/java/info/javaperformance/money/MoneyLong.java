@@ -35,6 +35,14 @@ class MoneyLong extends AbstractMoney {
         m_precision = precision;
     }
 
+    long units() {
+        return m_units;
+    }
+
+    int precision() {
+        return m_precision;
+    }
+
     /**
      * Convert to the original currency - divide <code>units</code> by <code>10^precision</code>.
      * @return <code>units / (10^precision)</code>
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.math.RoundingMode;
+
+/**
+ * Conversion of values into a number of units at a fixed scale, as used by
+ * {@link MoneyAccumulator} and {@link MoneyColumn}. Values with more decimal digits than the
+ * scale are rounded half away from zero.
+ */
+final class MoneyUnits {
+
+    /** Limit for the scaled doubles, below which the conversion to long is exact enough */
+    private static final double MAX_SCALED_DOUBLE = 9.0E18;
+
+    private MoneyUnits() {
+    }
+
+    /**
+     * @throws ArithmeticException if the value does not fit in a long at the given scale.
+     */
+    static long fromMoney( final Money value, final int scale )
+    {
+        if ( value instanceof MoneyLong )
+        {
+            final MoneyLong money = (MoneyLong) value;
+            final long units = money.units();
+            final int precision = money.precision();
+            if ( precision == scale )
+                return units;
+            if ( precision > scale )
+                return round( units, precision - scale );
+
+            final long multiplier = MoneyFactory.MULTIPLIERS[ scale - precision ];
+            final long result = units * multiplier;
+            if ( result / multiplier == units ) //overflow check
+                return result;
+            throw new ArithmeticException( "Value does not fit at scale " + scale + ": " + value );
+        }
+        return value.toBigDecimal().setScale( scale, RoundingMode.HALF_UP ).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @throws ArithmeticException if the value does not fit in a long at the given scale.
+     */
+    static long fromDouble( final double value, final int scale )
+    {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) )
+            throw new IllegalArgumentException( "Not a monetary value: " + value );
+        final double scaled = value * MoneyFactory.MULTIPLIERS[ scale ];
+        if ( Math.abs( scaled ) >= MAX_SCALED_DOUBLE )
+            throw new ArithmeticException( "Value does not fit at scale " + scale + ": " + value );
+        return scaled >= 0 ? Math.round( scaled ) : -Math.round( -scaled );
+    }
+
+    /**
+     * Removes the given number of digits, rounding half away from zero.
+     */
+    static long round( final long units, final int digits )
+    {
+        final long divider = MoneyFactory.MULTIPLIERS[ digits ];
+        long result = units / divider;
+        final long remainder = units - result * divider;
+        if ( Math.abs( remainder ) * 2 >= divider )
+            result += Long.signum( units );
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class MoneyAccumulatorTest {
+
+    @Test
+    public void sumOfDoublesIsExact() {
+        MoneyAccumulator total = new MoneyAccumulator(4);
+        for (int i = 0; i < 10000; i++) {
+            total.add(0.1);
+        }
+
+        assertEquals("1000", total.toMoney().toString());
+    }
+
+    @Test
+    public void valuesAreRoundedToTheScale() {
+        MoneyAccumulator total = new MoneyAccumulator(4);
+        total.add(MoneyFactory.fromString("12.34567")).subtract(MoneyFactory.fromString("2.34"));
+        assertEquals("10.0057", total.toString());
+
+        total.reset().add(-0.00005);
+        assertEquals(-1, total.getUnits());
+    }
+
+    @Test
+    public void overflowGoesTo128Bits() {
+        MoneyAccumulator total = new MoneyAccumulator(4);
+        for (int i = 0; i < 4; i++) {
+            total.addUnits(Long.MAX_VALUE);
+        }
+
+        assertFalse(total.fitsInLong());
+        BigInteger expected = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(4));
+        assertEquals(new BigDecimal(expected, 4), total.toBigDecimal());
+
+        for (int i = 0; i < 4; i++) {
+            total.subtractUnits(Long.MAX_VALUE);
+        }
+        assertTrue(total.isZero());
+    }
+
+    @Test
+    public void largeValuesUseTheSlowPath() {
+        MoneyAccumulator total = new MoneyAccumulator(2);
+        total.add(MoneyFactory.fromString("123456789012345678901234.5"));
+        total.add(MoneyFactory.fromString("0.25"));
+        total.subtract(MoneyFactory.fromString("123456789012345678901234.5"));
+
+        assertEquals("0.25", total.toMoney().toString());
+    }
+
+    @Test
+    public void columnOperations() {
+        MoneyColumn column = new MoneyColumn(2, 1);
+        column.add(1.5).add(MoneyFactory.fromString("-3.25")).add(10);
+
+        assertEquals(3, column.size());
+        assertEquals("8.25", column.sum().toString());
+        assertEquals("6.75", column.sum(1, 3).toString());
+        assertEquals("-3.25", column.min().toString());
+        assertEquals("10", column.max().toString());
+
+        MoneyColumn running = column.prefixSums();
+        assertEquals(150, running.getUnits(0));
+        assertEquals(-175, running.getUnits(1));
+        assertEquals(825, running.getUnits(2));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012-2024 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import org.junit.Test;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MoneyFormatterTest {
+
+    @Test
+    public void sameAsDecimalFormat() {
+        Random random = new Random(42);
+        for (int decimals = 0; decimals <= 4; decimals++) {
+            MoneyFormatter formatter = new MoneyFormatter(decimals, ',', '.', '0', '-');
+            DecimalFormat format = createDecimalFormat(decimals);
+
+            for (int i = 0; i < 10000; i++) {
+                long units = random.nextInt(4) == 0
+                    ? random.nextLong() % 100000000000L
+                    : random.nextInt(2000000) - 1000000;
+                Money value = MoneyFactory.fromUnits(units, random.nextInt(6));
+
+                String expected = format.format(value.truncate(decimals).toDouble());
+                assertEquals(value.toString(), expected, formatter.format(value));
+            }
+        }
+    }
+
+    @Test
+    public void largeValues() {
+        MoneyFormatter formatter = new MoneyFormatter(2, '.', ',', '0', '-');
+
+        assertEquals("123,456,789,012,345,678,901.26",
+            formatter.format(MoneyFactory.fromString("123456789012345678901.255")));
+        assertEquals("-92,233,720,368,547,758.08", formatter.format(MoneyFactory.fromUnits(Long.MIN_VALUE, 2)));
+        assertEquals("0.00", formatter.format(MoneyFactory.fromString("-0.004")));
+    }
+
+    @Test
+    public void halfEven() {
+        MoneyFormatter formatter = new MoneyFormatter(2, '.', ',', '0', '-', RoundingMode.HALF_EVEN);
+
+        assertEquals("2.34", formatter.format(MoneyFactory.fromString("2.345")));
+        assertEquals("2.36", formatter.format(MoneyFactory.fromString("2.355")));
+        assertEquals("-2.34", formatter.format(MoneyFactory.fromString("-2.345")));
+        assertEquals("2.35", formatter.format(MoneyFactory.fromString("2.3451")));
+        assertEquals("123,456,789,012,345,678,901.26",
+            formatter.format(MoneyFactory.fromString("123456789012345678901.255")));
+    }
+
+    @Test
+    public void appendsToTheBuilder() {
+        MoneyFormatter formatter = new MoneyFormatter(0, '.', (char) 0, '0', '-');
+        StringBuilder builder = new StringBuilder("$ ");
+
+        formatter.format(MoneyFactory.fromString("-1234.6"), builder);
+
+        assertEquals("$ -1235", builder.toString());
+    }
+
+    private DecimalFormat createDecimalFormat(int decimals) {
+        StringBuilder pattern = new StringBuilder("#,##0");
+        if (decimals > 0) {
+            pattern.append('.');
+            for (int i = 0; i < decimals; i++) {
+                pattern.append('0');
+            }
+        }
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.ENGLISH);
+        symbols.setDecimalSeparator(',');
+        symbols.setGroupingSeparator('.');
+
+        DecimalFormat format = new DecimalFormat(pattern.toString(), symbols);
+        format.setGroupingSize(3);
+        return format;
+    }
+}